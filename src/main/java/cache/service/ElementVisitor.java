@@ -0,0 +1,39 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+/**
+ * 流式范围检索的元素访问者。
+ * <p>
+ * 大列表或大有序集的范围检索结果会被分块读取，每个元素解码后立刻交给访问者处理，内存占用只与块大小有关，而与结果集大小无关。
+ *
+ * @author huagang.li 2015年2月9日 下午2:16:05
+ * @see RedisService#lrange(String, int, int, ElementVisitor)
+ */
+public interface ElementVisitor {
+
+    /**
+     * 访问一个元素。
+     * <p>
+     * 访问者在一个借用的Redis连接上被调用，不应执行耗时较长的操作。
+     *
+     * @param element 元素
+     * @return {@code true}：继续访问下一个元素；{@code false}：提前终止访问。
+     */
+    boolean visit(String element);
+
+}
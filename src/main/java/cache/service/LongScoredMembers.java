@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import java.util.Arrays;
+
+/**
+ * "数值(long)成员及其分数"的有序集合结果，使用基本类型数组存储，不会为每个成员创建{@link String}和包装类对象。
+ * <p>
+ * 第i个成员为{@code getMember(i)}，其分数为{@code getScore(i)}，顺序与Redis返回的顺序一致。
+ *
+ * @author huagang.li 2015年2月5日 上午11:02:18
+ */
+public final class LongScoredMembers {
+
+    /** 空结果 */
+    public static final LongScoredMembers EMPTY = new LongScoredMembers(new long[0], new double[0]);
+
+    /** 成员数组 */
+    private final long[]                  members;
+    /** 分数数组 */
+    private final double[]                scores;
+
+    /**
+     * 创建一个"数值成员及其分数"的结果。
+     *
+     * @param members 成员数组
+     * @param scores 分数数组(长度必须与成员数组相同)
+     */
+    public LongScoredMembers(long[] members, double[] scores){
+        if (members.length != scores.length) {
+            throw new IllegalArgumentException("'members' and 'scores' must have the same length");
+        }
+        this.members = members;
+        this.scores = scores;
+    }
+
+    /**
+     * 返回成员数量。
+     */
+    public int size() {
+        return members.length;
+    }
+
+    public boolean isEmpty() {
+        return members.length == 0;
+    }
+
+    /**
+     * 返回第{@code index}个成员。
+     */
+    public long getMember(int index) {
+        return members[index];
+    }
+
+    /**
+     * 返回第{@code index}个成员的分数。
+     */
+    public double getScore(int index) {
+        return scores[index];
+    }
+
+    /**
+     * 返回成员数组。(直接返回内部数组，调用方不应修改它)
+     */
+    public long[] getMembers() {
+        return members;
+    }
+
+    /**
+     * 返回分数数组。(直接返回内部数组，调用方不应修改它)
+     */
+    public double[] getScores() {
+        return scores;
+    }
+
+    @Override
+    public String toString() {
+        return "LongScoredMembers [members=" + Arrays.toString(members) + ", scores=" + Arrays.toString(scores) + "]";
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Redis批量操作(工作单元)，可以一次性提交任意键上的多个命令。
+ * <p>
+ * 所有命令先在客户端排队，调用{@link #execute()}时再按"分片节点"进行拆分，每个分片节点使用一条管道(Pipeline)发送命令，
+ * 并且所有分片节点的请求回复是<b>并行</b>读取的，即整批命令的延迟是各分片节点延迟的最大值，而不是它们的总和。
+ * <p>
+ * 每个命令都会立刻返回一个{@link Future}，在{@link #execute()}完成后才能取得结果。<br>
+ * 当某个分片节点执行失败(或Redis服务被关闭)时，路由到该节点的命令会返回与{@link RedisService}相同的默认值(如0、{@code null}或空集合)。
+ * <p>
+ * 使用示例：
+ *
+ * <pre>
+ * RedisBatch batch = redisService.batch();
+ * Future&lt;String&gt; name = batch.get("user:1000:name");
+ * Future&lt;Set&lt;String&gt;&gt; feeds = batch.zrevrange("user:1000:feed", 0, 19);
+ * batch.expire("user:1000:feed", 3600);
+ * batch.execute();
+ *
+ * name.get();
+ * feeds.get();
+ * </pre>
+ *
+ * <font color="red">#NotThreadSafe# (非线程安全)，且只能执行一次！</font>
+ *
+ * @author huagang.li 2015年2月2日 下午3:12:40
+ * @see RedisService#batch()
+ */
+public interface RedisBatch {
+
+    // ---------------- Key (键) ----------------
+    /**
+     * 见{@link RedisService#expire(String, int)}。
+     */
+    Future<Integer> expire(String key, int seconds);
+
+    /**
+     * 见{@link RedisService#ttl(String)}。
+     */
+    Future<Long> ttl(String key);
+
+    /**
+     * 见{@link RedisService#del(String)}。
+     */
+    Future<Integer> del(String key);
+
+    // ---------------- String (字符串) ----------------
+    /**
+     * 见{@link RedisService#get(String)}。
+     */
+    Future<String> get(String key);
+
+    /**
+     * 见{@link RedisService#set(String, String)}。
+     */
+    Future<String> set(String key, String value);
+
+    /**
+     * 见{@link RedisService#setex(String, int, String)}。
+     */
+    Future<String> setex(String key, int seconds, String value);
+
+    // ---------------- List (列表) ----------------
+    /**
+     * 见{@link RedisService#llen(String)}。
+     */
+    Future<Integer> llen(String key);
+
+    /**
+     * 见{@link RedisService#lpush(String, String...)}。
+     */
+    Future<Integer> lpush(String key, String... values);
+
+    /**
+     * 见{@link RedisService#rpop(String)}。
+     */
+    Future<String> rpop(String key);
+
+    /**
+     * 见{@link RedisService#lrange(String, int, int)}。
+     */
+    Future<List<String>> lrange(String key, int start, int stop);
+
+    /**
+     * 见{@link RedisService#ltrim(String, int, int)}。
+     */
+    Future<String> ltrim(String key, int start, int stop);
+
+    // ---------------- Sorted Set (有序集合) ----------------
+    /**
+     * 见{@link RedisService#zadd(String, double, String)}。
+     */
+    Future<Integer> zadd(String key, double score, String member);
+
+    /**
+     * 见{@link RedisService#zadd(String, Map)}。
+     */
+    Future<Integer> zadd(String key, Map<String, Double> scoreMembers);
+
+    /**
+     * 见{@link RedisService#zrange(String, int, int)}。
+     */
+    Future<Set<String>> zrange(String key, int start, int stop);
+
+    /**
+     * 见{@link RedisService#zrevrange(String, int, int)}。
+     */
+    Future<Set<String>> zrevrange(String key, int start, int stop);
+
+    /**
+     * 见{@link RedisService#zrangeByScore(String, double, double, int, int)}。
+     */
+    Future<Set<String>> zrangeByScore(String key, double min, double max, int offset, int count);
+
+    /**
+     * 见{@link RedisService#zrevrangeByScore(String, double, double, int, int)}。
+     */
+    Future<Set<String>> zrevrangeByScore(String key, double max, double min, int offset, int count);
+
+    /**
+     * 见{@link RedisService#zcard(String)}。
+     */
+    Future<Integer> zcard(String key);
+
+    /**
+     * 见{@link RedisService#zremrangeByScore(String, double, double)}。
+     */
+    Future<Integer> zremrangeByScore(String key, double min, double max);
+
+    /**
+     * 见{@link RedisService#zremrangeByRank(String, int, int)}。
+     */
+    Future<Integer> zremrangeByRank(String key, int start, int stop);
+
+    // ---------------- 执行 ----------------
+    /**
+     * 返回已排队的命令数量。
+     *
+     * @return
+     */
+    int size();
+
+    /**
+     * 执行所有已排队的命令，并等待所有分片节点的请求回复都返回。
+     * <p>
+     * 该方法返回后，所有命令返回的{@link Future}都已完成。
+     *
+     * @throws IllegalStateException 当批量操作已经被执行过时
+     */
+    void execute();
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+/**
+ * Redis命令拦截器，用于实现横切关注点(如统计、跟踪、缓存、键前缀、故障注入等)，而不需要修改每个命令的实现。
+ * <p>
+ * 多个拦截器按注册顺序组成一条拦截器链，每个命令调用都被描述为一个{@link RedisInvocation}，依次经过链上的每个拦截器，
+ * 拦截器调用{@link RedisInvocation#proceed()}进入下一个拦截器(最后一个拦截器进入真正的命令执行)，
+ * 因此可以在命令执行之前和之后做处理，也可以修改键和参数，或者不调用{@code proceed()}而直接返回结果。
+ * <p>
+ * 示例(键前缀)：
+ *
+ * <pre>
+ * public Object intercept(RedisInvocation invocation) {
+ *     invocation.setKey("app1:" + invocation.getKey());
+ *     return invocation.proceed();
+ * }
+ * </pre>
+ *
+ * <font color="red">拦截器会被所有线程共享，实现必须是线程安全的！</font>
+ *
+ * @author huagang.li 2015年2月20日 上午10:05:32
+ * @see cache.service.impl.InterceptingRedisService
+ */
+public interface RedisInterceptor {
+
+    /**
+     * 拦截一次命令调用。
+     *
+     * @param invocation 命令调用
+     * @return 命令的返回值，类型必须与{@link RedisService}对应方法的返回类型一致(基本类型不能返回{@code null})
+     */
+    Object intercept(RedisInvocation invocation);
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import java.lang.reflect.Method;
+
+/**
+ * 一次Redis命令调用的描述(命令名称、键和参数)，在{@link RedisInterceptor}链中传递。
+ * <p>
+ * <font color="red">#NotThreadSafe# (非线程安全)，只在一次调用内有效！</font>
+ *
+ * @author huagang.li 2015年2月20日 上午10:12:47
+ */
+public interface RedisInvocation {
+
+    /**
+     * 返回命令名称，即{@link RedisService}的方法名，如"get"、"zrangeByScore"。
+     */
+    String getCommand();
+
+    /**
+     * 返回被调用的{@link RedisService}方法。
+     */
+    Method getMethod();
+
+    /**
+     * 返回命令的键(即第一个参数)。
+     */
+    String getKey();
+
+    /**
+     * 修改命令的键，之后的拦截器和命令执行都会使用新的键。
+     *
+     * @param key 新的键
+     */
+    void setKey(String key);
+
+    /**
+     * 返回命令的所有参数(第一个参数是键)。
+     * <p>
+     * 返回的是参数数组本身，修改其中的元素会影响之后的拦截器和命令执行。
+     */
+    Object[] getArguments();
+
+    /**
+     * 进入拦截器链中的下一个拦截器；最后一个拦截器调用该方法时，执行真正的命令。
+     *
+     * @return 命令的返回值
+     */
+    Object proceed();
+
+}
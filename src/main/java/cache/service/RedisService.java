@@ -274,6 +274,24 @@ public interface RedisService extends SwitchService {
      */
     List<String> lrange(String key, int start, int stop);
 
+    /**
+     * 流式返回列表key中指定区间内的元素。
+     * <p>
+     * 区间会被分块读取(每块的大小由实现决定)，每个元素都会依次交给{@code visitor}处理，直到区间结束或{@code visitor}返回{@code false}。<br>
+     * 内存占用只与块大小有关，适用于读取非常大的列表，如{@code lrange(key, 0, -1, visitor)}。
+     * <p>
+     * <font color="red">注意：</font>各块是分别读取的，若列表在读取期间被修改，结果不保证是同一时刻的快照。
+     * <p>
+     * 见{@link #lrange(String, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @param visitor 元素访问者
+     * @return 被访问的元素数量。
+     */
+    int lrange(String key, int start, int stop, ElementVisitor visitor);
+
     // LTrim，限制List的大小（比如只保留最新的20条消息）
     /**
      * 对一个列表进行修剪，就是说，让列表只保留指定区间内的元素，不在指定区间内的元素都将被删除。<br>
@@ -429,6 +447,19 @@ public interface RedisService extends SwitchService {
      */
     Set<String> zrevrange(String key, int start, int stop);
 
+    /**
+     * 流式返回有序集key中，指定区间内的成员。(按score值递增排序)
+     * <p>
+     * 见{@link #zrange(String, int, int)}和{@link #lrange(String, int, int, ElementVisitor)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @param visitor 成员访问者
+     * @return 被访问的成员数量。
+     */
+    int zrange(String key, int start, int stop, ElementVisitor visitor);
+
     // 范围检索
     /**
      * 返回有序集key中，所有score值介于min和max之间(包括等于min或max)的成员。<br>
@@ -460,6 +491,19 @@ public interface RedisService extends SwitchService {
      */
     Set<String> zrangeByScore(String key, double min, double max, int offset, int count);
 
+    /**
+     * 流式返回有序集key中，所有score值介于min和max之间(包括等于min或max)的成员。(按score值递增排序)
+     * <p>
+     * 见{@link #zrangeByScore(String, double, double)}和{@link #lrange(String, int, int, ElementVisitor)}文档注释。
+     * 
+     * @param key 键
+     * @param min 检索的最小分数
+     * @param max 检索的最大分数
+     * @param visitor 成员访问者
+     * @return 被访问的成员数量。
+     */
+    int zrangeByScore(String key, double min, double max, ElementVisitor visitor);
+
     // Set<Tuple> zrangeByScoreWithScores(String key, double min, double max, int offset, int count);
 
     /**
@@ -490,6 +534,134 @@ public interface RedisService extends SwitchService {
      */
     Set<String> zrevrangeByScore(String key, double max, double min, int offset, int count);
 
+    // 游标分页(Keyset Pagination)
+    // 使用上一页最后一个成员的(score, member)作为排他边界，而不是偏移量(offset)，
+    // 因此无论从第几页开始读取，每一页的开销都是 O(log(N)+M)，且在两页之间插入或删除成员也不会导致重复或遗漏。
+    /**
+     * 按score值递增(从小到大)的次序，分页返回有序集key中score值介于min和max之间(包括等于min或max)的成员。
+     * <p>
+     * 第一页传入的{@code cursor}为{@code null}，之后每一页都传入上一页返回的{@link ScorePage#getCursor()}，
+     * 直到{@link ScorePage#hasMore()}返回{@code false}为止。<br>
+     * score值相同的成员按字典序排列，所以(score, member)可以唯一确定一个位置。
+     * <p>
+     * 时间复杂度: O(log(N)+M+T)，N为有序集的基数，M为每页的元素数量，T为与上一页最后一个成员score值相同的成员数量
+     *
+     * @param key 键
+     * @param min 检索的最小分数
+     * @param max 检索的最大分数
+     * @param count 每页的最大元素个数(必须大于0)
+     * @param cursor 上一页返回的游标令牌，读取第一页时为{@code null}
+     * @return 一页结果；当Redis服务被关闭或读取失败时，返回{@link ScorePage#EMPTY}。
+     * @throws IllegalArgumentException 当游标令牌格式不合法时
+     */
+    ScorePage zrangeByScorePage(String key, double min, double max, int count, String cursor);
+
+    /**
+     * 按score值递减(从大到小)的次序，分页返回有序集key中score值介于max和min之间(包括等于max或min)的成员。<br>
+     * score值相同的成员按逆字典序排列。(典型场景：按时间戳倒序的"无限滚动"信息流)
+     * <p>
+     * 见{@link #zrangeByScorePage(String, double, double, int, String)}文档注释。
+     *
+     * @param key 键
+     * @param max 检索的最大分数
+     * @param min 检索的最小分数
+     * @param count 每页的最大元素个数(必须大于0)
+     * @param cursor 上一页返回的游标令牌，读取第一页时为{@code null}
+     * @return 一页结果；当Redis服务被关闭或读取失败时，返回{@link ScorePage#EMPTY}。
+     * @throws IllegalArgumentException 当游标令牌格式不合法时
+     */
+    ScorePage zrevrangeByScorePage(String key, double max, double min, int count, String cursor);
+
+    // 数值(long)成员
+    // 大部分有序集的成员都是long类型的ID，以下方法直接在Redis协议的字节数组与基本类型之间转换，不会为每个成员创建String和包装类对象。
+    /**
+     * 将long类型的member元素及其score值加入到有序集key中。(有序集长度无界)
+     * <p>
+     * 见{@link #zadd(String, double, String)}文档注释。
+     * 
+     * @param key 键
+     * @param score 元素的分数
+     * @param member 元素
+     * @return 被成功添加的新成员的数量，不包括那些被更新的、已经存在的成员。
+     */
+    int zadd(String key, double score, long member);
+
+    /**
+     * 返回有序集key中，指定区间内的long类型成员。(按score值递增排序)
+     * <p>
+     * 见{@link #zrange(String, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @return 指定区间内的成员数组；当成员不是long类型时，返回空数组。
+     */
+    long[] zrangeAsLong(String key, int start, int stop);
+
+    /**
+     * 返回有序集key中，指定区间内的long类型成员。(按score值递减排序)
+     * <p>
+     * 见{@link #zrevrange(String, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @return 指定区间内的成员数组；当成员不是long类型时，返回空数组。
+     */
+    long[] zrevrangeAsLong(String key, int start, int stop);
+
+    /**
+     * 返回有序集key中，所有score值介于min和max之间(包括等于min或max)的long类型成员。(按score值递增排序)
+     * <p>
+     * 见{@link #zrangeByScore(String, double, double, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param min 检索的最小分数
+     * @param max 检索的最大分数
+     * @param offset 返回列表的偏移量
+     * @param count 返回列表的最大元素个数
+     * @return 指定区间内的成员数组；当成员不是long类型时，返回空数组。
+     */
+    long[] zrangeByScoreAsLong(String key, double min, double max, int offset, int count);
+
+    /**
+     * 返回有序集key中，所有score值介于max和min之间(包括等于max或min)的long类型成员。(按score值递减排序)
+     * <p>
+     * 见{@link #zrevrangeByScore(String, double, double, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param max 检索的最大分数
+     * @param min 检索的最小分数
+     * @param offset 返回列表的偏移量
+     * @param count 返回列表的最大元素个数
+     * @return 指定区间内的成员数组；当成员不是long类型时，返回空数组。
+     */
+    long[] zrevrangeByScoreAsLong(String key, double max, double min, int offset, int count);
+
+    /**
+     * 返回有序集key中，指定区间内的long类型成员及其分数。(按score值递增排序)
+     * <p>
+     * 见{@link #zrange(String, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @return 指定区间内的成员及其分数；当成员不是long类型时，返回{@link LongScoredMembers#EMPTY}。
+     */
+    LongScoredMembers zrangeWithScoresAsLong(String key, int start, int stop);
+
+    /**
+     * 返回有序集key中，指定区间内的long类型成员及其分数。(按score值递减排序)
+     * <p>
+     * 见{@link #zrevrange(String, int, int)}文档注释。
+     * 
+     * @param key 键
+     * @param start 起始下标
+     * @param stop 结束下标
+     * @return 指定区间内的成员及其分数；当成员不是long类型时，返回{@link LongScoredMembers#EMPTY}。
+     */
+    LongScoredMembers zrevrangeWithScoresAsLong(String key, int start, int stop);
+
     // 元素计数
     /**
      * 返回有序集key的基数(元素数量)。
@@ -535,6 +707,19 @@ public interface RedisService extends SwitchService {
      */
     int zremrangeByRank(String key, int start, int stop);
 
+    // =======================================================
+    // Batch (批量操作)
+    // 一次性提交任意键上的多个命令，按分片节点拆分成管道(Pipeline)并行执行，整批命令的延迟是各分片节点延迟的最大值。
+    // =======================================================
+    /**
+     * 创建一个新的Redis批量操作。
+     * <p>
+     * 见{@link RedisBatch}文档注释。
+     * 
+     * @return 一个空的批量操作，只能执行一次。
+     */
+    RedisBatch batch();
+
     // =======================================================
     // Server (服务器) - http://redis.io/commands#server
     // =======================================================
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import redis.clients.util.SafeEncoder;
+
+/**
+ * 有序集"按分数分页"的游标，记录上一页最后一个成员的分数及成员本身，作为下一页的排他边界。
+ * <p>
+ * 游标以不透明的令牌({@link #toToken()})形式交给调用方，令牌只包含 [0-9a-z.] 字符，可以直接放在URL中。<br>
+ * {@code tieCount}是上一页末尾与最后一个成员分数相同的成员数量，只用于估算下一页需要读取的元素数量，不影响分页的正确性。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月11日 上午10:05:47
+ * @see RedisService#zrevrangeByScorePage(String, double, double, int, String)
+ */
+public final class ScoreCursor {
+
+    private static final char   SEPARATOR  = '.';
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /** 最后一个成员的分数 */
+    private final double        score;
+    /** 最后一个成员 */
+    private final String        member;
+    /** 已返回的、与最后一个成员分数相同的成员数量 */
+    private final int           tieCount;
+
+    public ScoreCursor(double score, String member, int tieCount){
+        if (member == null) {
+            throw new IllegalArgumentException("'member' must not be null");
+        }
+        this.score = score;
+        this.member = member;
+        this.tieCount = tieCount;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public int getTieCount() {
+        return tieCount;
+    }
+
+    /**
+     * 将游标编码为不透明的令牌。
+     *
+     * <pre>
+     * 令牌格式：
+     *     hex(doubleToLongBits(score)).base36(tieCount).hex(utf8(member))
+     * </pre>
+     *
+     * @return 令牌
+     */
+    public String toToken() {
+        byte[] memberBytes = SafeEncoder.encode(member);
+        StringBuilder token = new StringBuilder(32 + memberBytes.length * 2);
+        token.append(Long.toHexString(Double.doubleToLongBits(score))).append(SEPARATOR);
+        token.append(Integer.toString(tieCount, Character.MAX_RADIX)).append(SEPARATOR);
+        for (byte b : memberBytes) {
+            token.append(HEX_DIGITS[(b >> 4) & 0x0F]).append(HEX_DIGITS[b & 0x0F]);
+        }
+        return token.toString();
+    }
+
+    /**
+     * 解析令牌。
+     *
+     * @param token 由{@link #toToken()}生成的令牌
+     * @return 游标
+     * @throws IllegalArgumentException 当令牌格式不合法时
+     */
+    public static ScoreCursor parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("'token' must not be null");
+        }
+        int first = token.indexOf(SEPARATOR);
+        int second = token.indexOf(SEPARATOR, first + 1);
+        if (first <= 0 || second <= first + 1 || (token.length() - second - 1) % 2 != 0) {
+            throw new IllegalArgumentException("Invalid score cursor token: " + token);
+        }
+        try {
+            double score = Double.longBitsToDouble(parseUnsignedHexLong(token.substring(0, first)));
+            int tieCount = Integer.parseInt(token.substring(first + 1, second), Character.MAX_RADIX);
+            byte[] memberBytes = new byte[(token.length() - second - 1) / 2];
+            for (int i = 0, pos = second + 1; i < memberBytes.length; i++, pos += 2) {
+                memberBytes[i] = (byte) ((hexDigit(token.charAt(pos)) << 4) | hexDigit(token.charAt(pos + 1)));
+            }
+            return new ScoreCursor(score, SafeEncoder.encode(memberBytes), tieCount);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid score cursor token: " + token, nfe);
+        }
+    }
+
+    private static long parseUnsignedHexLong(String hex) {
+        if (hex.length() > 16) {
+            throw new NumberFormatException(hex);
+        }
+        long value = 0L;
+        for (int i = 0; i < hex.length(); i++) {
+            value = (value << 4) | hexDigit(hex.charAt(i));
+        }
+        return value;
+    }
+
+    private static int hexDigit(char c) {
+        int digit = Character.digit(c, 16);
+        if (digit < 0) {
+            throw new NumberFormatException("Invalid hex digit: " + c);
+        }
+        return digit;
+    }
+
+    @Override
+    public String toString() {
+        return "ScoreCursor [score=" + score + ", member=" + member + ", tieCount=" + tieCount + "]";
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 有序集"按分数分页"的一页结果。
+ *
+ * @author huagang.li 2015年2月11日 上午10:32:14
+ * @see RedisService#zrevrangeByScorePage(String, double, double, int, String)
+ */
+public final class ScorePage {
+
+    /** 空页(没有下一页) */
+    public static final ScorePage EMPTY = new ScorePage(Collections.<String> emptyList(), new double[0], null);
+
+    /** 成员列表 */
+    private final List<String>    members;
+    /** 成员的分数数组 */
+    private final double[]        scores;
+    /** 下一页的游标令牌 */
+    private final String          cursor;
+
+    public ScorePage(List<String> members, double[] scores, String cursor){
+        this.members = Collections.unmodifiableList(members);
+        this.scores = scores;
+        this.cursor = cursor;
+    }
+
+    /**
+     * 返回本页的成员列表。
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * 返回本页成员的分数数组。(直接返回内部数组，调用方不应修改它)
+     */
+    public double[] getScores() {
+        return scores;
+    }
+
+    /**
+     * 返回读取下一页的游标令牌。
+     * 
+     * @return 当没有下一页时，返回{@code null}。
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * 是否还有下一页。
+     */
+    public boolean hasMore() {
+        return cursor != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ScorePage [members=" + members + ", cursor=" + cursor + "]";
+    }
+
+}
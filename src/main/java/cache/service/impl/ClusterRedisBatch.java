@@ -0,0 +1,257 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cache.service.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisMetrics;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClusterCommand;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.util.JedisClusterCRC16;
+import cache.service.RedisBatch;
+
+/**
+ * 基于Redis Cluster实现的Redis批量操作，继承自{@link RedisBatch}。
+ * <p>
+ * 执行时，每个命令按键的槽位找到所在的节点，同一个节点上的命令合并成一条管道；第一条管道在调用线程中执行，
+ * 其余管道交给异步任务执行器并行执行，整批命令的耗时约等于最慢的节点的一次往返。<br>
+ * 收到MOVED/ASK重定向(槽位映射表过期)或者还没有发送的命令，会在管道执行完成后逐个按{@link JedisClusterCommand}的方式重试，
+ * 与{@link JedisClusterServiceImpl}的单个命令一样处理重定向。
+ * 管道已经发送后连接失败(如读取请求回复超时)时，命令可能已经在节点上执行，只重试{@link BatchCommand#isIdempotent() 可以安全重复执行的命令}，
+ * 其它写命令(如LPUSH、RPOP)返回默认值。
+ *
+ * @author huagang.li 2015年2月26日 下午4:12:37
+ */
+class ClusterRedisBatch extends PipelinedRedisBatch {
+
+    private static final Logger                   logger = LoggerFactory.getLogger(ClusterRedisBatch.class);
+
+    /** "槽位 -> 节点"映射表及各节点的连接池 */
+    private final JedisSlotBasedConnectionHandler connectionHandler;
+
+    /** 一个命令的最大重定向次数 */
+    private final int                             maxRedirections;
+
+    /** 命令统计数据 */
+    private final RedisMetrics                    metrics;
+
+    /** 异步任务执行器 */
+    private final ExecutorService                 executorService;
+
+    ClusterRedisBatch(JedisSlotBasedConnectionHandler connectionHandler, int maxRedirections, RedisMetrics metrics,
+                      ExecutorService executorService, boolean enabled){
+        // 与JedisClusterServiceImpl一致，集群模式下不拆分多元素写命令，只拒绝超大的写命令
+        super(metrics.getBigKeyDetector(), Integer.MAX_VALUE, Integer.MAX_VALUE, enabled);
+        this.connectionHandler = connectionHandler;
+        this.maxRedirections = maxRedirections;
+        this.metrics = metrics;
+        this.executorService = executorService;
+    }
+
+    /**
+     * 按"槽位 -> 节点"拆分命令，并行执行每个节点的管道，最后重试被重定向或者还没有发送的命令。
+     */
+    @Override
+    void executePipelined() {
+        // 1. 按节点拆分命令 ("host:port" -> 管道)
+        Map<String, NodePipeline> nodePipelines = new LinkedHashMap<String, NodePipeline>();
+        List<BatchCommand<?>> retryCommands = new ArrayList<BatchCommand<?>>(0);
+        for (BatchCommand<?> command : commands) {
+            Jedis connection;
+            try {
+                connection = connectionHandler.getConnectionFromSlot(JedisClusterCRC16.getSlot(command.key));
+            } catch (JedisException e) { // 节点的连接池不可用，命令还没有发送，稍后重试
+                retryCommands.add(command);
+                continue;
+            }
+            String node = nodeName(connection);
+            NodePipeline pipeline = nodePipelines.get(node);
+            if (null == pipeline) {
+                pipeline = new NodePipeline(connection);
+                nodePipelines.put(node, pipeline);
+            } else { // 已经有该节点的连接
+                connectionHandler.returnConnection(connection);
+            }
+            pipeline.commands.add(command);
+        }
+
+        // 2. 除第一个节点外，其余节点的管道交给异步任务执行器并行执行
+        List<NodePipeline> pipelines = new ArrayList<NodePipeline>(nodePipelines.values());
+        if (!pipelines.isEmpty()) {
+            List<Future<?>> pendings = new ArrayList<Future<?>>(pipelines.size());
+            List<NodePipeline> rejectedPipelines = new ArrayList<NodePipeline>(0);
+            for (int i = 1, size = pipelines.size(); i < size; i++) {
+                NodePipeline pipeline = pipelines.get(i);
+                try {
+                    pendings.add(executorService.submit(pipeline));
+                } catch (RejectedExecutionException ree) { // 执行器已饱和，退化为在调用线程中执行
+                    rejectedPipelines.add(pipeline);
+                }
+            }
+
+            // 3. 调用线程执行第一个节点的管道，并等待其余节点的管道执行完成
+            pipelines.get(0).run();
+            for (NodePipeline pipeline : rejectedPipelines) {
+                pipeline.run();
+            }
+            awaitUninterruptibly(pendings);
+
+            for (NodePipeline pipeline : pipelines) {
+                retryCommands.addAll(pipeline.retryCommands);
+            }
+        }
+
+        // 4. 逐个重试被重定向或者还没有发送的命令
+        for (BatchCommand<?> command : retryCommands) {
+            this.retry(command);
+        }
+    }
+
+    /**
+     * 重试一个命令：在单个命令的管道中执行，由{@link JedisClusterCommand}处理MOVED/ASK重定向和连接失败。
+     */
+    private void retry(final BatchCommand<?> command) {
+        long startTime = System.nanoTime();
+        JedisException failure = null;
+        try {
+            new JedisClusterCommand<Object>(connectionHandler, Protocol.DEFAULT_TIMEOUT, maxRedirections) {
+
+                @Override
+                public Object execute(Jedis connection) {
+                    Pipeline pipeline = connection.pipelined();
+                    command.response = command.queue(pipeline);
+                    pipeline.sync();
+                    return (command.response != null) ? command.response.get() : null;
+                }
+            }.run(command.key);
+            command.complete();
+        } catch (JedisException e) {
+            failure = e;
+            logger.error("'{}' key fail in batch, key: {}", command.name, command.key);
+            logger.error(e.getMessage(), e);
+        } finally {
+            metrics.record(RedisCommand.BATCH, null, startTime, failure);
+        }
+    }
+
+    private static String nodeName(Jedis connection) {
+        Client client = connection.getClient();
+        return client.getHost() + ':' + client.getPort();
+    }
+
+    /**
+     * 返回命令是否收到了MOVED/ASK重定向。
+     */
+    private static boolean isRedirected(Response<?> response) {
+        if (null == response) {
+            return false;
+        }
+        try {
+            response.get();
+            return false;
+        } catch (JedisRedirectionException e) {
+            return true;
+        } catch (JedisException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 一个节点的管道。
+     */
+    private class NodePipeline implements Runnable {
+
+        private final Jedis                 connection;
+        private final List<BatchCommand<?>> commands      = new ArrayList<BatchCommand<?>>();
+        /** 需要重试的命令 */
+        private final List<BatchCommand<?>> retryCommands = new ArrayList<BatchCommand<?>>(0);
+
+        NodePipeline(Jedis connection){
+            this.connection = connection;
+        }
+
+        /**
+         * 执行管道，并记录需要重试的命令。
+         */
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            JedisException failure = null;
+            boolean broken = false;
+            int queued = 0; // 已加入到管道中的命令数
+            try {
+                Pipeline pipeline = connection.pipelined();
+                for (BatchCommand<?> command : commands) {
+                    command.response = command.queue(pipeline);
+                    queued++;
+                }
+                pipeline.sync(); // 发送所有命令，并读取所有请求回复
+
+                for (BatchCommand<?> command : commands) {
+                    if (isRedirected(command.response)) { // 槽位已迁移，命令没有执行
+                        retryCommands.add(command);
+                    } else {
+                        command.complete();
+                    }
+                }
+            } catch (JedisConnectionException e) { // 节点不可用(可能已经故障转移)
+                failure = e;
+                broken = true;
+                // 已加入到管道中的命令可能已经在节点上执行，只重试可以安全重复执行的命令
+                for (int i = 0, size = commands.size(); i < size; i++) {
+                    BatchCommand<?> command = commands.get(i);
+                    if (i >= queued || command.isIdempotent()) {
+                        retryCommands.add(command);
+                    }
+                }
+                logger.warn("'batch' execute fail on node: {}, command size: {}, retry size: {}",
+                            nodeName(connection), commands.size(), retryCommands.size());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'batch' execute fail on node: {}, command size: {}", nodeName(connection),
+                             commands.size());
+                logger.error(e.getMessage(), e);
+            } finally {
+                metrics.record(RedisCommand.BATCH, null, startTime, failure);
+                if (broken) {
+                    connectionHandler.returnBrokenConnection(connection);
+                } else {
+                    connectionHandler.returnConnection(connection);
+                }
+            }
+        }
+
+    }
+
+}
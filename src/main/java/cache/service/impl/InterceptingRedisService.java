@@ -0,0 +1,187 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+
+import redis.client.util.AssertUtils;
+import cache.service.RedisInterceptor;
+import cache.service.RedisInvocation;
+import cache.service.RedisService;
+
+/**
+ * 在{@link RedisService}(如{@link JedisServiceImpl})外面包装一条{@link RedisInterceptor}链。
+ * <p>
+ * 只有第一个参数是键({@link String})的方法才是命令，会经过拦截器链；其它方法(如{@code setEnabled}、{@code close}、{@code batch})直接调用目标服务。
+ * <p>
+ * 没有拦截器时，{@link #wrap(RedisService, List)}直接返回目标服务本身，不会为每次调用创建任何对象，即没有额外开销。
+ * <p>
+ * 【XML配置示例】
+ *
+ * <pre>
+ * {@literal
+ * <bean id="redisService" class="cache.service.impl.InterceptingRedisService" factory-method="wrap">
+ *     <constructor-arg ref="jedisService" />
+ *     <constructor-arg>
+ *         <list>
+ *             <ref bean="keyPrefixInterceptor" />
+ *         </list>
+ *     </constructor-arg>
+ * </bean>
+ * }
+ * </pre>
+ *
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月20日 上午10:30:18
+ */
+public final class InterceptingRedisService implements InvocationHandler {
+
+    private final RedisService       target;
+
+    private final RedisInterceptor[] interceptors;
+
+    private InterceptingRedisService(RedisService target, RedisInterceptor[] interceptors){
+        this.target = target;
+        this.interceptors = interceptors;
+    }
+
+    /**
+     * 返回包装了拦截器链的Redis服务。
+     *
+     * @param target 目标服务
+     * @param interceptors 拦截器列表(按列表顺序执行)
+     * @return 没有拦截器时，直接返回目标服务
+     */
+    public static RedisService wrap(RedisService target, List<? extends RedisInterceptor> interceptors) {
+        AssertUtils.isTrue(target != null, "'target' must not be null");
+
+        if (interceptors == null || interceptors.isEmpty()) {
+            return target;
+        }
+        RedisInterceptor[] chain = interceptors.toArray(new RedisInterceptor[interceptors.size()]);
+        for (RedisInterceptor interceptor : chain) {
+            AssertUtils.isTrue(interceptor != null, "'interceptors' must not contain null element");
+        }
+        return (RedisService) Proxy.newProxyInstance(RedisService.class.getClassLoader(),
+                                                     new Class<?>[] { RedisService.class },
+                                                     new InterceptingRedisService(target, chain));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            if ("equals".equals(method.getName())) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(method.getName())) {
+                return System.identityHashCode(proxy);
+            }
+        }
+
+        if (args == null || args.length == 0 || method.getParameterTypes()[0] != String.class) {
+            return invokeTarget(target, method, args); // 不是命令
+        }
+        return new Invocation(this, method, args).proceed();
+    }
+
+    private static Object invokeTarget(RedisService target, Method method, Object[] args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new UndeclaredThrowableException(cause);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not access method: " + method, e);
+        }
+    }
+
+    /**
+     * 一次命令调用，记录当前执行到拦截器链的哪个位置。
+     */
+    private static final class Invocation implements RedisInvocation {
+
+        private final InterceptingRedisService chain;
+        private final Method                   method;
+        private final Object[]                 args;
+        /** 下一个拦截器的下标 */
+        private int                            index;
+
+        Invocation(InterceptingRedisService chain, Method method, Object[] args){
+            this.chain = chain;
+            this.method = method;
+            this.args = args;
+        }
+
+        @Override
+        public String getCommand() {
+            return method.getName();
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public String getKey() {
+            return (String) args[0];
+        }
+
+        @Override
+        public void setKey(String key) {
+            args[0] = key;
+        }
+
+        @Override
+        public Object[] getArguments() {
+            return args;
+        }
+
+        @Override
+        public Object proceed() {
+            RedisInterceptor[] interceptors = chain.interceptors;
+            if (index < interceptors.length) {
+                RedisInterceptor interceptor = interceptors[index++];
+                Object result = interceptor.intercept(this);
+                if (result == null && method.getReturnType().isPrimitive()) {
+                    throw new IllegalStateException("Interceptor " + interceptor + " returned null for '"
+                                                    + method.getName() + "', which has a primitive return type");
+                }
+                return result;
+            }
+            return invokeTarget(chain.target, method, args);
+        }
+
+        @Override
+        public String toString() {
+            return method.getName() + " " + args[0];
+        }
+    }
+
+}
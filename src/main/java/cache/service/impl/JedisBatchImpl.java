@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service.impl;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.jedis.CustomShardedJedis;
+import redis.client.jedis.CustomShardedJedisPool;
+import redis.client.jedis.ReplicatedKeys;
+import redis.client.jedis.ShardCircuitBreakers;
+import redis.client.jedis.ShardRejectedException;
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisMetrics;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.exceptions.JedisException;
+import cache.service.RedisBatch;
+
+/**
+ * 基于"数据分片的Jedis连接池"实现的Redis批量操作，继承自{@link RedisBatch}。
+ * <p>
+ * 执行时，所有命令按分片节点({@link Jedis})拆分成若干条管道，第一条管道在调用线程中执行，其余管道交给异步任务执行器并行执行。
+ * {@link ReplicatedKeys 复制键}的写命令还会加入到其它副本分片节点的管道中，读命令只发送到键本来所在的分片节点。
+ *
+ * @author huagang.li 2015年2月2日 下午3:40:18
+ */
+class JedisBatchImpl extends PipelinedRedisBatch {
+
+    private static final Logger          logger = LoggerFactory.getLogger(JedisBatchImpl.class);
+
+    /** Redis连接池 */
+    private final CustomShardedJedisPool shardedJedisPool;
+
+    /** 异步任务执行器 */
+    private final ExecutorService        executorService;
+
+    JedisBatchImpl(CustomShardedJedisPool shardedJedisPool, ExecutorService executorService, int writeChunkSize,
+                   int writeChunkBytes, boolean enabled){
+        super(shardedJedisPool.getMetrics().getBigKeyDetector(), writeChunkSize, writeChunkBytes, enabled);
+        this.shardedJedisPool = shardedJedisPool;
+        this.executorService = executorService;
+    }
+
+    /**
+     * 按分片节点拆分命令，并行执行每个分片节点的管道。
+     */
+    @Override
+    void executePipelined() {
+        ShardedJedis jedis = null;
+        try {
+            jedis = shardedJedisPool.getResource();
+
+            // 1. 按分片节点拆分命令 (Jedis未重写equals方法，使用引用相等即可)
+            Map<Jedis, ShardPipeline> shardPipelines = new IdentityHashMap<Jedis, ShardPipeline>();
+            List<ShardPipeline> pipelines = new ArrayList<ShardPipeline>();
+            ReplicatedKeys replicatedKeys = shardedJedisPool.getReplicatedKeys();
+            for (BatchCommand<?> command : commands) {
+                Jedis shard;
+                try {
+                    shard = jedis.getShard(command.key);
+                } catch (ShardRejectedException e) { // 分片节点已熔断或过载，该命令直接返回默认值
+                    logger.debug("'batch' command skipped, key: {}, cause: {}", command.key, e.getMessage());
+                    continue;
+                }
+                JedisShardInfo shardInfo = CustomShardedJedis.getLastShardInfo(jedis);
+                this.getPipeline(shardPipelines, pipelines, shard, shardInfo).commands.add(command);
+
+                // 复制键的写命令同时加入到其它副本分片节点的管道中
+                if (jedis instanceof CustomShardedJedis && replicatedKeys.isReplicated(command.key)
+                    && command.isWrite()) {
+                    CustomShardedJedis customJedis = (CustomShardedJedis) jedis;
+                    List<JedisShardInfo> replicaShardInfos = customJedis.locateReplicaShardInfos(
+                        command.key, replicatedKeys.getReplicaNum());
+                    for (int i = 1; i < replicaShardInfos.size(); i++) {
+                        JedisShardInfo replicaShardInfo = replicaShardInfos.get(i);
+                        Jedis replicaShard;
+                        try {
+                            replicaShard = customJedis.getReplicaShard(replicaShardInfo);
+                        } catch (ShardRejectedException e) { // 跳过熔断的副本分片节点
+                            continue;
+                        }
+                        ShardPipeline replicaPipeline = this.getPipeline(shardPipelines, pipelines, replicaShard,
+                                                                         replicaShardInfo);
+                        replicaPipeline.replicaCommands.add(command);
+                    }
+                    replicatedKeys.onWrite();
+                }
+            }
+            if (pipelines.isEmpty()) {
+                return;
+            }
+
+            // 2. 除第一个分片节点外，其余节点的管道交给异步任务执行器并行执行
+            List<Future<?>> pendings = new ArrayList<Future<?>>(pipelines.size());
+            List<ShardPipeline> rejectedPipelines = new ArrayList<ShardPipeline>(0);
+            for (int i = 1, size = pipelines.size(); i < size; i++) {
+                ShardPipeline pipeline = pipelines.get(i);
+                try {
+                    pendings.add(executorService.submit(pipeline));
+                } catch (RejectedExecutionException ree) { // 执行器已饱和，退化为在调用线程中执行
+                    rejectedPipelines.add(pipeline);
+                }
+            }
+
+            // 3. 调用线程执行第一个分片节点的管道
+            pipelines.get(0).run();
+            for (ShardPipeline pipeline : rejectedPipelines) {
+                pipeline.run();
+            }
+
+            // 4. 等待所有分片节点的管道执行完成后，才能将连接返回给连接池
+            awaitUninterruptibly(pendings);
+            ShardCircuitBreakers circuitBreakers = shardedJedisPool.getCircuitBreakers();
+            for (ShardPipeline pipeline : pipelines) { // 每个分片节点记录一次结果
+                CustomShardedJedis.onComplete(jedis, circuitBreakers, pipeline.shardInfo, pipeline.failure);
+            }
+
+            // 5. 哈希环重新分片期间，记录写命令写入的键(脏键)
+            if (shardedJedisPool.getResharder() != null) {
+                for (BatchCommand<?> command : commands) {
+                    if (command.isWrite()) {
+                        JedisServiceImpl.syncResharding(shardedJedisPool, command.redisCommand(), command.key);
+                    }
+                }
+            }
+            CustomShardedJedis.endCommand(jedis, RedisCommand.BATCH, false);
+        } catch (JedisException e) {
+            logger.error("'batch' execute fail, command size: {}", commands.size());
+            logger.error(e.getMessage(), e);
+        } finally {
+            JedisServiceImpl.close(jedis);
+        }
+    }
+
+    /**
+     * 返回分片节点的管道，不存在时创建一个。
+     */
+    private ShardPipeline getPipeline(Map<Jedis, ShardPipeline> shardPipelines, List<ShardPipeline> pipelines,
+                                      Jedis shard, JedisShardInfo shardInfo) {
+        ShardPipeline pipeline = shardPipelines.get(shard);
+        if (null == pipeline) {
+            pipeline = new ShardPipeline(shard, shardInfo, shardedJedisPool.getMetrics());
+            shardPipelines.put(shard, pipeline);
+            pipelines.add(pipeline);
+        }
+        return pipeline;
+    }
+
+    /**
+     * 一个分片节点的管道。
+     */
+    private static class ShardPipeline implements Runnable {
+
+        private final Jedis                 shard;
+        private final JedisShardInfo        shardInfo;
+        private final RedisMetrics          metrics;
+        private final List<BatchCommand<?>> commands        = new ArrayList<BatchCommand<?>>();
+        /** 复制键的写命令(只写入副本，忽略请求回复) */
+        private final List<BatchCommand<?>> replicaCommands = new ArrayList<BatchCommand<?>>(0);
+        /** 执行失败的原因 (等待管道执行完成之后才能读取) */
+        private JedisException              failure;
+
+        ShardPipeline(Jedis shard, JedisShardInfo shardInfo, RedisMetrics metrics){
+            this.shard = shard;
+            this.shardInfo = shardInfo;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            try {
+                Pipeline pipeline = shard.pipelined();
+                for (BatchCommand<?> command : commands) {
+                    command.response = command.queue(pipeline);
+                }
+                for (BatchCommand<?> command : replicaCommands) {
+                    command.queue(pipeline);
+                }
+                pipeline.sync(); // 发送所有命令，并读取所有请求回复
+
+                for (BatchCommand<?> command : commands) {
+                    command.complete();
+                }
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'batch' execute fail on shard: {}:{}, command size: {}", shard.getClient().getHost(),
+                             shard.getClient().getPort(), commands.size());
+                logger.error(e.getMessage(), e);
+            } finally {
+                metrics.record(RedisCommand.BATCH, shardInfo, startTime, failure);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,1065 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cache.service.impl;
+
+import static cache.service.impl.JedisServiceImpl.EMPTY_LONG_ARRAY;
+import static cache.service.impl.JedisServiceImpl.fetchScorePage;
+import static cache.service.impl.JedisServiceImpl.membersLength;
+import static cache.service.impl.JedisServiceImpl.notEmptyKey;
+import static cache.service.impl.JedisServiceImpl.notNullVisitor;
+import static cache.service.impl.JedisServiceImpl.streamLrange;
+import static cache.service.impl.JedisServiceImpl.streamZrange;
+import static cache.service.impl.JedisServiceImpl.streamZrangeByScore;
+import static cache.service.impl.JedisServiceImpl.toLongArray;
+import static cache.service.impl.JedisServiceImpl.toLongScoredMembers;
+import static cache.service.impl.JedisServiceImpl.valuesLength;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.monitor.BigKeyDetector;
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisFlightRecorder;
+import redis.client.monitor.RedisMetrics;
+import redis.client.util.AssertUtils;
+import redis.client.util.NumberUtils;
+import redis.client.util.RedisConfigUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClusterCommand;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+import cache.service.ElementVisitor;
+import cache.service.LongScoredMembers;
+import cache.service.RedisBatch;
+import cache.service.RedisService;
+import cache.service.ScoreCursor;
+import cache.service.ScorePage;
+
+/**
+ * "Redis Cluster"服务实现，继承自{@link RedisService}。
+ * <p>
+ * 与{@link JedisServiceImpl}(客户端一致性哈希)不同，键按CRC16算法映射到16384个槽位(slot)，槽位与节点的对应关系由Redis Cluster自己维护。
+ * 客户端在本地缓存一份"槽位 -> 节点"映射表，并为每个节点维护一个连接池；收到MOVED/ASK重定向时，会更新映射表并重新发送命令。
+ * 因此，在线迁移槽位(resharding)时不需要重启应用，也不会出现大面积的缓存失效。
+ * <p>
+ * 与{@link JedisServiceImpl}的差异：
+ * <ul>
+ * <li>不支持副本节点读、对冲读和熔断，这些由Redis Cluster的主从复制与故障转移负责；
+ * <li>多元素写命令(LPUSH、ZADD)不会自动分块，但仍受{@link BigKeyDetector#setMaxWriteBytes(long) 最大写入字节数}的限制；
+ * <li>{@link #batch()}按节点拆分成管道并行执行，管道连接失败时只重试可以安全重复执行的命令；
+ * <li>命令的统计数据只记录到汇总数据中，不区分节点。
+ * </ul>
+ * 
+ * Spring配置示例：
+ * 
+ * <pre>
+ * &lt;bean id="redisService" class="cache.service.impl.JedisClusterServiceImpl" destroy-method="close"&gt;
+ *     &lt;constructor-arg index="0" value="${redis.cluster.nodes}" /&gt;
+ *     &lt;constructor-arg index="1" ref="jedisPoolConfig" /&gt;
+ *     &lt;property name="enabled" value="true" /&gt;
+ * &lt;/bean&gt;
+ * </pre>
+ * 
+ * @author huagang.li 2015年2月26日 上午10:15:32
+ */
+public class JedisClusterServiceImpl implements RedisService {
+
+    private static final Logger                   logger                   = LoggerFactory
+                                                                                 .getLogger(JedisClusterServiceImpl.class);
+
+    /** 最大重定向次数的默认值 */
+    public static final int                       DEFAULT_MAX_REDIRECTIONS = 5;
+
+    /** "槽位 -> 节点"映射表及各节点的连接池 */
+    private final JedisSlotBasedConnectionHandler connectionHandler;
+
+    /** 一个命令的最大重定向次数 */
+    private final int                             maxRedirections;
+
+    /** 命令统计数据 */
+    private final RedisMetrics                    metrics                  = new RedisMetrics();
+
+    /** Redis服务启用标识 */
+    private boolean                               enabled;
+
+    /** 流式范围检索的块大小 */
+    private int                                   streamChunkSize          = JedisServiceImpl.DEFAULT_STREAM_CHUNK_SIZE;
+
+    /** 异步任务执行器 */
+    private final ExecutorService                 executorService          = new ThreadPoolExecutor(1, 30, 60L,
+                                                                                            TimeUnit.SECONDS,
+                                                                                            new LinkedBlockingQueue<Runnable>(50));
+
+    /**
+     * 创建一个"Redis Cluster"服务。
+     * 
+     * @param clusterNodes Redis Cluster节点配置信息，格式见{@link RedisConfigUtils#parseClusterNodes(String)}
+     * @param poolConfig 每个节点的连接池配置
+     */
+    public JedisClusterServiceImpl(String clusterNodes, GenericObjectPoolConfig poolConfig){
+        this(RedisConfigUtils.parseClusterNodes(clusterNodes), poolConfig, DEFAULT_MAX_REDIRECTIONS);
+    }
+
+    /**
+     * 创建一个"Redis Cluster"服务。
+     * <p>
+     * 从第一个可用的节点发现集群的所有节点和槽位分布，所有节点都不可用时抛出{@link JedisException}。
+     * 
+     * @param clusterNodes Redis Cluster的初始节点列表
+     * @param poolConfig 每个节点的连接池配置
+     * @param maxRedirections 一个命令的最大重定向次数
+     */
+    public JedisClusterServiceImpl(Set<HostAndPort> clusterNodes, GenericObjectPoolConfig poolConfig,
+                                   int maxRedirections){
+        AssertUtils.notEmpty(clusterNodes, "'clusterNodes' must not be null and empty");
+        AssertUtils.isTrue(maxRedirections > 0, "'maxRedirections' must be greater than 0 : " + maxRedirections);
+
+        this.connectionHandler = new JedisSlotBasedConnectionHandler(clusterNodes, poolConfig);
+        this.maxRedirections = maxRedirections;
+    }
+
+    /**
+     * 设置流式范围检索的块大小，即每次向Redis服务器读取的元素数量。
+     * <p>
+     * 默认值是 {@value JedisServiceImpl#DEFAULT_STREAM_CHUNK_SIZE}个。
+     * 
+     * @param streamChunkSize 流式范围检索的块大小
+     */
+    public void setStreamChunkSize(int streamChunkSize) {
+        AssertUtils.isTrue(streamChunkSize > 0, "'streamChunkSize' property must be greater than 0 : "
+                                                + streamChunkSize);
+
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    /**
+     * 返回命令统计数据。
+     */
+    public RedisMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean getEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 关闭所有节点的连接池。
+     */
+    @Override
+    public void close() {
+        for (JedisPool pool : connectionHandler.getNodes().values()) {
+            try {
+                pool.destroy();
+            } catch (JedisException e) {
+                logger.error("JedisPool close fail", e);
+            }
+        }
+        executorService.shutdown();
+    }
+
+    // ---------------- internal help method ----------------
+    /**
+     * 在键所在的节点上执行的命令。
+     * <p>
+     * 收到MOVED/ASK重定向或者连接失败时，{@link #execute(Jedis)}会在新的节点上被重新调用。
+     */
+    private abstract class ClusterCommand<T> extends JedisClusterCommand<T> {
+
+        ClusterCommand(){
+            super(connectionHandler, Protocol.DEFAULT_TIMEOUT, maxRedirections);
+        }
+
+        /**
+         * 返回回复的元素个数，未知时为-1。
+         */
+        int elementCount(T reply) {
+            if (reply instanceof Collection) {
+                return ((Collection<?>) reply).size();
+            }
+            if (reply instanceof long[]) {
+                return ((long[]) reply).length;
+            }
+            if (reply instanceof LongScoredMembers) {
+                return ((LongScoredMembers) reply).size();
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 执行一个命令，失败时返回默认值。
+     * 
+     * @param valueLength 值的长度，未知时为-1
+     * @param defaultValue 执行失败时返回的默认值
+     */
+    private <T> T execute(RedisCommand command, String key, long valueLength, ClusterCommand<T> clusterCommand,
+                          T defaultValue) {
+        long startTime = System.nanoTime();
+        JedisException failure = null;
+        T reply = null;
+        try {
+            reply = clusterCommand.run(key);
+            return (reply != null) ? reply : defaultValue;
+        } catch (JedisException e) {
+            failure = e;
+            logger.error("'{}' key fail, key: {}", command, key);
+            logger.error(e.getMessage(), e);
+        } finally {
+            this.record(command, key, valueLength, clusterCommand.elementCount(reply), startTime, failure);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 记录命令的统计数据和大键，并在耗时超过阈值时发出JFR事件。
+     */
+    private void record(RedisCommand command, String key, long valueLength, int elementCount, long startTime,
+                        JedisException failure) {
+        long duration = metrics.record(command, null, startTime, failure);
+        metrics.getHotKeyDetector().sample(key, null);
+        BigKeyDetector bigKeyDetector = metrics.getBigKeyDetector();
+        bigKeyDetector.recordValue(command, key, null, valueLength);
+        bigKeyDetector.recordElements(command, key, null, elementCount);
+        RedisFlightRecorder.command(command, null, key, (int) Math.min(valueLength, Integer.MAX_VALUE), duration,
+                                    failure != null);
+    }
+
+    /**
+     * 当写入的字节数超过配置的最大值时，拒绝该写命令，不会发送到节点。(警告日志限速输出)
+     *
+     * @see BigKeyDetector#isWriteRejected(RedisCommand, String, long)
+     */
+    private boolean rejectWrite(RedisCommand command, String key, long bytes) {
+        return metrics.getBigKeyDetector().isWriteRejected(command, key, bytes);
+    }
+
+    /**
+     * 流式范围检索的访问者包装，重定向后重新读取时跳过已经访问过的元素，保证每个元素只交给访问者一次。
+     */
+    private static class ResumingVisitor implements ElementVisitor {
+
+        private final ElementVisitor visitor;
+        private final int[]          visitedNum;
+        private int                  skipNum;
+
+        /**
+         * @param visitedNum 已经交给访问者的元素个数
+         */
+        ResumingVisitor(ElementVisitor visitor, int[] visitedNum){
+            this.visitor = visitor;
+            this.visitedNum = visitedNum;
+            this.skipNum = visitedNum[0];
+        }
+
+        @Override
+        public boolean visit(String element) {
+            if (skipNum > 0) {
+                skipNum--;
+                return true;
+            }
+            visitedNum[0]++;
+            return visitor.visit(element);
+        }
+    }
+
+    /**
+     * 流式范围检索命令，回复为交给访问者的元素个数。
+     */
+    private abstract class StreamCommand extends ClusterCommand<Integer> {
+
+        final ElementVisitor visitor;
+        final int[]          visitedNum = new int[1];
+
+        StreamCommand(ElementVisitor visitor){
+            this.visitor = visitor;
+        }
+
+        @Override
+        public Integer execute(Jedis node) {
+            this.stream(node, new ResumingVisitor(visitor, visitedNum), new int[1]);
+            return visitedNum[0];
+        }
+
+        abstract void stream(Jedis node, ElementVisitor visitor, int[] readNum);
+
+        @Override
+        int elementCount(Integer reply) {
+            return visitedNum[0];
+        }
+    }
+
+    // ---------------- Key (键) ----------------
+    @Override
+    public int expire(final String key, final int seconds) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.EXPIRE, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.expire(key, seconds);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public long ttl(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.TTL, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.ttl(key);
+                }
+            }, -2L).longValue();
+        }
+        return -2L;
+    }
+
+    @Override
+    public int del(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.DEL, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.del(key);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    // ---------------- String (字符串) ----------------
+    @Override
+    public String get(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            ClusterCommand<String> get = new ClusterCommand<String>() {
+
+                @Override
+                public String execute(Jedis node) {
+                    return node.get(key);
+                }
+            };
+            long startTime = System.nanoTime();
+            JedisException failure = null;
+            String value = null;
+            try {
+                value = get.run(key);
+                return value;
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'get' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                this.record(RedisCommand.GET, key, (value == null) ? -1 : StringUtils.utf8Length(value), -1, startTime,
+                            failure);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String set(final String key, final String value) {
+        if (enabled) {
+            notEmptyKey(key);
+            long valueLength = (value == null) ? -1 : StringUtils.utf8Length(value);
+            if (value != null && rejectWrite(RedisCommand.SET, key, valueLength)) {
+                return null;
+            }
+
+            return this.execute(RedisCommand.SET, key, valueLength,
+                                new ClusterCommand<String>() {
+
+                                    @Override
+                                    public String execute(Jedis node) {
+                                        return node.set(key, value);
+                                    }
+                                }, null);
+        }
+        return null;
+    }
+
+    @Override
+    public String setex(final String key, final int seconds, final String value) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            if (seconds > 0) {
+                long valueLength = (value == null) ? -1 : StringUtils.utf8Length(value);
+                if (value != null && rejectWrite(RedisCommand.SETEX, key, valueLength)) {
+                    return null;
+                }
+
+                return this.execute(RedisCommand.SETEX, key, valueLength,
+                                    new ClusterCommand<String>() {
+
+                                        @Override
+                                        public String execute(Jedis node) {
+                                            return node.setex(key, seconds, value);
+                                        }
+                                    }, null);
+            } // 与JedisServiceImpl一致，seconds参数不合法(<= 0)时不发送命令
+        }
+        return null;
+    }
+
+    // ---------------- List (列表) ----------------
+    @Override
+    public int llen(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.LLEN, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.llen(key);
+                }
+
+                @Override
+                int elementCount(Long listLength) {
+                    return (listLength == null) ? -1 : listLength.intValue();
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public int lpush(final String key, final String... values) {
+        if (enabled) {
+            notEmptyKey(key);
+            long valueLength = valuesLength(values);
+            if (rejectWrite(RedisCommand.LPUSH, key, valueLength)) {
+                return 0;
+            }
+
+            return this.execute(RedisCommand.LPUSH, key, valueLength, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.lpush(key, values);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public String rpop(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.RPOP, key, -1, new ClusterCommand<String>() {
+
+                @Override
+                public String execute(Jedis node) {
+                    return node.rpop(key);
+                }
+            }, null);
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> lrange(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.LRANGE, key, -1, new ClusterCommand<List<String>>() {
+
+                @Override
+                public List<String> execute(Jedis node) {
+                    return node.lrange(key, start, stop);
+                }
+            }, Collections.<String> emptyList());
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int lrange(final String key, final int start, final int stop, ElementVisitor visitor) {
+        if (enabled) {
+            notEmptyKey(key);
+            notNullVisitor(visitor);
+
+            StreamCommand lrange = new StreamCommand(visitor) {
+
+                @Override
+                void stream(Jedis node, ElementVisitor visitor, int[] readNum) {
+                    streamLrange(node, key, start, stop, streamChunkSize, visitor, readNum);
+                }
+            };
+            this.execute(RedisCommand.LRANGE_STREAM, key, -1, lrange, 0);
+            return lrange.visitedNum[0];
+        }
+        return 0;
+    }
+
+    @Override
+    public String ltrim(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.LTRIM, key, -1, new ClusterCommand<String>() {
+
+                @Override
+                public String execute(Jedis node) {
+                    return node.ltrim(key, start, stop);
+                }
+            }, null);
+        }
+        return null;
+    }
+
+    // ---------------- Sorted Set (有序集合) ----------------
+    @Override
+    public int zadd(final String key, final double score, final String member) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZADD, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zadd(key, score, member);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public int zaddAndRem(String key, double score, String member) {
+        return this.zaddAndRem(key, score, member, DEFAULT_MAX_LENGTH);
+    }
+
+    @Override
+    public int zaddAndRem(final String key, final double score, final String member, final int maxLength) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZADD_AND_REM, key, -1, new ZaddAndRemCommand(key, maxLength) {
+
+                @Override
+                Response<Long> zadd(Pipeline pipeline) {
+                    return pipeline.zadd(key, score, member);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    // 批量增加
+    @Override
+    public int zadd(final String key, final Map<String, Double> scoreMembers) {
+        if (enabled) {
+            notEmptyKey(key);
+            long valueLength = membersLength(scoreMembers);
+            if (rejectWrite(RedisCommand.ZADD, key, valueLength)) {
+                return 0;
+            }
+
+            return this.execute(RedisCommand.ZADD, key, valueLength, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zadd(key, scoreMembers);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public int zaddAndRem(String key, Map<String, Double> scoreMembers) {
+        return this.zaddAndRem(key, scoreMembers, DEFAULT_MAX_LENGTH);
+    }
+
+    @Override
+    public int zaddAndRem(final String key, final Map<String, Double> scoreMembers, final int maxLength) {
+        if (enabled) {
+            notEmptyKey(key);
+            long valueLength = membersLength(scoreMembers);
+            if (rejectWrite(RedisCommand.ZADD_AND_REM, key, valueLength)) {
+                return 0;
+            }
+
+            return this.execute(RedisCommand.ZADD_AND_REM, key, valueLength,
+                                         new ZaddAndRemCommand(key, maxLength) {
+
+                                             @Override
+                                             Response<Long> zadd(Pipeline pipeline) {
+                                                 return pipeline.zadd(key, scoreMembers);
+                                             }
+                                         }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    /**
+     * 在键所在节点的同一个连接上以管道方式发送ZADD和ZCARD命令，当"有序集合"长度超过阈值时进行"异步缩容"操作。
+     */
+    private abstract class ZaddAndRemCommand extends ClusterCommand<Long> {
+
+        private final String key;
+        private final int    maxLength;
+
+        ZaddAndRemCommand(String key, int maxLength){
+            this.key = key;
+            this.maxLength = maxLength;
+        }
+
+        abstract Response<Long> zadd(Pipeline pipeline);
+
+        @Override
+        public Long execute(Jedis node) {
+            Pipeline pipeline = node.pipelined();
+            Response<Long> zaddResponse = this.zadd(pipeline);
+            Response<Long> zcardResponse = pipeline.zcard(key);
+            pipeline.sync();
+
+            Long newElementNum = zaddResponse.get();
+            Long elementNum = zcardResponse.get();
+            if (newElementNum != null && newElementNum.longValue() > 0 && elementNum != null
+                && elementNum.longValue() > maxLength) {
+                asynShrinkZset(key, elementNum.intValue(), maxLength);
+            }
+            return newElementNum;
+        }
+    }
+
+    /**
+     * 只有当"有序集合"长度超过阈值({@code maxLength} + {@link RedisService#LENGTH_THRESHOLD})时，才会进行"异步缩容"操作。
+     */
+    private void asynShrinkZset(String key, int elementNum, int maxLength) {
+        if (elementNum >= maxLength + LENGTH_THRESHOLD) {
+            executorService.submit(new JedisServiceImpl.ZremrangeByRankRunnable(this, key, elementNum, maxLength));
+        }
+    }
+
+    @Override
+    public Set<String> zrange(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrange(key, start, stop);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> zrevrange(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrevrange(key, start, stop);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public int zrange(final String key, final int start, final int stop, ElementVisitor visitor) {
+        if (enabled) {
+            notEmptyKey(key);
+            notNullVisitor(visitor);
+
+            StreamCommand zrange = new StreamCommand(visitor) {
+
+                @Override
+                void stream(Jedis node, ElementVisitor visitor, int[] readNum) {
+                    streamZrange(node, key, start, stop, streamChunkSize, visitor, readNum);
+                }
+            };
+            this.execute(RedisCommand.ZRANGE_STREAM, key, -1, zrange, 0);
+            return zrange.visitedNum[0];
+        }
+        return 0;
+    }
+
+    @Override
+    public Set<String> zrangeByScore(final String key, final double min, final double max) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGEBYSCORE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrangeByScore(key, min, max);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> zrangeByScore(final String key, final double min, final double max, final int offset,
+                                     final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGEBYSCORE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrangeByScore(key, min, max, offset, count);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public int zrangeByScore(final String key, final double min, final double max, ElementVisitor visitor) {
+        if (enabled) {
+            notEmptyKey(key);
+            notNullVisitor(visitor);
+
+            StreamCommand zrangeByScore = new StreamCommand(visitor) {
+
+                @Override
+                void stream(Jedis node, ElementVisitor visitor, int[] readNum) {
+                    streamZrangeByScore(node, key, min, max, streamChunkSize, visitor, readNum);
+                }
+            };
+            this.execute(RedisCommand.ZRANGEBYSCORE_STREAM, key, -1, zrangeByScore, 0);
+            return zrangeByScore.visitedNum[0];
+        }
+        return 0;
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(final String key, final double max, final double min) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGEBYSCORE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrevrangeByScore(key, max, min);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(final String key, final double max, final double min, final int offset,
+                                        final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGEBYSCORE, key, -1, new ClusterCommand<Set<String>>() {
+
+                @Override
+                public Set<String> execute(Jedis node) {
+                    return node.zrevrangeByScore(key, max, min, offset, count);
+                }
+            }, Collections.<String> emptySet());
+        }
+        return Collections.emptySet();
+    }
+
+    // ---------------- 游标分页 ----------------
+    @Override
+    public ScorePage zrangeByScorePage(String key, double min, double max, int count, String cursor) {
+        return this.scorePage(RedisCommand.ZRANGEBYSCORE_PAGE, key, min, max, count, cursor, false);
+    }
+
+    @Override
+    public ScorePage zrevrangeByScorePage(String key, double max, double min, int count, String cursor) {
+        return this.scorePage(RedisCommand.ZREVRANGEBYSCORE_PAGE, key, max, min, count, cursor, true);
+    }
+
+    /**
+     * 按"(score, member)排他边界"读取一页有序集成员。(与{@link JedisServiceImpl}语义相同)
+     */
+    private ScorePage scorePage(RedisCommand command, final String key, final double start, final double end,
+                                final int count, String cursor, final boolean reverse) {
+        if (enabled) {
+            notEmptyKey(key);
+            AssertUtils.isTrue(count > 0, "'count' must be greater than 0");
+            final ScoreCursor last = (cursor == null) ? null : ScoreCursor.parse(cursor);
+
+            return this.execute(command, key, -1, new ClusterCommand<ScorePage>() {
+
+                @Override
+                public ScorePage execute(Jedis node) {
+                    return fetchScorePage(node, key, start, end, count, last, reverse, streamChunkSize);
+                }
+            }, ScorePage.EMPTY);
+        }
+        return ScorePage.EMPTY;
+    }
+
+    // ---------------- 数值(long)成员 ----------------
+    @Override
+    public int zadd(final String key, final double score, final long member) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZADD, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zadd(SafeEncoder.encode(key), score, NumberUtils.toByteArray(member));
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public long[] zrangeAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGE, key, -1, new ClusterCommand<long[]>() {
+
+                @Override
+                public long[] execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrange(key, start, stop);
+                    return toLongArray(client.getBinaryMultiBulkReply());
+                }
+            }, EMPTY_LONG_ARRAY);
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrevrangeAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGE, key, -1, new ClusterCommand<long[]>() {
+
+                @Override
+                public long[] execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrevrange(key, start, stop);
+                    return toLongArray(client.getBinaryMultiBulkReply());
+                }
+            }, EMPTY_LONG_ARRAY);
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrangeByScoreAsLong(final String key, final double min, final double max, final int offset,
+                                      final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGEBYSCORE, key, -1, new ClusterCommand<long[]>() {
+
+                @Override
+                public long[] execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrangeByScore(key, min, max, offset, count);
+                    return toLongArray(client.getBinaryMultiBulkReply());
+                }
+            }, EMPTY_LONG_ARRAY);
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrevrangeByScoreAsLong(final String key, final double max, final double min, final int offset,
+                                         final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGEBYSCORE, key, -1, new ClusterCommand<long[]>() {
+
+                @Override
+                public long[] execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrevrangeByScore(key, max, min, offset, count);
+                    return toLongArray(client.getBinaryMultiBulkReply());
+                }
+            }, EMPTY_LONG_ARRAY);
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public LongScoredMembers zrangeWithScoresAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZRANGE, key, -1, new ClusterCommand<LongScoredMembers>() {
+
+                @Override
+                public LongScoredMembers execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrangeWithScores(key, start, stop);
+                    return toLongScoredMembers(client.getBinaryMultiBulkReply());
+                }
+            }, LongScoredMembers.EMPTY);
+        }
+        return LongScoredMembers.EMPTY;
+    }
+
+    @Override
+    public LongScoredMembers zrevrangeWithScoresAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREVRANGE, key, -1, new ClusterCommand<LongScoredMembers>() {
+
+                @Override
+                public LongScoredMembers execute(Jedis node) {
+                    Client client = node.getClient();
+                    client.zrevrangeWithScores(key, start, stop);
+                    return toLongScoredMembers(client.getBinaryMultiBulkReply());
+                }
+            }, LongScoredMembers.EMPTY);
+        }
+        return LongScoredMembers.EMPTY;
+    }
+
+    @Override
+    public int zcard(final String key) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZCARD, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zcard(key);
+                }
+
+                @Override
+                int elementCount(Long zsetElementNum) {
+                    return (zsetElementNum == null) ? -1 : zsetElementNum.intValue();
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public int zremrangeByScore(final String key, final double min, final double max) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREMRANGEBYSCORE, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zremrangeByScore(key, min, max);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    @Override
+    public int zremrangeByRank(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.ZREMRANGEBYRANK, key, -1, new ClusterCommand<Long>() {
+
+                @Override
+                public Long execute(Jedis node) {
+                    return node.zremrangeByRank(key, start, stop);
+                }
+            }, 0L).intValue();
+        }
+        return 0;
+    }
+
+    // ---------------- Batch (批量操作) ----------------
+    /**
+     * Redis Cluster的管道不能跨节点，返回的批量操作按"槽位 -> 节点"拆分命令，每个节点执行一条管道。
+     */
+    @Override
+    public RedisBatch batch() {
+        return new ClusterRedisBatch(connectionHandler, maxRedirections, metrics, executorService, enabled);
+    }
+
+    @Override
+    public String info(final String key, final String section) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            return this.execute(RedisCommand.INFO, key, -1, new ClusterCommand<String>() {
+
+                @Override
+                public String execute(Jedis node) {
+                    return node.info(section);
+                }
+            }, "");
+        }
+        return "";
+    }
+
+}
@@ -16,13 +16,25 @@
 
 package cache.service.impl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -32,13 +44,42 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import redis.client.jedis.BoundedLoadPolicy;
+import redis.client.jedis.CustomShardedJedis;
 import redis.client.jedis.CustomShardedJedisPool;
+import redis.client.jedis.DualRingPolicy;
+import redis.client.jedis.HedgePolicy;
+import redis.client.jedis.ReplicatedKeys;
+import redis.client.jedis.RingResharder;
+import redis.client.jedis.ShardRejectedException;
+import redis.client.jedis.ShardReplicas;
+import redis.client.jedis.SlotMigrator;
+import redis.client.jedis.SlotTable;
+import redis.client.monitor.BigKeyDetector;
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisFlightRecorder;
+import redis.client.monitor.RedisMetrics;
 import redis.client.util.AssertUtils;
+import redis.client.util.NumberUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCommands;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Response;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.jedis.ShardedJedisPipeline;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisDataException;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+import cache.service.ElementVisitor;
+import cache.service.LongScoredMembers;
+import cache.service.RedisBatch;
 import cache.service.RedisService;
+import cache.service.ScoreCursor;
+import cache.service.ScorePage;
 
 /**
  * "数据分片的Jedis连接池"服务实现，继承自{@link RedisService}。
@@ -48,7 +89,16 @@ import cache.service.RedisService;
 @Resource
 public class JedisServiceImpl implements RedisService {
 
-    private static final Logger    logger          = LoggerFactory.getLogger(JedisServiceImpl.class);
+    private static final Logger    logger                    = LoggerFactory.getLogger(JedisServiceImpl.class);
+
+    /** 流式范围检索的默认块大小 */
+    public static final int        DEFAULT_STREAM_CHUNK_SIZE = 500;
+
+    /** 多元素写命令的默认块大小(元素个数) */
+    public static final int        DEFAULT_WRITE_CHUNK_SIZE  = 1000;
+
+    /** 多元素写命令的默认块大小(字节数) */
+    public static final int        DEFAULT_WRITE_CHUNK_BYTES = 1024 * 1024;
 
     /** Redis连接池 */
     @Autowired
@@ -57,9 +107,23 @@ public class JedisServiceImpl implements RedisService {
     /** Redis服务启用标识 */
     private boolean                enabled;
 
+    /** 流式范围检索的块大小 */
+    private int                    streamChunkSize           = DEFAULT_STREAM_CHUNK_SIZE;
+
+    /** 多元素写命令每块的最大元素个数 */
+    private int                    writeChunkSize            = DEFAULT_WRITE_CHUNK_SIZE;
+
+    /** 多元素写命令每块的最大字节数 */
+    private int                    writeChunkBytes           = DEFAULT_WRITE_CHUNK_BYTES;
+
     /** 异步任务执行器 */
-    private final ExecutorService  executorService = new ThreadPoolExecutor(30, 10000, 60L, TimeUnit.SECONDS,
-                                                                            new LinkedBlockingQueue<Runnable>(50));
+    private final ExecutorService  executorService           = new ThreadPoolExecutor(30, 10000, 60L,
+                                                                                      TimeUnit.SECONDS,
+                                                                                      new LinkedBlockingQueue<Runnable>(50));
+
+    /** 对冲读任务执行器 (没有空闲线程时不对冲，直接在调用线程中读取) */
+    private final ExecutorService  hedgeExecutorService      = new ThreadPoolExecutor(0, 256, 60L, TimeUnit.SECONDS,
+                                                                                      new SynchronousQueue<Runnable>());
 
     /**
      * 用于单元测试(UT, Unit Test)。
@@ -70,6 +134,51 @@ public class JedisServiceImpl implements RedisService {
         this.shardedJedisPool = shardedJedisPool;
     }
 
+    /**
+     * 设置流式范围检索的块大小，即每次向Redis服务器读取的元素数量。
+     * <p>
+     * 默认值是 {@value #DEFAULT_STREAM_CHUNK_SIZE}个。
+     * 
+     * @param streamChunkSize 流式范围检索的块大小
+     */
+    public void setStreamChunkSize(int streamChunkSize) {
+        AssertUtils.isTrue(streamChunkSize > 0, "'streamChunkSize' property must be greater than 0 : "
+                                                + streamChunkSize);
+
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    /**
+     * 设置多元素写命令(LPUSH、ZADD)每块的最大元素个数。
+     * <p>
+     * 元素个数超过该值的写命令会被自动拆分为多个命令，在同一个连接上以管道方式连续发送，
+     * 避免单个超大命令长时间阻塞Redis的事件循环，以及占用巨大的客户端缓冲区。<br>
+     * 默认值是 {@value #DEFAULT_WRITE_CHUNK_SIZE}个。
+     * 
+     * @param writeChunkSize 多元素写命令每块的最大元素个数
+     */
+    public void setWriteChunkSize(int writeChunkSize) {
+        AssertUtils.isTrue(writeChunkSize > 0, "'writeChunkSize' property must be greater than 0 : "
+                                               + writeChunkSize);
+
+        this.writeChunkSize = writeChunkSize;
+    }
+
+    /**
+     * 设置多元素写命令(LPUSH、ZADD)每块的最大字节数。(按元素的UTF-8编码字节数计算)
+     * <p>
+     * 单个元素超过该值时，该元素单独作为一块。<br>
+     * 默认值是 {@value #DEFAULT_WRITE_CHUNK_BYTES}字节。
+     * 
+     * @param writeChunkBytes 多元素写命令每块的最大字节数
+     */
+    public void setWriteChunkBytes(int writeChunkBytes) {
+        AssertUtils.isTrue(writeChunkBytes > 0, "'writeChunkBytes' property must be greater than 0 : "
+                                                + writeChunkBytes);
+
+        this.writeChunkBytes = writeChunkBytes;
+    }
+
     @Override
     public void setEnabled(boolean enabled) {
         this.enabled = enabled;
@@ -91,16 +200,107 @@ public class JedisServiceImpl implements RedisService {
     }
 
     // ---------------- internal help method ----------------
-    private static void notEmptyKey(String key) {
+    static void notEmptyKey(String key) {
         AssertUtils.notEmpty(key, "'key' must not be null and empty");
     }
 
+    static void notNullVisitor(ElementVisitor visitor) {
+        AssertUtils.isTrue(visitor != null, "'visitor' must not be null");
+    }
+
+    /**
+     * 将可能为负数的下标转换为非负下标。
+     * 
+     * @param index 下标(负数表示从尾部开始计数)
+     * @param length 列表或有序集的长度
+     */
+    static long toAbsoluteIndex(long index, long length) {
+        if (index < 0) {
+            index += length;
+        }
+        return index < 0 ? 0 : index;
+    }
+
+    /**
+     * 依次访问一块元素。
+     * 
+     * @return {@code true}：继续访问；{@code false}：访问者提前终止了访问。
+     */
+    static boolean visitChunk(Iterable<String> chunk, ElementVisitor visitor, int[] visitedNum) {
+        for (String element : chunk) {
+            visitedNum[0]++;
+            if (!visitor.visit(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 分块读取列表的元素，依次交给访问者。(与{@link #lrange(String, int, int, ElementVisitor)}语义相同)
+     */
+    static void streamLrange(JedisCommands shard, String key, long start, long stop, int chunkSize,
+                             ElementVisitor visitor, int[] visitedNum) {
+        long from = start;
+        long to = stop;
+        if (from < 0 || to < 0) { // 负数下标需要先知道列表长度
+            long length = shard.llen(key).longValue();
+            from = toAbsoluteIndex(from, length);
+            to = Math.min(toAbsoluteIndex(to, length), length - 1);
+        }
+        for (; from <= to; from += chunkSize) {
+            long chunkStop = Math.min(from + chunkSize - 1, to);
+            List<String> chunk = shard.lrange(key, from, chunkStop);
+            if (!visitChunk(chunk, visitor, visitedNum) || chunk.size() < chunkStop - from + 1) {
+                break; // 访问者提前终止，或已到达列表尾部
+            }
+        }
+    }
+
+    /**
+     * 分块读取有序集合的成员，依次交给访问者。(与{@link #zrange(String, int, int, ElementVisitor)}语义相同)
+     */
+    static void streamZrange(JedisCommands shard, String key, long start, long stop, int chunkSize,
+                             ElementVisitor visitor, int[] visitedNum) {
+        long from = start;
+        long to = stop;
+        if (from < 0 || to < 0) { // 负数下标需要先知道有序集的基数
+            long length = shard.zcard(key).longValue();
+            from = toAbsoluteIndex(from, length);
+            to = Math.min(toAbsoluteIndex(to, length), length - 1);
+        }
+        for (; from <= to; from += chunkSize) {
+            long chunkStop = Math.min(from + chunkSize - 1, to);
+            Set<String> chunk = shard.zrange(key, from, chunkStop);
+            if (!visitChunk(chunk, visitor, visitedNum) || chunk.size() < chunkStop - from + 1) {
+                break; // 访问者提前终止，或已到达有序集尾部
+            }
+        }
+    }
+
+    /**
+     * 分块读取分数区间内的成员，依次交给访问者。(与{@link #zrangeByScore(String, double, double, ElementVisitor)}语义相同)
+     * <p>
+     * 按"(score, member)排他边界"分块读取(见{@link #fetchScorePage})，每块的代价与偏移量无关，并且读取期间有序集被修改时不会跳过或重复成员。
+     */
+    static void streamZrangeByScore(JedisCommands shard, String key, double min, double max, int chunkSize,
+                                    ElementVisitor visitor, int[] visitedNum) {
+        ScoreCursor last = null;
+        while (true) {
+            ScorePage chunk = fetchScorePage(shard, key, min, max, chunkSize, last, false, chunkSize);
+            if (!visitChunk(chunk.getMembers(), visitor, visitedNum) || !chunk.hasMore()) {
+                break; // 访问者提前终止，或已到达分数区间尾部
+            }
+            last = ScoreCursor.parse(chunk.getCursor());
+        }
+    }
+
     /**
      * 将使用完成的"分片Jedis池对象"返回给"对象池"。
      * 
      * @param jedis
      */
-    private static void close(ShardedJedis jedis) {
+    static void close(ShardedJedis jedis) {
         if (jedis != null) {
             try {
                 jedis.close();
@@ -110,21 +310,695 @@ public class JedisServiceImpl implements RedisService {
         }
     }
 
+    // ---------------- 多元素写命令的自动分块 ----------------
+    /**
+     * 返回从{@code from}开始的一块元素的结束位置(不包括)，每块不超过{@link #writeChunkSize}个元素和{@link #writeChunkBytes}字节。
+     */
+    private int nextWriteChunkEnd(String[] values, int from) {
+        return nextWriteChunkEnd(values, from, writeChunkSize, writeChunkBytes);
+    }
+
+    private boolean exceedsWriteChunk(Map<String, Double> scoreMembers) {
+        return exceedsWriteChunk(scoreMembers, writeChunkSize, writeChunkBytes);
+    }
+
+    /**
+     * 返回从{@code from}开始的一块元素的结束位置(不包括)，每块不超过{@code chunkSize}个元素和{@code chunkBytes}字节。
+     */
+    static int nextWriteChunkEnd(String[] values, int from, int chunkSize, int chunkBytes) {
+        long bytes = 0L;
+        int to = from;
+        while (to < values.length && to - from < chunkSize) {
+            bytes += StringUtils.utf8Length(values[to]);
+            if (bytes > chunkBytes && to > from) {
+                break;
+            }
+            to++;
+        }
+        return to;
+    }
+
+    static boolean exceedsWriteChunk(Map<String, Double> scoreMembers, int chunkSize, int chunkBytes) {
+        if (scoreMembers.size() > chunkSize) {
+            return true;
+        }
+        return membersLength(scoreMembers) > chunkBytes;
+    }
+
+    /**
+     * 将成员拆分为多块，每块不超过{@code chunkSize}个成员和{@code chunkBytes}字节；不需要拆分时，只返回原来的成员映射。
+     */
+    static List<Map<String, Double>> splitWriteChunks(Map<String, Double> scoreMembers, int chunkSize,
+                                                      int chunkBytes) {
+        if (!exceedsWriteChunk(scoreMembers, chunkSize, chunkBytes)) {
+            return Collections.singletonList(scoreMembers);
+        }
+        List<Map<String, Double>> chunks = new ArrayList<Map<String, Double>>(scoreMembers.size() / chunkSize + 1);
+        Map<String, Double> chunk = new HashMap<String, Double>();
+        long bytes = 0L;
+        for (Map.Entry<String, Double> entry : scoreMembers.entrySet()) {
+            long memberBytes = StringUtils.utf8Length(entry.getKey());
+            if (!chunk.isEmpty() && (chunk.size() >= chunkSize || bytes + memberBytes > chunkBytes)) {
+                chunks.add(chunk);
+                chunk = new HashMap<String, Double>();
+                bytes = 0L;
+            }
+            chunk.put(entry.getKey(), entry.getValue());
+            bytes += memberBytes;
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // ---------------- 大键检测 ----------------
+    /**
+     * 返回所有值按UTF-8编码的总字节数。
+     */
+    static long valuesLength(String[] values) {
+        long bytes = 0L;
+        for (String value : values) {
+            if (value != null) {
+                bytes += StringUtils.utf8Length(value);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 返回所有成员按UTF-8编码的总字节数。
+     */
+    static long membersLength(Map<String, Double> scoreMembers) {
+        long bytes = 0L;
+        for (String member : scoreMembers.keySet()) {
+            bytes += StringUtils.utf8Length(member);
+        }
+        return bytes;
+    }
+
+    /**
+     * 当写入的字节数超过配置的最大值时，拒绝该写命令，不会发送到分片节点。(警告日志限速输出)
+     *
+     * @see BigKeyDetector#isWriteRejected(RedisCommand, String, long)
+     */
+    private boolean rejectWrite(RedisCommand command, String key, long bytes) {
+        return shardedJedisPool.getMetrics().getBigKeyDetector().isWriteRejected(command, key, bytes);
+    }
+
+    /**
+     * 将超大的LPUSH命令拆分为多块，在同一个连接上以管道方式连续发送。
+     * <p>
+     * 元素依次插入到表头，所以拆分后列表的最终顺序与单个命令相同；但其它客户端可能会看到只插入了部分元素的中间状态。
+     *
+     * @return 最后一块执行后的列表长度
+     */
+    private int lpushInChunks(Jedis shard, String key, String[] values) {
+        Pipeline pipeline = shard.pipelined();
+        Response<Long> lastResponse = null;
+        for (int from = 0; from < values.length;) {
+            int to = nextWriteChunkEnd(values, from);
+            lastResponse = pipeline.lpush(key, Arrays.copyOfRange(values, from, to));
+            from = to;
+        }
+        pipeline.sync();
+        return lastResponse.get().intValue();
+    }
+
+    /**
+     * 将超大的ZADD命令拆分为多块，在同一个连接上以管道方式连续发送。
+     *
+     * @return 各块新增成员数量的总和
+     */
+    private int zaddInChunks(Jedis shard, String key, Map<String, Double> scoreMembers) {
+        Pipeline pipeline = shard.pipelined();
+        List<Map<String, Double>> chunks = splitWriteChunks(scoreMembers, writeChunkSize, writeChunkBytes);
+        List<Response<Long>> responses = new ArrayList<Response<Long>>(chunks.size());
+        for (Map<String, Double> chunk : chunks) {
+            responses.add(pipeline.zadd(key, chunk));
+        }
+        pipeline.sync();
+
+        int newElementNum = 0;
+        for (Response<Long> response : responses) {
+            newElementNum += response.get().intValue();
+        }
+        return newElementNum;
+    }
+
+    /**
+     * 记录命令的统计数据。
+     * <p>
+     * 必须在归还连接之前调用，此时连接上记录的"最近一次路由到的分片节点"就是该命令所在的分片节点。
+     */
+    private void record(RedisCommand command, String key, ShardedJedis jedis, long startTime, JedisException failure) {
+        this.record(command, key, -1, -1, jedis, startTime, failure);
+    }
+
+    private void record(RedisCommand command, String key, long valueLength, ShardedJedis jedis, long startTime,
+                        JedisException failure) {
+        this.record(command, key, valueLength, -1, jedis, startTime, failure);
+    }
+
+    /**
+     * 记录命令的统计数据和大键，并在耗时超过阈值时发出JFR事件。
+     *
+     * @param valueLength 值的长度，未知时为-1
+     * @param elementCount 集合的元素个数(或回复的元素个数)，未知时为-1
+     */
+    private void record(RedisCommand command, String key, long valueLength, int elementCount, ShardedJedis jedis,
+                        long startTime, JedisException failure) {
+        CustomShardedJedis.endCommand(jedis, command, failure != null);
+        JedisShardInfo shard = CustomShardedJedis.getLastShardInfo(jedis);
+        RedisMetrics metrics = shardedJedisPool.getMetrics();
+        long duration = metrics.record(command, shard, startTime, failure);
+        CustomShardedJedis.onComplete(jedis, shardedJedisPool.getCircuitBreakers(), shard, failure);
+        metrics.getHotKeyDetector().sample(key, shard);
+        BigKeyDetector bigKeyDetector = metrics.getBigKeyDetector();
+        bigKeyDetector.recordValue(command, key, shard, valueLength);
+        bigKeyDetector.recordElements(command, key, shard, elementCount);
+        RedisFlightRecorder.command(command, shard, key, (int) Math.min(valueLength, Integer.MAX_VALUE), duration,
+                                    failure != null);
+        if (failure == null) {
+            syncResharding(shardedJedisPool, command, key);
+        }
+    }
+
+    /**
+     * 哈希环重新分片期间，记录执行成功的写命令写入的键(脏键)，由重新分片的复制线程复制到新哈希环上的分片节点。
+     * <p>
+     * 只在内存中记录，不访问Redis服务器，不增加写命令的耗时。
+     *
+     * @see RingResharder#markDirty(String)
+     */
+    static void syncResharding(CustomShardedJedisPool shardedJedisPool, RedisCommand command, String key) {
+        RingResharder resharder = shardedJedisPool.getResharder();
+        if (resharder != null && ReplicatedKeys.isWrite(command)) {
+            resharder.markDirty(key);
+        }
+    }
+
+    // ---------------- 副本节点读和对冲读 ----------------
+    /**
+     * 一个可以在分片节点或其副本节点上执行的读命令。
+     */
+    private interface ReadCommand<T> {
+
+        T read(Jedis node);
+    }
+
+    /**
+     * 返回读命令是否需要经过{@link #read(RedisCommand, String, ReadCommand, Object)}路由
+     * (启用了副本节点的负载均衡、对冲读、有界负载或复制键，或者在分片节点列表变化后的宽限期内)。
+     * <p>
+     * 槽位迁移期间不需要路由：键在路由到目标节点时已经按需从源节点搬过来了，见{@link SlotTable}。
+     */
+    private boolean routedRead() {
+        return shardedJedisPool.getReplicas().getReadMode() != ShardReplicas.ReadMode.MASTER
+               || shardedJedisPool.getHedgePolicy().isEnabled() || shardedJedisPool.getBoundedLoadPolicy().isEnabled()
+               || shardedJedisPool.getReplicatedKeys().isEnabled()
+               || shardedJedisPool.getDualRingPolicy().isInGracePeriod();
+    }
+
+    /**
+     * 执行一个读命令。
+     * <p>
+     * 分片节点列表变化后的宽限期内键移动了时，先读取新的分片节点，没有读到数据时再读取原来的分片节点，读到了则异步回填到新的分片节点，见{@link DualRingPolicy}。
+     * <p>
+     * 复制键按{@link ReplicatedKeys.ReadMode 读取方式}选择一个副本分片节点，没有读到数据时再读取键本来所在的分片节点，见{@link ReplicatedKeys}。
+     * <p>
+     * 可以溢出的缓存命令需要溢出时，先读取溢出的目标节点，没有读到数据时再读取原来的分片节点，见{@link BoundedLoadPolicy}。
+     * <p>
+     * 否则，先按{@link ShardReplicas.ReadMode 负载均衡方式}在分片节点及其正常的副本节点之间选择一个节点；
+     * 选中分片节点时，如果它在延迟阈值内没有返回(或返回失败)，在预算允许的情况下再向其副本节点发送相同的读命令(对冲读)，采用先成功返回的结果。
+     * <p>
+     * 没有配置副本节点、没有足够的延迟统计数据、命令不能对冲(流式检索)、或者对冲线程已经用完时，直接在调用线程中读取分片节点，与普通的读命令相同。
+     *
+     * @param defaultValue 读取失败时返回的默认值
+     * @see ShardReplicas
+     * @see HedgePolicy
+     */
+    private <T> T read(RedisCommand command, String key, ReadCommand<T> readCommand, T defaultValue) {
+        long startTime = System.nanoTime();
+        ShardedJedis jedis = null;
+        JedisException failure = null;
+        T value = null;
+        ShardReplicas.Replica readNode = null;
+        try {
+            jedis = shardedJedisPool.getResource();
+            Jedis previousOwner = CustomShardedJedis.getPreviousOwnerShard(jedis, key);
+            if (previousOwner != null) { // 分片节点列表刚变化过，新的分片节点上没有读到数据时再读取原来的分片节点
+                value = readCommand.read(jedis.getShard(key));
+                if (isEmptyReply(value)) {
+                    value = readCommand.read(previousOwner);
+                    if (!isEmptyReply(value) && shardedJedisPool.getDualRingPolicy().isBackfill()) {
+                        this.backfill(key);
+                    }
+                }
+                return value;
+            }
+            ReplicatedKeys replicatedKeys = shardedJedisPool.getReplicatedKeys();
+            if (replicatedKeys.isReplicated(key)) { // 复制键，读流量分散到各副本分片节点
+                Jedis replicaShard = CustomShardedJedis.getReplicaReadShard(jedis, key, replicatedKeys);
+                JedisShardInfo replicaShardInfo = CustomShardedJedis.getLastShardInfo(jedis);
+                replicatedKeys.onReadStart(replicaShardInfo);
+                try {
+                    value = readCommand.read(replicaShard);
+                } finally {
+                    replicatedKeys.onReadEnd(replicaShardInfo);
+                }
+                if (isEmptyReply(value) && replicaShardInfo != CustomShardedJedis.locateShardInfo(jedis, key)) {
+                    value = readCommand.read(jedis.getShard(key));
+                }
+                return value;
+            }
+            if (BoundedLoadPolicy.isSpillable(command)) {
+                Jedis spillShard = CustomShardedJedis.getSpillShard(jedis, key);
+                if (spillShard != null) { // 溢出的目标节点上没有读到数据时再读取原来的分片节点
+                    value = readCommand.read(spillShard);
+                    if (isEmptyReply(value)) {
+                        value = readCommand.read(jedis.getShard(key));
+                    }
+                    return value;
+                }
+            }
+
+            readNode = shardedJedisPool.getReplicas().acquireReadNode(CustomShardedJedis.locateShardInfo(jedis, key));
+            if (readNode != null && !readNode.isMaster()) {
+                close(jedis);
+                jedis = null; // 读命令发送到副本节点，不再使用分片节点的连接
+                return this.readReplica(command, key, readCommand, readNode, defaultValue);
+            }
+
+            Jedis node = jedis.getShard(key);
+            JedisShardInfo shard = CustomShardedJedis.getLastShardInfo(jedis);
+
+            HedgePolicy hedgePolicy = shardedJedisPool.getHedgePolicy();
+            hedgePolicy.onRead();
+            ShardReplicas.Replica replica = shardedJedisPool.getReplicas().getReplica(shard);
+            long delayNanos = HedgePolicy.NO_HEDGE;
+            if (replica != null && HedgePolicy.isHedgeable(command)) {
+                delayNanos = hedgePolicy.getDelayNanos(shardedJedisPool.getMetrics(), command, shard);
+            }
+            if (delayNanos != HedgePolicy.NO_HEDGE) {
+                CompletionService<T> completionService = new ExecutorCompletionService<T>(hedgeExecutorService);
+                Future<T> masterFuture = null;
+                try {
+                    masterFuture = completionService.submit(new MasterReadCallable<T>(command, key, readCommand, jedis,
+                                                                                      node, startTime));
+                } catch (RejectedExecutionException e) {
+                    logger.debug("No hedge thread available, read directly, key: {}", key);
+                }
+                if (masterFuture != null) {
+                    jedis = null; // 连接已交给分片节点的读任务，由它记录统计数据并归还
+                    return this.awaitHedgedRead(command, key, readCommand, replica, delayNanos, completionService,
+                                                masterFuture, defaultValue);
+                }
+            }
+
+            value = readCommand.read(node);
+            return value;
+        } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+            failure = e;
+            logger.debug("'{}' key rejected, key: {}, cause: {}", command, key, e.getMessage());
+        } catch (JedisException e) {
+            failure = e;
+            logger.error("'{}' key fail, key: {}", command, key);
+            logger.error(e.getMessage(), e);
+        } finally {
+            if (jedis != null || failure != null) {
+                recordRead(command, key, value, jedis, startTime, failure);
+                close(jedis);
+            }
+            if (readNode != null) {
+                readNode.release();
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 返回读命令的结果是否为空(键不存在时的回复)。
+     */
+    private static boolean isEmptyReply(Object value) {
+        if (value == null) {
+            return true;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Long) {
+            return ((Long) value).longValue() == 0L;
+        }
+        if (value instanceof Integer) { // 流式检索访问的元素个数
+            return ((Integer) value).intValue() == 0;
+        }
+        if (value instanceof long[]) {
+            return ((long[]) value).length == 0;
+        }
+        if (value instanceof LongScoredMembers) {
+            return ((LongScoredMembers) value).size() == 0;
+        }
+        if (value instanceof ScorePage) {
+            return ((ScorePage) value).getMembers().isEmpty();
+        }
+        return false;
+    }
+
+    /**
+     * 异步将键从原来的分片节点复制到新的分片节点(新的分片节点上已经存在该键时保留)。执行器已饱和时放弃回填。
+     *
+     * @see DualRingPolicy
+     */
+    private void backfill(final String key) {
+        try {
+            executorService.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    ShardedJedis jedis = null;
+                    try {
+                        jedis = shardedJedisPool.getResource();
+                        Jedis previousOwner = CustomShardedJedis.getPreviousOwnerShard(jedis, key);
+                        if (previousOwner != null && SlotMigrator.copyKey(previousOwner, jedis.getShard(key), key)) {
+                            logger.debug("Backfill key from previous Shard: {}", key);
+                        }
+                    } catch (JedisException e) {
+                        logger.warn("Failed to backfill key from previous Shard: {}", key);
+                        logger.warn(e.getMessage(), e);
+                    } finally {
+                        close(jedis);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("Executor is saturated, skip backfill of key: {}", key);
+        }
+    }
+
+    /**
+     * 在副本节点上执行读命令。
+     */
+    private <T> T readReplica(RedisCommand command, String key, ReadCommand<T> readCommand,
+                              ShardReplicas.Replica replica, T defaultValue) {
+        try {
+            return new ReplicaReadCallable<T>(command, key, readCommand, replica).call();
+        } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+            logger.debug("'{}' key rejected, key: {}, replica: {}, cause: {}", command, key, replica, e.getMessage());
+        } catch (JedisException e) {
+            logger.error("'{}' key fail, key: {}, replica: {}", command, key, replica);
+            logger.error(e.getMessage(), e);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 等待分片节点的读任务，超过延迟阈值后发送对冲请求，返回先成功返回的结果。
+     */
+    private <T> T awaitHedgedRead(RedisCommand command, String key, ReadCommand<T> readCommand,
+                                  ShardReplicas.Replica replica, long delayNanos,
+                                  CompletionService<T> completionService, Future<T> masterFuture, T defaultValue) {
+        HedgePolicy hedgePolicy = shardedJedisPool.getHedgePolicy();
+        int pending = 1;
+        boolean hedged = false;
+        try {
+            Future<T> done = completionService.poll(delayNanos, TimeUnit.NANOSECONDS);
+            for (;;) {
+                if (done == null) { // 分片节点超过延迟阈值没有返回，或者已经失败
+                    if (!hedged) {
+                        hedged = true;
+                        if (hedgePolicy.tryHedge() && this.submitReplicaRead(command, key, readCommand, replica,
+                                                                             completionService)) {
+                            pending++;
+                        }
+                    }
+                    if (pending == 0) {
+                        return defaultValue;
+                    }
+                    done = completionService.take();
+                }
+
+                pending--;
+                try {
+                    T value = done.get();
+                    if (done != masterFuture) {
+                        hedgePolicy.onHedgeWon();
+                    }
+                    return value;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    if (!(cause instanceof JedisException)) {
+                        throw (RuntimeException) cause;
+                    }
+                    logger.error("'{}' key fail, key: {}, hedged: {}", command, key, done != masterFuture);
+                    logger.error(cause.getMessage(), cause);
+                    done = null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("'{}' key interrupted, key: {}", command, key);
+        }
+        return defaultValue;
+    }
+
+    private <T> boolean submitReplicaRead(RedisCommand command, String key, ReadCommand<T> readCommand,
+                                          ShardReplicas.Replica replica, CompletionService<T> completionService) {
+        try {
+            completionService.submit(new ReplicaReadCallable<T>(command, key, readCommand, replica));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.debug("No hedge thread available, skip hedging, key: {}", key);
+            return false;
+        }
+    }
+
+    /**
+     * 记录读命令的统计数据，根据读取结果估算值的长度或集合的元素个数。
+     */
+    private void recordRead(RedisCommand command, String key, Object value, ShardedJedis jedis, long startTime,
+                            JedisException failure) {
+        if (value instanceof String) {
+            this.record(command, key, StringUtils.utf8Length((String) value), jedis, startTime, failure);
+        } else if (value instanceof Collection) {
+            this.record(command, key, -1, ((Collection<?>) value).size(), jedis, startTime, failure);
+        } else if (value instanceof Long) { // 集合的长度
+            this.record(command, key, -1, (int) Math.min((Long) value, Integer.MAX_VALUE), jedis, startTime, failure);
+        } else if (value instanceof Integer) { // 流式检索访问的元素个数
+            this.record(command, key, -1, ((Integer) value).intValue(), jedis, startTime, failure);
+        } else if (value instanceof long[]) {
+            this.record(command, key, -1, ((long[]) value).length, jedis, startTime, failure);
+        } else if (value instanceof LongScoredMembers) {
+            this.record(command, key, -1, ((LongScoredMembers) value).size(), jedis, startTime, failure);
+        } else {
+            this.record(command, key, jedis, startTime, failure);
+        }
+    }
+
+    /**
+     * 在分片节点上执行读命令，完成后记录统计数据并归还连接。
+     */
+    private class MasterReadCallable<T> implements Callable<T> {
+
+        private final RedisCommand   command;
+        private final String         key;
+        private final ReadCommand<T> readCommand;
+        private final ShardedJedis   jedis;
+        private final Jedis          node;
+        private final long           startTime;
+
+        public MasterReadCallable(RedisCommand command, String key, ReadCommand<T> readCommand, ShardedJedis jedis,
+                                  Jedis node, long startTime){
+            this.command = command;
+            this.key = key;
+            this.readCommand = readCommand;
+            this.jedis = jedis;
+            this.node = node;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public T call() {
+            JedisException failure = null;
+            T value = null;
+            try {
+                value = readCommand.read(node);
+                return value;
+            } catch (JedisException e) {
+                failure = e;
+                throw e;
+            } finally {
+                recordRead(command, key, value, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+    }
+
+    /**
+     * 在副本节点上执行读命令，完成后记录副本节点的统计数据并归还连接。
+     */
+    private class ReplicaReadCallable<T> implements Callable<T> {
+
+        private final RedisCommand          command;
+        private final String                key;
+        private final ReadCommand<T>        readCommand;
+        private final ShardReplicas.Replica replica;
+
+        public ReplicaReadCallable(RedisCommand command, String key, ReadCommand<T> readCommand,
+                                   ShardReplicas.Replica replica){
+            this.command = command;
+            this.key = key;
+            this.readCommand = readCommand;
+            this.replica = replica;
+        }
+
+        @Override
+        public T call() {
+            long startTime = System.nanoTime();
+            Jedis node = null;
+            JedisException failure = null;
+            try {
+                node = replica.getPool().getResource();
+                return readCommand.read(node);
+            } catch (JedisException e) {
+                failure = e;
+                throw e;
+            } finally {
+                shardedJedisPool.getMetrics().record(command, replica.getShardInfo(), startTime, failure);
+                if (node != null) {
+                    node.close();
+                }
+            }
+        }
+    }
+
+    // ---------------- 复制键 ----------------
+    /**
+     * 一个需要在复制键的所有副本分片节点上执行的写命令。
+     */
+    private interface WriteCommand<T> {
+
+        T write(Jedis node);
+    }
+
+    /**
+     * 返回键是否是复制键，见{@link ReplicatedKeys}。
+     */
+    private boolean replicated(String key) {
+        return shardedJedisPool.getReplicatedKeys().isReplicated(key);
+    }
+
+    /**
+     * 在复制键的所有副本分片节点上并行执行一个写命令。
+     * <p>
+     * 键本来所在的分片节点在调用线程中执行，其它副本分片节点交给异步任务执行器并行执行(执行器已饱和时在调用线程中执行)，
+     * 全部完成后才归还连接。返回键本来所在的分片节点上的结果；其它副本分片节点执行失败时只记录日志。
+     *
+     * @param defaultValue 键本来所在的分片节点执行失败时返回的默认值
+     */
+    private <T> T writeReplicated(RedisCommand command, String key, final WriteCommand<T> writeCommand,
+                                  T defaultValue) {
+        long startTime = System.nanoTime();
+        ShardedJedis jedis = null;
+        JedisException failure = null;
+        List<Future<T>> pendings = Collections.emptyList();
+        try {
+            jedis = shardedJedisPool.getResource();
+            ReplicatedKeys replicatedKeys = shardedJedisPool.getReplicatedKeys();
+            List<Jedis> replicaShards = CustomShardedJedis.getReplicaShards(jedis, key, replicatedKeys.getReplicaNum());
+            replicatedKeys.onWrite();
+            pendings = new ArrayList<Future<T>>(replicaShards.size() - 1);
+            for (int i = 1; i < replicaShards.size(); i++) {
+                final Jedis replicaShard = replicaShards.get(i);
+                FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+
+                    @Override
+                    public T call() {
+                        return writeCommand.write(replicaShard);
+                    }
+                });
+                try {
+                    executorService.execute(task);
+                } catch (RejectedExecutionException e) { // 执行器已饱和，退化为在调用线程中执行
+                    task.run();
+                }
+                pendings.add(task);
+            }
+            return writeCommand.write(replicaShards.get(0));
+        } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+            failure = e;
+            logger.debug("'{}' key rejected, key: {}, cause: {}", command, key, e.getMessage());
+        } catch (JedisException e) {
+            failure = e;
+            logger.error("'{}' replicated key fail, key: {}", command, key);
+            logger.error(e.getMessage(), e);
+        } finally {
+            awaitReplicaWrites(command, key, pendings);
+            record(command, key, jedis, startTime, failure);
+            close(jedis);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * 等待其它副本分片节点上的写命令执行完成。(必须在归还连接之前完成)
+     */
+    private static void awaitReplicaWrites(RedisCommand command, String key, List<? extends Future<?>> pendings) {
+        boolean interrupted = false;
+        for (Future<?> pending : pendings) {
+            while (true) {
+                try {
+                    pending.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    logger.error("'{}' replicated key fail on replica shard, key: {}", command, key);
+                    logger.error(e.getCause().getMessage(), e.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     // ---------------- Key (键) ----------------
     @Override
-    public int expire(String key, int seconds) {
+    public int expire(final String key, final int seconds) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.EXPIRE, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.expire(key, seconds).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 int ret = jedis.expire(key, seconds).intValue();
                 return ret;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'expire' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'expire' key fail, key: {}, seconds: {}", key, seconds);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.EXPIRE, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -136,15 +1010,22 @@ public class JedisServiceImpl implements RedisService {
         if (enabled) {
             notEmptyKey(key);
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 long liveTimeSeconds = jedis.ttl(key).longValue();
                 return liveTimeSeconds;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'ttl' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'ttl' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.TTL, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -152,19 +1033,48 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int del(String key) {
+    public int del(final String key) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.DEL, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.del(key).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 int removedKeyNum = jedis.del(key).intValue();
+                Jedis migrationSource = CustomShardedJedis.getMigrationSourceShard(jedis, key);
+                if (migrationSource != null) { // 同时删除因目标节点上已经存在该键而保留在源节点上的键，避免它被回读后"复活"
+                    removedKeyNum = Math.max(removedKeyNum, migrationSource.del(key).intValue());
+                }
+                Jedis previousOwner = CustomShardedJedis.getPreviousOwnerShard(jedis, key);
+                if (previousOwner != null) { // 同时删除原来的分片节点上的键，避免它被回读或回填后"复活"
+                    removedKeyNum = Math.max(removedKeyNum, previousOwner.del(key).intValue());
+                }
+                Jedis spillShard = CustomShardedJedis.getSpillShard(jedis, key);
+                if (spillShard != null) { // 同时删除溢出到其它分片节点上的键
+                    removedKeyNum = Math.max(removedKeyNum, spillShard.del(key).intValue());
+                }
                 return removedKeyNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'del' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'del' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.DEL, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -173,19 +1083,37 @@ public class JedisServiceImpl implements RedisService {
 
     // ---------------- String (字符串) ----------------
     @Override
-    public String get(String key) {
+    public String get(final String key) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.GET, key, new ReadCommand<String>() {
+
+                    @Override
+                    public String read(Jedis node) {
+                        return node.get(key);
+                    }
+                }, null);
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            String value = null;
             try {
                 jedis = shardedJedisPool.getResource();
-                String value = jedis.get(key);
+                value = jedis.get(key);
                 return value;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'get' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'get' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.GET, key, (value == null) ? -1 : StringUtils.utf8Length(value), jedis, startTime,
+                       failure);
                 close(jedis);
             }
         }
@@ -193,19 +1121,40 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public String set(String key, String value) {
+    public String set(final String key, final String value) {
         if (enabled) {
             notEmptyKey(key);
+            long valueLength = (value == null) ? -1 : StringUtils.utf8Length(value);
+            if (value != null && rejectWrite(RedisCommand.SET, key, valueLength)) {
+                return null;
+            }
+
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.SET, key, new WriteCommand<String>() {
 
+                    @Override
+                    public String write(Jedis node) {
+                        return node.set(key, value);
+                    }
+                }, null);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 String ret = jedis.set(key, value);
                 return ret;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'set' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'set' key fail, key: {}, value: {}", key, value);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.SET, key, valueLength, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -213,20 +1162,46 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public String setex(String key, int seconds, String value) {
+    public String setex(final String key, final int seconds, final String value) {
         if (enabled) {
             notEmptyKey(key);
 
             if (seconds > 0) {
+                long valueLength = (value == null) ? -1 : StringUtils.utf8Length(value);
+                if (value != null && rejectWrite(RedisCommand.SETEX, key, valueLength)) {
+                    return null;
+                }
+
+                if (replicated(key)) {
+                    return writeReplicated(RedisCommand.SETEX, key, new WriteCommand<String>() {
+
+                        @Override
+                        public String write(Jedis node) {
+                            return node.setex(key, seconds, value);
+                        }
+                    }, null);
+                }
+
+                long startTime = System.nanoTime();
                 ShardedJedis jedis = null;
+                JedisException failure = null;
                 try {
                     jedis = shardedJedisPool.getResource();
+                    Jedis spillShard = CustomShardedJedis.getSpillShard(jedis, key);
+                    if (spillShard != null) { // 热点分片节点上的缓存键溢出到其它分片节点
+                        return spillShard.setex(key, seconds, value);
+                    }
                     String ret = jedis.setex(key, seconds, value);
                     return ret;
+                } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                    failure = e;
+                    logger.debug("'setex' key rejected, key: {}, cause: {}", key, e.getMessage());
                 } catch (JedisException e) {
+                    failure = e;
                     logger.error("'setex' key fail, key: {}, seconds: {}, value: {}", key, seconds, value);
                     logger.error(e.getMessage(), e);
                 } finally {
+                    record(RedisCommand.SETEX, key, valueLength, jedis, startTime, failure);
                     close(jedis);
                 }
             } // 当seconds参数不合法(<= 0)时，后端会返回一个错误 ("JedisDataException: ERR invalid expire time in setex")，即操作失败
@@ -236,19 +1211,37 @@ public class JedisServiceImpl implements RedisService {
 
     // ---------------- List (列表) ----------------
     @Override
-    public int llen(String key) {
+    public int llen(final String key) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.LLEN, key, new ReadCommand<Long>() {
+
+                    @Override
+                    public Long read(Jedis node) {
+                        return node.llen(key);
+                    }
+                }, 0L).intValue();
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 int listLength = jedis.llen(key).intValue();
+                elementCount = listLength;
                 return listLength;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'llen' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'llen' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.LLEN, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -256,19 +1249,48 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int lpush(String key, String... values) {
+    public int lpush(final String key, final String... values) {
         if (enabled) {
             notEmptyKey(key);
+            long valueLength = valuesLength(values);
+            if (rejectWrite(RedisCommand.LPUSH, key, valueLength)) {
+                return 0;
+            }
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.LPUSH, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        if (nextWriteChunkEnd(values, 0) == values.length) {
+                            return node.lpush(key, values).intValue();
+                        }
+                        return lpushInChunks(node, key, values);
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
-                int pushedListLength = jedis.lpush(key, values).intValue();
+                int pushedListLength;
+                if (nextWriteChunkEnd(values, 0) == values.length) {
+                    pushedListLength = jedis.lpush(key, values).intValue();
+                } else {
+                    pushedListLength = lpushInChunks(jedis.getShard(key), key, values);
+                }
                 return pushedListLength;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'lpush' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'lpush' key fail, key: {}, values: {}", key, Arrays.toString(values));
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.LPUSH, key, valueLength, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -276,59 +1298,151 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public String rpop(String key) {
+    public String rpop(final String key) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.RPOP, key, new WriteCommand<String>() {
+
+                    @Override
+                    public String write(Jedis node) {
+                        return node.rpop(key);
+                    }
+                }, null);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 String value = jedis.rpop(key);
                 return value;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'rpop' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'rpop' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.RPOP, key, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<String> lrange(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.LRANGE, key, new ReadCommand<List<String>>() {
+
+                    @Override
+                    public List<String> read(Jedis node) {
+                        return node.lrange(key, start, stop);
+                    }
+                }, Collections.<String> emptyList());
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                List<String> list = jedis.lrange(key, start, stop);
+                elementCount = list.size();
+                return list;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'lrange' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
-                logger.error("'rpop' key fail, key: {}", key);
+                failure = e;
+                logger.error("'lrange' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.LRANGE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
-        return null;
+        return Collections.emptyList();
     }
 
     @Override
-    public List<String> lrange(String key, int start, int stop) {
+    public int lrange(final String key, final int start, final int stop, final ElementVisitor visitor) {
+        final int[] visitedNum = new int[1];
         if (enabled) {
             notEmptyKey(key);
+            notNullVisitor(visitor);
+            if (routedRead()) {
+                read(RedisCommand.LRANGE_STREAM, key, new ReadCommand<Integer>() {
+
+                    @Override
+                    public Integer read(Jedis node) {
+                        streamLrange(node, key, start, stop, streamChunkSize, visitor, visitedNum);
+                        return Integer.valueOf(visitedNum[0]);
+                    }
+                }, Integer.valueOf(0));
+                return visitedNum[0];
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
-                List<String> list = jedis.lrange(key, start, stop);
-                return list;
+                streamLrange(jedis.getShard(key), key, start, stop, streamChunkSize, visitor, visitedNum);
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'lrange' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
-                logger.error("'lrange' key fail, key: {}", key);
+                failure = e;
+                logger.error("'lrange' stream key fail, key: {}, start: {}, stop: {}, visited: {}", key, start, stop,
+                             visitedNum[0]);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.LRANGE_STREAM, key, -1, visitedNum[0], jedis, startTime, failure);
                 close(jedis);
             }
         }
-        return Collections.emptyList();
+        return visitedNum[0];
     }
 
     @Override
-    public String ltrim(String key, int start, int stop) {
+    public String ltrim(final String key, final int start, final int stop) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.LTRIM, key, new WriteCommand<String>() {
+
+                    @Override
+                    public String write(Jedis node) {
+                        return node.ltrim(key, start, stop);
+                    }
+                }, null);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 String ret = jedis.ltrim(key, start, stop);
                 return ret;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'ltrim' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'ltrim' key fail, key: {}, start: {}, stop: {}", key, start, stop);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.LTRIM, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -337,19 +1451,36 @@ public class JedisServiceImpl implements RedisService {
 
     // ---------------- Sorted Set (有序集合) ----------------
     @Override
-    public int zadd(String key, double score, String member) {
+    public int zadd(final String key, final double score, final String member) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.ZADD, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.zadd(key, score, member).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 int newElementNum = jedis.zadd(key, score, member).intValue();
                 return newElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zadd' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zadd' key fail, key: {}, score: {}, member: {}", key, score, member);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZADD, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -362,11 +1493,27 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int zaddAndRem(String key, double score, String member, int maxLength) {
+    public int zaddAndRem(final String key, final double score, final String member, int maxLength) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                int newElementNum = writeReplicated(RedisCommand.ZADD_AND_REM, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.zadd(key, score, member).intValue();
+                    }
+                }, 0);
+                if (newElementNum > 0) {
+                    this.asynShrinkZset(key, this.zcard(key), maxLength);
+                }
+                return newElementNum;
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 int newElementNum = 0;
                 int elementNum = 0;
@@ -390,11 +1537,16 @@ public class JedisServiceImpl implements RedisService {
                 }
 
                 return newElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zaddAndRem' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zaddAndRem' key fail, key: {}, score: {}, member: {}, maxLength: {}", key, score,
                              member, maxLength);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZADD_AND_REM, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -403,19 +1555,48 @@ public class JedisServiceImpl implements RedisService {
 
     // 批量增加
     @Override
-    public int zadd(String key, Map<String, Double> scoreMembers) {
+    public int zadd(final String key, final Map<String, Double> scoreMembers) {
         if (enabled) {
             notEmptyKey(key);
+            long valueLength = membersLength(scoreMembers);
+            if (rejectWrite(RedisCommand.ZADD, key, valueLength)) {
+                return 0;
+            }
+
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.ZADD, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        if (!exceedsWriteChunk(scoreMembers)) {
+                            return node.zadd(key, scoreMembers).intValue();
+                        }
+                        return zaddInChunks(node, key, scoreMembers);
+                    }
+                }, 0);
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
-                int newElementNum = jedis.zadd(key, scoreMembers).intValue();
+                int newElementNum;
+                if (!exceedsWriteChunk(scoreMembers)) {
+                    newElementNum = jedis.zadd(key, scoreMembers).intValue();
+                } else {
+                    newElementNum = zaddInChunks(jedis.getShard(key), key, scoreMembers);
+                }
                 return newElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zadd' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zadd' key fail, key: {}, scoreMembers: {}", key, scoreMembers);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZADD, key, valueLength, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -428,24 +1609,54 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int zaddAndRem(String key, Map<String, Double> scoreMembers, int maxLength) {
+    public int zaddAndRem(final String key, final Map<String, Double> scoreMembers, int maxLength) {
         if (enabled) {
             notEmptyKey(key);
+            long valueLength = membersLength(scoreMembers);
+            if (rejectWrite(RedisCommand.ZADD_AND_REM, key, valueLength)) {
+                return 0;
+            }
+
+            if (replicated(key)) {
+                int newElementNum = writeReplicated(RedisCommand.ZADD_AND_REM, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        if (!exceedsWriteChunk(scoreMembers)) {
+                            return node.zadd(key, scoreMembers).intValue();
+                        }
+                        return zaddInChunks(node, key, scoreMembers);
+                    }
+                }, 0);
+                if (newElementNum > 0) {
+                    this.asynShrinkZset(key, this.zcard(key), maxLength);
+                }
+                return newElementNum;
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 int newElementNum = 0;
                 int elementNum = 0;
 
                 jedis = shardedJedisPool.getResource();
                 ShardedJedisPipeline pipeline = jedis.pipelined();
-                Response<Long> zaddResponse = pipeline.zadd(key, scoreMembers);
+                // 超大的ZADD命令拆分为多块，与ZCARD一起在同一条管道中连续发送
+                List<Map<String, Double>> chunks = splitWriteChunks(scoreMembers, writeChunkSize, writeChunkBytes);
+                List<Response<Long>> zaddResponses = new ArrayList<Response<Long>>(chunks.size());
+                for (Map<String, Double> chunk : chunks) {
+                    zaddResponses.add(pipeline.zadd(key, chunk));
+                }
                 Response<Long> zcardResponse = pipeline.zcard(key);
                 pipeline.sync();
 
-                Long zaddRes = zaddResponse.get();
-                if (zaddRes != null) {
-                    newElementNum = zaddRes.intValue();
+                for (Response<Long> zaddResponse : zaddResponses) {
+                    Long zaddRes = zaddResponse.get();
+                    if (zaddRes != null) {
+                        newElementNum += zaddRes.intValue();
+                    }
                 }
                 Long zcardRes = zcardResponse.get();
                 if (zcardRes != null) {
@@ -456,11 +1667,16 @@ public class JedisServiceImpl implements RedisService {
                 }
 
                 return newElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zaddAndRem' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zaddAndRem' key fail, key: {}, scoreMembers: {}, maxLength: {}", key, scoreMembers,
                              maxLength);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZADD_AND_REM, key, valueLength, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -482,7 +1698,7 @@ public class JedisServiceImpl implements RedisService {
     /**
      * 通过 zremrangeByRank 命令进行"异步缩容"操作。
      */
-    private class ZremrangeByRankRunnable implements Runnable {
+    static class ZremrangeByRankRunnable implements Runnable {
 
         private final RedisService redisService;
         private final String       key;
@@ -518,19 +1734,37 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrange(String key, int start, int stop) {
+    public Set<String> zrange(final String key, final int start, final int stop) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrange(key, start, stop);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrange(key, start, stop);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrange' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrange' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZRANGE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -538,19 +1772,77 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrevrange(String key, int start, int stop) {
+    public int zrange(final String key, final int start, final int stop, final ElementVisitor visitor) {
+        final int[] visitedNum = new int[1];
+        if (enabled) {
+            notEmptyKey(key);
+            notNullVisitor(visitor);
+            if (routedRead()) {
+                read(RedisCommand.ZRANGE_STREAM, key, new ReadCommand<Integer>() {
+
+                    @Override
+                    public Integer read(Jedis node) {
+                        streamZrange(node, key, start, stop, streamChunkSize, visitor, visitedNum);
+                        return Integer.valueOf(visitedNum[0]);
+                    }
+                }, Integer.valueOf(0));
+                return visitedNum[0];
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            try {
+                jedis = shardedJedisPool.getResource();
+                streamZrange(jedis.getShard(key), key, start, stop, streamChunkSize, visitor, visitedNum);
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrange' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrange' stream key fail, key: {}, start: {}, stop: {}, visited: {}", key, start, stop,
+                             visitedNum[0]);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZRANGE_STREAM, key, -1, visitedNum[0], jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return visitedNum[0];
+    }
+
+    @Override
+    public Set<String> zrevrange(final String key, final int start, final int stop) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrevrange(key, start, stop);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrevrange(key, start, stop);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrange' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrevrange' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZREVRANGE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -558,19 +1850,37 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrangeByScore(String key, double min, double max) {
+    public Set<String> zrangeByScore(final String key, final double min, final double max) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGEBYSCORE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrangeByScore(key, min, max);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrangeByScore(key, min, max);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrangeByScore' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -578,19 +1888,38 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrangeByScore(String key, double min, double max, int offset, int count) {
+    public Set<String> zrangeByScore(final String key, final double min, final double max, final int offset,
+                                     final int count) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGEBYSCORE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrangeByScore(key, min, max, offset, count);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrangeByScore(key, min, max, offset, count);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrangeByScore' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -598,19 +1927,77 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrevrangeByScore(String key, double max, double min) {
+    public int zrangeByScore(final String key, final double min, final double max, final ElementVisitor visitor) {
+        final int[] visitedNum = new int[1];
+        if (enabled) {
+            notEmptyKey(key);
+            notNullVisitor(visitor);
+            if (routedRead()) {
+                read(RedisCommand.ZRANGEBYSCORE_STREAM, key, new ReadCommand<Integer>() {
+
+                    @Override
+                    public Integer read(Jedis node) {
+                        streamZrangeByScore(node, key, min, max, streamChunkSize, visitor, visitedNum);
+                        return Integer.valueOf(visitedNum[0]);
+                    }
+                }, Integer.valueOf(0));
+                return visitedNum[0];
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            try {
+                jedis = shardedJedisPool.getResource();
+                streamZrangeByScore(jedis.getShard(key), key, min, max, streamChunkSize, visitor, visitedNum);
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrangeByScore' stream key fail, key: {}, min: {}, max: {}, visited: {}", key, min, max,
+                             visitedNum[0]);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZRANGEBYSCORE_STREAM, key, -1, visitedNum[0], jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return visitedNum[0];
+    }
+
+    @Override
+    public Set<String> zrevrangeByScore(final String key, final double max, final double min) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGEBYSCORE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrevrangeByScore(key, max, min);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrevrangeByScore(key, max, min);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrevrangeByScore' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZREVRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -618,39 +2005,536 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public Set<String> zrevrangeByScore(String key, double max, double min, int offset, int count) {
+    public Set<String> zrevrangeByScore(final String key, final double max, final double min, final int offset,
+                                        final int count) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGEBYSCORE, key, new ReadCommand<Set<String>>() {
+
+                    @Override
+                    public Set<String> read(Jedis node) {
+                        return node.zrevrangeByScore(key, max, min, offset, count);
+                    }
+                }, Collections.<String> emptySet());
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 Set<String> zset = jedis.zrevrangeByScore(key, max, min, offset, count);
+                elementCount = zset.size();
                 return zset;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zrevrangeByScore' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZREVRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
         return Collections.emptySet();
     }
 
+    // ---------------- 游标分页 ----------------
+    @Override
+    public ScorePage zrangeByScorePage(String key, double min, double max, int count, String cursor) {
+        return scorePage(RedisCommand.ZRANGEBYSCORE_PAGE, key, min, max, count, cursor, false);
+    }
+
+    @Override
+    public ScorePage zrevrangeByScorePage(String key, double max, double min, int count, String cursor) {
+        return scorePage(RedisCommand.ZREVRANGEBYSCORE_PAGE, key, max, min, count, cursor, true);
+    }
+
+    /**
+     * 按"(score, member)排他边界"读取一页有序集成员。
+     * <p>
+     * 有游标时，从上一页最后一个成员的score值(包括等于)开始读取，并跳过score值相同、且排在上一页最后一个成员之前(包括它自己)的成员；
+     * 多读取一个成员用于判断是否还有下一页。
+     *
+     * @param start 第一页的起始分数(递增时为min，递减时为max)
+     * @param end 结束分数(递增时为max，递减时为min)
+     * @param reverse 是否按score值递减的次序
+     */
+    private ScorePage scorePage(RedisCommand command, final String key, final double start, final double end,
+                                final int count, String cursor, final boolean reverse) {
+        if (enabled) {
+            notEmptyKey(key);
+            AssertUtils.isTrue(count > 0, "'count' must be greater than 0");
+            final ScoreCursor last = (cursor == null) ? null : ScoreCursor.parse(cursor);
+            if (routedRead()) {
+                return read(command, key, new ReadCommand<ScorePage>() {
+
+                    @Override
+                    public ScorePage read(Jedis node) {
+                        return fetchScorePage(node, key, start, end, count, last, reverse, streamChunkSize);
+                    }
+                }, ScorePage.EMPTY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            try {
+                jedis = shardedJedisPool.getResource();
+                return fetchScorePage(jedis, key, start, end, count, last, reverse, streamChunkSize);
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'{}' key rejected, key: {}, cause: {}", command, key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'{}' key fail, key: {}, cursor: {}", command, key, cursor);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(command, key, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return ScorePage.EMPTY;
+    }
+
+    /**
+     * 读取一页分数区间内的成员及其分数。
+     *
+     * @param last 上一页的游标，第一页为{@code null}
+     * @param maxTieFetch 为跳过上一页末尾的同分成员，最多多读取的元素个数
+     */
+    static ScorePage fetchScorePage(JedisCommands jedis, String key, double start, double end, int count,
+                                    ScoreCursor last, boolean reverse, int maxTieFetch) {
+        double from = (last == null) ? start : last.getScore();
+        byte[] lastMember = (last == null) ? null : SafeEncoder.encode(last.getMember());
+        // 上一页末尾的同分成员数只用于估算读取数量，防止伪造的令牌导致一次读取过多元素
+        int fetch = count + 1 + ((last == null) ? 0 : Math.min(last.getTieCount(), maxTieFetch));
+        boolean passed = (last == null);
+        boolean hasMore = false;
+        List<String> members = new ArrayList<String>(count);
+        double[] scores = new double[count];
+        int size = 0;
+        fetching: for (int offset = 0;; offset += fetch) {
+            Set<Tuple> tuples = reverse ? jedis.zrevrangeByScoreWithScores(key, from, end, offset, fetch)
+                                        : jedis.zrangeByScoreWithScores(key, from, end, offset, fetch);
+            for (Tuple tuple : tuples) {
+                if (!passed) {
+                    if (tuple.getScore() == last.getScore()) {
+                        int cmp = compareMember(tuple.getBinaryElement(), lastMember);
+                        if (reverse ? cmp >= 0 : cmp <= 0) {
+                            continue; // 上一页已经返回过
+                        }
+                    }
+                    passed = true;
+                }
+                if (size == count) {
+                    hasMore = true;
+                    break fetching;
+                }
+                members.add(tuple.getElement());
+                scores[size++] = tuple.getScore();
+            }
+            if (tuples.size() < fetch) {
+                break; // 已到达分数区间尾部
+            }
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            double lastScore = scores[size - 1];
+            int tieCount = 0;
+            while (tieCount < size && scores[size - 1 - tieCount] == lastScore) {
+                tieCount++;
+            }
+            if (tieCount == size && last != null && last.getScore() == lastScore) {
+                tieCount += last.getTieCount();
+            }
+            nextCursor = new ScoreCursor(lastScore, members.get(size - 1), tieCount).toToken();
+        }
+        return new ScorePage(members, (size == count) ? scores : Arrays.copyOf(scores, size), nextCursor);
+    }
+
+    /**
+     * 按Redis的字典序(逐字节无符号比较)比较两个成员。
+     */
+    private static int compareMember(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    // ---------------- 数值(long)成员 ----------------
+    /** 空的long数组 */
+    static final long[] EMPTY_LONG_ARRAY = new long[0];
+
+    @Override
+    public int zadd(final String key, final double score, final long member) {
+        if (enabled) {
+            notEmptyKey(key);
+
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.ZADD, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.zadd(SafeEncoder.encode(key), score, NumberUtils.toByteArray(member)).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            try {
+                jedis = shardedJedisPool.getResource();
+                int newElementNum = jedis.getShard(key).zadd(SafeEncoder.encode(key), score,
+                                                             NumberUtils.toByteArray(member)).intValue();
+                return newElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zadd' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zadd' key fail, key: {}, score: {}, member: {}", key, score, member);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZADD, key, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long[] zrangeAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGE, key, new ReadCommand<long[]>() {
+
+                    @Override
+                    public long[] read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrange(key, start, stop);
+                        return toLongArray(client.getBinaryMultiBulkReply());
+                    }
+                }, EMPTY_LONG_ARRAY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrange(key, start, stop);
+                long[] members = toLongArray(client.getBinaryMultiBulkReply());
+                elementCount = members.length;
+                return members;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrangeAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZRANGE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrevrangeAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGE, key, new ReadCommand<long[]>() {
+
+                    @Override
+                    public long[] read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrevrange(key, start, stop);
+                        return toLongArray(client.getBinaryMultiBulkReply());
+                    }
+                }, EMPTY_LONG_ARRAY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrevrange(key, start, stop);
+                long[] members = toLongArray(client.getBinaryMultiBulkReply());
+                elementCount = members.length;
+                return members;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrangeAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrevrangeAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZREVRANGE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrangeByScoreAsLong(final String key, final double min, final double max, final int offset,
+                                      final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGEBYSCORE, key, new ReadCommand<long[]>() {
+
+                    @Override
+                    public long[] read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrangeByScore(key, min, max, offset, count);
+                        return toLongArray(client.getBinaryMultiBulkReply());
+                    }
+                }, EMPTY_LONG_ARRAY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrangeByScore(key, min, max, offset, count);
+                long[] members = toLongArray(client.getBinaryMultiBulkReply());
+                elementCount = members.length;
+                return members;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeByScoreAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrangeByScoreAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public long[] zrevrangeByScoreAsLong(final String key, final double max, final double min, final int offset,
+                                         final int count) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGEBYSCORE, key, new ReadCommand<long[]>() {
+
+                    @Override
+                    public long[] read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrevrangeByScore(key, max, min, offset, count);
+                        return toLongArray(client.getBinaryMultiBulkReply());
+                    }
+                }, EMPTY_LONG_ARRAY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrevrangeByScore(key, max, min, offset, count);
+                long[] members = toLongArray(client.getBinaryMultiBulkReply());
+                elementCount = members.length;
+                return members;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrangeByScoreAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrevrangeByScoreAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZREVRANGEBYSCORE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return EMPTY_LONG_ARRAY;
+    }
+
+    @Override
+    public LongScoredMembers zrangeWithScoresAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZRANGE, key, new ReadCommand<LongScoredMembers>() {
+
+                    @Override
+                    public LongScoredMembers read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrangeWithScores(key, start, stop);
+                        return toLongScoredMembers(client.getBinaryMultiBulkReply());
+                    }
+                }, LongScoredMembers.EMPTY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrangeWithScores(key, start, stop);
+                LongScoredMembers scoredMembers = toLongScoredMembers(client.getBinaryMultiBulkReply());
+                elementCount = scoredMembers.size();
+                return scoredMembers;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrangeWithScoresAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrangeWithScoresAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZRANGE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return LongScoredMembers.EMPTY;
+    }
+
+    @Override
+    public LongScoredMembers zrevrangeWithScoresAsLong(final String key, final int start, final int stop) {
+        if (enabled) {
+            notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZREVRANGE, key, new ReadCommand<LongScoredMembers>() {
+
+                    @Override
+                    public LongScoredMembers read(Jedis node) {
+                        Client client = node.getClient();
+                        client.zrevrangeWithScores(key, start, stop);
+                        return toLongScoredMembers(client.getBinaryMultiBulkReply());
+                    }
+                }, LongScoredMembers.EMPTY);
+            }
+
+            long startTime = System.nanoTime();
+            ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
+            try {
+                jedis = shardedJedisPool.getResource();
+                Client client = jedis.getShard(key).getClient();
+                client.zrevrangeWithScores(key, start, stop);
+                LongScoredMembers scoredMembers = toLongScoredMembers(client.getBinaryMultiBulkReply());
+                elementCount = scoredMembers.size();
+                return scoredMembers;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zrevrangeWithScoresAsLong' key rejected, key: {}, cause: {}", key, e.getMessage());
+            } catch (JedisException e) {
+                failure = e;
+                logger.error("'zrevrangeWithScoresAsLong' key fail, key: {}", key);
+                logger.error(e.getMessage(), e);
+            } finally {
+                record(RedisCommand.ZREVRANGE, key, -1, elementCount, jedis, startTime, failure);
+                close(jedis);
+            }
+        }
+        return LongScoredMembers.EMPTY;
+    }
+
+    /**
+     * 将多条批量回复(成员列表)直接解析为long数组。
+     */
+    static long[] toLongArray(List<byte[]> replies) {
+        long[] members = new long[replies.size()];
+        int i = 0;
+        for (byte[] reply : replies) {
+            members[i++] = parseLongMember(reply);
+        }
+        return members;
+    }
+
+    /**
+     * 将多条批量回复(成员与分数交替出现的列表)直接解析为"数值成员及其分数"。
+     */
+    static LongScoredMembers toLongScoredMembers(List<byte[]> replies) {
+        int size = replies.size() / 2;
+        long[] members = new long[size];
+        double[] scores = new double[size];
+        Iterator<byte[]> iterator = replies.iterator();
+        for (int i = 0; i < size; i++) {
+            members[i] = parseLongMember(iterator.next());
+            scores[i] = NumberUtils.parseDouble(iterator.next());
+        }
+        return new LongScoredMembers(members, scores);
+    }
+
+    private static long parseLongMember(byte[] reply) {
+        try {
+            return NumberUtils.parseLong(reply);
+        } catch (NumberFormatException nfe) {
+            throw new JedisDataException("Sorted Set member is not a long value: " + nfe.getMessage(), nfe);
+        }
+    }
+
     @Override
-    public int zcard(String key) {
+    public int zcard(final String key) {
         if (enabled) {
             notEmptyKey(key);
+            if (routedRead()) {
+                return read(RedisCommand.ZCARD, key, new ReadCommand<Long>() {
+
+                    @Override
+                    public Long read(Jedis node) {
+                        return node.zcard(key);
+                    }
+                }, 0L).intValue();
+            }
 
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
+            int elementCount = -1;
             try {
                 jedis = shardedJedisPool.getResource();
                 int zsetElementNum = jedis.zcard(key).intValue();
+                elementCount = zsetElementNum;
                 return zsetElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zcard' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zcard' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZCARD, key, -1, elementCount, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -658,19 +2542,36 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int zremrangeByScore(String key, double min, double max) {
+    public int zremrangeByScore(final String key, final double min, final double max) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.ZREMRANGEBYSCORE, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.zremrangeByScore(key, min, max).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 int removedElementNum = jedis.zremrangeByScore(key, min, max).intValue();
                 return removedElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zremrangeByScore' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zremrangeByScore' key fail, key: {}, min: {}, max: {}", key, min, max);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZREMRANGEBYSCORE, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
@@ -678,39 +2579,69 @@ public class JedisServiceImpl implements RedisService {
     }
 
     @Override
-    public int zremrangeByRank(String key, int start, int stop) {
+    public int zremrangeByRank(final String key, final int start, final int stop) {
         if (enabled) {
             notEmptyKey(key);
 
+            if (replicated(key)) {
+                return writeReplicated(RedisCommand.ZREMRANGEBYRANK, key, new WriteCommand<Integer>() {
+
+                    @Override
+                    public Integer write(Jedis node) {
+                        return node.zremrangeByRank(key, start, stop).intValue();
+                    }
+                }, 0);
+            }
+
+            long startTime = System.nanoTime();
             ShardedJedis jedis = null;
+            JedisException failure = null;
             try {
                 jedis = shardedJedisPool.getResource();
                 int removedElementNum = jedis.zremrangeByRank(key, start, stop).intValue();
                 return removedElementNum;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'zremrangeByRank' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'zremrangeByRank' key fail, key: {}, start: {}, stop: {}", key, start, stop);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.ZREMRANGEBYRANK, key, jedis, startTime, failure);
                 close(jedis);
             }
         }
         return 0;
     }
 
+    // ---------------- Batch (批量操作) ----------------
+    @Override
+    public RedisBatch batch() {
+        return new JedisBatchImpl(shardedJedisPool, executorService, writeChunkSize, writeChunkBytes, enabled);
+    }
+
     @Override
     public String info(String key, String section) {
         if (enabled) {
             notEmptyKey(key);
 
+            long startTime = System.nanoTime();
             ShardedJedis shardedJedis = null;
+            JedisException failure = null;
             try {
                 shardedJedis = shardedJedisPool.getResource();
                 String info = shardedJedis.getShard(key).info(section);
                 return info;
+            } catch (ShardRejectedException e) { // 分片节点已熔断或过载，直接返回默认值
+                failure = e;
+                logger.debug("'info' key rejected, key: {}, cause: {}", key, e.getMessage());
             } catch (JedisException e) {
+                failure = e;
                 logger.error("'info' key fail, key: {}", key);
                 logger.error(e.getMessage(), e);
             } finally {
+                record(RedisCommand.INFO, key, shardedJedis, startTime, failure);
                 close(shardedJedis);
             }
         }
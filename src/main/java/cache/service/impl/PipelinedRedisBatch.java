@@ -0,0 +1,630 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service.impl;
+
+import static cache.service.impl.JedisServiceImpl.membersLength;
+import static cache.service.impl.JedisServiceImpl.nextWriteChunkEnd;
+import static cache.service.impl.JedisServiceImpl.splitWriteChunks;
+import static cache.service.impl.JedisServiceImpl.valuesLength;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.jedis.ReplicatedKeys;
+import redis.client.monitor.BigKeyDetector;
+import redis.client.monitor.RedisCommand;
+import redis.client.util.AssertUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import cache.service.RedisBatch;
+
+/**
+ * 以管道方式执行的Redis批量操作，继承自{@link RedisBatch}。
+ * <p>
+ * 每个命令排队为一个{@link BatchCommand}，它知道如何把自己加入到{@link Pipeline}中，同时也是该命令结果的{@link Future}；
+ * 子类决定如何把命令分配到节点的管道中({@link #executePipelined()})。
+ * <p>
+ * 与{@link cache.service.RedisService}一致，写入的字节数超过最大值的写命令不会发送；
+ * 超大的LPUSH、ZADD命令拆分为多块，依次排队到同一个键所在节点的管道中。
+ *
+ * @author huagang.li 2015年2月2日 下午3:40:18
+ * @see JedisBatchImpl
+ * @see ClusterRedisBatch
+ */
+abstract class PipelinedRedisBatch implements RedisBatch {
+
+    private static final Logger            logger                    = LoggerFactory
+                                                                         .getLogger(PipelinedRedisBatch.class);
+
+    /** 可以安全重复执行的写命令(重复执行的结果与执行一次相同) */
+    private static final Set<RedisCommand> IDEMPOTENT_WRITE_COMMANDS = EnumSet.of(RedisCommand.EXPIRE,
+                                                                                  RedisCommand.DEL,
+                                                                                  RedisCommand.SET,
+                                                                                  RedisCommand.SETEX,
+                                                                                  RedisCommand.ZADD,
+                                                                                  RedisCommand.ZREMRANGEBYSCORE);
+
+    /** 大键检测器 (拒绝超大的写命令) */
+    private final BigKeyDetector           bigKeyDetector;
+
+    /** 多元素写命令每块的最大元素个数 */
+    private final int                      writeChunkSize;
+
+    /** 多元素写命令每块的最大字节数 */
+    private final int                      writeChunkBytes;
+
+    /** Redis服务启用标识 */
+    private final boolean                  enabled;
+
+    /** 已排队的命令列表 */
+    final List<BatchCommand<?>>            commands                  = new ArrayList<BatchCommand<?>>();
+
+    /** "批量操作执行完成"信号 */
+    private final CountDownLatch           done                      = new CountDownLatch(1);
+
+    /** 是否已执行 */
+    private boolean                        executed;
+
+    PipelinedRedisBatch(BigKeyDetector bigKeyDetector, int writeChunkSize, int writeChunkBytes, boolean enabled){
+        this.bigKeyDetector = bigKeyDetector;
+        this.writeChunkSize = writeChunkSize;
+        this.writeChunkBytes = writeChunkBytes;
+        this.enabled = enabled;
+    }
+
+    private <T> Future<T> add(BatchCommand<T> command) {
+        this.check(command);
+
+        commands.add(command);
+        return command;
+    }
+
+    /**
+     * 排队一个写命令；当写入的字节数超过配置的最大值时，该命令不会加入到管道中，执行后返回默认值。
+     *
+     * @see BigKeyDetector#isWriteRejected(RedisCommand, String, long)
+     */
+    private <T> Future<T> add(BatchCommand<T> command, long bytes) {
+        this.check(command);
+        if (bigKeyDetector.isWriteRejected(command.redisCommand(), command.key, bytes)) {
+            return command;
+        }
+
+        commands.add(command);
+        return command;
+    }
+
+    /**
+     * 排队拆分为多块的写命令，各块依次加入到同一个键所在节点的管道中。
+     *
+     * @param sum 结果是否为各块结果的总和，否则为最后一块的结果
+     */
+    private Future<Integer> addChunks(List<BatchCommand<Integer>> chunkCommands, long bytes, boolean sum) {
+        BatchCommand<Integer> first = chunkCommands.get(0);
+        this.check(first);
+        ChunkedFuture future = new ChunkedFuture(chunkCommands, sum);
+        if (bigKeyDetector.isWriteRejected(first.redisCommand(), first.key, bytes)) {
+            return future;
+        }
+
+        commands.addAll(chunkCommands);
+        return future;
+    }
+
+    private void check(BatchCommand<?> command) {
+        if (executed) {
+            throw new IllegalStateException("Redis batch has already been executed");
+        }
+        AssertUtils.notEmpty(command.key, "'key' must not be null and empty");
+    }
+
+    // ---------------- Key (键) ----------------
+    @Override
+    public Future<Integer> expire(final String key, final int seconds) {
+        return this.add(new IntegerCommand("expire", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.expire(key, seconds);
+            }
+        });
+    }
+
+    @Override
+    public Future<Long> ttl(final String key) {
+        return this.add(new BatchCommand<Long>("ttl", key, Long.valueOf(-2L)) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.ttl(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> del(final String key) {
+        return this.add(new IntegerCommand("del", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.del(key);
+            }
+        });
+    }
+
+    // ---------------- String (字符串) ----------------
+    @Override
+    public Future<String> get(final String key) {
+        return this.add(new BatchCommand<String>("get", key, null) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.get(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> set(final String key, final String value) {
+        return this.add(new BatchCommand<String>("set", key, null) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.set(key, value);
+            }
+        }, StringUtils.utf8Length(value));
+    }
+
+    @Override
+    public Future<String> setex(final String key, final int seconds, final String value) {
+        return this.add(new BatchCommand<String>("setex", key, null) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                if (seconds > 0) {
+                    return pipeline.setex(key, seconds, value);
+                }
+                return null; // 与RedisService.setex(...)一致，seconds参数不合法(<= 0)时不发送命令
+            }
+        }, StringUtils.utf8Length(value));
+    }
+
+    // ---------------- List (列表) ----------------
+    @Override
+    public Future<Integer> llen(final String key) {
+        return this.add(new IntegerCommand("llen", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.llen(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> lpush(final String key, final String... values) {
+        long bytes = valuesLength(values);
+        if (nextWriteChunkEnd(values, 0, writeChunkSize, writeChunkBytes) == values.length) {
+            return this.add(new IntegerCommand("lpush", key) {
+
+                @Override
+                Response<?> queue(Pipeline pipeline) {
+                    return pipeline.lpush(key, values);
+                }
+            }, bytes);
+        }
+
+        // 超大的LPUSH命令拆分为多块，返回最后一块执行后的列表长度
+        List<BatchCommand<Integer>> chunkCommands = new ArrayList<BatchCommand<Integer>>();
+        for (int from = 0; from < values.length;) {
+            int to = nextWriteChunkEnd(values, from, writeChunkSize, writeChunkBytes);
+            final String[] chunk = Arrays.copyOfRange(values, from, to);
+            chunkCommands.add(new IntegerCommand("lpush", key) {
+
+                @Override
+                Response<?> queue(Pipeline pipeline) {
+                    return pipeline.lpush(key, chunk);
+                }
+            });
+            from = to;
+        }
+        return this.addChunks(chunkCommands, bytes, false);
+    }
+
+    @Override
+    public Future<String> rpop(final String key) {
+        return this.add(new BatchCommand<String>("rpop", key, null) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.rpop(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<List<String>> lrange(final String key, final int start, final int stop) {
+        return this.add(new BatchCommand<List<String>>("lrange", key, Collections.<String> emptyList()) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.lrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> ltrim(final String key, final int start, final int stop) {
+        return this.add(new BatchCommand<String>("ltrim", key, null) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.ltrim(key, start, stop);
+            }
+        });
+    }
+
+    // ---------------- Sorted Set (有序集合) ----------------
+    @Override
+    public Future<Integer> zadd(final String key, final double score, final String member) {
+        return this.add(new IntegerCommand("zadd", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zadd(key, score, member);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zadd(final String key, final Map<String, Double> scoreMembers) {
+        long bytes = membersLength(scoreMembers);
+        // 超大的ZADD命令拆分为多块，返回各块新增成员数量的总和
+        List<BatchCommand<Integer>> chunkCommands = new ArrayList<BatchCommand<Integer>>();
+        for (final Map<String, Double> chunk : splitWriteChunks(scoreMembers, writeChunkSize, writeChunkBytes)) {
+            chunkCommands.add(new IntegerCommand("zadd", key) {
+
+                @Override
+                Response<?> queue(Pipeline pipeline) {
+                    return pipeline.zadd(key, chunk);
+                }
+            });
+        }
+        if (chunkCommands.size() == 1) {
+            return this.add(chunkCommands.get(0), bytes);
+        }
+        return this.addChunks(chunkCommands, bytes, true);
+    }
+
+    @Override
+    public Future<Set<String>> zrange(final String key, final int start, final int stop) {
+        return this.add(new BatchCommand<Set<String>>("zrange", key, Collections.<String> emptySet()) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrevrange(final String key, final int start, final int stop) {
+        return this.add(new BatchCommand<Set<String>>("zrevrange", key, Collections.<String> emptySet()) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zrevrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrangeByScore(final String key, final double min, final double max, final int offset,
+                                             final int count) {
+        return this.add(new BatchCommand<Set<String>>("zrangeByScore", key, Collections.<String> emptySet()) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zrangeByScore(key, min, max, offset, count);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrevrangeByScore(final String key, final double max, final double min,
+                                                final int offset, final int count) {
+        return this.add(new BatchCommand<Set<String>>("zrevrangeByScore", key, Collections.<String> emptySet()) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zrevrangeByScore(key, max, min, offset, count);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zcard(final String key) {
+        return this.add(new IntegerCommand("zcard", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zcard(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zremrangeByScore(final String key, final double min, final double max) {
+        return this.add(new IntegerCommand("zremrangeByScore", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zremrangeByScore(key, min, max);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zremrangeByRank(final String key, final int start, final int stop) {
+        return this.add(new IntegerCommand("zremrangeByRank", key) {
+
+            @Override
+            Response<?> queue(Pipeline pipeline) {
+                return pipeline.zremrangeByRank(key, start, stop);
+            }
+        });
+    }
+
+    // ---------------- 执行 ----------------
+    @Override
+    public int size() {
+        return commands.size();
+    }
+
+    @Override
+    public void execute() {
+        if (executed) {
+            throw new IllegalStateException("Redis batch has already been executed");
+        }
+        executed = true;
+
+        try {
+            if (enabled && !commands.isEmpty()) {
+                this.executePipelined();
+            }
+        } finally {
+            done.countDown(); // 唤醒所有等待结果的线程，未执行成功的命令返回默认值
+        }
+    }
+
+    /**
+     * 以管道方式执行所有已排队的命令，并调用每个命令的{@link BatchCommand#complete()}设置结果。
+     * <p>
+     * 命令失败时只记录日志，该命令返回默认值。
+     */
+    abstract void executePipelined();
+
+    /**
+     * 等待所有管道执行完成，期间不响应中断(结束后恢复中断状态)。
+     */
+    static void awaitUninterruptibly(List<Future<?>> pendings) {
+        boolean interrupted = false;
+        for (Future<?> pending : pendings) {
+            while (true) {
+                try {
+                    pending.get();
+                    break;
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                } catch (ExecutionException ee) {
+                    logger.error("Pipeline execute fail", ee.getCause());
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 批量操作中的一个命令，同时也是该命令结果的{@link Future}。
+     */
+    abstract class BatchCommand<T> implements Future<T> {
+
+        final String         name;
+        final String         key;
+        private volatile T   value;
+        Response<?>          response;
+
+        BatchCommand(String name, String key, T defaultValue){
+            this.name = name;
+            this.key = key;
+            this.value = defaultValue;
+        }
+
+        /**
+         * 将命令加入到管道中。
+         *
+         * @return 命令的请求回复；当命令不需要发送时，返回{@code null}
+         */
+        abstract Response<?> queue(Pipeline pipeline);
+
+        /**
+         * 返回是否是写命令，见{@link ReplicatedKeys#isWrite(RedisCommand)}。
+         */
+        boolean isWrite() {
+            return ReplicatedKeys.isWrite(this.redisCommand());
+        }
+
+        /**
+         * 返回命令是否可以安全地重复执行：读命令和幂等的写命令(如SET、DEL)。
+         * <p>
+         * LPUSH、RPOP、LTRIM这类命令重复执行会重复插入或者多删除元素。
+         */
+        boolean isIdempotent() {
+            RedisCommand command = this.redisCommand();
+            return !ReplicatedKeys.isWrite(command) || IDEMPOTENT_WRITE_COMMANDS.contains(command);
+        }
+
+        RedisCommand redisCommand() {
+            return RedisCommand.valueOf(name.toUpperCase(Locale.ENGLISH));
+        }
+
+        /**
+         * 转换请求回复。
+         */
+        @SuppressWarnings("unchecked")
+        T convert(Object reply) {
+            return (T) reply;
+        }
+
+        void complete() {
+            if (null == response) {
+                return;
+            }
+            try {
+                Object reply = response.get();
+                if (reply != null) {
+                    value = this.convert(reply);
+                }
+            } catch (JedisException e) {
+                logger.error("'{}' key fail in batch, key: {}", name, key);
+                logger.error(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0L;
+        }
+
+        @Override
+        public T get() throws InterruptedException {
+            done.await();
+            return value;
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException("Redis batch is not executed yet");
+            }
+            return value;
+        }
+
+    }
+
+    /**
+     * 拆分为多块的写命令的结果。
+     */
+    private class ChunkedFuture implements Future<Integer> {
+
+        private final List<BatchCommand<Integer>> chunkCommands;
+        /** 结果是否为各块结果的总和，否则为最后一块的结果 */
+        private final boolean                     sum;
+
+        ChunkedFuture(List<BatchCommand<Integer>> chunkCommands, boolean sum){
+            this.chunkCommands = chunkCommands;
+            this.sum = sum;
+        }
+
+        private Integer value() {
+            if (!sum) {
+                return chunkCommands.get(chunkCommands.size() - 1).value;
+            }
+            int total = 0;
+            for (BatchCommand<Integer> command : chunkCommands) {
+                total += command.value.intValue();
+            }
+            return Integer.valueOf(total);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0L;
+        }
+
+        @Override
+        public Integer get() throws InterruptedException {
+            done.await();
+            return this.value();
+        }
+
+        @Override
+        public Integer get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException("Redis batch is not executed yet");
+            }
+            return this.value();
+        }
+
+    }
+
+    /**
+     * 返回整数回复的命令，默认值为0。
+     */
+    private abstract class IntegerCommand extends BatchCommand<Integer> {
+
+        IntegerCommand(String name, String key){
+            super(name, key, Integer.valueOf(0));
+        }
+
+        @Override
+        Integer convert(Object reply) {
+            return Integer.valueOf(((Long) reply).intValue());
+        }
+
+    }
+
+}
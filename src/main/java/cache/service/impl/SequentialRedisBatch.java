@@ -0,0 +1,310 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cache.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import redis.client.util.AssertUtils;
+import cache.service.RedisBatch;
+import cache.service.RedisService;
+
+/**
+ * 依次调用{@link RedisService}执行每个命令的Redis批量操作，继承自{@link RedisBatch}。
+ * <p>
+ * 适用于任何{@link RedisService}实现(不需要支持管道)，整批命令的延迟是各命令延迟的总和；每个命令的失败处理与{@link RedisService}完全相同。<br>
+ * Redis Cluster使用按节点执行管道的{@link ClusterRedisBatch}。
+ *
+ * @author huagang.li 2015年2月26日 上午10:42:17
+ */
+class SequentialRedisBatch implements RedisBatch {
+
+    /** Redis服务 */
+    private final RedisService        redisService;
+
+    /** 已排队的命令列表 */
+    private final List<FutureTask<?>> commands = new ArrayList<FutureTask<?>>();
+
+    /** 是否已执行 */
+    private boolean                   executed;
+
+    SequentialRedisBatch(RedisService redisService){
+        this.redisService = redisService;
+    }
+
+    private <T> Future<T> add(String key, Callable<T> command) {
+        if (executed) {
+            throw new IllegalStateException("Redis batch has already been executed");
+        }
+        AssertUtils.notEmpty(key, "'key' must not be null and empty");
+
+        FutureTask<T> task = new FutureTask<T>(command);
+        commands.add(task);
+        return task;
+    }
+
+    // ---------------- Key (键) ----------------
+    @Override
+    public Future<Integer> expire(final String key, final int seconds) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.expire(key, seconds);
+            }
+        });
+    }
+
+    @Override
+    public Future<Long> ttl(final String key) {
+        return this.add(key, new Callable<Long>() {
+
+            @Override
+            public Long call() {
+                return redisService.ttl(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> del(final String key) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.del(key);
+            }
+        });
+    }
+
+    // ---------------- String (字符串) ----------------
+    @Override
+    public Future<String> get(final String key) {
+        return this.add(key, new Callable<String>() {
+
+            @Override
+            public String call() {
+                return redisService.get(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> set(final String key, final String value) {
+        return this.add(key, new Callable<String>() {
+
+            @Override
+            public String call() {
+                return redisService.set(key, value);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> setex(final String key, final int seconds, final String value) {
+        return this.add(key, new Callable<String>() {
+
+            @Override
+            public String call() {
+                return redisService.setex(key, seconds, value);
+            }
+        });
+    }
+
+    // ---------------- List (列表) ----------------
+    @Override
+    public Future<Integer> llen(final String key) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.llen(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> lpush(final String key, final String... values) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.lpush(key, values);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> rpop(final String key) {
+        return this.add(key, new Callable<String>() {
+
+            @Override
+            public String call() {
+                return redisService.rpop(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<List<String>> lrange(final String key, final int start, final int stop) {
+        return this.add(key, new Callable<List<String>>() {
+
+            @Override
+            public List<String> call() {
+                return redisService.lrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<String> ltrim(final String key, final int start, final int stop) {
+        return this.add(key, new Callable<String>() {
+
+            @Override
+            public String call() {
+                return redisService.ltrim(key, start, stop);
+            }
+        });
+    }
+
+    // ---------------- Sorted Set (有序集合) ----------------
+    @Override
+    public Future<Integer> zadd(final String key, final double score, final String member) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.zadd(key, score, member);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zadd(final String key, final Map<String, Double> scoreMembers) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.zadd(key, scoreMembers);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrange(final String key, final int start, final int stop) {
+        return this.add(key, new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return redisService.zrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrevrange(final String key, final int start, final int stop) {
+        return this.add(key, new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return redisService.zrevrange(key, start, stop);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrangeByScore(final String key, final double min, final double max, final int offset,
+                                             final int count) {
+        return this.add(key, new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return redisService.zrangeByScore(key, min, max, offset, count);
+            }
+        });
+    }
+
+    @Override
+    public Future<Set<String>> zrevrangeByScore(final String key, final double max, final double min,
+                                                final int offset, final int count) {
+        return this.add(key, new Callable<Set<String>>() {
+
+            @Override
+            public Set<String> call() {
+                return redisService.zrevrangeByScore(key, max, min, offset, count);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zcard(final String key) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.zcard(key);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zremrangeByScore(final String key, final double min, final double max) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.zremrangeByScore(key, min, max);
+            }
+        });
+    }
+
+    @Override
+    public Future<Integer> zremrangeByRank(final String key, final int start, final int stop) {
+        return this.add(key, new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return redisService.zremrangeByRank(key, start, stop);
+            }
+        });
+    }
+
+    // ---------------- 执行 ----------------
+    @Override
+    public int size() {
+        return commands.size();
+    }
+
+    @Override
+    public void execute() {
+        if (executed) {
+            throw new IllegalStateException("Redis batch has already been executed");
+        }
+        executed = true;
+
+        for (FutureTask<?> command : commands) {
+            command.run();
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import redis.client.monitor.RedisCommand;
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * 有界负载(Consistent Hashing with Bounded Loads)策略：每个分片节点的负载上限是所有分片节点平均负载的{@code loadFactor}倍，
+ * 超过上限的分片节点上的一部分键"溢出"到哈希环上的下一个候选分片节点，用于缓解键倾斜导致的热点分片节点。
+ * <p>
+ * 负载是每个分片节点在一个统计窗口(默认1秒)内收到的请求数(按键本来所在的分片节点统计，溢出的请求也算在原来的分片节点上)，
+ * 窗口之间做指数平滑。每个分片节点有一个溢出等级(0 ~ {@value #SPILL_LEVELS} - 1)，表示溢出的键所占的比例(等级/{@value #SPILL_LEVELS})：
+ * <ul>
+ * <li>等级按需要溢出的比例{@code 1 - 上限/负载}向上取整，升高时立刻生效，降低时每个窗口最多降低一级，避免来回抖动；
+ * <li>键是否溢出只取决于键标记的哈希值和溢出等级：等级不变时同一个键总是溢出到同一个分片节点，等级升高时原来溢出的键仍然溢出，
+ * 所以缓存命中率不会因为溢出而大幅下降。
+ * </ul>
+ * 溢出的目标是按"键标记#1"、"键标记#2"...依次探测哈希环得到的第一个没有溢出的其它分片节点。
+ * <p>
+ * <font color="red">只有{@link #isSpillable(RedisCommand) 可以溢出的缓存命令}(GET、SETEX)才会溢出：</font>
+ * GET先读取溢出的目标节点，没有读到数据时再读取原来的分片节点；SETEX写入溢出的目标节点；DEL同时删除两个分片节点上的键。
+ * 溢出结束后，原来的分片节点上可能还有旧的值，所以只适合可以容忍最多一个过期时间(TTL)内读到旧值的缓存数据。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月28日 上午10:16:48
+ */
+public class BoundedLoadPolicy {
+
+    /** 默认的负载上限系数 */
+    public static final double                             DEFAULT_LOAD_FACTOR   = 1.25D;
+
+    /** 默认的统计窗口(毫秒) */
+    public static final long                               DEFAULT_WINDOW_MILLIS = 1000L;
+
+    /** 默认每个窗口计算溢出等级所需的最少请求数 */
+    public static final long                               DEFAULT_MIN_REQUESTS  = 100L;
+
+    /** 溢出等级数，每一级表示 1/{@value #SPILL_LEVELS} 的键溢出 */
+    public static final int                                SPILL_LEVELS          = 16;
+
+    /** 负载的指数平滑系数 */
+    private static final double                            SMOOTHING_FACTOR      = 0.5D;
+
+    private volatile boolean                               enabled;
+
+    private volatile double                                loadFactor            = DEFAULT_LOAD_FACTOR;
+
+    private volatile long                                  windowNanos           = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+
+    private volatile long                                  minRequests           = DEFAULT_MIN_REQUESTS;
+
+    /** 分片节点信息 -> 负载 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, ShardLoad> loads                 = new ConcurrentHashMap<JedisShardInfo, ShardLoad>();
+
+    /** 当前窗口的开始时间 */
+    private final AtomicLong                               windowStartTime       = new AtomicLong(System.nanoTime());
+
+    /** 是否正在计算溢出等级 */
+    private final AtomicBoolean                            updating              = new AtomicBoolean();
+
+    /** 已溢出的请求数 */
+    private final AtomicLong                               spilledCount          = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用有界负载。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置负载上限系数，即分片节点的负载上限是平均负载的多少倍。默认值是 {@value #DEFAULT_LOAD_FACTOR}。
+     */
+    public void setLoadFactor(double loadFactor) {
+        AssertUtils.isTrue(loadFactor > 1.0D, "'loadFactor' must be greater than 1 : " + loadFactor);
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * 设置统计窗口(毫秒)。默认值是 {@value #DEFAULT_WINDOW_MILLIS}毫秒。
+     */
+    public void setWindowMillis(long windowMillis) {
+        AssertUtils.isTrue(windowMillis > 0, "'windowMillis' must be greater than 0 : " + windowMillis);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * 设置每个窗口计算溢出等级所需的最少请求数(所有分片节点之和)，请求数不足时溢出等级只降不升。默认值是 {@value #DEFAULT_MIN_REQUESTS}。
+     */
+    public void setMinRequests(long minRequests) {
+        AssertUtils.isTrue(minRequests > 0, "'minRequests' must be greater than 0 : " + minRequests);
+        this.minRequests = minRequests;
+    }
+
+    /**
+     * 返回命令是否可以溢出到其它分片节点。
+     */
+    public static boolean isSpillable(RedisCommand command) {
+        return command == RedisCommand.GET || command == RedisCommand.SETEX;
+    }
+
+    /**
+     * 记录一个路由到分片节点的请求。(溢出的请求记录在原来的分片节点上)
+     *
+     * @param shard 键本来所在的分片节点
+     */
+    public void onRequest(JedisShardInfo shard) {
+        this.getLoad(shard).requests.incrementAndGet();
+
+        long startTime = windowStartTime.get();
+        long now = System.nanoTime();
+        if (now - startTime >= windowNanos && updating.compareAndSet(false, true)) {
+            try {
+                if (windowStartTime.compareAndSet(startTime, now)) {
+                    this.updateSpillLevels();
+                }
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private ShardLoad getLoad(JedisShardInfo shard) {
+        ShardLoad load = loads.get(shard);
+        if (load == null) {
+            ShardLoad newLoad = new ShardLoad();
+            load = loads.putIfAbsent(shard, newLoad);
+            if (load == null) {
+                load = newLoad;
+            }
+        }
+        return load;
+    }
+
+    /**
+     * 窗口结束时，重新计算各分片节点的溢出等级。
+     */
+    void updateSpillLevels() {
+        long totalRequests = 0L;
+        double totalLoad = 0.0D;
+        for (ShardLoad load : loads.values()) {
+            long requests = load.requests.getAndSet(0L);
+            totalRequests += requests;
+            load.smoothedLoad = SMOOTHING_FACTOR * requests + (1.0D - SMOOTHING_FACTOR) * load.smoothedLoad;
+            totalLoad += load.smoothedLoad;
+        }
+        if (loads.isEmpty()) {
+            return;
+        }
+
+        double bound = loadFactor * totalLoad / loads.size();
+        for (ShardLoad load : loads.values()) {
+            int targetLevel = 0;
+            if (totalRequests >= minRequests && load.smoothedLoad > bound) {
+                targetLevel = (int) Math.ceil(SPILL_LEVELS * (1.0D - bound / load.smoothedLoad));
+            }
+            if (targetLevel < load.spillLevel) { // 每个窗口最多降低一级
+                targetLevel = Math.max(targetLevel, load.spillLevel - 1);
+            }
+            load.spillLevel = Math.min(targetLevel, SPILL_LEVELS - 1);
+        }
+    }
+
+    /**
+     * 返回键是否应该从它本来所在的分片节点溢出。
+     *
+     * @param shard 键本来所在的分片节点
+     * @param keyTag 键标记
+     */
+    public boolean shouldSpill(JedisShardInfo shard, byte[] keyTag) {
+        ShardLoad load = loads.get(shard);
+        if (load == null || load.spillLevel == 0) {
+            return false;
+        }
+        // 取哈希值的高4位作为键的溢出桶，等级升高时原来溢出的键仍然溢出
+        long hash = RendezvousRouter.mix(Hashing.MURMUR_HASH.hash(keyTag));
+        return (int) (hash >>> 60) < load.spillLevel;
+    }
+
+    /**
+     * 返回分片节点是否正在溢出。(正在溢出的分片节点不能作为其它分片节点的溢出目标)
+     */
+    public boolean isSpilling(JedisShardInfo shard) {
+        ShardLoad load = loads.get(shard);
+        return load != null && load.spillLevel > 0;
+    }
+
+    /**
+     * 记录一个溢出的请求。
+     *
+     * @param shard 键本来所在的分片节点
+     */
+    public void onSpill(JedisShardInfo shard) {
+        this.getLoad(shard).requests.incrementAndGet();
+        spilledCount.incrementAndGet();
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回分片节点的溢出比例(0 ~ 1)。
+     */
+    public double getSpillRatio(JedisShardInfo shard) {
+        ShardLoad load = loads.get(shard);
+        return (load == null) ? 0.0D : (double) load.spillLevel / SPILL_LEVELS;
+    }
+
+    /**
+     * 返回已溢出的请求数。
+     */
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("BoundedLoadPolicy [enabled=").append(enabled).append(", loadFactor=").append(loadFactor);
+        sb.append(", spillRatios={");
+        boolean first = true;
+        for (Map.Entry<JedisShardInfo, ShardLoad> entry : loads.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(entry.getKey()).append('=').append((double) entry.getValue().spillLevel / SPILL_LEVELS);
+        }
+        return sb.append("}, spilledCount=").append(spilledCount.get()).append(']').toString();
+    }
+
+    /**
+     * 一个分片节点的负载。
+     */
+    private static final class ShardLoad {
+
+        /** 当前窗口的请求数 */
+        private final AtomicLong requests = new AtomicLong();
+
+        /** 平滑后的每个窗口的请求数 (只在计算溢出等级时读写) */
+        private volatile double  smoothedLoad;
+
+        /** 溢出等级 */
+        private volatile int     spillLevel;
+
+    }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+/**
+ * 分片节点的熔断器处于打开状态，命令没有发送到该节点就被直接拒绝(快速失败)。
+ *
+ * @author huagang.li 2015年2月21日 上午10:08:16
+ * @see ShardCircuitBreakers
+ */
+public class CircuitBreakerOpenException extends ShardRejectedException {
+
+    private static final long serialVersionUID = -3017325614263071904L;
+
+    public CircuitBreakerOpenException(String message){
+        super(message);
+    }
+
+}
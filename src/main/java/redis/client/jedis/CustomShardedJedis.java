@@ -0,0 +1,737 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import redis.client.jedis.ShardConcurrencyLimiters.Limiter;
+import redis.client.monitor.CallProfiler;
+import redis.client.monitor.RedisCommand;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+/**
+ * "数据分片的Jedis客户端"自定义实现，继承自{@link ShardedJedis}。
+ * <p>
+ * 记录最近一次键路由到的分片节点，使调用方在执行命令后无需再次计算哈希值，就能知道命令是在哪个分片节点上执行的(用于统计、诊断等)；
+ * 开启{@link CallProfiler 分阶段耗时剖析}时，还会记录本次借用期间各阶段的时间戳；
+ * 路由时还会检查分片节点的{@link ShardCircuitBreakers 熔断器}和{@link ShardConcurrencyLimiters 自适应并发限制器}，
+ * 熔断器打开或在途命令数达到上限时直接抛出{@link ShardRejectedException}。
+ * 启用了{@link BoundedLoadPolicy 有界负载}时，还会统计各分片节点的负载，并为可以溢出的缓存命令选择溢出的目标节点；
+ * {@link ReplicatedKeys 复制键}的副本分片节点也在这里选择。
+ * <p>
+ * 设置了{@link ShardRouter 分片路由器}(如{@link SlotTable 槽位表})时，键按分片路由器路由；路由到的分片节点不可用时，退化为按哈希环路由到其它正常的分片节点。
+ * 键所在的槽位正在迁移时，返回目标节点的客户端之前先把该键从源节点按需搬过去({@link SlotMigrator#moveKey(Jedis, Jedis, byte[])})，每个键在一次迁移中最多搬迁一次。
+ * 路由到的分片节点已被{@link StandbyShardInfo 备用节点}接管时，转到接管它的备用节点；
+ * 路由到的分片节点在{@link SlowStartPolicy 慢启动}中且还没有接回该键时，按去掉所有慢启动中的分片节点的哈希环路由。
+ * 分片节点列表变化后的{@link DualRingPolicy 宽限期}内，还可以按变化之前的哈希环查找键原来所在的分片节点。
+ * <p>
+ * <font color="red">#NotThreadSafe# (非线程安全)，与{@link ShardedJedis}一样，同一时刻只能被一个线程使用！</font>
+ *
+ * @author huagang.li 2015年2月13日 下午4:10:36
+ */
+public class CustomShardedJedis extends ShardedJedis {
+
+    /** 探测哈希环时，键标记与探测序号之间的分隔符 */
+    private static final String                       PROBE_SEPARATOR  = "#";
+
+    /** 分片路由器，为{@code null}时按哈希环路由 */
+    private final ShardRouter                         router;
+    /** 正常活跃的分片节点 -> 客户端 */
+    private final Map<JedisShardInfo, Jedis>          activeShards;
+    /** 被接管的初始分片节点 -> 接管它的备用节点 */
+    private final Map<JedisShardInfo, JedisShardInfo> takeovers;
+    /** 正常活跃的分片节点列表 */
+    private final List<JedisShardInfo>                shards;
+    /** 哈希环的哈希算法 */
+    private final Hashing                             algo;
+
+    /** 慢启动策略 (由连接池在借用时设置) */
+    private SlowStartPolicy                           slowStartPolicy;
+    /** 去掉所有慢启动中的分片节点的哈希环 (按需创建) */
+    private Sharded<Jedis, JedisShardInfo>            rampingExcludedRing;
+    /** 创建{@link #rampingExcludedRing}时慢启动中的分片节点集合的版本号 */
+    private int                                       rampingExcludedVersion;
+
+    /** 双环回读策略 (由连接池在借用时设置) */
+    private DualRingPolicy                            dualRingPolicy;
+    /** 分片节点列表变化之前的哈希环 (按需创建) */
+    private Sharded<Jedis, JedisShardInfo>            previousRing;
+    /** 分片节点列表变化之前的分片节点集合 (按对象标识查找) */
+    private Set<JedisShardInfo>                       previousShardSet;
+    /** 创建{@link #previousRing}时变化之前的分片节点列表的版本号 */
+    private int                                       previousRingVersion;
+
+    /** 创建时分片节点列表的版本号 (由池对象工厂设置) */
+    private int                                       generation;
+
+    /** 最近一次键路由到的分片节点 */
+    private JedisShardInfo                            lastShardInfo;
+
+    /** 分片节点的熔断器 (由连接池在借用时设置) */
+    private ShardCircuitBreakers                      circuitBreakers;
+    /** 本次借用已占用半开熔断器探测许可的分片节点 (同一个节点只申请一次) */
+    private final List<JedisShardInfo>                probedShards     = new ArrayList<JedisShardInfo>(2);
+
+    /** 分片节点的自适应并发限制器 (由连接池在借用时设置) */
+    private ShardConcurrencyLimiters                  concurrencyLimiters;
+    /** 本次借用已申请到许可的并发限制器 (同一个节点只申请一次) */
+    private final List<Limiter>                       acquiredLimiters = new ArrayList<Limiter>(2);
+    /** 第一次申请到许可的时间 */
+    private long                                      limitAcquireTime;
+
+    /** 有界负载策略 (由连接池在借用时设置) */
+    private BoundedLoadPolicy                         boundedLoadPolicy;
+
+    // 分阶段耗时剖析 (只在本次借用期间有效)
+    private boolean                                   profiling;
+    private long                                      borrowStartTime;
+    private long                                      borrowEndTime;
+    private long                                      routeEndTime;
+    private long                                      commandEndTime;
+    private RedisCommand                              command;
+    private boolean                                   failed;
+
+    public CustomShardedJedis(List<JedisShardInfo> shards, Hashing algo, Pattern keyTagPattern){
+        this(shards, algo, keyTagPattern, null);
+    }
+
+    /**
+     * 创建一个"数据分片的Jedis客户端"。
+     *
+     * @param shards 正常活跃的分片节点列表
+     * @param algo 哈希环的哈希算法
+     * @param keyTagPattern 键标记模式
+     * @param router 分片路由器，为{@code null}时按哈希环路由
+     */
+    public CustomShardedJedis(List<JedisShardInfo> shards, Hashing algo, Pattern keyTagPattern, ShardRouter router){
+        super(shards, algo, keyTagPattern);
+        this.router = router;
+        this.shards = shards;
+        this.algo = algo;
+        this.activeShards = new IdentityHashMap<JedisShardInfo, Jedis>(shards.size() * 2);
+        this.takeovers = new IdentityHashMap<JedisShardInfo, JedisShardInfo>(2);
+        for (JedisShardInfo shardInfo : shards) {
+            if (shardInfo instanceof StandbyShardInfo) {
+                takeovers.put(((StandbyShardInfo) shardInfo).getTakenOverShard(), shardInfo);
+            }
+            for (Jedis jedis : this.getAllShards()) {
+                if (jedis.getClient().getHost().equals(shardInfo.getHost())
+                    && jedis.getClient().getPort() == shardInfo.getPort()) {
+                    activeShards.put(shardInfo, jedis);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回键标记所在的分片节点，只查找分片路由器或哈希环。
+     */
+    private JedisShardInfo route(byte[] keyTag) {
+        JedisShardInfo shardInfo = null;
+        if (router != null) {
+            shardInfo = this.resolve(router.getShardInfo(keyTag));
+        }
+        if (shardInfo == null || !activeShards.containsKey(shardInfo)) {
+            shardInfo = super.getShardInfo(keyTag);
+        }
+        if (slowStartPolicy != null && slowStartPolicy.isRamping() && !slowStartPolicy.isAdmitted(shardInfo, keyTag)) {
+            JedisShardInfo rampingExcluded = this.routeExcludingRampingShards(keyTag);
+            if (rampingExcluded != null) {
+                return rampingExcluded;
+            }
+        }
+        return shardInfo;
+    }
+
+    /**
+     * 按去掉所有慢启动中的分片节点的哈希环路由，即分片节点恢复之前键所在的分片节点。
+     * 
+     * @return 所有分片节点都在慢启动中时，返回{@code null}
+     */
+    private JedisShardInfo routeExcludingRampingShards(byte[] keyTag) {
+        int version = slowStartPolicy.getVersion();
+        if (rampingExcludedRing == null || rampingExcludedVersion != version) {
+            Set<JedisShardInfo> rampingShards = slowStartPolicy.getRampingShards();
+            List<JedisShardInfo> remainingShards = new ArrayList<JedisShardInfo>(shards.size());
+            for (JedisShardInfo shardInfo : shards) {
+                if (!rampingShards.contains(shardInfo)) {
+                    remainingShards.add(shardInfo);
+                }
+            }
+            rampingExcludedRing = remainingShards.isEmpty() ? null
+                                                            : new Sharded<Jedis, JedisShardInfo>(remainingShards, algo);
+            rampingExcludedVersion = version;
+        }
+        return (rampingExcludedRing == null) ? null : rampingExcludedRing.getShardInfo(keyTag);
+    }
+
+    /**
+     * 按分片节点列表变化之前的分片路由器或哈希环路由，即变化之前键所在的分片节点。
+     * 
+     * @return 变化之前的分片节点列表为空时，返回{@code null}
+     */
+    private JedisShardInfo routePrevious(byte[] keyTag) {
+        int version = dualRingPolicy.getVersion();
+        if (previousRing == null || previousRingVersion != version) {
+            List<JedisShardInfo> previousShards = dualRingPolicy.getPreviousShards();
+            if (previousShards.isEmpty()) {
+                return null;
+            }
+            previousRing = new Sharded<Jedis, JedisShardInfo>(previousShards, algo);
+            previousShardSet = Collections.newSetFromMap(new IdentityHashMap<JedisShardInfo, Boolean>());
+            previousShardSet.addAll(previousShards);
+            previousRingVersion = version;
+        }
+        if (router != null) {
+            JedisShardInfo shardInfo = this.resolve(router.getShardInfo(keyTag));
+            if (shardInfo != null && previousShardSet.contains(shardInfo)) {
+                return shardInfo;
+            }
+        }
+        return previousRing.getShardInfo(keyTag);
+    }
+
+    /**
+     * 返回分片路由器路由到的分片节点当前的节点：被备用节点接管时，返回接管它的备用节点。
+     */
+    private JedisShardInfo resolve(JedisShardInfo shardInfo) {
+        if (takeovers.isEmpty()) {
+            return shardInfo;
+        }
+        JedisShardInfo takeover = takeovers.get(shardInfo);
+        return (takeover == null) ? shardInfo : takeover;
+    }
+
+    @Override
+    public JedisShardInfo getShardInfo(byte[] key) {
+        JedisShardInfo shardInfo = this.route(key);
+        if (boundedLoadPolicy != null && boundedLoadPolicy.isEnabled()) {
+            boundedLoadPolicy.onRequest(shardInfo);
+        }
+        this.acquire(shardInfo);
+        return shardInfo;
+    }
+
+    @Override
+    public Jedis getShard(String key) {
+        Jedis shard = super.getShard(key);
+        this.moveMigratingKey(SafeEncoder.encode(this.getKeyTag(key)), SafeEncoder.encode(key), shard);
+        return shard;
+    }
+
+    @Override
+    public Jedis getShard(byte[] key) {
+        Jedis shard = super.getShard(key);
+        this.moveMigratingKey(key, key, shard);
+        return shard;
+    }
+
+    /**
+     * 键所在的槽位正在迁移、且键路由到了迁移的目标节点时，先把还留在源节点上的键搬到目标节点，
+     * 使之后的命令(特别是LPUSH、ZADD等写命令)作用在完整的值上。
+     * <p>
+     * 每个键在一次迁移中最多搬迁一次：搬迁过的、源节点上没有的、或者目标节点上已经存在的键都会记录下来，
+     * 之后再访问这些键时不再向源节点发送MIGRATE命令。
+     *
+     * @param keyTag 键标记
+     * @param key 键
+     * @param shard 键路由到的分片节点的客户端
+     * @see SlotTable#getSettledKeys(int)
+     */
+    private void moveMigratingKey(byte[] keyTag, byte[] key, Jedis shard) {
+        if (!(router instanceof SlotTable) || !((SlotTable) router).isMigrating()) {
+            return;
+        }
+        SlotTable slotTable = (SlotTable) router;
+        int slot = SlotTable.getSlot(keyTag);
+        Set<String> settledKeys = slotTable.getSettledKeys(slot);
+        if (settledKeys == null) {
+            return;
+        }
+        String keyName = SafeEncoder.encode(key);
+        if (settledKeys.contains(keyName)) {
+            return;
+        }
+        JedisShardInfo source = slotTable.getMigrationSource(slot);
+        if (source == null) {
+            return;
+        }
+        Jedis sourceShard = activeShards.get(this.resolve(source));
+        if (sourceShard != null && sourceShard != shard
+            && shard == activeShards.get(this.resolve(slotTable.getShardInfo(slot)))) {
+            SlotMigrator.moveKey(sourceShard, shard, key);
+            settledKeys.add(keyName); // 搬迁失败(抛出异常)时不记录，下次访问时重试
+        }
+    }
+
+    /**
+     * 记录路由到的分片节点，并申请熔断器和并发限制器的许可。
+     */
+    private void acquire(JedisShardInfo shardInfo) {
+        lastShardInfo = shardInfo;
+        if (profiling && routeEndTime == 0L) {
+            routeEndTime = System.nanoTime();
+        }
+        if (circuitBreakers != null && !probedShards.contains(shardInfo) && circuitBreakers.acquire(shardInfo)) {
+            probedShards.add(shardInfo);
+        }
+        if (concurrencyLimiters != null && concurrencyLimiters.isEnabled()) {
+            this.acquireLimit(shardInfo);
+        }
+    }
+
+    /**
+     * 返回键在有界负载下溢出的目标节点的客户端。(只应该用于{@link BoundedLoadPolicy#isSpillable 可以溢出的缓存命令})
+     * <p>
+     * 按"键标记#1"、"键标记#2"...依次探测哈希环，选择第一个没有在溢出的其它分片节点；
+     * 返回非{@code null}时，已记录溢出的请求，并已申请目标节点的熔断器和并发限制器的许可。
+     *
+     * @param key 键
+     * @return 没有启用有界负载、键不需要溢出、或者没有可用的目标节点时，返回{@code null}
+     * @see BoundedLoadPolicy
+     */
+    public Jedis getSpillShard(String key) {
+        if (boundedLoadPolicy == null || !boundedLoadPolicy.isEnabled()) {
+            return null;
+        }
+        String keyTag = this.getKeyTag(key);
+        byte[] keyTagBytes = SafeEncoder.encode(keyTag);
+        JedisShardInfo home = this.route(keyTagBytes);
+        if (!boundedLoadPolicy.shouldSpill(home, keyTagBytes)) {
+            return null;
+        }
+        for (int i = 1; i <= activeShards.size() * 2; i++) {
+            JedisShardInfo candidate = this.probe(keyTag, i);
+            if (candidate != home && !boundedLoadPolicy.isSpilling(candidate)) {
+                boundedLoadPolicy.onSpill(home);
+                this.acquire(candidate);
+                return activeShards.get(candidate);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 返回按"键标记#序号"探测哈希环得到的分片节点。
+     */
+    private JedisShardInfo probe(String keyTag, int i) {
+        return super.getShardInfo(SafeEncoder.encode(keyTag + PROBE_SEPARATOR + i));
+    }
+
+    /**
+     * 返回复制键的副本分片节点列表，只查找分片路由器和哈希环，不会申请熔断器和并发限制器的许可。
+     * <p>
+     * 第一个是键本来所在的分片节点，其余是按"键标记#1"、"键标记#2"...依次探测哈希环得到的其它分片节点。
+     *
+     * @param key 键
+     * @param replicaNum 副本数量(超过正常的分片节点数量时按分片节点数量)
+     * @see ReplicatedKeys
+     */
+    public List<JedisShardInfo> locateReplicaShardInfos(String key, int replicaNum) {
+        String keyTag = this.getKeyTag(key);
+        int num = Math.min(replicaNum, activeShards.size());
+        List<JedisShardInfo> replicaShards = new ArrayList<JedisShardInfo>(num);
+        replicaShards.add(this.route(SafeEncoder.encode(keyTag)));
+        for (int i = 1; replicaShards.size() < num && i <= activeShards.size() * 4; i++) {
+            JedisShardInfo candidate = this.probe(keyTag, i);
+            if (!replicaShards.contains(candidate)) {
+                replicaShards.add(candidate);
+            }
+        }
+        return replicaShards;
+    }
+
+    /**
+     * 返回复制键的所有副本分片节点的客户端，用于写命令。
+     * <p>
+     * 第一个是键本来所在的分片节点(它的熔断器打开时抛出{@link ShardRejectedException})，其它副本分片节点的熔断器打开时跳过；
+     * 返回后"最近一次键路由到的分片节点"是键本来所在的分片节点。
+     *
+     * @param key 键
+     * @param replicaNum 副本数量
+     */
+    public List<Jedis> getReplicaShards(String key, int replicaNum) {
+        List<JedisShardInfo> replicaShardInfos = this.locateReplicaShardInfos(key, replicaNum);
+        List<Jedis> replicaShards = new ArrayList<Jedis>(replicaShardInfos.size());
+        replicaShards.add(null); // 最后再路由键本来所在的分片节点
+        for (int i = 1; i < replicaShardInfos.size(); i++) {
+            try {
+                replicaShards.add(this.getReplicaShard(replicaShardInfos.get(i)));
+            } catch (ShardRejectedException e) {
+                // 跳过熔断的副本分片节点，它上面的副本要等下一次写入后才会更新
+            }
+        }
+        replicaShards.set(0, this.getShard(key));
+        return replicaShards;
+    }
+
+    /**
+     * 返回{@link #locateReplicaShardInfos(String, int) 副本分片节点}的客户端，会申请熔断器和并发限制器的许可。
+     *
+     * @param shardInfo 副本分片节点
+     * @throws ShardRejectedException 分片节点已熔断或在途命令数达到上限时
+     */
+    public Jedis getReplicaShard(JedisShardInfo shardInfo) {
+        this.acquire(shardInfo);
+        return activeShards.get(shardInfo);
+    }
+
+    /**
+     * 返回复制键的一个副本分片节点的客户端，用于读命令。
+     *
+     * @param key 键
+     * @param replicatedKeys 复制键
+     * @see ReplicatedKeys#chooseReadShard(List)
+     */
+    public Jedis getReplicaReadShard(String key, ReplicatedKeys replicatedKeys) {
+        List<JedisShardInfo> replicaShardInfos = this.locateReplicaShardInfos(key, replicatedKeys.getReplicaNum());
+        JedisShardInfo shardInfo = replicatedKeys.chooseReadShard(replicaShardInfos);
+        this.acquire(shardInfo);
+        return activeShards.get(shardInfo);
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上复制键的所有副本分片节点的客户端。
+     *
+     * @return 不是{@link CustomShardedJedis}实例时，只返回键所在的分片节点
+     * @see #getReplicaShards(String, int)
+     */
+    public static List<Jedis> getReplicaShards(ShardedJedis jedis, String key, int replicaNum) {
+        if (jedis instanceof CustomShardedJedis) {
+            return ((CustomShardedJedis) jedis).getReplicaShards(key, replicaNum);
+        }
+        return Collections.singletonList(jedis.getShard(key));
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上复制键的一个副本分片节点的客户端。
+     *
+     * @return 不是{@link CustomShardedJedis}实例时，返回键所在的分片节点
+     * @see #getReplicaReadShard(String, ReplicatedKeys)
+     */
+    public static Jedis getReplicaReadShard(ShardedJedis jedis, String key, ReplicatedKeys replicatedKeys) {
+        if (jedis instanceof CustomShardedJedis) {
+            return ((CustomShardedJedis) jedis).getReplicaReadShard(key, replicatedKeys);
+        }
+        return jedis.getShard(key);
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上键在有界负载下溢出的目标节点的客户端。
+     *
+     * @see #getSpillShard(String)
+     */
+    public static Jedis getSpillShard(ShardedJedis jedis, String key) {
+        return (jedis instanceof CustomShardedJedis) ? ((CustomShardedJedis) jedis).getSpillShard(key) : null;
+    }
+
+    private void acquireLimit(JedisShardInfo shardInfo) {
+        Limiter limiter = concurrencyLimiters.getLimiter(shardInfo);
+        if (limiter != null && !acquiredLimiters.contains(limiter)) {
+            limiter.acquire();
+            if (acquiredLimiters.isEmpty()) {
+                limitAcquireTime = System.nanoTime();
+            }
+            acquiredLimiters.add(limiter);
+        }
+    }
+
+    /**
+     * 记录一次命令调用的结果到分片节点的熔断器，本次借用在该节点上占用的探测许可随之归还。
+     *
+     * @param jedis 分片客户端
+     * @param circuitBreakers 分片节点的熔断器
+     * @param shard 命令所在的分片节点，未知时为{@code null}(忽略)
+     * @param failure 失败原因，成功时为{@code null}
+     */
+    public static void onComplete(ShardedJedis jedis, ShardCircuitBreakers circuitBreakers, JedisShardInfo shard,
+                                  Throwable failure) {
+        circuitBreakers.onComplete(shard, failure);
+        if (jedis instanceof CustomShardedJedis) {
+            ((CustomShardedJedis) jedis).probedShards.remove(shard);
+        }
+    }
+
+    /**
+     * 归还本次借用占用的、还没有记录结果的探测许可。(由连接池在归还连接之前调用)
+     */
+    void releaseProbes() {
+        if (!probedShards.isEmpty()) {
+            for (int i = 0; i < probedShards.size(); i++) {
+                circuitBreakers.releaseProbe(probedShards.get(i));
+            }
+            probedShards.clear();
+        }
+    }
+
+    /**
+     * 归还本次借用申请到的所有并发许可，并记录延迟采样。(由连接池在归还连接之前调用)
+     *
+     * @param broken 连接是否出现了异常(含超时)
+     */
+    void releaseLimits(boolean broken) {
+        if (!acquiredLimiters.isEmpty()) {
+            long rtt = System.nanoTime() - limitAcquireTime;
+            for (int i = 0; i < acquiredLimiters.size(); i++) {
+                acquiredLimiters.get(i).release(rtt, broken);
+            }
+            acquiredLimiters.clear();
+        }
+    }
+
+    /**
+     * 返回最近一次键路由到的分片节点。
+     *
+     * @return 还没有路由过任何键时，返回{@code null}。
+     */
+    public JedisShardInfo getLastShardInfo() {
+        return lastShardInfo;
+    }
+
+    /**
+     * 设置分片节点的熔断器。(由连接池在借用到连接后调用)
+     */
+    void setCircuitBreakers(ShardCircuitBreakers circuitBreakers) {
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * 设置分片节点的自适应并发限制器。(由连接池在借用到连接后调用)
+     */
+    void setConcurrencyLimiters(ShardConcurrencyLimiters concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    /**
+     * 设置慢启动策略。(由连接池在借用到连接后调用)
+     */
+    void setSlowStartPolicy(SlowStartPolicy slowStartPolicy) {
+        this.slowStartPolicy = slowStartPolicy;
+    }
+
+    /**
+     * 返回创建时分片节点列表的版本号。
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * 设置创建时分片节点列表的版本号。(由池对象工厂在创建后调用)
+     */
+    void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * 设置双环回读策略。(由连接池在借用到连接后调用)
+     */
+    void setDualRingPolicy(DualRingPolicy dualRingPolicy) {
+        this.dualRingPolicy = dualRingPolicy;
+    }
+
+    /**
+     * 返回正常活跃的分片节点的客户端。
+     * 
+     * @return 不是正常活跃的分片节点时，返回{@code null}
+     */
+    Jedis getActiveShard(JedisShardInfo shardInfo) {
+        return activeShards.get(shardInfo);
+    }
+
+    /**
+     * 设置有界负载策略。(由连接池在借用到连接后调用)
+     */
+    void setBoundedLoadPolicy(BoundedLoadPolicy boundedLoadPolicy) {
+        this.boundedLoadPolicy = boundedLoadPolicy;
+    }
+
+    /**
+     * 开始剖析本次借用。(由连接池在借用到连接后调用)
+     */
+    void startProfiling(long borrowStartTime, long borrowEndTime) {
+        this.profiling = true;
+        this.borrowStartTime = borrowStartTime;
+        this.borrowEndTime = borrowEndTime;
+        this.routeEndTime = 0L;
+        this.commandEndTime = 0L;
+        this.command = null;
+        this.failed = false;
+    }
+
+    /**
+     * 停止剖析本次借用，并返回各阶段时间戳的快照。
+     * <p>
+     * 必须在归还连接之前调用，因为归还之后本对象可能立刻被其它线程借用。
+     *
+     * @return 没有在剖析时，返回{@code null}。
+     */
+    Profiling stopProfiling() {
+        if (!profiling) {
+            return null;
+        }
+        profiling = false;
+        long end = (commandEndTime == 0L) ? System.nanoTime() : commandEndTime;
+        return new Profiling(command, lastShardInfo, failed, borrowStartTime, borrowEndTime, routeEndTime, end);
+    }
+
+    /**
+     * 标记命令执行完成。(开启分阶段耗时剖析时才有效)
+     *
+     * @param jedis 分片客户端
+     * @param command 命令
+     * @param failed 是否失败
+     */
+    public static void endCommand(ShardedJedis jedis, RedisCommand command, boolean failed) {
+        if (jedis instanceof CustomShardedJedis) {
+            CustomShardedJedis customJedis = (CustomShardedJedis) jedis;
+            if (customJedis.profiling) {
+                customJedis.commandEndTime = System.nanoTime();
+                customJedis.command = command;
+                customJedis.failed = failed;
+            }
+        }
+    }
+
+    /**
+     * 返回键所在的分片节点。只查找分片路由器或哈希环，不会申请熔断器和并发限制器的许可，也不会更新"最近一次键路由到的分片节点"。
+     * 
+     * @param key 键
+     */
+    public JedisShardInfo locateShardInfo(String key) {
+        return this.route(SafeEncoder.encode(this.getKeyTag(key)));
+    }
+
+    /**
+     * 返回分片节点列表变化之前键所在的分片节点的客户端，用于在新的分片节点上没有读到数据时回退读取原来的分片节点。
+     *
+     * @param key 键
+     * @return 不在宽限期内、键没有移动、或者原来的分片节点已不可用时，返回{@code null}
+     * @see DualRingPolicy
+     */
+    public Jedis getPreviousOwnerShard(String key) {
+        if (dualRingPolicy == null || !dualRingPolicy.isInGracePeriod()) {
+            return null;
+        }
+        byte[] keyTag = SafeEncoder.encode(this.getKeyTag(key));
+        JedisShardInfo previousOwner = this.routePrevious(keyTag);
+        if (previousOwner == null || previousOwner == this.route(keyTag)) {
+            return null;
+        }
+        return activeShards.get(previousOwner);
+    }
+
+    /**
+     * 返回键所在槽位正在迁移的源节点的客户端，用于同时删除因目标节点上已经存在该键而保留在源节点上的键。
+     *
+     * @param key 键
+     * @return 没有按槽位表路由、槽位没有在迁移、或者源节点不可用时，返回{@code null}
+     * @see SlotTable#beginMigration(int, String)
+     */
+    public Jedis getMigrationSourceShard(String key) {
+        if (!(router instanceof SlotTable) || !((SlotTable) router).isMigrating()) {
+            return null;
+        }
+        JedisShardInfo source = ((SlotTable) router).getMigrationSource(SafeEncoder.encode(this.getKeyTag(key)));
+        return (source == null) ? null : activeShards.get(this.resolve(source));
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上分片节点列表变化之前键所在的分片节点的客户端。
+     *
+     * @see #getPreviousOwnerShard(String)
+     */
+    public static Jedis getPreviousOwnerShard(ShardedJedis jedis, String key) {
+        return (jedis instanceof CustomShardedJedis) ? ((CustomShardedJedis) jedis).getPreviousOwnerShard(key) : null;
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上键所在槽位正在迁移的源节点的客户端。
+     *
+     * @see #getMigrationSourceShard(String)
+     */
+    public static Jedis getMigrationSourceShard(ShardedJedis jedis, String key) {
+        return (jedis instanceof CustomShardedJedis) ? ((CustomShardedJedis) jedis).getMigrationSourceShard(key) : null;
+    }
+
+    /**
+     * 返回{@link ShardedJedis}上键所在的分片节点。(不会申请熔断器和并发限制器的许可)
+     * 
+     * @see #locateShardInfo(String)
+     */
+    public static JedisShardInfo locateShardInfo(ShardedJedis jedis, String key) {
+        if (jedis instanceof CustomShardedJedis) {
+            return ((CustomShardedJedis) jedis).locateShardInfo(key);
+        }
+        return jedis.getShardInfo(key);
+    }
+
+    /**
+     * 返回{@link ShardedJedis}最近一次键路由到的分片节点。
+     *
+     * @return 不是{@link CustomShardedJedis}实例或还没有路由过任何键时，返回{@code null}。
+     */
+    public static JedisShardInfo getLastShardInfo(ShardedJedis jedis) {
+        return (jedis instanceof CustomShardedJedis) ? ((CustomShardedJedis) jedis).lastShardInfo : null;
+    }
+
+    /**
+     * 一次借用的各阶段时间戳快照。
+     */
+    static final class Profiling {
+
+        private final RedisCommand   command;
+        private final JedisShardInfo shard;
+        private final boolean        failed;
+        private final long           borrowStartTime;
+        private final long           borrowEndTime;
+        private final long           routeEndTime;
+        private final long           commandEndTime;
+
+        Profiling(RedisCommand command, JedisShardInfo shard, boolean failed, long borrowStartTime,
+                  long borrowEndTime, long routeEndTime, long commandEndTime){
+            this.command = command;
+            this.shard = shard;
+            this.failed = failed;
+            this.borrowStartTime = borrowStartTime;
+            this.borrowEndTime = borrowEndTime;
+            this.routeEndTime = routeEndTime;
+            this.commandEndTime = commandEndTime;
+        }
+
+        /**
+         * 在归还连接完成后，将各阶段时间戳交给剖析器。
+         */
+        void complete(CallProfiler profiler, long releaseEndTime) {
+            profiler.record(command, shard, failed, borrowStartTime, borrowEndTime, routeEndTime, commandEndTime,
+                            releaseEndTime);
+        }
+    }
+
+}
@@ -29,11 +29,13 @@ import org.apache.commons.pool2.impl.DefaultPooledObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import redis.client.util.AssertUtils;
 import redis.client.util.GenericTimer;
 import redis.clients.jedis.Client;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisShardInfo;
 import redis.clients.jedis.ShardedJedis;
+import redis.clients.jedis.exceptions.JedisException;
 import redis.clients.util.Hashing;
 
 /**
@@ -46,13 +48,26 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
     private static final Logger            logger                    = LoggerFactory.getLogger(CustomShardedJedisFactory.class);
 
     /** 正常活跃的Jedis分片节点信息列表 */
-    private List<JedisShardInfo>           shards;
+    private volatile List<JedisShardInfo>  shards;
+    /** 初始的Jedis分片节点信息列表 (切换分片节点列表时更新) */
+    // @GuardedBy("serverStateCheckLock")
+    private List<JedisShardInfo>           originalShards;
+    /** 分片节点列表的版本号，每次切换都会加1，用于淘汰按旧哈希环创建的池对象 */
+    private volatile int                   generation;
     /** 初始的Jedis分片节点信息列表大小 */
     private final int                      originalShardListSize;
     /** 哈希算法 */
     private final Hashing                  algo;
     /** 键标记模式 */
     private final Pattern                  keyTagPattern;
+    /** 分片路由器，为{@code null}时按哈希环路由 */
+    private final ShardRouter              router;
+    /** 恢复正常的分片节点的慢启动策略 */
+    private volatile SlowStartPolicy       slowStartPolicy;
+    /** 分片节点的抖动抑制策略 */
+    private volatile FlapDampeningPolicy   flapDampeningPolicy;
+    /** 分片节点列表变化后的双环回读策略 */
+    private volatile DualRingPolicy        dualRingPolicy;
 
     /*
      * Redis服务器状态检测
@@ -62,6 +77,10 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
     /** "Redis服务器状态检测"定时任务 */
     // @GuardedBy("serverStateCheckLock")
     private JedisServerStateCheckTimerTask serverStateCheckTimerTask = null;
+    /** "Redis服务器状态检测"定时任务的运行间隔时间 */
+    private final long                     timeBetweenServerStateCheckRunsMillis;
+    /** Redis PING命令的失败重试次数 */
+    private final int                      pingRetryTimes;
 
     /**
      * 创建一个"数据分片的Jedis工厂"实例。
@@ -74,10 +93,32 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
      */
     public CustomShardedJedisFactory(List<JedisShardInfo> shards, Hashing algo, Pattern keyTagPattern,
                                      int timeBetweenServerStateCheckRunsMillis, int pingRetryTimes){
+        this(shards, algo, keyTagPattern, null, timeBetweenServerStateCheckRunsMillis, pingRetryTimes);
+    }
+
+    /**
+     * 创建一个"数据分片的Jedis工厂"实例。
+     * <p>
+     * 设置了分片路由器(如槽位表)时，键按分片路由器路由，哈希环只在路由到的分片节点不可用时使用。
+     * 
+     * @param shards Jedis分片节点信息列表
+     * @param algo 哈希算法
+     * @param keyTagPattern 键标记模式
+     * @param router 分片路由器，为{@code null}时按哈希环路由
+     * @param timeBetweenServerStateCheckRunsMillis "Redis服务器状态检测"定时任务的运行间隔时间
+     * @param pingRetryTimes Redis PING命令的失败重试次数
+     */
+    public CustomShardedJedisFactory(List<JedisShardInfo> shards, Hashing algo, Pattern keyTagPattern,
+                                     ShardRouter router, int timeBetweenServerStateCheckRunsMillis,
+                                     int pingRetryTimes){
         this.shards = shards;
+        this.originalShards = shards;
         this.originalShardListSize = shards.size();
         this.algo = algo;
         this.keyTagPattern = keyTagPattern;
+        this.router = router;
+        this.timeBetweenServerStateCheckRunsMillis = timeBetweenServerStateCheckRunsMillis;
+        this.pingRetryTimes = pingRetryTimes;
 
         this.startServerStateCheckTimerTask(timeBetweenServerStateCheckRunsMillis, pingRetryTimes);
     }
@@ -99,6 +140,143 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
         }
     }
 
+    /**
+     * 设置备用节点列表，异常分片节点在哈希环上的位置由正常的备用节点接管，而不是摘除后将它上面的键重新哈希到其它分片节点。
+     * <p>
+     * 需要启用"Redis服务器状态检测"定时任务，否则备用节点不会生效。
+     * 
+     * @param standbyShards 备用节点列表
+     * @see JedisServerStateCheckTimerTask#setStandbyShards(List)
+     */
+    public void setStandbyShards(List<JedisShardInfo> standbyShards) {
+        synchronized (serverStateCheckLock) {
+            if (null == serverStateCheckTimerTask) {
+                logger.warn("Redis server state check is disabled, standby shards are ignored: {}", standbyShards);
+                return;
+            }
+            serverStateCheckTimerTask.setStandbyShards(standbyShards);
+        }
+    }
+
+    /**
+     * 设置恢复正常的分片节点的慢启动策略。
+     * 
+     * @param slowStartPolicy 慢启动策略
+     * @see JedisServerStateCheckTimerTask#setSlowStartPolicy(SlowStartPolicy)
+     */
+    public void setSlowStartPolicy(SlowStartPolicy slowStartPolicy) {
+        synchronized (serverStateCheckLock) {
+            this.slowStartPolicy = slowStartPolicy;
+            if (null != serverStateCheckTimerTask) {
+                serverStateCheckTimerTask.setSlowStartPolicy(slowStartPolicy);
+            }
+        }
+    }
+
+    /**
+     * 设置分片节点的抖动抑制策略，不稳定的分片节点不会在正常和异常之间反复切换(每次切换都会使池中的所有对象失效)。
+     * 
+     * @param flapDampeningPolicy 抖动抑制策略
+     * @see JedisServerStateCheckTimerTask#setFlapDampeningPolicy(FlapDampeningPolicy)
+     */
+    public void setFlapDampeningPolicy(FlapDampeningPolicy flapDampeningPolicy) {
+        synchronized (serverStateCheckLock) {
+            this.flapDampeningPolicy = flapDampeningPolicy;
+            if (null != serverStateCheckTimerTask) {
+                serverStateCheckTimerTask.setFlapDampeningPolicy(flapDampeningPolicy);
+            }
+        }
+    }
+
+    /**
+     * 设置分片节点列表变化后的双环回读策略。
+     * 
+     * @param dualRingPolicy 双环回读策略
+     * @see JedisServerStateCheckTimerTask#setDualRingPolicy(DualRingPolicy)
+     */
+    public void setDualRingPolicy(DualRingPolicy dualRingPolicy) {
+        synchronized (serverStateCheckLock) {
+            this.dualRingPolicy = dualRingPolicy;
+            if (null != serverStateCheckTimerTask) {
+                serverStateCheckTimerTask.setDualRingPolicy(dualRingPolicy);
+            }
+        }
+    }
+
+    /**
+     * 原子地切换到新的分片节点列表(哈希环)，用于在线重新分片。
+     * <p>
+     * 与当前分片节点的host、port、名称和权重都相同的新分片节点沿用当前的{@link JedisShardInfo}对象(熔断器等按对象标识统计)；
+     * "Redis服务器状态检测"定时任务按新的分片节点列表重新启动(保留备用节点和各策略)；
+     * 之后按旧哈希环创建的池对象都会{@link #isCurrent(ShardedJedis) 失效}。
+     * 配置了{@link DualRingPolicy 双环回读策略}时，切换之前正常活跃的分片节点列表在宽限期内保留。
+     * 
+     * @param newShards 新的分片节点列表
+     * @throws IllegalStateException 设置了分片路由器时(只支持按哈希环路由)
+     * @see RingResharder
+     */
+    public void switchShards(List<JedisShardInfo> newShards) {
+        AssertUtils.notEmpty(newShards, "'newShards' must not be null and empty");
+        if (router != null) {
+            throw new IllegalStateException("Resharding is only supported by the hash ring, not by router: " + router);
+        }
+
+        synchronized (serverStateCheckLock) {
+            List<JedisShardInfo> switchedShards = new ArrayList<JedisShardInfo>(newShards.size());
+            for (JedisShardInfo newShard : newShards) {
+                switchedShards.add(this.getCurrentShard(newShard));
+            }
+            List<JedisShardInfo> previousShards = shards;
+            List<JedisShardInfo> standbyShards = null;
+            if (null != serverStateCheckTimerTask) {
+                previousShards = serverStateCheckTimerTask.getActiveJedisShardList();
+                standbyShards = serverStateCheckTimerTask.getStandbyShards();
+            }
+
+            originalShards = switchedShards;
+            shards = switchedShards;
+            this.startServerStateCheckTimerTask(timeBetweenServerStateCheckRunsMillis, pingRetryTimes);
+            if (null != serverStateCheckTimerTask) {
+                if (standbyShards != null) {
+                    serverStateCheckTimerTask.setStandbyShards(standbyShards);
+                }
+                serverStateCheckTimerTask.setSlowStartPolicy(slowStartPolicy);
+                serverStateCheckTimerTask.setFlapDampeningPolicy(flapDampeningPolicy);
+                serverStateCheckTimerTask.setDualRingPolicy(dualRingPolicy);
+            }
+            generation++; // 最后更新版本号，保证读到新版本号时一定能读到新的分片节点列表
+            logger.warn("Switch Shard list from {} to {}", previousShards, switchedShards);
+
+            DualRingPolicy dualRing = dualRingPolicy;
+            if (dualRing != null) {
+                dualRing.onTopologyChanged(previousShards);
+            }
+        }
+    }
+
+    /**
+     * 返回与新分片节点相同的当前分片节点，没有时返回新分片节点。
+     */
+    private JedisShardInfo getCurrentShard(JedisShardInfo newShard) {
+        for (JedisShardInfo shard : originalShards) {
+            if (RingResharder.isSameServer(shard, newShard) && shard.getWeight() == newShard.getWeight()
+                && (shard.getName() == null ? newShard.getName() == null : shard.getName().equals(newShard.getName()))) {
+                return shard;
+            }
+        }
+        return newShard;
+    }
+
+    /**
+     * 判断池对象是否是按当前的分片节点列表创建的。
+     * 
+     * @return 分片节点列表切换之前创建的池对象，返回{@code false}
+     */
+    public boolean isCurrent(ShardedJedis shardedJedis) {
+        return !(shardedJedis instanceof CustomShardedJedis)
+               || ((CustomShardedJedis) shardedJedis).getGeneration() == generation;
+    }
+
     /**
      * 创建一个{@link ShardedJedis}资源实例，并将它包装在{@link PooledObject}里便于连接池管理。
      * <p>
@@ -106,10 +284,32 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
      */
     @Override
     public PooledObject<ShardedJedis> makeObject() throws Exception {
-        ShardedJedis shardedJedis = new ShardedJedis(shards, algo, keyTagPattern);
+        int currentGeneration = generation; // 先读版本号，再读分片节点列表
+        CustomShardedJedis shardedJedis = new CustomShardedJedis(shards, algo, keyTagPattern, router);
+        shardedJedis.setGeneration(currentGeneration);
+        SlowStartPolicy slowStart = slowStartPolicy;
+        if (slowStart != null && slowStart.isPrewarmConnections() && slowStart.isRamping()) {
+            this.prewarm(shardedJedis, slowStart.getRampingShards());
+        }
         return new DefaultPooledObject<ShardedJedis>(shardedJedis);
     }
 
+    /**
+     * 预热连接：在收到请求之前，先建立到慢启动中的分片节点的连接。
+     */
+    private void prewarm(CustomShardedJedis shardedJedis, Set<JedisShardInfo> rampingShards) {
+        for (JedisShardInfo rampingShard : rampingShards) {
+            Jedis jedis = shardedJedis.getActiveShard(rampingShard);
+            if (jedis != null) {
+                try {
+                    jedis.connect();
+                } catch (JedisException e) {
+                    logger.warn("prewarm jedis connection fail: " + toServerString(jedis), e);
+                }
+            }
+        }
+    }
+
     /**
      * 销毁这个{@link PooledObject<ShardedJedis>}池对象。
      * <p>
@@ -164,6 +364,10 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
     @Override
     public boolean validateObject(PooledObject<ShardedJedis> pooledShardedJedis) {
         final ShardedJedis shardedJedis = pooledShardedJedis.getObject();
+        if (!this.isCurrent(shardedJedis)) { // 分片节点列表已切换
+            logger.debug("Find a pooled sharded Jedis is created before Shard list switched");
+            return false;
+        }
         // "Sharded.getAllShardInfo() returns 160*shards info list not returns the original shards list"
         // https://github.com/xetorthio/jedis/issues/837
         Collection<JedisShardInfo> allClusterShardInfos = shardedJedis.getAllShardInfo(); // 返回的集群节点数量被放大了160倍，详见ShardedJedisTest.getAllShardInfo()测试用例
@@ -174,7 +378,7 @@ public class CustomShardedJedisFactory implements PooledObjectFactory<ShardedJed
 
         // 探测"正常活跃的节点列表是否有更新"
         if (serverStateCheckTimerTask.isActiveShardListUpdated()) {
-            shards = new ArrayList<JedisShardInfo>(serverStateCheckTimerTask.getAllActiveJedisShards());
+            shards = serverStateCheckTimerTask.getActiveJedisShardList();
             logger.debug("Active Shard list after updated: {}", shards);
         }
 
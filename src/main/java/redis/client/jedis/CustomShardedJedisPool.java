@@ -22,6 +22,8 @@ import java.util.regex.Pattern;
 import org.apache.commons.pool2.PooledObjectFactory;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
+import redis.client.monitor.RedisFlightRecorder;
+import redis.client.monitor.RedisMetrics;
 import redis.clients.jedis.JedisShardInfo;
 import redis.clients.jedis.ShardedJedis;
 import redis.clients.util.Hashing;
@@ -34,6 +36,45 @@ import redis.clients.util.Pool;
  */
 public class CustomShardedJedisPool extends Pool<ShardedJedis> {
 
+    /** 统计数据 */
+    private volatile RedisMetrics             metrics             = new RedisMetrics();
+
+    /** 分片节点的熔断器 */
+    private volatile ShardCircuitBreakers     circuitBreakers     = new ShardCircuitBreakers();
+
+    /** 分片节点的自适应并发限制器 */
+    private volatile ShardConcurrencyLimiters concurrencyLimiters = new ShardConcurrencyLimiters();
+
+    /** 各分片节点的副本节点 */
+    private volatile ShardReplicas            replicas            = new ShardReplicas();
+
+    /** 对冲读策略 */
+    private volatile HedgePolicy              hedgePolicy         = new HedgePolicy();
+
+    /** 有界负载策略 */
+    private volatile BoundedLoadPolicy        boundedLoadPolicy   = new BoundedLoadPolicy();
+
+    /** 复制键 */
+    private volatile ReplicatedKeys           replicatedKeys      = new ReplicatedKeys();
+
+    /** 慢启动策略 */
+    private volatile SlowStartPolicy          slowStartPolicy     = new SlowStartPolicy();
+
+    /** 抖动抑制策略 */
+    private volatile FlapDampeningPolicy      flapDampeningPolicy = new FlapDampeningPolicy();
+
+    /** 双环回读策略 */
+    private volatile DualRingPolicy           dualRingPolicy      = new DualRingPolicy();
+
+    /** 正在进行的哈希环重新分片，没有时为{@code null} */
+    private volatile RingResharder            resharder;
+
+    /** 分片路由器，为{@code null}时按哈希环路由 */
+    private final ShardRouter                 router;
+
+    /** 池对象工厂，不是{@link CustomShardedJedisFactory}时为{@code null} */
+    private final CustomShardedJedisFactory   factory;
+
     /**
      * 创建一个"数据分片的Jedis连接池"实例。
      * 
@@ -70,8 +111,56 @@ public class CustomShardedJedisPool extends Pool<ShardedJedis> {
      */
     public CustomShardedJedisPool(GenericObjectPoolConfig poolConfig, List<JedisShardInfo> shards, Hashing algo,
                                   Pattern keyTagPattern, int timeBetweenServerStateCheckRunsMillis, int pingRetryTimes){
-        super(poolConfig, new CustomShardedJedisFactory(shards, algo, keyTagPattern,
-                                                        timeBetweenServerStateCheckRunsMillis, pingRetryTimes));
+        this(poolConfig, shards, algo, keyTagPattern, null, timeBetweenServerStateCheckRunsMillis, pingRetryTimes);
+    }
+
+    /**
+     * 创建一个按槽位表路由的"数据分片的Jedis连接池"实例，槽位可以通过{@link SlotMigrator}在线迁移。
+     * 
+     * @param poolConfig 连接池配置信息
+     * @param shards Jedis节点分片信息列表
+     * @param slotTable 槽位表
+     * @param keyTagPattern 键标记模式
+     * @param timeBetweenServerStateCheckRunsMillis "Redis服务器状态检测"定时任务的运行间隔时间
+     * @param pingRetryTimes Redis PING命令的失败重试次数
+     * @see SlotTable
+     */
+    public CustomShardedJedisPool(GenericObjectPoolConfig poolConfig, List<JedisShardInfo> shards,
+                                  SlotTable slotTable, Pattern keyTagPattern,
+                                  int timeBetweenServerStateCheckRunsMillis, int pingRetryTimes){
+        this(poolConfig, shards, Hashing.MURMUR_HASH, keyTagPattern, slotTable, timeBetweenServerStateCheckRunsMillis,
+             pingRetryTimes);
+    }
+
+    /**
+     * 创建一个按分片路由器路由的"数据分片的Jedis连接池"实例。
+     * <p>
+     * 哈希环只在路由到的分片节点不可用时使用；分片路由器可以通过{@link ShardingStrategy#createRouter(List, Hashing)}创建。
+     * 
+     * @param poolConfig 连接池配置信息
+     * @param shards Jedis节点分片信息列表
+     * @param algo 哈希算法
+     * @param keyTagPattern 键标记模式
+     * @param router 分片路由器，为{@code null}时按哈希环路由
+     * @param timeBetweenServerStateCheckRunsMillis "Redis服务器状态检测"定时任务的运行间隔时间
+     * @param pingRetryTimes Redis PING命令的失败重试次数
+     * @see ShardingStrategy
+     */
+    public CustomShardedJedisPool(GenericObjectPoolConfig poolConfig, List<JedisShardInfo> shards, Hashing algo,
+                                  Pattern keyTagPattern, ShardRouter router,
+                                  int timeBetweenServerStateCheckRunsMillis, int pingRetryTimes){
+        this(poolConfig, new CustomShardedJedisFactory(shards, algo, keyTagPattern, router,
+                                                       timeBetweenServerStateCheckRunsMillis, pingRetryTimes), router);
+    }
+
+    private CustomShardedJedisPool(GenericObjectPoolConfig poolConfig, CustomShardedJedisFactory factory,
+                                   ShardRouter router){
+        super(poolConfig, factory);
+        this.router = router;
+        this.factory = factory;
+        factory.setSlowStartPolicy(slowStartPolicy);
+        factory.setFlapDampeningPolicy(flapDampeningPolicy);
+        factory.setDualRingPolicy(dualRingPolicy);
     }
 
     /**
@@ -82,6 +171,13 @@ public class CustomShardedJedisPool extends Pool<ShardedJedis> {
      */
     public CustomShardedJedisPool(GenericObjectPoolConfig poolConfig, PooledObjectFactory<ShardedJedis> factory){
         super(poolConfig, factory);
+        this.router = null;
+        this.factory = (factory instanceof CustomShardedJedisFactory) ? (CustomShardedJedisFactory) factory : null;
+        if (this.factory != null) {
+            this.factory.setSlowStartPolicy(slowStartPolicy);
+            this.factory.setFlapDampeningPolicy(flapDampeningPolicy);
+            this.factory.setDualRingPolicy(dualRingPolicy);
+        }
     }
 
     /**
@@ -98,11 +194,316 @@ public class CustomShardedJedisPool extends Pool<ShardedJedis> {
      */
     @Override
     public ShardedJedis getResource() {
-        ShardedJedis jedis = super.getResource();
+        long startTime = System.nanoTime();
+        ShardedJedis jedis;
+        try {
+            jedis = super.getResource();
+            while (factory != null && !factory.isCurrent(jedis)) { // 分片节点列表已切换，销毁按旧哈希环创建的池对象
+                this.returnBrokenResourceObject(jedis);
+                jedis = super.getResource();
+            }
+        } catch (RuntimeException e) {
+            long waitTime = System.nanoTime() - startTime;
+            metrics.recordBorrow(waitTime, false);
+            RedisFlightRecorder.poolBorrow(waitTime, false);
+            throw e;
+        }
+        long endTime = System.nanoTime();
+        metrics.recordBorrow(endTime - startTime, true);
+        RedisFlightRecorder.poolBorrow(endTime - startTime, true);
+        if (jedis instanceof CustomShardedJedis) {
+            CustomShardedJedis customJedis = (CustomShardedJedis) jedis;
+            customJedis.setCircuitBreakers(circuitBreakers);
+            customJedis.setConcurrencyLimiters(concurrencyLimiters);
+            customJedis.setBoundedLoadPolicy(boundedLoadPolicy);
+            customJedis.setSlowStartPolicy(slowStartPolicy);
+            customJedis.setDualRingPolicy(dualRingPolicy);
+            if (metrics.getProfiler().isEnabled()) {
+                customJedis.startProfiling(startTime, endTime);
+            }
+        }
         jedis.setDataSource(this);
         return jedis;
     }
 
+    /**
+     * 返回连接池及其客户端命令的统计数据。
+     */
+    public RedisMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 设置统计数据。(多个连接池可以共用一个统计数据实例)
+     * 
+     * @param metrics 统计数据
+     */
+    public void setMetrics(RedisMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("'metrics' must not be null");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * 返回分片节点的熔断器。
+     */
+    public ShardCircuitBreakers getCircuitBreakers() {
+        return circuitBreakers;
+    }
+
+    /**
+     * 设置分片节点的熔断器。
+     * 
+     * @param circuitBreakers 分片节点的熔断器
+     */
+    public void setCircuitBreakers(ShardCircuitBreakers circuitBreakers) {
+        if (circuitBreakers == null) {
+            throw new IllegalArgumentException("'circuitBreakers' must not be null");
+        }
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * 返回分片节点的自适应并发限制器。(默认关闭)
+     */
+    public ShardConcurrencyLimiters getConcurrencyLimiters() {
+        return concurrencyLimiters;
+    }
+
+    /**
+     * 设置分片节点的自适应并发限制器。
+     * 
+     * @param concurrencyLimiters 分片节点的自适应并发限制器
+     */
+    public void setConcurrencyLimiters(ShardConcurrencyLimiters concurrencyLimiters) {
+        if (concurrencyLimiters == null) {
+            throw new IllegalArgumentException("'concurrencyLimiters' must not be null");
+        }
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    /**
+     * 返回各分片节点的副本节点。(默认没有副本节点)
+     */
+    public ShardReplicas getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 设置各分片节点的副本节点，连接池关闭时会一起关闭副本节点的连接池。
+     * 
+     * @param replicas 各分片节点的副本节点
+     */
+    public void setReplicas(ShardReplicas replicas) {
+        if (replicas == null) {
+            throw new IllegalArgumentException("'replicas' must not be null");
+        }
+        this.replicas = replicas;
+    }
+
+    /**
+     * 返回对冲读策略。(默认关闭)
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * 设置对冲读策略。
+     * 
+     * @param hedgePolicy 对冲读策略
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        if (hedgePolicy == null) {
+            throw new IllegalArgumentException("'hedgePolicy' must not be null");
+        }
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * 返回有界负载策略。(默认关闭)
+     */
+    public BoundedLoadPolicy getBoundedLoadPolicy() {
+        return boundedLoadPolicy;
+    }
+
+    /**
+     * 设置有界负载策略。
+     * 
+     * @param boundedLoadPolicy 有界负载策略
+     */
+    public void setBoundedLoadPolicy(BoundedLoadPolicy boundedLoadPolicy) {
+        if (boundedLoadPolicy == null) {
+            throw new IllegalArgumentException("'boundedLoadPolicy' must not be null");
+        }
+        this.boundedLoadPolicy = boundedLoadPolicy;
+    }
+
+    /**
+     * 返回复制键。(默认没有复制键)
+     */
+    public ReplicatedKeys getReplicatedKeys() {
+        return replicatedKeys;
+    }
+
+    /**
+     * 设置复制键。
+     * 
+     * @param replicatedKeys 复制键
+     */
+    public void setReplicatedKeys(ReplicatedKeys replicatedKeys) {
+        if (replicatedKeys == null) {
+            throw new IllegalArgumentException("'replicatedKeys' must not be null");
+        }
+        this.replicatedKeys = replicatedKeys;
+    }
+
+    /**
+     * 返回慢启动策略。(默认关闭)
+     */
+    public SlowStartPolicy getSlowStartPolicy() {
+        return slowStartPolicy;
+    }
+
+    /**
+     * 设置恢复正常的分片节点的慢启动策略。
+     * 
+     * @param slowStartPolicy 慢启动策略
+     */
+    public void setSlowStartPolicy(SlowStartPolicy slowStartPolicy) {
+        if (slowStartPolicy == null) {
+            throw new IllegalArgumentException("'slowStartPolicy' must not be null");
+        }
+        this.slowStartPolicy = slowStartPolicy;
+        if (factory != null) {
+            factory.setSlowStartPolicy(slowStartPolicy);
+        }
+    }
+
+    /**
+     * 返回抖动抑制策略。(默认关闭)
+     */
+    public FlapDampeningPolicy getFlapDampeningPolicy() {
+        return flapDampeningPolicy;
+    }
+
+    /**
+     * 设置分片节点的抖动抑制策略。
+     * 
+     * @param flapDampeningPolicy 抖动抑制策略
+     */
+    public void setFlapDampeningPolicy(FlapDampeningPolicy flapDampeningPolicy) {
+        if (flapDampeningPolicy == null) {
+            throw new IllegalArgumentException("'flapDampeningPolicy' must not be null");
+        }
+        this.flapDampeningPolicy = flapDampeningPolicy;
+        if (factory != null) {
+            factory.setFlapDampeningPolicy(flapDampeningPolicy);
+        }
+    }
+
+    /**
+     * 返回双环回读策略。(默认关闭)
+     */
+    public DualRingPolicy getDualRingPolicy() {
+        return dualRingPolicy;
+    }
+
+    /**
+     * 设置分片节点列表变化后的双环回读策略。
+     * 
+     * @param dualRingPolicy 双环回读策略
+     */
+    public void setDualRingPolicy(DualRingPolicy dualRingPolicy) {
+        if (dualRingPolicy == null) {
+            throw new IllegalArgumentException("'dualRingPolicy' must not be null");
+        }
+        this.dualRingPolicy = dualRingPolicy;
+        if (factory != null) {
+            factory.setDualRingPolicy(dualRingPolicy);
+        }
+    }
+
+    /**
+     * 设置备用节点列表，异常分片节点在哈希环上的位置由正常的备用节点接管，其它分片节点上的键不会移动。
+     * 
+     * @param standbyShards 备用节点列表
+     * @throws IllegalStateException 池对象工厂不是{@link CustomShardedJedisFactory}时
+     * @see StandbyShardInfo
+     */
+    public void setStandbyShards(List<JedisShardInfo> standbyShards) {
+        if (standbyShards == null) {
+            throw new IllegalArgumentException("'standbyShards' must not be null");
+        }
+        if (factory == null) {
+            throw new IllegalStateException("Standby shards are only supported by CustomShardedJedisFactory");
+        }
+        factory.setStandbyShards(standbyShards);
+    }
+
+    /**
+     * 返回分片路由器。
+     * 
+     * @return 按哈希环路由时，返回{@code null}
+     */
+    public ShardRouter getShardRouter() {
+        return router;
+    }
+
+    /**
+     * 返回槽位表。
+     * 
+     * @return 没有按槽位表路由时，返回{@code null}
+     */
+    public SlotTable getSlotTable() {
+        return (router instanceof SlotTable) ? (SlotTable) router : null;
+    }
+
+    /**
+     * 返回正在进行的哈希环重新分片，期间写命令写入的需要移动的键要记录为脏键，由重新分片复制到新哈希环上的分片节点。
+     * 
+     * @return 没有在重新分片时，返回{@code null}
+     * @see RingResharder#markDirty(String)
+     */
+    public RingResharder getResharder() {
+        return resharder;
+    }
+
+    /**
+     * 设置正在进行的哈希环重新分片，由{@link RingResharder}在开始复制之前设置、在切换之后清除。
+     */
+    void setResharder(RingResharder resharder) {
+        this.resharder = resharder;
+    }
+
+    /**
+     * 原子地切换到新的分片节点列表(哈希环)，之后借用的{@link ShardedJedis}都按新的哈希环路由，空闲的池对象立刻销毁。
+     * 
+     * @param newShards 新的分片节点列表
+     * @throws IllegalStateException 池对象工厂不是{@link CustomShardedJedisFactory}或者设置了分片路由器时
+     * @see RingResharder
+     */
+    public void switchShards(List<JedisShardInfo> newShards) {
+        if (factory == null) {
+            throw new IllegalStateException("Shard list switching is only supported by CustomShardedJedisFactory");
+        }
+        factory.switchShards(newShards);
+        internalPool.clear();
+    }
+
+    /**
+     * 关闭连接池，同时关闭副本节点的连接池。
+     */
+    @Override
+    protected void closeInternalPool() {
+        try {
+            super.closeInternalPool();
+        } finally {
+            replicas.close();
+        }
+    }
+
     /**
      * 将正常的{@link ShardedJedis}资源返回给"连接池"。
      * <p>
@@ -112,8 +513,12 @@ public class CustomShardedJedisPool extends Pool<ShardedJedis> {
     @Override
     public void returnResource(ShardedJedis jedis) {
         if (jedis != null) {
+            CustomShardedJedis.Profiling profiling = release(jedis, false);
             jedis.resetState();
             this.returnResourceObject(jedis);
+            if (profiling != null) {
+                profiling.complete(metrics.getProfiler(), System.nanoTime());
+            }
         }
     }
 
@@ -126,8 +531,27 @@ public class CustomShardedJedisPool extends Pool<ShardedJedis> {
     @Override
     public void returnBrokenResource(ShardedJedis jedis) {
         if (jedis != null) {
+            CustomShardedJedis.Profiling profiling = release(jedis, true);
             this.returnBrokenResourceObject(jedis);
+            if (profiling != null) {
+                profiling.complete(metrics.getProfiler(), System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * 归还本次借用申请到的探测许可和并发许可，并停止剖析。
+     * <p>
+     * 必须在归还连接之前调用，因为归还之后连接可能立刻被其它线程借用。
+     */
+    private static CustomShardedJedis.Profiling release(ShardedJedis jedis, boolean broken) {
+        if (jedis instanceof CustomShardedJedis) {
+            CustomShardedJedis customJedis = (CustomShardedJedis) jedis;
+            customJedis.releaseProbes();
+            customJedis.releaseLimits(broken);
+            return customJedis.stopProfiling();
         }
+        return null;
     }
 
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 双环回读(Dual-Ring Read-Through)策略：正常活跃的分片节点列表变化后，在{@code graceMillis}(默认60秒)的宽限期内保留变化之前的哈希环。
+ * <p>
+ * 分片节点列表变化时(摘除异常节点、恢复正常节点、备用节点接管)，移动了的键在新的分片节点上读不到数据，
+ * 但数据往往还在原来的分片节点上(例如异常期间写到其它分片节点、节点恢复后键又移了回来)。宽限期内：
+ * <ul>
+ * <li>读命令在新的分片节点上没有读到数据时，回退读取原来的分片节点(原来的分片节点仍然正常活跃时)；
+ * <li>开启{@link #setBackfill(boolean) 回填}时，回退读到的键异步复制到新的分片节点(新的分片节点上已存在时保留)；
+ * <li>删除键时同时删除原来的分片节点上的键，避免它被回读或回填后"复活"。
+ * </ul>
+ * 宽限期内分片节点列表再次变化时，只保留最近一次变化之前的哈希环。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年3月1日 下午5:36:20
+ */
+public class DualRingPolicy {
+
+    private static final Logger               logger               = LoggerFactory.getLogger(DualRingPolicy.class);
+
+    /** 默认的宽限期(毫秒) */
+    public static final long                  DEFAULT_GRACE_MILLIS = 60000L;
+
+    private volatile boolean                  enabled;
+
+    private volatile long                     graceNanos           = TimeUnit.MILLISECONDS
+                                                                         .toNanos(DEFAULT_GRACE_MILLIS);
+
+    private volatile boolean                  backfill             = true;
+
+    /** 最近一次分片节点列表的变化 */
+    private final AtomicReference<Transition> transition           = new AtomicReference<Transition>();
+
+    /** 变化之前的分片节点列表的版本号，每次变化都会加1 */
+    private final AtomicInteger               version              = new AtomicInteger();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用双环回读。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置宽限期(毫秒)。默认值是 {@value #DEFAULT_GRACE_MILLIS}毫秒。
+     */
+    public void setGraceMillis(long graceMillis) {
+        AssertUtils.isTrue(graceMillis > 0, "'graceMillis' must be greater than 0 : " + graceMillis);
+        this.graceNanos = TimeUnit.MILLISECONDS.toNanos(graceMillis);
+    }
+
+    public boolean isBackfill() {
+        return backfill;
+    }
+
+    /**
+     * 设置是否将回退读到的键异步回填到新的分片节点。(默认开启)
+     */
+    public void setBackfill(boolean backfill) {
+        this.backfill = backfill;
+    }
+
+    /**
+     * 分片节点列表发生了变化。(由"Redis服务器状态检测"定时任务调用)
+     *
+     * @param previousShards 变化之前正常活跃的分片节点列表(顺序与初始的分片节点列表一致)
+     */
+    public void onTopologyChanged(List<JedisShardInfo> previousShards) {
+        this.onTopologyChanged(previousShards, System.nanoTime());
+    }
+
+    void onTopologyChanged(List<JedisShardInfo> previousShards, long changeTime) {
+        if (!enabled || previousShards.isEmpty()) {
+            return;
+        }
+        transition.set(new Transition(previousShards, changeTime));
+        version.incrementAndGet();
+        logger.info("Keep previous Shard list for {} ms: {}", TimeUnit.NANOSECONDS.toMillis(graceNanos), previousShards);
+    }
+
+    /**
+     * 返回是否在宽限期内。
+     */
+    public boolean isInGracePeriod() {
+        return this.isInGracePeriod(System.nanoTime());
+    }
+
+    boolean isInGracePeriod(long now) {
+        Transition current = transition.get();
+        if (current == null) {
+            return false;
+        }
+        if (enabled && now - current.changeTime < graceNanos) {
+            return true;
+        }
+        // 宽限期已过，不再保留原来的哈希环 (期间又发生了新的变化时，保留新的宽限期)
+        transition.compareAndSet(current, null);
+        return false;
+    }
+
+    /**
+     * 返回变化之前正常活跃的分片节点列表。
+     *
+     * @return 没有发生过变化时，返回空列表
+     */
+    public List<JedisShardInfo> getPreviousShards() {
+        Transition current = transition.get();
+        return (current == null) ? Collections.<JedisShardInfo> emptyList() : current.previousShards;
+    }
+
+    /**
+     * 返回变化之前的分片节点列表的版本号，用于判断按它创建的哈希环是否需要重建。
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DualRingPolicy [enabled=" + enabled + ", graceMillis=" + TimeUnit.NANOSECONDS.toMillis(graceNanos)
+               + ", backfill=" + backfill + ", previousShards=" + this.getPreviousShards() + "]";
+    }
+
+    /**
+     * 一次分片节点列表的变化。(不可变)
+     */
+    private static final class Transition {
+
+        private final List<JedisShardInfo> previousShards;
+
+        private final long                 changeTime;
+
+        Transition(List<JedisShardInfo> previousShards, long changeTime){
+            this.previousShards = Collections.unmodifiableList(new ArrayList<JedisShardInfo>(previousShards));
+            this.changeTime = changeTime;
+        }
+
+    }
+
+}
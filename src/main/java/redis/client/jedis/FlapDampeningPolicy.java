@@ -0,0 +1,320 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * "Redis服务器状态检测"的抖动抑制(Flap Dampening)策略，避免一个不稳定的分片节点在正常和异常之间反复切换。
+ * <p>
+ * 分片节点每次切换都会使连接池中的所有对象失效重建(见{@link CustomShardedJedisFactory#validateObject})，并且移动它上面的键。
+ * 启用后，状态检测按以下规则判定分片节点的切换：
+ * <ul>
+ * <li>滞后(Hysteresis)：连续{@code failureThreshold}次检测失败才摘除，连续{@code recoveryThreshold}次检测成功才恢复；
+ * <li>最短保持时间：摘除后至少经过{@code minHoldMillis}才能恢复；
+ * <li>惩罚值衰减(参考BGP路由抖动抑制，RFC 2439)：每次摘除增加{@value #FLAP_PENALTY}的惩罚值，惩罚值按半衰期{@code halfLifeMillis}指数衰减；
+ * 惩罚值超过抑制阈值{@code suppressThreshold}时分片节点被抑制，直到惩罚值衰减到复用阈值{@code reuseThreshold}以下才能恢复，
+ * 惩罚值的上限保证最长的抑制时间不超过{@code maxSuppressMillis}。
+ * </ul>
+ * 默认关闭，关闭时一次检测失败就摘除，一次检测成功就恢复。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年3月1日 下午4:20:18
+ */
+public class FlapDampeningPolicy {
+
+    private static final Logger                            logger                      = LoggerFactory.getLogger(FlapDampeningPolicy.class);
+
+    /** 每次摘除增加的惩罚值 */
+    public static final double                             FLAP_PENALTY                = 1000.0D;
+
+    /** 默认的摘除所需的连续检测失败次数 */
+    public static final int                                DEFAULT_FAILURE_THRESHOLD   = 2;
+
+    /** 默认的恢复所需的连续检测成功次数 */
+    public static final int                                DEFAULT_RECOVERY_THRESHOLD  = 3;
+
+    /** 默认的最短保持时间(毫秒) */
+    public static final long                               DEFAULT_MIN_HOLD_MILLIS     = 10000L;
+
+    /** 默认的惩罚值半衰期(毫秒) */
+    public static final long                               DEFAULT_HALF_LIFE_MILLIS    = 60000L;
+
+    /** 默认的抑制阈值 */
+    public static final double                             DEFAULT_SUPPRESS_THRESHOLD  = 2000.0D;
+
+    /** 默认的复用阈值 */
+    public static final double                             DEFAULT_REUSE_THRESHOLD     = 750.0D;
+
+    /** 默认的最长抑制时间(毫秒) */
+    public static final long                               DEFAULT_MAX_SUPPRESS_MILLIS = 600000L;
+
+    private volatile boolean                               enabled;
+
+    private volatile int                                   failureThreshold            = DEFAULT_FAILURE_THRESHOLD;
+
+    private volatile int                                   recoveryThreshold           = DEFAULT_RECOVERY_THRESHOLD;
+
+    private volatile long                                  minHoldNanos                = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_HOLD_MILLIS);
+
+    private volatile long                                  halfLifeNanos               = TimeUnit.MILLISECONDS.toNanos(DEFAULT_HALF_LIFE_MILLIS);
+
+    private volatile double                                suppressThreshold           = DEFAULT_SUPPRESS_THRESHOLD;
+
+    private volatile double                                reuseThreshold              = DEFAULT_REUSE_THRESHOLD;
+
+    private volatile long                                  maxSuppressNanos            = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_SUPPRESS_MILLIS);
+
+    /** 分片节点 -> 抖动状态 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, FlapState> states                      = new ConcurrentHashMap<JedisShardInfo, FlapState>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用抖动抑制。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置摘除所需的连续检测失败次数。默认值是 {@value #DEFAULT_FAILURE_THRESHOLD}。
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        AssertUtils.isTrue(failureThreshold > 0, "'failureThreshold' must be greater than 0 : " + failureThreshold);
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * 设置恢复所需的连续检测成功次数。默认值是 {@value #DEFAULT_RECOVERY_THRESHOLD}。
+     */
+    public void setRecoveryThreshold(int recoveryThreshold) {
+        AssertUtils.isTrue(recoveryThreshold > 0, "'recoveryThreshold' must be greater than 0 : " + recoveryThreshold);
+        this.recoveryThreshold = recoveryThreshold;
+    }
+
+    /**
+     * 设置最短保持时间(毫秒)，即摘除后至少经过多久才能恢复。默认值是 {@value #DEFAULT_MIN_HOLD_MILLIS}毫秒。
+     */
+    public void setMinHoldMillis(long minHoldMillis) {
+        AssertUtils.isTrue(minHoldMillis >= 0, "'minHoldMillis' must not be negative : " + minHoldMillis);
+        this.minHoldNanos = TimeUnit.MILLISECONDS.toNanos(minHoldMillis);
+    }
+
+    /**
+     * 设置惩罚值的半衰期(毫秒)。默认值是 {@value #DEFAULT_HALF_LIFE_MILLIS}毫秒。
+     */
+    public void setHalfLifeMillis(long halfLifeMillis) {
+        AssertUtils.isTrue(halfLifeMillis > 0, "'halfLifeMillis' must be greater than 0 : " + halfLifeMillis);
+        this.halfLifeNanos = TimeUnit.MILLISECONDS.toNanos(halfLifeMillis);
+    }
+
+    /**
+     * 设置抑制阈值，惩罚值超过它时分片节点被抑制。默认值是 {@value #DEFAULT_SUPPRESS_THRESHOLD}。
+     */
+    public void setSuppressThreshold(double suppressThreshold) {
+        AssertUtils.isTrue(suppressThreshold > 0, "'suppressThreshold' must be greater than 0 : " + suppressThreshold);
+        this.suppressThreshold = suppressThreshold;
+    }
+
+    /**
+     * 设置复用阈值，被抑制的分片节点的惩罚值衰减到它以下才能恢复(应该小于抑制阈值)。默认值是 {@value #DEFAULT_REUSE_THRESHOLD}。
+     */
+    public void setReuseThreshold(double reuseThreshold) {
+        AssertUtils.isTrue(reuseThreshold > 0, "'reuseThreshold' must be greater than 0 : " + reuseThreshold);
+        this.reuseThreshold = reuseThreshold;
+    }
+
+    /**
+     * 设置最长抑制时间(毫秒)，决定惩罚值的上限。默认值是 {@value #DEFAULT_MAX_SUPPRESS_MILLIS}毫秒。
+     */
+    public void setMaxSuppressMillis(long maxSuppressMillis) {
+        AssertUtils.isTrue(maxSuppressMillis > 0, "'maxSuppressMillis' must be greater than 0 : " + maxSuppressMillis);
+        this.maxSuppressNanos = TimeUnit.MILLISECONDS.toNanos(maxSuppressMillis);
+    }
+
+    /**
+     * 记录一次正常分片节点的检测结果，并返回是否应该摘除它。(由"Redis服务器状态检测"定时任务调用)
+     *
+     * @param shard 正常的分片节点
+     * @param healthy 本次检测是否成功
+     * @return 连续检测失败的次数达到{@code failureThreshold}时，返回{@code true}(同时记录一次抖动)
+     */
+    public boolean shouldEject(JedisShardInfo shard, boolean healthy) {
+        return this.shouldEject(shard, healthy, System.nanoTime());
+    }
+
+    boolean shouldEject(JedisShardInfo shard, boolean healthy, long now) {
+        FlapState state = this.getState(shard);
+        synchronized (state) {
+            state.successes = 0;
+            if (healthy) {
+                state.failures = 0;
+                return false;
+            }
+            if (++state.failures < failureThreshold) {
+                return false;
+            }
+            state.failures = 0;
+            state.ejectTime = now;
+            double maxPenalty = reuseThreshold * Math.pow(2.0D, (double) maxSuppressNanos / halfLifeNanos);
+            state.penalty = Math.min(this.decay(state, now) + FLAP_PENALTY, maxPenalty);
+            state.penaltyTime = now;
+            if (!state.suppressed && state.penalty > suppressThreshold) {
+                state.suppressed = true;
+                logger.warn("Flapping Redis server is suppressed: {}, penalty: {}", shard, state.penalty);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 记录一次异常分片节点的检测结果，并返回是否应该恢复它。(由"Redis服务器状态检测"定时任务调用)
+     *
+     * @param shard 异常的分片节点
+     * @param healthy 本次检测是否成功
+     * @return 连续检测成功的次数达到{@code recoveryThreshold}、超过了最短保持时间、并且没有被抑制时，返回{@code true}
+     */
+    public boolean shouldRestore(JedisShardInfo shard, boolean healthy) {
+        return this.shouldRestore(shard, healthy, System.nanoTime());
+    }
+
+    boolean shouldRestore(JedisShardInfo shard, boolean healthy, long now) {
+        FlapState state = this.getState(shard);
+        synchronized (state) {
+            state.failures = 0;
+            if (!healthy) {
+                state.successes = 0;
+                return false;
+            }
+            if (state.successes < recoveryThreshold) {
+                state.successes++;
+            }
+            if (state.successes < recoveryThreshold || now - state.ejectTime < minHoldNanos) {
+                return false;
+            }
+            if (state.suppressed) {
+                if (this.decay(state, now) >= reuseThreshold) {
+                    return false;
+                }
+                state.suppressed = false;
+                logger.warn("Suppressed Redis server is reusable: {}", shard);
+            }
+            state.successes = 0;
+            return true;
+        }
+    }
+
+    /**
+     * 返回惩罚值衰减到{@code now}时的值。
+     */
+    private double decay(FlapState state, long now) {
+        if (state.penalty == 0.0D) {
+            return 0.0D;
+        }
+        return state.penalty * Math.pow(0.5D, (double) (now - state.penaltyTime) / halfLifeNanos);
+    }
+
+    private FlapState getState(JedisShardInfo shard) {
+        FlapState state = states.get(shard);
+        if (state == null) {
+            FlapState newState = new FlapState();
+            state = states.putIfAbsent(shard, newState);
+            if (state == null) {
+                state = newState;
+            }
+        }
+        return state;
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回分片节点当前的惩罚值。
+     */
+    public double getPenalty(JedisShardInfo shard) {
+        FlapState state = states.get(shard);
+        if (state == null) {
+            return 0.0D;
+        }
+        synchronized (state) {
+            return this.decay(state, System.nanoTime());
+        }
+    }
+
+    /**
+     * 返回分片节点是否被抑制。
+     */
+    public boolean isSuppressed(JedisShardInfo shard) {
+        FlapState state = states.get(shard);
+        return state != null && state.suppressed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("FlapDampeningPolicy [enabled=").append(enabled).append(", failureThreshold=").append(failureThreshold);
+        sb.append(", recoveryThreshold=").append(recoveryThreshold).append(", penalties={");
+        boolean first = true;
+        for (Map.Entry<JedisShardInfo, FlapState> entry : states.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(entry.getKey()).append('=').append(this.getPenalty(entry.getKey()));
+        }
+        return sb.append("}]").toString();
+    }
+
+    /**
+     * 一个分片节点的抖动状态。(读写都在状态对象的锁内)
+     */
+    private static final class FlapState {
+
+        /** 连续检测失败的次数 */
+        private int              failures;
+
+        /** 连续检测成功的次数 */
+        private int              successes;
+
+        /** 最近一次摘除的时间 */
+        private long             ejectTime;
+
+        /** 最近一次更新时的惩罚值 */
+        private double           penalty;
+
+        /** 最近一次更新惩罚值的时间 */
+        private long             penaltyTime;
+
+        /** 是否被抑制 */
+        private volatile boolean suppressed;
+
+    }
+
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import redis.client.monitor.CommandMetrics;
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisMetrics;
+import redis.client.util.AssertUtils;
+import redis.client.util.LatencyHistogram;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 对冲读(Hedged Read)策略：读命令在分片节点上的等待时间超过延迟阈值后，再向该节点的副本节点发送相同的读命令，采用先返回的结果。
+ * <p>
+ * 延迟阈值是该命令在该分片节点上最近一段时间的延迟百分位(默认p95)，每秒从{@link RedisMetrics}刷新一次，
+ * 所以只有最慢的那部分读命令才会被对冲。<br>
+ * {@link RedisMetrics}中的延迟直方图是累计的(从不清空)，所以每个分片节点的每个命令保存两个窗口起点的快照，
+ * 每个统计窗口轮换一次，用当前快照减去较早的起点快照，即只统计最近1到2个窗口的数据，阈值能跟上分片节点延迟的变化。<br>
+ * 对冲请求受预算限制：每个读命令积累{@code budgetRatio}个令牌，每个对冲请求消耗1个令牌，
+ * 所以对冲带来的额外负载不会超过读命令的{@code budgetRatio}比例(默认5%)，分片节点整体变慢时不会让副本节点的负载翻倍。<br>
+ * 流式检索边读取边交给访问者，不能同时在两个节点上读取，所以不对冲({@link #isHedgeable(RedisCommand)})。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月23日 上午11:05:42
+ * @see ShardReplicas
+ */
+public class HedgePolicy {
+
+    /** 默认的延迟阈值百分位 */
+    public static final double                                                   DEFAULT_PERCENTILE       = 95.0D;
+
+    /** 默认的最小延迟阈值(毫秒) */
+    public static final long                                                     DEFAULT_MIN_DELAY_MILLIS = 1L;
+
+    /** 默认的对冲预算比例 */
+    public static final double                                                   DEFAULT_BUDGET_RATIO     = 0.05D;
+
+    /** 默认计算延迟阈值所需的最少采样数 */
+    public static final long                                                     DEFAULT_MIN_SAMPLES      = 100L;
+
+    /** 默认的延迟统计窗口(秒) */
+    public static final long                                                     DEFAULT_WINDOW_SECONDS   = 30L;
+
+    /** 令牌的定点数精度 */
+    private static final long                                                    TOKEN_SCALE              = 1000L;
+
+    /** 最多积累的令牌数 (允许的突发对冲数) */
+    private static final long                                                    MAX_TOKENS               = 10L * TOKEN_SCALE;
+
+    /** 延迟阈值的刷新间隔 */
+    private static final long                                                    REFRESH_NANOS            = TimeUnit.SECONDS.toNanos(1L);
+
+    /** 没有足够统计数据时的延迟阈值(不对冲) */
+    public static final long                                                     NO_HEDGE                 = -1L;
+
+    private volatile boolean                                                     enabled;
+
+    private volatile double                                                      percentile               = DEFAULT_PERCENTILE;
+
+    private volatile long                                                        minDelayNanos            = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_DELAY_MILLIS);
+
+    private volatile long                                                        budgetTokens             = (long) (DEFAULT_BUDGET_RATIO * TOKEN_SCALE);
+
+    private volatile long                                                        minSamples               = DEFAULT_MIN_SAMPLES;
+
+    private volatile long                                                        windowNanos              = TimeUnit.SECONDS.toNanos(DEFAULT_WINDOW_SECONDS);
+
+    /** 当前的令牌数(定点数) */
+    private final AtomicLong                                                     tokens                   = new AtomicLong(MAX_TOKENS);
+
+    /** 分片节点信息 -> 各命令的延迟阈值 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, AtomicReferenceArray<Threshold>> thresholds               = new ConcurrentHashMap<JedisShardInfo, AtomicReferenceArray<Threshold>>();
+
+    /** 已发送的对冲请求数 */
+    private final AtomicLong                                                     hedgedCount              = new AtomicLong();
+
+    /** 副本节点先返回的对冲请求数 */
+    private final AtomicLong                                                     wonCount                 = new AtomicLong();
+
+    /** 因预算不足而放弃的对冲请求数 */
+    private final AtomicLong                                                     throttledCount           = new AtomicLong();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 返回读命令是否可以对冲。流式检索(*_STREAM)的访问者不能被两个节点的读取同时调用，不能对冲。
+     */
+    public static boolean isHedgeable(RedisCommand command) {
+        return command != RedisCommand.LRANGE_STREAM && command != RedisCommand.ZRANGE_STREAM
+               && command != RedisCommand.ZRANGEBYSCORE_STREAM;
+    }
+
+    /**
+     * 设置是否启用对冲读。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置延迟阈值的百分位。默认值是 {@value #DEFAULT_PERCENTILE}。
+     */
+    public void setPercentile(double percentile) {
+        AssertUtils.isTrue(percentile > 0.0D && percentile < 100.0D, "'percentile' must be in (0, 100) : "
+                                                                     + percentile);
+        this.percentile = percentile;
+    }
+
+    /**
+     * 设置最小延迟阈值(毫秒)，避免在延迟很低时过早对冲。默认值是 {@value #DEFAULT_MIN_DELAY_MILLIS}毫秒。
+     */
+    public void setMinDelayMillis(long minDelayMillis) {
+        AssertUtils.isTrue(minDelayMillis >= 0, "'minDelayMillis' must not be negative : " + minDelayMillis);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+    }
+
+    /**
+     * 设置对冲预算比例，即对冲请求数占读命令数的最大比例。默认值是 {@value #DEFAULT_BUDGET_RATIO}。
+     */
+    public void setBudgetRatio(double budgetRatio) {
+        AssertUtils.isTrue(budgetRatio > 0.0D && budgetRatio <= 1.0D, "'budgetRatio' must be in (0, 1] : "
+                                                                      + budgetRatio);
+        this.budgetTokens = Math.max(1L, (long) (budgetRatio * TOKEN_SCALE));
+    }
+
+    /**
+     * 设置计算延迟阈值所需的最少采样数，采样数不足时不对冲。默认值是 {@value #DEFAULT_MIN_SAMPLES}。
+     */
+    public void setMinSamples(long minSamples) {
+        AssertUtils.isTrue(minSamples > 0, "'minSamples' must be greater than 0 : " + minSamples);
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * 设置延迟统计窗口(秒)，延迟阈值只根据最近1到2个窗口内的读命令计算。默认值是 {@value #DEFAULT_WINDOW_SECONDS}秒。
+     */
+    public void setWindowSeconds(long windowSeconds) {
+        AssertUtils.isTrue(windowSeconds > 0, "'windowSeconds' must be greater than 0 : " + windowSeconds);
+        this.windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    /**
+     * 返回读命令在分片节点上的延迟阈值(纳秒)。
+     *
+     * @param metrics 统计数据
+     * @param command 读命令
+     * @param shard 分片节点
+     * @return 没有足够的统计数据时，返回{@link #NO_HEDGE}。
+     */
+    public long getDelayNanos(RedisMetrics metrics, RedisCommand command, JedisShardInfo shard) {
+        return this.getDelayNanos(metrics, command, shard, System.nanoTime());
+    }
+
+    long getDelayNanos(RedisMetrics metrics, RedisCommand command, JedisShardInfo shard, long now) {
+        AtomicReferenceArray<Threshold> commandThresholds = thresholds.get(shard);
+        if (commandThresholds == null) {
+            AtomicReferenceArray<Threshold> newThresholds = new AtomicReferenceArray<Threshold>(
+                                                                                                RedisCommand.values().length);
+            commandThresholds = thresholds.putIfAbsent(shard, newThresholds);
+            if (commandThresholds == null) {
+                commandThresholds = newThresholds;
+            }
+        }
+
+        Threshold threshold = commandThresholds.get(command.ordinal());
+        if (threshold == null || now - threshold.createTime >= REFRESH_NANOS) {
+            threshold = this.refresh(threshold, metrics, command, shard, now);
+            commandThresholds.set(command.ordinal(), threshold);
+        }
+        return threshold.delayNanos;
+    }
+
+    /**
+     * 刷新延迟阈值，到了窗口边界时轮换窗口起点的快照。
+     */
+    private Threshold refresh(Threshold last, RedisMetrics metrics, RedisCommand command, JedisShardInfo shard,
+                              long now) {
+        LatencyHistogram.Snapshot previousStart = null;
+        LatencyHistogram.Snapshot currentStart = null;
+        long windowStartTime = now;
+        if (last != null) {
+            previousStart = last.previousStart;
+            currentStart = last.currentStart;
+            windowStartTime = last.windowStartTime;
+        }
+
+        CommandMetrics commandMetrics = metrics.getCommandMetrics(command, RedisMetrics.shardName(shard));
+        if (commandMetrics == null) {
+            return new Threshold(NO_HEDGE, now, previousStart, currentStart, windowStartTime);
+        }
+        LatencyHistogram.Snapshot snapshot = commandMetrics.getLatencySnapshot();
+        if (now - windowStartTime >= windowNanos) {
+            previousStart = currentStart;
+            currentStart = snapshot;
+            windowStartTime = now;
+        }
+        // 还没有较早的窗口起点时(刚开始统计)，使用全部数据
+        LatencyHistogram.Snapshot recent = (previousStart == null) ? snapshot : snapshot.since(previousStart);
+        long delayNanos = NO_HEDGE;
+        if (recent.getCount() >= minSamples) {
+            delayNanos = Math.max(TimeUnit.MICROSECONDS.toNanos(recent.getValueAtPercentile(percentile)),
+                                  minDelayNanos);
+        }
+        return new Threshold(delayNanos, now, previousStart, currentStart, windowStartTime);
+    }
+
+    /**
+     * 记录一个读命令，积累对冲预算。
+     */
+    public void onRead() {
+        long add = budgetTokens;
+        for (;;) {
+            long current = tokens.get();
+            if (current >= MAX_TOKENS) {
+                return;
+            }
+            if (tokens.compareAndSet(current, Math.min(current + add, MAX_TOKENS))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 申请发送一个对冲请求。
+     *
+     * @return {@code true}：预算充足，已扣除预算；{@code false}：预算不足，不应发送对冲请求。
+     */
+    public boolean tryHedge() {
+        for (;;) {
+            long current = tokens.get();
+            if (current < TOKEN_SCALE) {
+                throttledCount.incrementAndGet();
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN_SCALE)) {
+                hedgedCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 记录一次副本节点先返回的对冲请求。
+     */
+    public void onHedgeWon() {
+        wonCount.incrementAndGet();
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回已发送的对冲请求数。
+     */
+    public long getHedgedCount() {
+        return hedgedCount.get();
+    }
+
+    /**
+     * 返回副本节点先返回的对冲请求数。
+     */
+    public long getWonCount() {
+        return wonCount.get();
+    }
+
+    /**
+     * 返回因预算不足而放弃的对冲请求数。
+     */
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * 一个命令在一个分片节点上的延迟阈值，以及统计窗口起点的快照。(不可变)
+     */
+    private static final class Threshold {
+
+        private final long                      delayNanos;
+
+        private final long                      createTime;
+
+        /** 上一个窗口起点的快照 */
+        private final LatencyHistogram.Snapshot previousStart;
+
+        /** 当前窗口起点的快照 */
+        private final LatencyHistogram.Snapshot currentStart;
+
+        /** 当前窗口的开始时间 */
+        private final long                      windowStartTime;
+
+        Threshold(long delayNanos, long createTime, LatencyHistogram.Snapshot previousStart,
+                  LatencyHistogram.Snapshot currentStart, long windowStartTime){
+            this.delayNanos = delayNanos;
+            this.createTime = createTime;
+            this.previousStart = previousStart;
+            this.currentStart = currentStart;
+            this.windowStartTime = windowStartTime;
+        }
+
+    }
+
+}
@@ -16,46 +16,75 @@
 
 package redis.client.jedis;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import redis.client.monitor.RedisFlightRecorder;
 import redis.client.util.AssertUtils;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisShardInfo;
 
 /**
  * 基于Jedis实现的"Redis服务器状态检测"定时任务。
+ * <p>
+ * 默认摘除异常的分片节点，它上面的键重新哈希到其它分片节点，恢复正常后再添加回来。<br>
+ * 配置了{@link #setStandbyShards(List) 备用节点}时，异常分片节点在哈希环上的位置由一个正常的备用节点接管({@link StandbyShardInfo})，
+ * 其它分片节点上的键不会移动；被接管的节点恢复正常后不再收回原来的位置(避免键再次移动和读到旧数据)，而是成为新的备用节点。<br>
+ * 配置了{@link #setSlowStartPolicy(SlowStartPolicy) 慢启动策略}时，恢复正常的分片节点逐步接回它在哈希环上的键。<br>
+ * 配置了{@link #setFlapDampeningPolicy(FlapDampeningPolicy) 抖动抑制策略}时，不稳定的分片节点不会在正常和异常之间反复切换。<br>
+ * 配置了{@link #setDualRingPolicy(DualRingPolicy) 双环回读策略}时，分片节点列表变化后在宽限期内保留变化之前的分片节点列表。
  * 
  * @author huagang.li 2015年1月4日 下午6:36:44
  */
 public class JedisServerStateCheckTimerTask extends TimerTask {
 
-    private static final Logger                        logger = LoggerFactory.getLogger(JedisServerStateCheckTimerTask.class);
+    private static final Logger                                   logger = LoggerFactory.getLogger(JedisServerStateCheckTimerTask.class);
 
     /** 活跃的Jedis分片节点信息列表 */
-    private final Set<JedisShardInfo>                  jedisShardSet;
+    private final Set<JedisShardInfo>                             jedisShardSet;
 
     /** PING命令的失败重试次数 */
-    private final int                                  pingRetryTimes;
+    private final int                                             pingRetryTimes;
 
     /*
      * "异常节点的自动摘除和恢复添加"维护表
      */
     /** 活跃的Jedis分片资源节点映射表 */
-    private final ConcurrentMap<Jedis, JedisShardInfo> activeShardMap;
+    private final ConcurrentMap<Jedis, JedisShardInfo>            activeShardMap;
     /** 异常的Jedis分片资源节点映射表 */
-    private final ConcurrentMap<Jedis, JedisShardInfo> brokenShardMap;
+    private final ConcurrentMap<Jedis, JedisShardInfo>            brokenShardMap;
     /** "活跃的节点列表是否有更新"标识 */
-    private final AtomicBoolean                        activeShardListUpdated;
+    private final AtomicBoolean                                   activeShardListUpdated;
+
+    /*
+     * 备用节点接管
+     */
+    /** 初始的分片节点列表 (决定分片节点在哈希环上的位置) */
+    private final List<JedisShardInfo>                            originalShards;
+    /** 空闲的备用节点列表 */
+    private final List<JedisShardInfo>                            standbyShards;
+    /** 初始的分片节点 -> 接管它的备用节点 */
+    private final ConcurrentMap<JedisShardInfo, StandbyShardInfo> takeovers;
+
+    /** 恢复正常的分片节点的慢启动策略 */
+    private volatile SlowStartPolicy                              slowStartPolicy;
+
+    /** 分片节点的抖动抑制策略 */
+    private volatile FlapDampeningPolicy                          flapDampeningPolicy;
+
+    /** 分片节点列表变化后的双环回读策略 */
+    private volatile DualRingPolicy                               dualRingPolicy;
 
     /**
      * 创建一个"Redis服务器状态检测"定时任务对象。
@@ -67,7 +96,7 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
         AssertUtils.notEmpty(jedisShards, "'jedisShards' must not be null and empty");
         logger.debug("Initial Shard List: {}", jedisShards);
 
-        jedisShardSet = new HashSet<JedisShardInfo>(jedisShards.size());
+        jedisShardSet = Collections.newSetFromMap(new ConcurrentHashMap<JedisShardInfo, Boolean>(jedisShards.size()));
         jedisShardSet.addAll(jedisShards);
         this.pingRetryTimes = pingRetryTimes;
 
@@ -80,6 +109,50 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
 
         brokenShardMap = new ConcurrentHashMap<Jedis, JedisShardInfo>(4);
         activeShardListUpdated = new AtomicBoolean(false);
+
+        originalShards = new ArrayList<JedisShardInfo>(jedisShards);
+        standbyShards = new CopyOnWriteArrayList<JedisShardInfo>();
+        takeovers = new ConcurrentHashMap<JedisShardInfo, StandbyShardInfo>(4);
+    }
+
+    /**
+     * 设置备用节点列表。异常分片节点在哈希环上的位置由第一个正常的备用节点接管。
+     * 
+     * @param standbyShards 备用节点列表(只使用其中的host、port、timeout和password)，为空时异常分片节点被摘除
+     */
+    public void setStandbyShards(List<JedisShardInfo> standbyShards) {
+        AssertUtils.isTrue(standbyShards != null, "'standbyShards' must not be null");
+        logger.debug("Standby Shard list: {}", standbyShards);
+
+        this.standbyShards.clear();
+        this.standbyShards.addAll(standbyShards);
+    }
+
+    /**
+     * 设置恢复正常的分片节点的慢启动策略。
+     * 
+     * @param slowStartPolicy 慢启动策略，为{@code null}时恢复正常的分片节点立刻接回所有的键
+     */
+    public void setSlowStartPolicy(SlowStartPolicy slowStartPolicy) {
+        this.slowStartPolicy = slowStartPolicy;
+    }
+
+    /**
+     * 设置分片节点的抖动抑制策略。
+     * 
+     * @param flapDampeningPolicy 抖动抑制策略，为{@code null}或未启用时一次检测失败就摘除，一次检测成功就恢复
+     */
+    public void setFlapDampeningPolicy(FlapDampeningPolicy flapDampeningPolicy) {
+        this.flapDampeningPolicy = flapDampeningPolicy;
+    }
+
+    /**
+     * 设置分片节点列表变化后的双环回读策略。
+     * 
+     * @param dualRingPolicy 双环回读策略，为{@code null}时不保留变化之前的分片节点列表
+     */
+    public void setDualRingPolicy(DualRingPolicy dualRingPolicy) {
+        this.dualRingPolicy = dualRingPolicy;
     }
 
     /**
@@ -88,15 +161,29 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
     @Override
     public void run() {
         logger.debug("All active Redis server list for current check run: {}", jedisShardSet);
+        DualRingPolicy dualRing = dualRingPolicy;
+        List<JedisShardInfo> previousShards = (dualRing != null && dualRing.isEnabled()) ? this.buildActiveShardList()
+                                                                                          : null;
 
         // 1. 探测Redis异常节点是否已恢复正常
-        for (Jedis jedis : brokenShardMap.keySet()) {
-            if (JedisServerStateCheckPolicy.detect(jedis, 0)) { // 异常节点恢复正常了
+        for (Map.Entry<Jedis, JedisShardInfo> entry : brokenShardMap.entrySet()) {
+            Jedis jedis = entry.getKey();
+            if (this.isRecovered(entry.getValue(), JedisServerStateCheckPolicy.detect(jedis, 0))) { // 异常节点恢复正常了
                 // 将恢复正常的节点从"阻塞映射表"移到"活跃映射表"
                 JedisShardInfo activeShard = brokenShardMap.remove(jedis);
                 if (null != activeShard) { // 保证在并发环境下，只会被移除一次
                     logger.warn("Broken Redis server now is active: {}", activeShard);
+                    RedisFlightRecorder.shardState(activeShard, false);
 
+                    if (this.isTakenOver(activeShard)) { // 原来的位置已被备用节点接管，成为新的备用节点
+                        standbyShards.add(activeShard);
+                        logger.warn("Recovered Redis server becomes a standby: {}", activeShard);
+                        continue;
+                    }
+                    SlowStartPolicy slowStart = slowStartPolicy;
+                    if (slowStart != null) { // 先开始慢启动，再加入活跃的节点列表
+                        slowStart.onShardRecovered(activeShard);
+                    }
                     jedisShardSet.add(activeShard);
                     activeShardMap.put(jedis, activeShard);
                     activeShardListUpdated.compareAndSet(false, true);
@@ -108,12 +195,14 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
         }
 
         // 2. 探测Redis正常节点是否出现异常
-        for (Jedis jedis : activeShardMap.keySet()) {
-            if (!JedisServerStateCheckPolicy.detect(jedis, pingRetryTimes)) { // 正常节点出现异常了
+        for (Map.Entry<Jedis, JedisShardInfo> entry : activeShardMap.entrySet()) {
+            Jedis jedis = entry.getKey();
+            if (this.isBroken(entry.getValue(), JedisServerStateCheckPolicy.detect(jedis, pingRetryTimes))) { // 正常节点出现异常了
                 // 将出现异常的节点从"活跃映射表"移到"阻塞映射表"
                 JedisShardInfo brokenShard = activeShardMap.remove(jedis);
                 if (null != brokenShard) { // 保证在并发环境下，只会被移除一次
                     logger.warn("Active Redis server now is broken: {}", brokenShard);
+                    RedisFlightRecorder.shardState(brokenShard, true);
 
                     jedis.close();
                     jedisShardSet.remove(brokenShard);
@@ -125,6 +214,83 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
                 }
             }
         }
+
+        // 3. 由正常的备用节点接管异常分片节点在哈希环上的位置
+        if (!standbyShards.isEmpty()) {
+            for (JedisShardInfo originalShard : originalShards) {
+                JedisShardInfo shard = this.getOccupant(originalShard);
+                if (!jedisShardSet.contains(shard) && !this.takeOver(shard)) {
+                    break; // 没有正常的备用节点了
+                }
+            }
+        }
+
+        // 4. 记录变化之前的分片节点列表 (同一个JedisShardInfo对象在变化前后不变，按对象标识比较)
+        if (previousShards != null && !previousShards.equals(this.buildActiveShardList())) {
+            dualRing.onTopologyChanged(previousShards);
+        }
+    }
+
+    /**
+     * 根据本次检测结果，判断异常的分片节点是否恢复正常了。
+     */
+    private boolean isRecovered(JedisShardInfo brokenShard, boolean healthy) {
+        FlapDampeningPolicy flapDampening = flapDampeningPolicy;
+        if (flapDampening == null || !flapDampening.isEnabled()) {
+            return healthy;
+        }
+        return flapDampening.shouldRestore(brokenShard, healthy);
+    }
+
+    /**
+     * 根据本次检测结果，判断正常的分片节点是否出现异常了。
+     */
+    private boolean isBroken(JedisShardInfo activeShard, boolean healthy) {
+        FlapDampeningPolicy flapDampening = flapDampeningPolicy;
+        if (flapDampening == null || !flapDampening.isEnabled()) {
+            return !healthy;
+        }
+        return flapDampening.shouldEject(activeShard, healthy);
+    }
+
+    /**
+     * 返回当前占据初始分片节点在哈希环上位置的节点。
+     */
+    private JedisShardInfo getOccupant(JedisShardInfo originalShard) {
+        StandbyShardInfo takeover = takeovers.get(originalShard);
+        return (takeover == null) ? originalShard : takeover;
+    }
+
+    /**
+     * 返回节点原来的位置是否已被其它备用节点接管。
+     */
+    private boolean isTakenOver(JedisShardInfo shard) {
+        return this.getOccupant(StandbyShardInfo.getOriginalShard(shard)) != shard;
+    }
+
+    /**
+     * 由第一个正常的备用节点接管异常分片节点的位置。
+     * 
+     * @param brokenShard 异常的分片节点
+     * @return 没有正常的备用节点时，返回{@code false}
+     */
+    private boolean takeOver(JedisShardInfo brokenShard) {
+        for (JedisShardInfo standbyShard : standbyShards) {
+            StandbyShardInfo takeover = StandbyShardInfo.takeOver(standbyShard, brokenShard);
+            Jedis jedis = takeover.createResource();
+            if (JedisServerStateCheckPolicy.detect(jedis, pingRetryTimes)) {
+                standbyShards.remove(standbyShard);
+                takeovers.put(takeover.getTakenOverShard(), takeover);
+                logger.warn("Standby Redis server takes over broken shard: {}", takeover);
+
+                jedisShardSet.add(takeover);
+                activeShardMap.put(jedis, takeover);
+                activeShardListUpdated.compareAndSet(false, true);
+                return true;
+            }
+            jedis.close();
+        }
+        return false;
     }
 
     /**
@@ -136,6 +302,16 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
         return activeShardListUpdated.get();
     }
 
+    /**
+     * 返回节点当前是否正常活跃。
+     * 
+     * @param jedisShard 节点信息
+     * @return
+     */
+    public boolean isActive(JedisShardInfo jedisShard) {
+        return jedisShardSet.contains(jedisShard);
+    }
+
     /**
      * 获取所有正常活跃的Jedis分片节点信息列表。
      * 
@@ -146,4 +322,37 @@ public class JedisServerStateCheckTimerTask extends TimerTask {
         return Collections.unmodifiableSet(jedisShardSet);
     }
 
+    /**
+     * 获取所有正常活跃的Jedis分片节点信息列表，按初始的分片节点顺序排列(接管了分片节点的备用节点排在被接管节点的位置上)。
+     * <p>
+     * 没有名称的分片节点在哈希环上的位置由它在列表中的序号决定，所以创建{@link redis.clients.jedis.ShardedJedis ShardedJedis}时应该使用这个列表。
+     * 
+     * @return
+     */
+    public List<JedisShardInfo> getActiveJedisShardList() {
+        activeShardListUpdated.compareAndSet(true, false);
+        return this.buildActiveShardList();
+    }
+
+    /**
+     * 按初始的分片节点列表的顺序创建正常活跃的分片节点列表，不会重置"活跃的节点列表是否有更新"标识。
+     */
+    private List<JedisShardInfo> buildActiveShardList() {
+        List<JedisShardInfo> activeShards = new ArrayList<JedisShardInfo>(originalShards.size());
+        for (JedisShardInfo originalShard : originalShards) {
+            JedisShardInfo shard = this.getOccupant(originalShard);
+            if (jedisShardSet.contains(shard)) {
+                activeShards.add(shard);
+            }
+        }
+        return activeShards;
+    }
+
+    /**
+     * 返回空闲的备用节点列表。
+     */
+    public List<JedisShardInfo> getStandbyShards() {
+        return Collections.unmodifiableList(standbyShards);
+    }
+
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * "跳跃一致性哈希"(Jump Consistent Hash)分片路由器。
+ * <p>
+ * 不需要哈希环，没有额外的内存开销，每个键的路由只需要一次哈希和O(ln n)次简单运算，且各分片节点的键分布几乎完全均匀。
+ * 分片节点的权重通过在桶列表中重复出现相应的次数来实现。
+ * <p>
+ * <font color="red">限制：桶是按下标编号的，只有在列表末尾增加或删除分片节点时，才只会迁移最少的键；
+ * 删除中间的分片节点会导致其后所有分片节点的键重新分布！</font>
+ * 所以扩容时应把新的分片节点追加到服务器列表的末尾；单个分片节点暂时不可用时，由{@link CustomShardedJedis}退化为按哈希环路由，桶列表本身保持不变。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月27日 下午3:42:08
+ * @see <a href="http://arxiv.org/abs/1406.2294">A Fast, Minimal Memory, Consistent Hash Algorithm</a>
+ */
+public class JumpHashRouter implements ShardRouter {
+
+    /** 线性同余随机数生成器的乘数 */
+    private static final long          LCG_MULTIPLIER = 2862933555777941757L;
+
+    /** 2^31 */
+    private static final double        TWO_POW_31     = (double) (1L << 31);
+
+    /** 分片节点列表 */
+    private final List<JedisShardInfo> shards;
+
+    /** 桶 -> 分片节点 (按权重重复) */
+    private final JedisShardInfo[]     buckets;
+
+    /** 键的哈希算法 */
+    private final Hashing              algo;
+
+    /**
+     * 创建一个"跳跃一致性哈希"分片路由器。
+     *
+     * @param shards 分片节点列表(顺序决定桶的编号，扩容时只能追加到末尾)
+     * @param algo 键的哈希算法
+     */
+    public JumpHashRouter(List<JedisShardInfo> shards, Hashing algo){
+        AssertUtils.notEmpty(shards, "'shards' must not be null and empty");
+        AssertUtils.isTrue(algo != null, "'algo' must not be null");
+
+        this.shards = Collections.unmodifiableList(new ArrayList<JedisShardInfo>(shards));
+        List<JedisShardInfo> buckets = new ArrayList<JedisShardInfo>(shards.size());
+        for (JedisShardInfo shardInfo : shards) {
+            AssertUtils.isTrue(shardInfo.getWeight() > 0, "shard weight must be greater than 0 : " + shardInfo);
+            for (int i = 0; i < shardInfo.getWeight(); i++) {
+                buckets.add(shardInfo);
+            }
+        }
+        this.buckets = buckets.toArray(new JedisShardInfo[buckets.size()]);
+        this.algo = algo;
+    }
+
+    @Override
+    public JedisShardInfo getShardInfo(byte[] keyTag) {
+        return buckets[jumpConsistentHash(algo.hash(keyTag), buckets.length)];
+    }
+
+    @Override
+    public List<JedisShardInfo> getShards() {
+        return shards;
+    }
+
+    /**
+     * 返回键的哈希值所在的桶。
+     * <p>
+     * 桶数量从n增加到n+1时，只有约1/(n+1)的键会改变所在的桶，且都是移动到新增的第n个桶。
+     *
+     * @param key 键的哈希值
+     * @param bucketNum 桶数量
+     * @return 桶的编号，取值范围为[0, bucketNum)
+     */
+    static int jumpConsistentHash(long key, int bucketNum) {
+        long bucket = -1L;
+        long next = 0L;
+        while (next < bucketNum) {
+            bucket = next;
+            key = key * LCG_MULTIPLIER + 1L;
+            next = (long) ((bucket + 1L) * (TWO_POW_31 / (double) ((key >>> 33) + 1L)));
+        }
+        return (int) bucket;
+    }
+
+    @Override
+    public String toString() {
+        return "JumpHashRouter [shards=" + shards + ", bucketNum=" + buckets.length + "]";
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import redis.client.util.AssertUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * "带权重的最高随机权重哈希"(Weighted Rendezvous Hashing)分片路由器。
+ * <p>
+ * 每个键对每个分片节点计算一个分数，选择分数最高的分片节点：{@code score = weight / -ln(hash(key, shard))}，
+ * 其中{@code hash(key, shard)}是均匀分布在(0, 1)之间的伪随机数。键分布严格按权重成比例，且不需要哈希环。
+ * <p>
+ * 分片节点以名称(没有名称时为"host:port")标识，与它在列表中的位置无关：增加或删除任意一个分片节点，都只会迁移最少的键。
+ * 代价是每个键的路由需要计算O(n)次分数，适合分片节点不多(几十个以内)的场景；所有分片节点的权重都相同时，不需要计算对数。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月27日 下午4:05:31
+ */
+public class RendezvousRouter implements ShardRouter {
+
+    /** 2^-53 */
+    private static final double        TWO_POW_NEG_53 = 1.0 / (1L << 53);
+
+    /** 分片节点列表 */
+    private final List<JedisShardInfo> shards;
+
+    /** 分片节点数组 (与{@link #seeds}、{@link #weights}一一对应) */
+    private final JedisShardInfo[]     shardArray;
+
+    /** 各分片节点标识的哈希值 */
+    private final long[]               seeds;
+
+    /** 各分片节点的权重 */
+    private final double[]             weights;
+
+    /** 所有分片节点的权重是否都相同 */
+    private final boolean              uniformWeight;
+
+    /** 键的哈希算法 */
+    private final Hashing              algo;
+
+    /**
+     * 创建一个"带权重的最高随机权重哈希"分片路由器。
+     *
+     * @param shards 分片节点列表(每个分片节点的标识都必须唯一)
+     * @param algo 键和分片节点标识的哈希算法
+     */
+    public RendezvousRouter(List<JedisShardInfo> shards, Hashing algo){
+        AssertUtils.notEmpty(shards, "'shards' must not be null and empty");
+        AssertUtils.isTrue(algo != null, "'algo' must not be null");
+
+        int shardNum = shards.size();
+        this.shards = Collections.unmodifiableList(new ArrayList<JedisShardInfo>(shards));
+        this.shardArray = shards.toArray(new JedisShardInfo[shardNum]);
+        this.seeds = new long[shardNum];
+        this.weights = new double[shardNum];
+        Set<String> ids = new HashSet<String>(shardNum * 2);
+        boolean uniformWeight = true;
+        for (int i = 0; i < shardNum; i++) {
+            JedisShardInfo shardInfo = shardArray[i];
+            AssertUtils.isTrue(shardInfo.getWeight() > 0, "shard weight must be greater than 0 : " + shardInfo);
+            String id = getShardId(shardInfo);
+            AssertUtils.isTrue(ids.add(id), "duplicate shard : " + id);
+
+            seeds[i] = mix(algo.hash(SafeEncoder.encode(id)));
+            weights[i] = shardInfo.getWeight();
+            uniformWeight &= (shardInfo.getWeight() == shardArray[0].getWeight());
+        }
+        this.uniformWeight = uniformWeight;
+        this.algo = algo;
+    }
+
+    private static String getShardId(JedisShardInfo shardInfo) {
+        String name = shardInfo.getName();
+        return StringUtils.isEmpty(name) ? shardInfo.getHost() + ":" + shardInfo.getPort() : name;
+    }
+
+    @Override
+    public JedisShardInfo getShardInfo(byte[] keyTag) {
+        long keyHash = algo.hash(keyTag);
+        int best = 0;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < seeds.length; i++) {
+            double u = toUnitInterval(mix(keyHash ^ seeds[i]));
+            // 权重相同时，-1/ln(u)与u单调一致，直接比较u即可
+            double score = uniformWeight ? u : weights[i] / -Math.log(u);
+            if (score > bestScore) {
+                bestScore = score;
+                best = i;
+            }
+        }
+        return shardArray[best];
+    }
+
+    @Override
+    public List<JedisShardInfo> getShards() {
+        return shards;
+    }
+
+    /**
+     * 64位混淆函数(MurmurHash3的fmix64)，使键和分片节点标识的每一位都充分影响结果。
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 将64位哈希值映射为(0, 1)开区间内的{@code double}数值(取高53位)。
+     */
+    private static double toUnitInterval(long h) {
+        return ((h >>> 11) + 0.5) * TWO_POW_NEG_53;
+    }
+
+    @Override
+    public String toString() {
+        return "RendezvousRouter [shards=" + shards + "]";
+    }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import redis.client.monitor.RedisCommand;
+import redis.client.util.AssertUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 复制键(热点键复制)：被标记为复制的键在多个分片节点上各保存一份副本，读流量分散到这些分片节点上，
+ * 用于全局配置、热门榜单等读取非常频繁、单个分片节点扛不住的键。
+ * <p>
+ * 键的副本分片节点是键本来所在的分片节点，加上按"键标记#1"、"键标记#2"...依次探测哈希环得到的其它分片节点，共{@code replicaNum}个。
+ * <ul>
+ * <li>写命令({@link #isWrite(RedisCommand)})：在所有副本分片节点上并行执行，返回键本来所在的分片节点上的结果；
+ * <li>读命令：按{@link ReadMode 读取方式}选择一个副本分片节点，没有读到数据时(如刚标记为复制键)再读取键本来所在的分片节点。
+ * </ul>
+ * <font color="red">注意：</font>
+ * <ul>
+ * <li>副本之间没有事务保证，某个副本分片节点写入失败时只记录日志，该副本可能短暂不一致，所以复制键最好设置过期时间；
+ * <li>分片节点不可用或恢复时，副本分片节点会随哈希环变化，新的副本分片节点要等下一次写入后才有数据；
+ * <li>批量操作中复制键的写命令会发送到所有副本分片节点，读命令只读取键本来所在的分片节点。
+ * </ul>
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月28日 下午2:10:25
+ */
+public class ReplicatedKeys {
+
+    /** 默认的副本数量 */
+    public static final int                                    DEFAULT_REPLICA_NUM  = 3;
+
+    /** 键模式的分隔符 */
+    private static final String                                KEY_SEPARATOR        = ",";
+
+    /** 前缀模式的通配符 */
+    private static final String                                WILDCARD             = "*";
+
+    /** 写命令 */
+    private static final Set<RedisCommand>                     WRITE_COMMANDS       = EnumSet.of(RedisCommand.EXPIRE,
+                                                                                                 RedisCommand.DEL,
+                                                                                                 RedisCommand.SET,
+                                                                                                 RedisCommand.SETEX,
+                                                                                                 RedisCommand.LPUSH,
+                                                                                                 RedisCommand.RPOP,
+                                                                                                 RedisCommand.LTRIM,
+                                                                                                 RedisCommand.ZADD,
+                                                                                                 RedisCommand.ZADD_AND_REM,
+                                                                                                 RedisCommand.ZREMRANGEBYSCORE,
+                                                                                                 RedisCommand.ZREMRANGEBYRANK);
+
+    /**
+     * 读命令选择副本分片节点的方式。
+     */
+    public static enum ReadMode {
+        /** 随机选择 */
+        RANDOM,
+        /** 随机选择两个，再选择其中在途读命令较少的一个(Power of Two Choices) */
+        LEAST_OUTSTANDING;
+    }
+
+    /** 键模式 (不可变，整体替换) */
+    private volatile KeyPatterns                               keyPatterns          = new KeyPatterns(null);
+
+    private volatile int                                       replicaNum           = DEFAULT_REPLICA_NUM;
+
+    private volatile ReadMode                                  readMode             = ReadMode.RANDOM;
+
+    /** 分片节点信息 -> 在途读命令数 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, AtomicInteger> outstandings         = new ConcurrentHashMap<JedisShardInfo, AtomicInteger>();
+
+    /** 复制键的写命令数 */
+    private final AtomicLong                                   replicatedWriteCount = new AtomicLong();
+
+    /** 读取副本(非键本来所在的分片节点)的读命令数 */
+    private final AtomicLong                                   replicaReadCount     = new AtomicLong();
+
+    /**
+     * 返回是否有复制键。
+     */
+    public boolean isEnabled() {
+        return !keyPatterns.isEmpty();
+    }
+
+    /**
+     * 设置复制键。
+     * 
+     * <pre>
+     * 格式：
+     *     keyPattern[, keyPattern ...]
+     *     keyPattern：完整的键，或者以"*"结尾的键前缀
+     * 
+     * 示例：
+     *     "config:global, trending:*"
+     * </pre>
+     *
+     * @param keys 复制键，为空时不复制任何键
+     */
+    public void setKeys(String keys) {
+        this.keyPatterns = new KeyPatterns(keys);
+    }
+
+    /**
+     * 设置副本数量(包括键本来所在的分片节点)，超过正常的分片节点数量时按分片节点数量复制。默认值是 {@value #DEFAULT_REPLICA_NUM}。
+     */
+    public void setReplicaNum(int replicaNum) {
+        AssertUtils.isTrue(replicaNum > 1, "'replicaNum' must be greater than 1 : " + replicaNum);
+        this.replicaNum = replicaNum;
+    }
+
+    public int getReplicaNum() {
+        return replicaNum;
+    }
+
+    /**
+     * 设置读命令选择副本分片节点的方式。默认随机选择({@link ReadMode#RANDOM})。
+     */
+    public void setReadMode(ReadMode readMode) {
+        AssertUtils.isTrue(readMode != null, "'readMode' must not be null");
+        this.readMode = readMode;
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * 返回键是否是复制键。
+     */
+    public boolean isReplicated(String key) {
+        return keyPatterns.matches(key);
+    }
+
+    /**
+     * 返回命令是否是写命令(需要在所有副本分片节点上执行)。
+     */
+    public static boolean isWrite(RedisCommand command) {
+        return WRITE_COMMANDS.contains(command);
+    }
+
+    /**
+     * 选择读命令的副本分片节点。
+     *
+     * @param replicaShards 副本分片节点列表(第一个是键本来所在的分片节点)
+     */
+    public JedisShardInfo chooseReadShard(List<JedisShardInfo> replicaShards) {
+        int size = replicaShards.size();
+        if (size == 1) {
+            return replicaShards.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        JedisShardInfo chosen = replicaShards.get(first);
+        if (readMode == ReadMode.LEAST_OUTSTANDING) {
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            JedisShardInfo other = replicaShards.get(second);
+            if (this.getOutstanding(other).get() < this.getOutstanding(chosen).get()) {
+                chosen = other;
+            }
+        }
+        if (chosen != replicaShards.get(0)) {
+            replicaReadCount.incrementAndGet();
+        }
+        return chosen;
+    }
+
+    /**
+     * 记录一个读命令开始在副本分片节点上执行。
+     */
+    public void onReadStart(JedisShardInfo shard) {
+        this.getOutstanding(shard).incrementAndGet();
+    }
+
+    /**
+     * 记录一个读命令在副本分片节点上执行完成。
+     */
+    public void onReadEnd(JedisShardInfo shard) {
+        this.getOutstanding(shard).decrementAndGet();
+    }
+
+    /**
+     * 记录一个复制键的写命令。
+     */
+    public void onWrite() {
+        replicatedWriteCount.incrementAndGet();
+    }
+
+    private AtomicInteger getOutstanding(JedisShardInfo shard) {
+        AtomicInteger outstanding = outstandings.get(shard);
+        if (outstanding == null) {
+            AtomicInteger newOutstanding = new AtomicInteger();
+            outstanding = outstandings.putIfAbsent(shard, newOutstanding);
+            if (outstanding == null) {
+                outstanding = newOutstanding;
+            }
+        }
+        return outstanding;
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回复制键的写命令数。
+     */
+    public long getReplicatedWriteCount() {
+        return replicatedWriteCount.get();
+    }
+
+    /**
+     * 返回读取副本(非键本来所在的分片节点)的读命令数。
+     */
+    public long getReplicaReadCount() {
+        return replicaReadCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicatedKeys [keys=" + keyPatterns + ", replicaNum=" + replicaNum + ", readMode=" + readMode + "]";
+    }
+
+    /**
+     * 复制键的模式。(不可变)
+     */
+    private static final class KeyPatterns {
+
+        /** 完整的键 */
+        private final Set<String> keys;
+
+        /** 键前缀 */
+        private final String[]    prefixes;
+
+        KeyPatterns(String patterns){
+            Set<String> keys = new HashSet<String>();
+            List<String> prefixes = new ArrayList<String>();
+            if (!StringUtils.isEmpty(patterns)) {
+                for (String pattern : patterns.split(KEY_SEPARATOR)) {
+                    pattern = pattern.trim();
+                    if (StringUtils.isEmpty(pattern)) {
+                        continue;
+                    }
+                    if (pattern.endsWith(WILDCARD)) {
+                        String prefix = pattern.substring(0, pattern.length() - WILDCARD.length());
+                        AssertUtils.notEmpty(prefix, "key prefix must not be empty : " + pattern);
+                        prefixes.add(prefix);
+                    } else {
+                        keys.add(pattern);
+                    }
+                }
+            }
+            this.keys = keys.isEmpty() ? Collections.<String> emptySet() : keys;
+            this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+        }
+
+        boolean isEmpty() {
+            return keys.isEmpty() && prefixes.length == 0;
+        }
+
+        boolean matches(String key) {
+            if (keys.contains(key)) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (key.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (String key : keys) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(key);
+            }
+            for (String prefix : prefixes) {
+                sb.append(sb.length() == 0 ? "" : ", ").append(prefix).append(WILDCARD);
+            }
+            return sb.toString();
+        }
+    }
+
+}
@@ -0,0 +1,592 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Hashing;
+import redis.clients.util.Sharded;
+
+/**
+ * 哈希环的在线重新分片工具，用于向连接池的哈希环添加(或移除)分片节点，避免移动的键一次性全部在新的分片节点上未命中。
+ * <p>
+ * 重新分片过程：
+ * <ol>
+ * <li>按新、旧两个分片节点列表分别创建哈希环，新哈希环上所在分片节点不同的键就是需要移动的键({@link #isMoved(String)})；
+ * <li>{@link #reshard(CustomShardedJedisPool, int)}先把自己设置到连接池上，之后直到切换，RedisService的每个写命令执行成功后都会
+ * {@link #markDirty(String) 记录}写入过的需要移动的键(脏键)，只在内存中记录，不访问Redis服务器；
+ * <li>用SCAN命令遍历旧分片节点上的所有键，每批需要移动的键在源节点上以管道方式执行DUMP和PTTL，在目标节点上以管道方式执行DUMP比较，
+ * 目标节点上没有或者不同的键再以管道方式执行DEL和RESTORE(保留剩余过期时间)，源节点上已经没有的键从目标节点上删除，
+ * 源节点上的键保留(切换之前读写命令仍然发送到源节点)；
+ * <li>复制按{@link #setMaxKeysPerSecond(int) 每秒键数量}限速，SCAN游标在每批之后保存，失败或中断后再次调用{@link #copy()}会从保存的游标处继续，
+ * 游标也可以通过{@link #getCursors()}和{@link #setCursors(Map)}持久化，在其它进程中继续；
+ * <li>每遍复制的最后，以同样的方式复制这一遍期间记录的脏键(源节点上已经被删除的键从目标节点上删除)，它们也计入本遍复制的键数量；
+ * <li>重复复制，直到一遍复制的键数量不超过{@link #setCaughtUpKeyNum(int) 追平阈值}，再复制一次脏键后，
+ * {@link CustomShardedJedisPool#switchShards(List) 原子地切换}连接池的哈希环({@link #reshard(CustomShardedJedisPool, int)})，
+ * 切换之后最后复制一次目标节点上还没有的脏键。
+ * </ol>
+ * 切换之后仍然没有追平的少量键会在新的分片节点上未命中，配合{@link DualRingPolicy 双环回读}可以回退读取原来的分片节点。
+ * <p>
+ * <font color="red">注意：</font>
+ * <ul>
+ * <li>只支持按哈希环路由的连接池，不支持{@link ShardRouter 分片路由器}；
+ * <li>脏键在复制线程中复制，不增加写命令的耗时；最后一次复制脏键到切换之间修改过的键，如果目标节点上已经有旧的副本，切换之后会读到旧值；
+ * <li>脏键复制不限速，它的数量受重新分片期间写入的不同移动键数量限制；
+ * <li>没有追平时连接池保持记录脏键，可以再次调用{@link #reshard(CustomShardedJedisPool, int)}继续，
+ * 或者调用{@link #abort(CustomShardedJedisPool)}放弃(之后目标节点上的键可能过时，重新开始之前应该清空)；
+ * <li>源节点上的旧键不会删除，切换之后不再被访问，直到它们过期或被淘汰；
+ * <li>哈希环只在当前进程内有效，多个应用实例共用Redis节点时，必须在所有实例上切换到相同的分片节点列表。
+ * </ul>
+ *
+ * @author huagang.li 2015年3月2日 上午10:16:42
+ */
+public class RingResharder {
+
+    private static final Logger                    logger                      = LoggerFactory.getLogger(RingResharder.class);
+
+    /** 每批复制的默认键数量 */
+    public static final int                        DEFAULT_BATCH_SIZE          = 100;
+
+    /** SCAN命令每次遍历的默认键数量 */
+    public static final int                        DEFAULT_SCAN_COUNT          = 1000;
+
+    /** 默认的每秒复制(比较)的最大键数量 */
+    public static final int                        DEFAULT_MAX_KEYS_PER_SECOND = 5000;
+
+    /** 默认的追平阈值 */
+    public static final int                        DEFAULT_CAUGHT_UP_KEY_NUM   = 10;
+
+    /** 旧的分片节点列表 */
+    private final List<JedisShardInfo>             oldShards;
+    /** 新的分片节点列表 */
+    private final List<JedisShardInfo>             newShards;
+    /** 旧的哈希环 */
+    private final Sharded<Jedis, JedisShardInfo>   oldRing;
+    /** 新的哈希环 */
+    private final Sharded<Jedis, JedisShardInfo>   newRing;
+
+    /** 每批复制的键数量 */
+    private int                                    batchSize                   = DEFAULT_BATCH_SIZE;
+
+    /** SCAN命令每次遍历的键数量 */
+    private int                                    scanCount                   = DEFAULT_SCAN_COUNT;
+
+    /** 每秒复制(比较)的最大键数量，0表示不限速 */
+    private int                                    maxKeysPerSecond            = DEFAULT_MAX_KEYS_PER_SECOND;
+
+    /** 追平阈值 */
+    private int                                    caughtUpKeyNum              = DEFAULT_CAUGHT_UP_KEY_NUM;
+
+    /** 源节点("host:port") -> 本遍复制的SCAN游标，遍历完成的源节点不在其中 (本遍还没有开始时为空) */
+    // @GuardedBy("this")
+    private final Map<String, String>              cursors                     = new LinkedHashMap<String, String>();
+    /** 本遍已复制的键数量 */
+    // @GuardedBy("this")
+    private int                                    passCopiedKeyNum;
+
+    /** 重新分片期间写入过的需要移动的键(脏键)，由下一遍复制负责复制 */
+    private final Set<String>                      dirtyKeys                   = Collections
+                                                                                   .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * 创建一个哈希环的在线重新分片工具。
+     *
+     * @param oldShards 旧的分片节点列表，必须与连接池当前使用的相同
+     * @param newShards 新的分片节点列表
+     * @param algo 哈希算法，必须与连接池使用的相同
+     * @param keyTagPattern 键标记模式，必须与连接池使用的相同
+     */
+    public RingResharder(List<JedisShardInfo> oldShards, List<JedisShardInfo> newShards, Hashing algo,
+                         Pattern keyTagPattern){
+        AssertUtils.notEmpty(oldShards, "'oldShards' must not be null and empty");
+        AssertUtils.notEmpty(newShards, "'newShards' must not be null and empty");
+
+        this.oldShards = new ArrayList<JedisShardInfo>(oldShards);
+        this.newShards = new ArrayList<JedisShardInfo>(newShards);
+        this.oldRing = new Sharded<Jedis, JedisShardInfo>(this.oldShards, algo, keyTagPattern);
+        this.newRing = new Sharded<Jedis, JedisShardInfo>(this.newShards, algo, keyTagPattern);
+    }
+
+    /**
+     * 设置每批复制的键数量。
+     * <p>
+     * 默认值是 {@value #DEFAULT_BATCH_SIZE}个。
+     */
+    public void setBatchSize(int batchSize) {
+        AssertUtils.isTrue(batchSize > 0, "'batchSize' property must be greater than 0 : " + batchSize);
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 设置SCAN命令每次遍历的键数量。
+     * <p>
+     * 默认值是 {@value #DEFAULT_SCAN_COUNT}个。
+     */
+    public void setScanCount(int scanCount) {
+        AssertUtils.isTrue(scanCount > 0, "'scanCount' property must be greater than 0 : " + scanCount);
+
+        this.scanCount = scanCount;
+    }
+
+    /**
+     * 设置每秒复制(比较)的最大键数量，0表示不限速。
+     * <p>
+     * 默认值是 {@value #DEFAULT_MAX_KEYS_PER_SECOND}个。
+     */
+    public void setMaxKeysPerSecond(int maxKeysPerSecond) {
+        AssertUtils.isTrue(maxKeysPerSecond >= 0, "'maxKeysPerSecond' property must not be negative : "
+                                                  + maxKeysPerSecond);
+
+        this.maxKeysPerSecond = maxKeysPerSecond;
+    }
+
+    /**
+     * 设置追平阈值，一遍复制的键数量不超过它时认为已经追平，可以切换哈希环。
+     * <p>
+     * 默认值是 {@value #DEFAULT_CAUGHT_UP_KEY_NUM}个。
+     */
+    public void setCaughtUpKeyNum(int caughtUpKeyNum) {
+        AssertUtils.isTrue(caughtUpKeyNum >= 0, "'caughtUpKeyNum' property must not be negative : " + caughtUpKeyNum);
+
+        this.caughtUpKeyNum = caughtUpKeyNum;
+    }
+
+    // ---------------- 移动的键 ----------------
+    /**
+     * 返回键在旧哈希环上所在的分片节点。
+     */
+    public JedisShardInfo getOldOwner(String key) {
+        return oldRing.getShardInfo(key);
+    }
+
+    /**
+     * 返回键在新哈希环上所在的分片节点。
+     */
+    public JedisShardInfo getNewOwner(String key) {
+        return newRing.getShardInfo(key);
+    }
+
+    /**
+     * 返回键是否需要移动，即在新、旧哈希环上所在的Redis服务器不同。
+     */
+    public boolean isMoved(String key) {
+        return !isSameServer(oldRing.getShardInfo(key), newRing.getShardInfo(key));
+    }
+
+    /**
+     * 用随机键抽样估算需要移动的键所占的比例。
+     *
+     * @param sampleNum 抽样的键数量
+     */
+    public double estimateMovedRatio(int sampleNum) {
+        AssertUtils.isTrue(sampleNum > 0, "'sampleNum' must be greater than 0 : " + sampleNum);
+
+        Random random = new Random();
+        int movedNum = 0;
+        for (int i = 0; i < sampleNum; i++) {
+            if (this.isMoved(Long.toHexString(random.nextLong()))) {
+                movedNum++;
+            }
+        }
+        return (double) movedNum / sampleNum;
+    }
+
+    // ---------------- 复制 ----------------
+    /**
+     * 在后台线程中复制，直到追平后切换连接池的哈希环。
+     *
+     * @return 是否已切换
+     * @see #reshard(CustomShardedJedisPool, int)
+     */
+    public Future<Boolean> reshardInBackground(final CustomShardedJedisPool pool, final int maxPasses) {
+        FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() {
+                return reshard(pool, maxPasses);
+            }
+        });
+        Thread thread = new Thread(task, "RingResharder");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * 重复复制，直到一遍复制的键数量不超过追平阈值后，原子地切换连接池的哈希环。
+     *
+     * @param pool 连接池
+     * @param maxPasses 最多复制的遍数
+     * @return 已追平并切换时，返回{@code true}；复制了{@code maxPasses}遍仍然没有追平(或者被中断)时，返回{@code false}
+     * @throws redis.clients.jedis.exceptions.JedisException 当复制失败时(可以再次调用继续复制)
+     */
+    public boolean reshard(CustomShardedJedisPool pool, int maxPasses) {
+        AssertUtils.isTrue(pool != null, "'pool' must not be null");
+        AssertUtils.isTrue(maxPasses > 0, "'maxPasses' must be greater than 0 : " + maxPasses);
+
+        pool.setResharder(this); // 先开始记录脏键，之后复制的键在源节点上的变化都会在下一遍复制到目标节点
+        for (int pass = 1; pass <= maxPasses; pass++) {
+            int copiedKeyNum = this.copy();
+            if (copiedKeyNum < 0) { // 被中断了
+                return false;
+            }
+            logger.info("Resharding pass {} copied keys: {}", pass, copiedKeyNum);
+            if (copiedKeyNum <= caughtUpKeyNum) {
+                this.copyDirtyKeys(true);
+                pool.switchShards(newShards);
+                this.copyDirtyKeys(false); // 切换之前写入的脏键，只补齐目标节点上还没有的，不覆盖切换之后的写入
+                this.abort(pool);
+                logger.info("Resharding caught up, switched to new Shard list: {}", newShards);
+                return true;
+            }
+        }
+        logger.warn("Resharding did not catch up after {} passes", maxPasses);
+        return false;
+    }
+
+    /**
+     * 停止记录脏键：从连接池上清除，并丢弃还没有复制的脏键。
+     * <p>
+     * 切换之后由{@link #reshard(CustomShardedJedisPool, int)}调用；没有追平时也可以调用它放弃重新分片。
+     */
+    public void abort(CustomShardedJedisPool pool) {
+        AssertUtils.isTrue(pool != null, "'pool' must not be null");
+
+        if (pool.getResharder() == this) {
+            pool.setResharder(null);
+        }
+        dirtyKeys.clear();
+    }
+
+    /**
+     * 记录一个写入过的键，由RedisService在写命令执行成功后调用，见{@link CustomShardedJedisPool#getResharder()}。
+     * <p>
+     * 键不需要移动时什么也不做；否则只记录为脏键，由下一遍复制把源节点上写入之后的键复制到目标节点(或者从目标节点上删除)。
+     *
+     * @param key 键
+     */
+    public void markDirty(String key) {
+        if (this.isMoved(key)) {
+            dirtyKeys.add(key);
+        }
+    }
+
+    /**
+     * 返回还没有复制的脏键数量。
+     */
+    public int getDirtyKeyNum() {
+        return dirtyKeys.size();
+    }
+
+    /**
+     * 复制所有脏键，按"源节点 -> 目标节点"分组以管道方式复制。
+     * <p>
+     * 复制期间再次写入的键会重新记录为脏键；复制失败时，取出的脏键放回，由下一次复制负责。
+     *
+     * @param overwrite 是否覆盖(或删除)目标节点上已有的键
+     * @return 复制到(或删除自)目标节点的键数量
+     */
+    private int copyDirtyKeys(boolean overwrite) {
+        // 1. 取出脏键，按"源节点 -> 目标节点"分组
+        Map<String, List<String>> keyMap = new LinkedHashMap<String, List<String>>();
+        Map<String, JedisShardInfo[]> shardMap = new LinkedHashMap<String, JedisShardInfo[]>();
+        List<String> drainedKeys = new ArrayList<String>();
+        for (Iterator<String> iter = dirtyKeys.iterator(); iter.hasNext();) {
+            String key = iter.next();
+            iter.remove();
+            drainedKeys.add(key);
+
+            JedisShardInfo source = oldRing.getShardInfo(key);
+            JedisShardInfo target = newRing.getShardInfo(key);
+            String route = toServerString(source) + " -> " + toServerString(target);
+            List<String> keys = keyMap.get(route);
+            if (keys == null) {
+                keys = new ArrayList<String>();
+                keyMap.put(route, keys);
+                shardMap.put(route, new JedisShardInfo[] { source, target });
+            }
+            keys.add(key);
+        }
+
+        // 2. 分批复制
+        int copiedKeyNum = 0;
+        try {
+            for (Map.Entry<String, List<String>> entry : keyMap.entrySet()) {
+                JedisShardInfo[] shards = shardMap.get(entry.getKey());
+                List<String> keys = entry.getValue();
+                Jedis sourceJedis = shards[0].createResource();
+                try {
+                    Jedis targetJedis = shards[1].createResource();
+                    try {
+                        for (int from = 0; from < keys.size(); from += batchSize) {
+                            List<String> batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+                            copiedKeyNum += copyKeys(sourceJedis, targetJedis, batch, overwrite);
+                        }
+                    } finally {
+                        close(targetJedis);
+                    }
+                } finally {
+                    close(sourceJedis);
+                }
+            }
+        } catch (JedisException e) {
+            dirtyKeys.addAll(drainedKeys); // 重复复制是安全的(相同的键不会再次复制)
+            throw e;
+        }
+        if (!drainedKeys.isEmpty()) {
+            logger.info("Resharding copied dirty keys: {}/{}", copiedKeyNum, drainedKeys.size());
+        }
+        return copiedKeyNum;
+    }
+
+    /**
+     * 复制一遍：遍历所有旧分片节点上的键，将目标节点上没有或者不同的需要移动的键复制过去，最后复制本遍期间记录的脏键。
+     * <p>
+     * 上一遍没有完成(失败或被中断)时，从保存的游标处继续。
+     *
+     * @return 本遍复制的键数量；被中断时返回-1(游标已保存)
+     * @throws redis.clients.jedis.exceptions.JedisException 当复制失败时(游标已保存)
+     */
+    public synchronized int copy() {
+        if (cursors.isEmpty()) { // 开始新的一遍
+            for (JedisShardInfo source : oldShards) {
+                cursors.put(toServerString(source), ScanParams.SCAN_POINTER_START);
+            }
+            passCopiedKeyNum = 0;
+        }
+
+        long startTime = System.nanoTime();
+        int checkedKeyNum = 0;
+        for (JedisShardInfo source : oldShards) {
+            String server = toServerString(source);
+            String cursor = cursors.get(server);
+            if (cursor == null) { // 本遍已遍历完成
+                continue;
+            }
+
+            Jedis sourceJedis = source.createResource();
+            Map<String, Jedis> targetJedisMap = new LinkedHashMap<String, Jedis>();
+            try {
+                ScanParams scanParams = new ScanParams().count(scanCount);
+                do {
+                    ScanResult<String> scanResult = sourceJedis.scan(cursor, scanParams);
+                    Map<String, List<String>> movedKeyMap = new LinkedHashMap<String, List<String>>();
+                    for (String key : scanResult.getResult()) {
+                        JedisShardInfo target = newRing.getShardInfo(key);
+                        if (!isSameServer(source, target)) {
+                            String targetServer = toServerString(target);
+                            List<String> keys = movedKeyMap.get(targetServer);
+                            if (keys == null) {
+                                keys = new ArrayList<String>();
+                                movedKeyMap.put(targetServer, keys);
+                                if (!targetJedisMap.containsKey(targetServer)) {
+                                    targetJedisMap.put(targetServer, target.createResource());
+                                }
+                            }
+                            keys.add(key);
+                        }
+                    }
+                    for (Map.Entry<String, List<String>> entry : movedKeyMap.entrySet()) {
+                        List<String> keys = entry.getValue();
+                        Jedis targetJedis = targetJedisMap.get(entry.getKey());
+                        for (int from = 0; from < keys.size(); from += batchSize) {
+                            List<String> batch = keys.subList(from, Math.min(from + batchSize, keys.size()));
+                            passCopiedKeyNum += copyKeys(sourceJedis, targetJedis, batch, true);
+                            checkedKeyNum += batch.size();
+                            if (!this.throttle(startTime, checkedKeyNum)) {
+                                // 游标还没有前进，继续时会重新检查这一批SCAN结果中的键(已复制的键与目标节点相同，不会重复复制)
+                                logger.warn("Resharding is interrupted, cursor of {}: {}", server, cursor);
+                                return -1;
+                            }
+                        }
+                    }
+                    cursor = scanResult.getStringCursor();
+                    cursors.put(server, cursor);
+                } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+                cursors.put(server, null);
+            } finally {
+                close(sourceJedis);
+                for (Jedis targetJedis : targetJedisMap.values()) {
+                    close(targetJedis);
+                }
+            }
+        }
+
+        passCopiedKeyNum += this.copyDirtyKeys(true);
+        int copiedKeyNum = passCopiedKeyNum;
+        cursors.clear();
+        passCopiedKeyNum = 0;
+        return copiedKeyNum;
+    }
+
+    /**
+     * 复制一批键，只复制目标节点上没有或者不同的键；源节点上已经没有(被删除或已过期)的键从目标节点上删除。
+     *
+     * @param overwrite 是否覆盖(或删除)目标节点上已有的键；为{@code false}时只复制目标节点上没有的键
+     * @return 复制到(或删除自)目标节点的键数量
+     */
+    private static int copyKeys(Jedis source, Jedis target, List<String> keys, boolean overwrite) {
+        int size = keys.size();
+        Pipeline sourcePipeline = source.pipelined();
+        List<Response<byte[]>> dumps = new ArrayList<Response<byte[]>>(size);
+        List<Response<Long>> ttls = new ArrayList<Response<Long>>(size);
+        for (String key : keys) {
+            dumps.add(sourcePipeline.dump(key));
+            ttls.add(sourcePipeline.pttl(key));
+        }
+        sourcePipeline.sync();
+
+        Pipeline targetPipeline = target.pipelined();
+        List<Response<byte[]>> targetDumps = new ArrayList<Response<byte[]>>(size);
+        for (String key : keys) {
+            targetDumps.add(targetPipeline.dump(key));
+        }
+        targetPipeline.sync();
+
+        int copiedKeyNum = 0;
+        targetPipeline = target.pipelined();
+        for (int i = 0; i < size; i++) {
+            String key = keys.get(i);
+            byte[] serializedValue = dumps.get(i).get();
+            long ttlMillis = ttls.get(i).get().longValue();
+            byte[] targetValue = targetDumps.get(i).get();
+            if (targetValue != null && !overwrite) { // 不覆盖目标节点上已有的键
+                continue;
+            }
+            if (serializedValue == null || ttlMillis == -2L) { // 键已经被删除或已过期
+                if (targetValue != null) { // 之前复制过，同时删除，避免切换之后"复活"
+                    targetPipeline.del(key);
+                    copiedKeyNum++;
+                }
+                continue;
+            }
+            if (Arrays.equals(serializedValue, targetValue)) { // 已经复制过了
+                continue;
+            }
+            // 目标节点上的键还没有读写流量(切换之前)，直接覆盖
+            int restoreTtl = (ttlMillis < 0L) ? 0 : (int) Math.min(Math.max(ttlMillis, 1L), Integer.MAX_VALUE);
+            targetPipeline.del(key);
+            targetPipeline.restore(key, restoreTtl, serializedValue);
+            copiedKeyNum++;
+        }
+        targetPipeline.sync();
+        return copiedKeyNum;
+    }
+
+    /**
+     * 按每秒键数量限速。
+     *
+     * @return 被中断时，返回{@code false}
+     */
+    private boolean throttle(long startTime, int checkedKeyNum) {
+        int rate = maxKeysPerSecond;
+        if (rate <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        long expectedNanos = TimeUnit.SECONDS.toNanos(1L) * checkedKeyNum / rate;
+        long sleepNanos = expectedNanos - (System.nanoTime() - startTime);
+        try {
+            if (sleepNanos > 0L) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    // ---------------- 游标 ----------------
+    /**
+     * 返回本遍复制保存的SCAN游标("host:port" -> 游标，遍历完成的源节点的游标为{@code null})，本遍还没有开始时返回空表。
+     */
+    public synchronized Map<String, String> getCursors() {
+        return new LinkedHashMap<String, String>(cursors);
+    }
+
+    /**
+     * 设置本遍复制的SCAN游标，用于在其它进程中继续复制。
+     *
+     * @param cursors {@link #getCursors()}返回的游标
+     */
+    public synchronized void setCursors(Map<String, String> cursors) {
+        AssertUtils.isTrue(cursors != null, "'cursors' must not be null");
+
+        this.cursors.clear();
+        this.cursors.putAll(cursors);
+        passCopiedKeyNum = 0;
+    }
+
+    /**
+     * 返回新的分片节点列表。
+     */
+    public List<JedisShardInfo> getNewShards() {
+        return newShards;
+    }
+
+    /**
+     * 判断两个分片节点是否是同一台Redis服务器。
+     */
+    static boolean isSameServer(JedisShardInfo shard, JedisShardInfo otherShard) {
+        return shard.getHost().equals(otherShard.getHost()) && shard.getPort() == otherShard.getPort();
+    }
+
+    /**
+     * <pre>
+     * 返回格式
+     *      host:port
+     * </pre>
+     */
+    private static String toServerString(JedisShardInfo shard) {
+        return shard.getHost() + ':' + shard.getPort();
+    }
+
+    private static void close(Jedis jedis) {
+        try {
+            jedis.close();
+        } catch (RuntimeException e) {
+            logger.warn("Close resharding connection fail", e);
+        }
+    }
+
+}
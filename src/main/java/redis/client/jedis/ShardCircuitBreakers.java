@@ -0,0 +1,387 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.monitor.CommandMetrics;
+import redis.client.monitor.RedisMetrics;
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * 每个分片节点一个熔断器，由真实的命令调用结果驱动。
+ * <p>
+ * 当一个分片节点挂起时，每个路由到该节点的命令都要等待整个读写超时时间才会失败，请求线程堆积，连接池也会被耗尽(连累正常的节点)；
+ * 而"Redis服务器状态检测"定时任务要到下一次运行时才能发现。熔断器的状态转换如下：
+ *
+ * <pre>
+ * 关闭(CLOSED)    ：正常放行；连续失败次数达到阈值，或统计窗口内的超时比例达到阈值时，转为"打开"。
+ * 打开(OPEN)      ：直接拒绝路由到该节点的命令(抛出{@link CircuitBreakerOpenException}，调用方返回"服务关闭"时的默认值)；
+ *                   经过熔断时间后，转为"半开"。
+ * 半开(HALF_OPEN) ：只放行少量的探测命令；探测命令全部成功后转为"关闭"，任一失败则重新"打开"。
+ * </pre>
+ *
+ * 只有连接异常({@link JedisConnectionException}，包括读写超时)才算失败；数据异常(如WRONGTYPE)说明节点是正常的，算作成功。
+ * <p>
+ * 半开状态下，一次服务调用可能多次路由到同一个节点(如管道、分页和流式检索、回退读取)，但只记录一次结果；
+ * 所以{@link CustomShardedJedis}在一次借用中对同一个节点只申请一个探测许可，记录结果({@link #onComplete(JedisShardInfo, Throwable)})时归还，
+ * 没有记录结果的探测许可在归还连接时通过{@link #releaseProbe(JedisShardInfo)}归还。
+ * <p>
+ * 关闭状态下放行一个命令只需要一次volatile读，记录结果只需要几次原子操作。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月21日 上午10:15:42
+ */
+public class ShardCircuitBreakers {
+
+    private static final Logger                          logger                        = LoggerFactory.getLogger(ShardCircuitBreakers.class);
+
+    /** 默认的连续失败次数阈值 */
+    public static final int                              DEFAULT_FAILURE_THRESHOLD     = 5;
+
+    /** 默认的超时比例阈值 */
+    public static final double                           DEFAULT_TIMEOUT_RATE          = 0.5D;
+
+    /** 计算超时比例所需的最少调用次数 */
+    public static final int                              DEFAULT_MINIMUM_CALLS         = 20;
+
+    /** 默认的超时比例统计窗口(毫秒) */
+    public static final long                             DEFAULT_WINDOW_MILLIS         = 10000L;
+
+    /** 默认的熔断时间(毫秒) */
+    public static final long                             DEFAULT_OPEN_MILLIS           = 5000L;
+
+    /** 默认的半开状态探测命令数 */
+    public static final int                              DEFAULT_HALF_OPEN_PROBES      = 3;
+
+    /** 熔断器状态 */
+    public static enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private volatile boolean                             enabled                       = true;
+
+    private volatile int                                 failureThreshold              = DEFAULT_FAILURE_THRESHOLD;
+
+    private volatile double                              timeoutRate                   = DEFAULT_TIMEOUT_RATE;
+
+    private volatile int                                 minimumCalls                  = DEFAULT_MINIMUM_CALLS;
+
+    private volatile long                                windowMillis                  = DEFAULT_WINDOW_MILLIS;
+
+    private volatile long                                openMillis                    = DEFAULT_OPEN_MILLIS;
+
+    private volatile int                                 halfOpenProbes                = DEFAULT_HALF_OPEN_PROBES;
+
+    /** 分片节点信息 -> 熔断器 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, Breaker> breakers                      = new ConcurrentHashMap<JedisShardInfo, Breaker>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用熔断。(默认启用；关闭时所有熔断器都恢复为关闭状态)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            for (Breaker breaker : breakers.values()) {
+                breaker.close();
+            }
+        }
+    }
+
+    /**
+     * 设置连续失败次数阈值。默认值是 {@value #DEFAULT_FAILURE_THRESHOLD}次。
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        AssertUtils.isTrue(failureThreshold > 0, "'failureThreshold' must be greater than 0 : " + failureThreshold);
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * 设置超时比例阈值(0, 1]。默认值是 {@value #DEFAULT_TIMEOUT_RATE}。
+     */
+    public void setTimeoutRate(double timeoutRate) {
+        AssertUtils.isTrue(timeoutRate > 0.0D && timeoutRate <= 1.0D, "'timeoutRate' must be in (0, 1] : "
+                                                                      + timeoutRate);
+        this.timeoutRate = timeoutRate;
+    }
+
+    /**
+     * 设置统计窗口内计算超时比例所需的最少调用次数。默认值是 {@value #DEFAULT_MINIMUM_CALLS}次。
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        AssertUtils.isTrue(minimumCalls > 0, "'minimumCalls' must be greater than 0 : " + minimumCalls);
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * 设置超时比例的统计窗口(毫秒)。默认值是 {@value #DEFAULT_WINDOW_MILLIS}毫秒。
+     */
+    public void setWindowMillis(long windowMillis) {
+        AssertUtils.isTrue(windowMillis > 0, "'windowMillis' must be greater than 0 : " + windowMillis);
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 设置熔断时间(毫秒)，即打开后多久转为半开。默认值是 {@value #DEFAULT_OPEN_MILLIS}毫秒。
+     */
+    public void setOpenMillis(long openMillis) {
+        AssertUtils.isTrue(openMillis > 0, "'openMillis' must be greater than 0 : " + openMillis);
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 设置半开状态的探测命令数，这些探测命令全部成功后熔断器才会关闭。默认值是 {@value #DEFAULT_HALF_OPEN_PROBES}个。
+     */
+    public void setHalfOpenProbes(int halfOpenProbes) {
+        AssertUtils.isTrue(halfOpenProbes > 0, "'halfOpenProbes' must be greater than 0 : " + halfOpenProbes);
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    // ---------------- 放行与记录 ----------------
+    /**
+     * 检查是否允许向分片节点发送命令。
+     *
+     * @param shard 分片节点
+     * @return 是否占用了半开状态的一个探测许可
+     *         (需要通过{@link #onComplete(JedisShardInfo, Throwable)}或{@link #releaseProbe(JedisShardInfo)}归还)
+     * @throws CircuitBreakerOpenException 当该节点的熔断器打开时
+     */
+    public boolean acquire(JedisShardInfo shard) {
+        if (enabled && shard != null) {
+            Breaker breaker = breakers.get(shard);
+            if (breaker == null || breaker.getState() == State.CLOSED) {
+                return false;
+            }
+            if (!breaker.allowRequest(System.currentTimeMillis())) {
+                throw new CircuitBreakerOpenException("Circuit breaker is open for shard: "
+                                                      + RedisMetrics.shardName(shard));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 归还没有记录结果的探测许可。
+     *
+     * @param shard 分片节点
+     */
+    public void releaseProbe(JedisShardInfo shard) {
+        Breaker breaker = breakers.get(shard);
+        if (breaker != null) {
+            breaker.releaseProbe();
+        }
+    }
+
+    /**
+     * 记录一次命令调用的结果。
+     *
+     * @param shard 命令所在的分片节点，未知时为{@code null}(忽略)
+     * @param failure 失败原因，成功时为{@code null}
+     */
+    public void onComplete(JedisShardInfo shard, Throwable failure) {
+        if (!enabled || shard == null || failure instanceof ShardRejectedException) {
+            return; // 被拒绝的命令没有到达节点，不能作为节点状态的依据
+        }
+        Breaker breaker = breakers.get(shard);
+        if (breaker == null) {
+            Breaker newBreaker = new Breaker(RedisMetrics.shardName(shard));
+            breaker = breakers.putIfAbsent(shard, newBreaker);
+            if (breaker == null) {
+                breaker = newBreaker;
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (failure instanceof JedisConnectionException) {
+            breaker.onFailure(CommandMetrics.isTimeout(failure), now);
+        } else {
+            breaker.onSuccess(now);
+        }
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回分片节点的熔断器状态。
+     */
+    public State getState(JedisShardInfo shard) {
+        Breaker breaker = breakers.get(shard);
+        return (breaker == null) ? State.CLOSED : breaker.getState();
+    }
+
+    /**
+     * 返回所有分片节点的熔断器状态。(分片节点名称 -> 状态)
+     */
+    public Map<String, State> getStates() {
+        Map<String, State> states = new LinkedHashMap<String, State>();
+        for (Breaker breaker : breakers.values()) {
+            states.put(breaker.name, breaker.getState());
+        }
+        return states;
+    }
+
+    /**
+     * 一个分片节点的熔断器。
+     */
+    final class Breaker {
+
+        private final String        name;
+
+        private volatile State      state               = State.CLOSED;
+        /** 进入当前状态(打开或半开)的时间 */
+        private volatile long       stateTime;
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+        // 超时比例的统计窗口
+        private final AtomicLong    windowStartTime     = new AtomicLong();
+        private final AtomicInteger windowCalls         = new AtomicInteger();
+        private final AtomicInteger windowTimeouts      = new AtomicInteger();
+
+        // 半开状态的探测
+        private final AtomicInteger probePermits        = new AtomicInteger();
+        private final AtomicInteger probeSuccesses      = new AtomicInteger();
+
+        Breaker(String name){
+            this.name = name;
+        }
+
+        boolean allowRequest(long now) {
+            State current = state;
+            if (current == State.CLOSED) {
+                return true;
+            }
+            if (now - stateTime >= openMillis) {
+                this.halfOpen(now); // 熔断时间已过；或半开状态的探测命令没有返回结果，重新发放探测许可
+            } else if (current == State.OPEN) {
+                return false;
+            }
+            return state == State.HALF_OPEN && probePermits.get() > 0 && probePermits.getAndDecrement() > 0;
+        }
+
+        void onSuccess(long now) {
+            State current = state;
+            if (current == State.CLOSED) {
+                if (consecutiveFailures.get() != 0) {
+                    consecutiveFailures.set(0);
+                }
+                this.countCall(false, now);
+            } else if (current == State.HALF_OPEN) {
+                if (probeSuccesses.incrementAndGet() >= halfOpenProbes) {
+                    this.close();
+                } else {
+                    probePermits.incrementAndGet(); // 归还探测许可
+                }
+            }
+        }
+
+        void releaseProbe() {
+            if (state == State.HALF_OPEN && probePermits.get() < halfOpenProbes) {
+                probePermits.incrementAndGet();
+            }
+        }
+
+        void onFailure(boolean timeout, long now) {
+            State current = state;
+            if (current == State.CLOSED) {
+                int failures = consecutiveFailures.incrementAndGet();
+                boolean timeoutRateExceeded = this.countCall(timeout, now);
+                if (failures >= failureThreshold || timeoutRateExceeded) {
+                    this.open(State.CLOSED, now);
+                }
+            } else if (current == State.HALF_OPEN) {
+                this.open(State.HALF_OPEN, now);
+            }
+        }
+
+        /**
+         * 统计窗口计数。
+         *
+         * @return 超时比例达到阈值时，返回{@code true}
+         */
+        private boolean countCall(boolean timeout, long now) {
+            long windowStart = windowStartTime.get();
+            if (now - windowStart >= windowMillis && windowStartTime.compareAndSet(windowStart, now)) {
+                windowCalls.set(0);
+                windowTimeouts.set(0);
+            }
+            int calls = windowCalls.incrementAndGet();
+            if (!timeout) {
+                return false;
+            }
+            int timeouts = windowTimeouts.incrementAndGet();
+            return calls >= minimumCalls && timeouts >= calls * timeoutRate;
+        }
+
+        private synchronized void open(State expected, long now) {
+            if (state == expected) {
+                stateTime = now;
+                state = State.OPEN;
+                logger.warn("Circuit breaker opened for shard: {}, consecutive failures: {}, calls: {}, timeouts: {}",
+                            name, consecutiveFailures.get(), windowCalls.get(), windowTimeouts.get());
+            }
+        }
+
+        private synchronized void halfOpen(long now) {
+            if (state != State.CLOSED && now - stateTime >= openMillis) {
+                probePermits.set(halfOpenProbes);
+                probeSuccesses.set(0);
+                stateTime = now;
+                if (state == State.OPEN) {
+                    state = State.HALF_OPEN;
+                    logger.info("Circuit breaker half-open for shard: {}", name);
+                }
+            }
+        }
+
+        synchronized void close() {
+            if (state != State.CLOSED) {
+                consecutiveFailures.set(0);
+                windowCalls.set(0);
+                windowTimeouts.set(0);
+                state = State.CLOSED;
+                logger.warn("Circuit breaker closed for shard: {}", name);
+            }
+        }
+
+        State getState() {
+            return state;
+        }
+    }
+
+    /**
+     * 返回分片节点的熔断器，还没有记录过结果时返回{@code null}。(用于单元测试)
+     */
+    Breaker getBreaker(JedisShardInfo shard) {
+        return breakers.get(shard);
+    }
+
+}
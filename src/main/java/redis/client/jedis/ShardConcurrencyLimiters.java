@@ -0,0 +1,314 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.monitor.RedisMetrics;
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 每个分片节点一个自适应并发限制器，根据观察到的延迟调整允许的在途命令数。
+ * <p>
+ * 连接池的{@code maxTotalNum}是静态的，当一个分片节点变慢时，在途命令数不变，只会让排队越来越深。
+ * 该限制器基于延迟梯度(Gradient)算法，每个采样窗口调整一次并发上限：
+ *
+ * <pre>
+ * shortRtt  = 本窗口的平均延迟
+ * longRtt   = shortRtt的指数移动平均(长期基线)
+ * gradient  = max(0.5, min(1.0, tolerance * longRtt / shortRtt))
+ * newLimit  = limit * gradient + sqrt(limit)
+ * limit     = limit * (1 - smoothing) + newLimit * smoothing
+ * </pre>
+ *
+ * 延迟稳定时上限按sqrt(limit)增长；排队导致延迟上升时上限按比例收缩；本窗口有连接异常(含超时)时上限直接乘以0.9。
+ * 在途命令数达到上限时，新命令直接被拒绝(抛出{@link ConcurrencyLimitExceededException}，调用方返回"服务关闭"时的默认值)，
+ * 从而在局部过载时控制尾延迟。
+ * <p>
+ * 放行一个命令只需要一次原子累加；每次采样只做几次原子累加，每个窗口只有一个线程(tryLock)计算新的上限。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月22日 上午10:20:45
+ */
+public class ShardConcurrencyLimiters {
+
+    private static final Logger                          logger                = LoggerFactory.getLogger(ShardConcurrencyLimiters.class);
+
+    /** 默认的初始并发上限 */
+    public static final int                              DEFAULT_INITIAL_LIMIT = 20;
+
+    /** 默认的最小并发上限 */
+    public static final int                              DEFAULT_MIN_LIMIT     = 2;
+
+    /** 默认的最大并发上限 */
+    public static final int                              DEFAULT_MAX_LIMIT     = 200;
+
+    /** 默认的采样窗口(毫秒) */
+    public static final long                             DEFAULT_WINDOW_MILLIS = 100L;
+
+    /** 计算一个窗口所需的最少采样数 */
+    private static final int                             MIN_WINDOW_SAMPLES    = 10;
+
+    /** 长期基线的窗口数 */
+    private static final int                             LONG_WINDOW           = 100;
+
+    /** 延迟上升的容忍倍数 */
+    private static final double                          RTT_TOLERANCE         = 1.5D;
+
+    /** 上限调整的平滑系数 */
+    private static final double                          SMOOTHING             = 0.2D;
+
+    /** 出现连接异常时的上限收缩比例 */
+    private static final double                          BACKOFF_RATIO         = 0.9D;
+
+    private volatile boolean                             enabled;
+
+    private volatile int                                 initialLimit          = DEFAULT_INITIAL_LIMIT;
+
+    private volatile int                                 minLimit              = DEFAULT_MIN_LIMIT;
+
+    private volatile int                                 maxLimit              = DEFAULT_MAX_LIMIT;
+
+    private volatile long                                windowNanos           = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WINDOW_MILLIS);
+
+    /** 分片节点信息 -> 并发限制器 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, Limiter> limiters              = new ConcurrentHashMap<JedisShardInfo, Limiter>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用自适应并发限制。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置初始并发上限。默认值是 {@value #DEFAULT_INITIAL_LIMIT}。
+     */
+    public void setInitialLimit(int initialLimit) {
+        AssertUtils.isTrue(initialLimit > 0, "'initialLimit' must be greater than 0 : " + initialLimit);
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * 设置最小并发上限。默认值是 {@value #DEFAULT_MIN_LIMIT}。
+     */
+    public void setMinLimit(int minLimit) {
+        AssertUtils.isTrue(minLimit > 0, "'minLimit' must be greater than 0 : " + minLimit);
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * 设置最大并发上限。默认值是 {@value #DEFAULT_MAX_LIMIT}。
+     */
+    public void setMaxLimit(int maxLimit) {
+        AssertUtils.isTrue(maxLimit > 0, "'maxLimit' must be greater than 0 : " + maxLimit);
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * 设置采样窗口(毫秒)，每个窗口调整一次并发上限。默认值是 {@value #DEFAULT_WINDOW_MILLIS}毫秒。
+     */
+    public void setWindowMillis(long windowMillis) {
+        AssertUtils.isTrue(windowMillis > 0, "'windowMillis' must be greater than 0 : " + windowMillis);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * 返回分片节点的并发限制器。
+     *
+     * @param shard 分片节点
+     * @return 未启用时，返回{@code null}。
+     */
+    public Limiter getLimiter(JedisShardInfo shard) {
+        if (!enabled || shard == null) {
+            return null;
+        }
+        Limiter limiter = limiters.get(shard);
+        if (limiter == null) {
+            Limiter newLimiter = new Limiter(RedisMetrics.shardName(shard));
+            limiter = limiters.putIfAbsent(shard, newLimiter);
+            if (limiter == null) {
+                limiter = newLimiter;
+            }
+        }
+        return limiter;
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回分片节点的当前并发上限。
+     *
+     * @return 还没有使用过该节点时，返回初始并发上限。
+     */
+    public int getLimit(JedisShardInfo shard) {
+        Limiter limiter = limiters.get(shard);
+        return (limiter == null) ? initialLimit : limiter.getLimit();
+    }
+
+    /**
+     * 返回所有分片节点的当前并发上限。(分片节点名称 -> 并发上限)
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new LinkedHashMap<String, Integer>();
+        for (Limiter limiter : limiters.values()) {
+            limits.put(limiter.name, limiter.getLimit());
+        }
+        return limits;
+    }
+
+    /**
+     * 一个分片节点的自适应并发限制器。
+     */
+    public final class Limiter {
+
+        private final String        name;
+
+        /** 并发上限 (只由持有窗口锁的线程修改) */
+        private volatile double     limit;
+        private final AtomicInteger inFlight    = new AtomicInteger();
+
+        // 本窗口的采样
+        private final ReentrantLock windowLock  = new ReentrantLock();
+        private final AtomicLong    windowStart = new AtomicLong(System.nanoTime());
+        private final AtomicInteger samples     = new AtomicInteger();
+        private final AtomicLong    rttSum      = new AtomicLong();
+        private final AtomicInteger drops       = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        /** 延迟的长期基线(纳秒) */
+        private double              longRtt;
+
+        Limiter(String name){
+            this.name = name;
+            this.limit = initialLimit;
+        }
+
+        /**
+         * 申请向分片节点发送命令的许可，命令完成后必须调用{@link #release(long, boolean)}归还。
+         *
+         * @throws ConcurrencyLimitExceededException 当该节点的在途命令数已达到并发上限时
+         */
+        public void acquire() {
+            int current = inFlight.incrementAndGet();
+            if (current > (int) limit) {
+                inFlight.decrementAndGet();
+                throw new ConcurrencyLimitExceededException("Concurrency limit " + (int) limit
+                                                            + " exceeded for shard: " + name);
+            }
+            int max = maxInFlight.get();
+            if (current > max) {
+                maxInFlight.compareAndSet(max, current);
+            }
+        }
+
+        /**
+         * 归还许可，并记录一次采样。
+         *
+         * @param rttNanos 命令的延迟(纳秒)
+         * @param dropped 是否出现了连接异常(含超时)
+         */
+        public void release(long rttNanos, boolean dropped) {
+            inFlight.decrementAndGet();
+            this.sample(rttNanos, dropped, System.nanoTime());
+        }
+
+        void sample(long rttNanos, boolean dropped, long now) {
+            if (dropped) {
+                drops.incrementAndGet();
+            } else {
+                rttSum.addAndGet(rttNanos);
+                samples.incrementAndGet();
+            }
+
+            if (now - windowStart.get() >= windowNanos && windowLock.tryLock()) {
+                try {
+                    if (now - windowStart.get() >= windowNanos) {
+                        this.updateLimit(now);
+                    }
+                } finally {
+                    windowLock.unlock();
+                }
+            }
+        }
+
+        private void updateLimit(long now) {
+            int sampleNum = samples.get();
+            int dropNum = drops.get();
+            if (sampleNum < MIN_WINDOW_SAMPLES && dropNum == 0) {
+                return; // 采样太少，继续累积
+            }
+            long sum = rttSum.getAndSet(0L);
+            samples.getAndAdd(-sampleNum);
+            drops.getAndAdd(-dropNum);
+            int peakInFlight = maxInFlight.getAndSet(inFlight.get());
+            windowStart.set(now);
+
+            double oldLimit = limit;
+            double newLimit;
+            if (dropNum > 0) {
+                newLimit = oldLimit * BACKOFF_RATIO;
+            } else {
+                double shortRtt = (double) sum / sampleNum;
+                if (longRtt == 0.0D) {
+                    longRtt = shortRtt;
+                } else {
+                    longRtt += (shortRtt - longRtt) * 2.0D / (LONG_WINDOW + 1);
+                    if (longRtt / shortRtt > 2.0D) { // 延迟大幅下降(如节点恢复)，让基线更快地跟上
+                        longRtt *= 0.95D;
+                    }
+                }
+                if (peakInFlight < oldLimit / 2.0D) {
+                    return; // 负载远低于上限，延迟不能说明上限是否合适
+                }
+                double gradient = Math.max(0.5D, Math.min(1.0D, RTT_TOLERANCE * longRtt / shortRtt));
+                newLimit = oldLimit * gradient + Math.sqrt(oldLimit);
+                newLimit = oldLimit * (1.0D - SMOOTHING) + newLimit * SMOOTHING;
+            }
+            newLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            limit = newLimit;
+
+            if ((int) newLimit != (int) oldLimit) {
+                logger.debug("Concurrency limit of shard {} changed: {} -> {}", name, (int) oldLimit, (int) newLimit);
+            }
+        }
+
+        public int getLimit() {
+            return (int) limit;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * 命令在路由到分片节点时被客户端直接拒绝(快速失败)，没有发送到该节点。
+ * <p>
+ * 过载保护期间每个被拒绝的命令都会抛出该异常，所以不填充异常栈，创建的开销很小；
+ * 它也不能作为分片节点状态的依据(节点并没有收到命令)。
+ *
+ * @author huagang.li 2015年2月22日 上午10:02:11
+ * @see CircuitBreakerOpenException
+ * @see ConcurrencyLimitExceededException
+ */
+public class ShardRejectedException extends JedisException {
+
+    private static final long serialVersionUID = 5291750218935637816L;
+
+    public ShardRejectedException(String message){
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.monitor.RedisMetrics;
+import redis.client.util.AssertUtils;
+import redis.client.util.GenericTimer;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * 各分片节点的副本节点(Redis从节点)，每个副本节点一个{@link JedisPool}连接池。
+ * <p>
+ * 副本节点不在一致性哈希环上，只挂在它所属的逻辑分片节点(名称相同)下面，所以增删副本节点不会改变键的分布。<br>
+ * 副本节点通过Redis主从复制异步同步数据，所以只能用于可以容忍短暂旧数据的读命令，写命令始终发送到分片节点(主节点)。
+ * <p>
+ * 读命令的负载均衡方式见{@link ReadMode}，默认只读分片节点({@link ReadMode#MASTER})。<br>
+ * 副本节点的健康状态由"Redis服务器状态检测"定时任务({@link JedisServerStateCheckTimerTask})维护，异常的副本节点不会被选中，恢复后自动加回。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月23日 上午10:12:36
+ * @see redis.client.util.RedisConfigUtils#parseReplicaServerMap(String, int)
+ */
+public class ShardReplicas {
+
+    private static final Logger                  logger   = LoggerFactory.getLogger(ShardReplicas.class);
+
+    /** 分片节点名称 -> 分片节点及其副本节点 */
+    private final Map<String, Group>             groupMap;
+
+    /** 副本节点的状态检测定时任务 (没有启用状态检测时为{@code null}) */
+    private final JedisServerStateCheckTimerTask stateCheckTimerTask;
+
+    /** 读命令的负载均衡方式 */
+    private volatile ReadMode                    readMode = ReadMode.MASTER;
+
+    /**
+     * 读命令的负载均衡方式。
+     */
+    public static enum ReadMode {
+        /** 只读分片节点(主节点) */
+        MASTER,
+        /** 在分片节点及其正常的副本节点之间轮询 */
+        ROUND_ROBIN,
+        /** 选择在途读命令最少的节点(分片节点或正常的副本节点) */
+        LEAST_OUTSTANDING;
+    }
+
+    /**
+     * 创建一个没有任何副本节点的实例。
+     */
+    public ShardReplicas(){
+        this.groupMap = Collections.emptyMap();
+        this.stateCheckTimerTask = null;
+    }
+
+    /**
+     * 创建各分片节点的副本节点及其连接池，不检测副本节点的状态(总是认为副本节点是正常的)。
+     *
+     * @param poolConfig 每个副本节点的连接池配置信息
+     * @param replicaShardMap 分片节点名称 -> 副本节点信息列表
+     */
+    public ShardReplicas(GenericObjectPoolConfig poolConfig, Map<String, List<JedisShardInfo>> replicaShardMap){
+        this(poolConfig, replicaShardMap, 0, 0);
+    }
+
+    /**
+     * 创建各分片节点的副本节点及其连接池，并启动副本节点的"Redis服务器状态检测"定时任务。
+     *
+     * @param poolConfig 每个副本节点的连接池配置信息
+     * @param replicaShardMap 分片节点名称 -> 副本节点信息列表
+     * @param timeBetweenServerStateCheckRunsMillis "Redis服务器状态检测"定时任务的运行间隔时间(小于等于0时不检测)
+     * @param pingRetryTimes Redis PING命令的失败重试次数
+     */
+    public ShardReplicas(GenericObjectPoolConfig poolConfig, Map<String, List<JedisShardInfo>> replicaShardMap,
+                         int timeBetweenServerStateCheckRunsMillis, int pingRetryTimes){
+        AssertUtils.isTrue(poolConfig != null, "'poolConfig' must not be null");
+        AssertUtils.isTrue(replicaShardMap != null, "'replicaShardMap' must not be null");
+
+        Map<String, Group> groupMap = new LinkedHashMap<String, Group>();
+        List<JedisShardInfo> allReplicaShards = new ArrayList<JedisShardInfo>();
+        for (Map.Entry<String, List<JedisShardInfo>> entry : replicaShardMap.entrySet()) {
+            List<Replica> replicas = new ArrayList<Replica>(entry.getValue().size());
+            for (JedisShardInfo shardInfo : entry.getValue()) {
+                JedisPool pool = new JedisPool(poolConfig, shardInfo.getHost(), shardInfo.getPort(),
+                                               shardInfo.getTimeout());
+                replicas.add(new Replica(shardInfo.getName(), shardInfo, pool));
+                allReplicaShards.add(shardInfo);
+            }
+            if (!replicas.isEmpty()) {
+                groupMap.put(entry.getKey(), new Group(entry.getKey(), replicas));
+            }
+        }
+        this.groupMap = groupMap;
+
+        if (timeBetweenServerStateCheckRunsMillis > 0 && !allReplicaShards.isEmpty()) {
+            stateCheckTimerTask = new JedisServerStateCheckTimerTask(allReplicaShards, pingRetryTimes);
+            GenericTimer.schedule(stateCheckTimerTask, timeBetweenServerStateCheckRunsMillis,
+                                  timeBetweenServerStateCheckRunsMillis);
+        } else {
+            stateCheckTimerTask = null;
+        }
+    }
+
+    /**
+     * 返回是否配置了副本节点。
+     */
+    public boolean isEmpty() {
+        return groupMap.isEmpty();
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    /**
+     * 设置读命令的负载均衡方式。(默认只读分片节点)
+     */
+    public void setReadMode(ReadMode readMode) {
+        AssertUtils.isTrue(readMode != null, "'readMode' must not be null");
+        this.readMode = readMode;
+    }
+
+    /**
+     * 返回分片节点的所有副本节点(包括异常的副本节点)。
+     *
+     * @param shard 分片节点
+     * @return 没有配置副本节点时，返回空列表。
+     */
+    public List<Replica> getReplicas(JedisShardInfo shard) {
+        Group group = this.getGroup(shard);
+        return (group == null) ? Collections.<Replica> emptyList() : group.replicas;
+    }
+
+    /**
+     * 返回分片节点的第一个正常的副本节点。
+     *
+     * @param shard 分片节点
+     * @return 没有配置副本节点或副本节点都异常时，返回{@code null}。
+     */
+    public Replica getReplica(JedisShardInfo shard) {
+        for (Replica replica : this.getReplicas(shard)) {
+            if (this.isActive(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 返回节点是否正常。(分片节点总是正常的，它的状态由分片连接池自己维护)
+     */
+    public boolean isActive(Replica replica) {
+        return replica.isMaster() || stateCheckTimerTask == null || stateCheckTimerTask.isActive(replica.shardInfo);
+    }
+
+    /**
+     * 按负载均衡方式为读命令选择一个节点，并增加它的在途读命令数；读命令完成后必须调用{@link Replica#release()}。
+     *
+     * @param shard 键所在的分片节点
+     * @return 只读分片节点({@link ReadMode#MASTER})或该分片节点没有配置副本节点时，返回{@code null}；
+     *         选中分片节点时，返回{@link Replica#isMaster()}为{@code true}的节点。
+     */
+    public Replica acquireReadNode(JedisShardInfo shard) {
+        ReadMode mode = readMode;
+        if (mode == ReadMode.MASTER) {
+            return null;
+        }
+        Group group = this.getGroup(shard);
+        if (group == null) {
+            return null;
+        }
+
+        Replica[] nodes = group.nodes;
+        int start = (group.next.getAndIncrement() & Integer.MAX_VALUE) % nodes.length;
+        Replica selected = null;
+        for (int i = 0; i < nodes.length; i++) {
+            Replica node = nodes[(start + i) % nodes.length];
+            if (!this.isActive(node)) {
+                continue;
+            }
+            if (mode == ReadMode.ROUND_ROBIN) {
+                selected = node;
+                break;
+            }
+            if (selected == null || node.outstanding.get() < selected.outstanding.get()) {
+                selected = node;
+            }
+        }
+        if (selected == null) { // 不会发生：分片节点总是正常的
+            selected = group.master;
+        }
+        selected.outstanding.incrementAndGet();
+        return selected;
+    }
+
+    private Group getGroup(JedisShardInfo shard) {
+        if (shard == null || groupMap.isEmpty()) {
+            return null;
+        }
+        return groupMap.get(RedisMetrics.shardName(shard));
+    }
+
+    /**
+     * 停止副本节点的状态检测，并关闭所有副本节点的连接池。
+     */
+    public void close() {
+        if (stateCheckTimerTask != null) {
+            GenericTimer.cancel(stateCheckTimerTask);
+        }
+        for (Group group : groupMap.values()) {
+            for (Replica replica : group.replicas) {
+                try {
+                    replica.getPool().destroy();
+                } catch (JedisException e) {
+                    logger.warn("Failed to close replica pool: " + replica, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个逻辑分片节点：分片节点(主节点)及其副本节点。
+     */
+    private static final class Group {
+
+        private final Replica       master;
+
+        private final List<Replica> replicas;
+
+        /** 分片节点在前，副本节点在后 */
+        private final Replica[]     nodes;
+
+        /** 轮询计数 */
+        private final AtomicInteger next = new AtomicInteger();
+
+        Group(String name, List<Replica> replicas){
+            this.master = new Replica(name, null, null);
+            this.replicas = Collections.unmodifiableList(replicas);
+            this.nodes = new Replica[replicas.size() + 1];
+            this.nodes[0] = master;
+            for (int i = 0; i < replicas.size(); i++) {
+                this.nodes[i + 1] = replicas.get(i);
+            }
+        }
+    }
+
+    /**
+     * 一个副本节点，或者代表分片节点(主节点)本身的读节点({@link #isMaster()})。
+     */
+    public static final class Replica {
+
+        private final String         name;
+
+        private final JedisShardInfo shardInfo;
+
+        private final JedisPool      pool;
+
+        /** 在途读命令数 */
+        private final AtomicInteger  outstanding = new AtomicInteger();
+
+        Replica(String name, JedisShardInfo shardInfo, JedisPool pool){
+            this.name = name;
+            this.shardInfo = shardInfo;
+            this.pool = pool;
+        }
+
+        /**
+         * 返回是否代表分片节点(主节点)本身。
+         */
+        public boolean isMaster() {
+            return pool == null;
+        }
+
+        /**
+         * 返回副本节点信息(名称为"分片节点名称/replica-序号")。
+         *
+         * @return 代表分片节点本身时，返回{@code null}。
+         */
+        public JedisShardInfo getShardInfo() {
+            return shardInfo;
+        }
+
+        /**
+         * 返回副本节点的连接池。
+         *
+         * @return 代表分片节点本身时，返回{@code null}。
+         */
+        public JedisPool getPool() {
+            return pool;
+        }
+
+        /**
+         * 返回在途读命令数。
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * 读命令完成，减少在途读命令数。
+         */
+        public void release() {
+            outstanding.decrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return isMaster() ? name : name + '@' + shardInfo.getHost() + ':' + shardInfo.getPort();
+        }
+
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.List;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 分片路由器，代替一致性哈希环决定键(键标记)所在的分片节点。
+ * <p>
+ * 路由器面向配置的全部分片节点计算，与节点是否正常无关；{@link CustomShardedJedis}发现路由到的分片节点不可用时，
+ * 退化为按哈希环路由到其它正常的分片节点。
+ * <p>
+ * 实现类必须是<font color="red">#ThreadSafe# (线程安全)</font>的，同一个实例被连接池中的所有客户端共用。
+ *
+ * @author huagang.li 2015年2月27日 下午3:20:15
+ * @see ShardingStrategy
+ */
+public interface ShardRouter {
+
+    /**
+     * 返回键标记所在的分片节点。
+     *
+     * @param keyTag 键标记
+     * @return 分片节点(必须是{@link #getShards()}中的一个实例)
+     */
+    JedisShardInfo getShardInfo(byte[] keyTag);
+
+    /**
+     * 返回参与路由的分片节点列表。
+     */
+    List<JedisShardInfo> getShards();
+
+}
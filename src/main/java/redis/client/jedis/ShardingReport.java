@@ -0,0 +1,253 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * 分片方式的均衡度与性能报告，用于在实际的服务器列表上对比各{@link ShardingStrategy 分片方式}，再决定使用哪一种。
+ * <p>
+ * 对每种分片方式，用相同的一批模拟键("key:0"、"key:1"...)统计：
+ * <ul>
+ * <li>各分片节点的键数量，及其与按权重期望的键数量之比的最大值(越接近1越均衡)和相对标准差；
+ * <li>平均每次路由的耗时(纳秒，与生产环境一样经过{@link CustomShardedJedis#locateShardInfo(String)})；
+ * <li>在列表末尾增加一个分片节点时需要迁移的键比例(理想值为1/n)。槽位表是按新的节点数重新平均分配槽位计算的，
+ * 实际扩容时可以通过{@link SlotMigrator}只迁移选定的槽位。
+ * </ul>
+ * 只在本地计算路由，不会连接任何Redis服务器。
+ * 
+ * <pre>
+ * 示例：
+ *     List&lt;JedisShardInfo&gt; shards = RedisConfigUtils.parseRedisServerList(redisServers, timeoutMillis);
+ *     System.out.println(ShardingReport.run(shards, 1000000));
+ * </pre>
+ *
+ * @author huagang.li 2015年2月27日 下午5:02:44
+ */
+public class ShardingReport {
+
+    /** 模拟键的前缀 */
+    private static final String        KEY_PREFIX = "key:";
+
+    /** 路由结果的汇总值，防止计时循环被JIT优化掉 */
+    static volatile int                blackhole;
+
+    /** 分片节点列表 */
+    private final List<JedisShardInfo> shards;
+
+    /** 模拟键数量 */
+    private final int                  keyNum;
+
+    /** 各分片方式的结果 (与{@link ShardingStrategy#values()}的顺序相同) */
+    private final List<Result>         results;
+
+    private ShardingReport(List<JedisShardInfo> shards, int keyNum, List<Result> results){
+        this.shards = shards;
+        this.keyNum = keyNum;
+        this.results = results;
+    }
+
+    /**
+     * 在给定的分片节点列表上，对所有分片方式运行一次报告。
+     *
+     * @param shards 分片节点列表(每个分片节点都必须有唯一的名称)
+     * @param keyNum 模拟键数量
+     */
+    public static ShardingReport run(List<JedisShardInfo> shards, int keyNum) {
+        AssertUtils.notEmpty(shards, "'shards' must not be null and empty");
+        AssertUtils.isTrue(keyNum > 0, "'keyNum' must be greater than 0");
+
+        String[] keys = new String[keyNum];
+        for (int i = 0; i < keyNum; i++) {
+            keys[i] = KEY_PREFIX + i;
+        }
+        List<Result> results = new ArrayList<Result>(ShardingStrategy.values().length);
+        for (ShardingStrategy strategy : ShardingStrategy.values()) {
+            results.add(run(strategy, shards, keys));
+        }
+        return new ShardingReport(shards, keyNum, Collections.unmodifiableList(results));
+    }
+
+    private static Result run(ShardingStrategy strategy, List<JedisShardInfo> shards, String[] keys) {
+        CustomShardedJedis jedis = newShardedJedis(strategy, shards);
+        Map<JedisShardInfo, Integer> shardIndexes = new IdentityHashMap<JedisShardInfo, Integer>(shards.size() * 2);
+        for (int i = 0; i < shards.size(); i++) {
+            shardIndexes.put(shards.get(i), i);
+        }
+
+        // 统计键分布 (同时作为路由耗时的预热)
+        JedisShardInfo[] owners = new JedisShardInfo[keys.length];
+        long[] keyCounts = new long[shards.size()];
+        for (int i = 0; i < keys.length; i++) {
+            owners[i] = jedis.locateShardInfo(keys[i]);
+            keyCounts[shardIndexes.get(owners[i])]++;
+        }
+
+        // 路由耗时
+        int sink = 0;
+        long startTime = System.nanoTime();
+        for (String key : keys) {
+            sink += jedis.locateShardInfo(key).getPort();
+        }
+        double nanosPerLookup = (double) (System.nanoTime() - startTime) / keys.length;
+        blackhole = sink; // 防止循环被优化掉
+
+        // 在列表末尾增加一个分片节点时迁移的键比例
+        double movedRatio = 0.0;
+        if (shards.size() > 1) {
+            CustomShardedJedis smaller = newShardedJedis(strategy, shards.subList(0, shards.size() - 1));
+            long movedNum = 0L;
+            for (int i = 0; i < keys.length; i++) {
+                if (smaller.locateShardInfo(keys[i]) != owners[i]) {
+                    movedNum++;
+                }
+            }
+            movedRatio = (double) movedNum / keys.length;
+        }
+
+        return new Result(strategy, shards, keyCounts, nanosPerLookup, movedRatio);
+    }
+
+    private static CustomShardedJedis newShardedJedis(ShardingStrategy strategy, List<JedisShardInfo> shards) {
+        return new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null,
+                                      strategy.createRouter(shards, Hashing.MURMUR_HASH));
+    }
+
+    /**
+     * 返回各分片方式的结果。
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * 返回指定分片方式的结果。
+     */
+    public Result getResult(ShardingStrategy strategy) {
+        return results.get(strategy.ordinal());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("ShardingReport [shards=").append(shards.size()).append(", keys=").append(keyNum).append("]\n");
+        sb.append(String.format("%-12s %10s %10s %12s %12s  %s%n", "strategy", "max/expect", "rel-stddev",
+                                "moved(+1)", "ns/lookup", "keys per shard"));
+        for (Result result : results) {
+            sb.append(String.format("%-12s %10.4f %9.2f%% %11.2f%% %12.1f  %s%n", result.getStrategy(),
+                                    result.getMaxLoadRatio(), result.getRelativeStdDev() * 100,
+                                    result.getMovedRatio() * 100, result.getNanosPerLookup(),
+                                    Arrays.toString(result.getKeyCounts())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 一种分片方式的结果。
+     */
+    public static final class Result {
+
+        private final ShardingStrategy strategy;
+        private final long[]           keyCounts;
+        private final double           maxLoadRatio;
+        private final double           relativeStdDev;
+        private final double           nanosPerLookup;
+        private final double           movedRatio;
+
+        Result(ShardingStrategy strategy, List<JedisShardInfo> shards, long[] keyCounts, double nanosPerLookup,
+               double movedRatio){
+            this.strategy = strategy;
+            this.keyCounts = keyCounts;
+            this.nanosPerLookup = nanosPerLookup;
+            this.movedRatio = movedRatio;
+
+            long keyNum = 0L;
+            long totalWeight = 0L;
+            for (int i = 0; i < keyCounts.length; i++) {
+                keyNum += keyCounts[i];
+                totalWeight += shards.get(i).getWeight();
+            }
+            double maxLoadRatio = 0.0;
+            double sumSquares = 0.0;
+            for (int i = 0; i < keyCounts.length; i++) {
+                double expected = (double) keyNum * shards.get(i).getWeight() / totalWeight;
+                double ratio = keyCounts[i] / expected;
+                maxLoadRatio = Math.max(maxLoadRatio, ratio);
+                sumSquares += (ratio - 1.0) * (ratio - 1.0);
+            }
+            this.maxLoadRatio = maxLoadRatio;
+            this.relativeStdDev = Math.sqrt(sumSquares / keyCounts.length);
+        }
+
+        public ShardingStrategy getStrategy() {
+            return strategy;
+        }
+
+        /**
+         * 返回各分片节点的键数量(与分片节点列表的顺序相同)。
+         */
+        public long[] getKeyCounts() {
+            return keyCounts.clone();
+        }
+
+        /**
+         * 返回各分片节点"实际键数量/按权重期望的键数量"的最大值。(1表示完全均衡)
+         */
+        public double getMaxLoadRatio() {
+            return maxLoadRatio;
+        }
+
+        /**
+         * 返回各分片节点"实际键数量/按权重期望的键数量"的相对标准差。(0表示完全均衡)
+         */
+        public double getRelativeStdDev() {
+            return relativeStdDev;
+        }
+
+        /**
+         * 返回平均每次路由的耗时(纳秒)。
+         */
+        public double getNanosPerLookup() {
+            return nanosPerLookup;
+        }
+
+        /**
+         * 返回在列表末尾增加一个分片节点时需要迁移的键比例。
+         */
+        public double getMovedRatio() {
+            return movedRatio;
+        }
+
+        @Override
+        public String toString() {
+            return "Result [strategy=" + strategy + ", keyCounts=" + Arrays.toString(keyCounts) + ", maxLoadRatio="
+                   + maxLoadRatio + ", relativeStdDev=" + relativeStdDev + ", nanosPerLookup=" + nanosPerLookup
+                   + ", movedRatio=" + movedRatio + "]";
+        }
+    }
+
+}
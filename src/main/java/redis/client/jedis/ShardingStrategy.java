@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.List;
+
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * 分片方式，决定键(键标记)如何路由到分片节点。
+ * <p>
+ * 各分片方式的键分布不同，<font color="red">切换分片方式相当于一次冷启动！</font>
+ * 选择之前可以先用{@link ShardingReport}对比各分片方式在实际服务器列表上的均衡度、路由耗时和节点增减时的键迁移比例。
+ *
+ * @author huagang.li 2015年2月27日 下午4:31:50
+ */
+public enum ShardingStrategy {
+
+    /** 一致性哈希环(Ketama，每个分片节点160个虚拟节点)，与{@link redis.clients.jedis.ShardedJedis ShardedJedis}相同 */
+    KETAMA {
+
+        @Override
+        public ShardRouter createRouter(List<JedisShardInfo> shards, Hashing algo) {
+            return null;
+        }
+    },
+    /** 槽位表，槽位平均分配，单个槽位可以在线迁移 */
+    SLOT_TABLE {
+
+        @Override
+        public ShardRouter createRouter(List<JedisShardInfo> shards, Hashing algo) {
+            return new SlotTable(shards);
+        }
+    },
+    /** 跳跃一致性哈希，扩容时新的分片节点只能追加到末尾 */
+    JUMP_HASH {
+
+        @Override
+        public ShardRouter createRouter(List<JedisShardInfo> shards, Hashing algo) {
+            return new JumpHashRouter(shards, algo);
+        }
+    },
+    /** 带权重的最高随机权重哈希 */
+    RENDEZVOUS {
+
+        @Override
+        public ShardRouter createRouter(List<JedisShardInfo> shards, Hashing algo) {
+            return new RendezvousRouter(shards, algo);
+        }
+    };
+
+    /**
+     * 创建分片路由器。
+     *
+     * @param shards 分片节点列表
+     * @param algo 哈希算法(槽位表固定使用CRC16算法)
+     * @return 按哈希环路由时，返回{@code null}
+     */
+    public abstract ShardRouter createRouter(List<JedisShardInfo> shards, Hashing algo);
+
+}
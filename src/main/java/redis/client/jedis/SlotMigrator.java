@@ -0,0 +1,307 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.Client;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * 槽位的键搬迁器，将源节点上属于某个槽位的键搬到目标节点。
+ * <p>
+ * 搬迁过程：
+ * <ol>
+ * <li>{@link SlotTable#beginMigration(int, String)}，之后该槽位的命令都发送到目标节点；
+ * <li>用SCAN命令遍历源节点上的所有键，挑出属于该槽位的键；
+ * <li>每批键在源节点上以管道方式执行MIGRATE命令(保留剩余过期时间)；
+ * <li>所有键搬迁完成后，{@link SlotTable#completeMigration(int)}。
+ * </ol>
+ * MIGRATE命令在源节点上原子地完成"复制到目标节点并删除源节点上的键"，所以任何时刻一个键只存在于一个节点上：
+ * 迁移期间的命令在发送到目标节点之前，先通过{@link #moveKey(Jedis, Jedis, byte[])}按需把该键搬过去(见{@link CustomShardedJedis}，每个键最多搬迁一次)，
+ * 写命令不会在目标节点上创建出不完整的列表或有序集合，DEL命令之后的键也不会被再搬回来而"复活"。<br>
+ * 目标节点上已经存在该键(如其它没有执行相同迁移的应用实例写入的)时，以目标节点为准，源节点上的键保留，不会删除。
+ * 搬迁失败时槽位保持迁移状态(命令仍然按需搬迁键)，可以再次调用{@link #migrate(int, String)}继续搬迁。
+ * <p>
+ * <font color="red">注意：</font>槽位表只在当前进程内有效，多个应用实例共用Redis节点时，必须在所有实例上执行相同的迁移。<br>
+ * MIGRATE命令由源节点直接连接目标节点(0号数据库)，所以源节点必须能访问目标节点，目标节点不能设置访问密码。
+ *
+ * @author huagang.li 2015年2月27日 下午2:05:18
+ */
+public class SlotMigrator {
+
+    private static final Logger logger                = LoggerFactory.getLogger(SlotMigrator.class);
+
+    /** 每批搬迁的默认键数量 */
+    public static final int     DEFAULT_BATCH_SIZE    = 100;
+
+    /** SCAN命令每次遍历的默认键数量 */
+    public static final int     DEFAULT_SCAN_COUNT    = 1000;
+
+    /** 目标节点上已经存在该键时，RESTORE/MIGRATE命令的错误信息前缀 */
+    private static final String BUSY_KEY_ERROR        = "BUSYKEY";
+    /** 目标节点上已经存在该键时，RESTORE/MIGRATE命令的错误信息 (Redis 3.0之前的版本) */
+    private static final String BUSY_KEY_LEGACY_ERROR = "Target key name is busy";
+
+    /** MIGRATE命令搬迁成功的回复 */
+    private static final String MIGRATE_OK            = "OK";
+
+    /** MIGRATE命令的目标数据库 */
+    private static final int    MIGRATE_DB            = 0;
+
+    /** 槽位表 */
+    private final SlotTable     slotTable;
+
+    /** 键标记模式 */
+    private final Pattern       keyTagPattern;
+
+    /** 每批搬迁的键数量 */
+    private int                 batchSize              = DEFAULT_BATCH_SIZE;
+
+    /** SCAN命令每次遍历的键数量 */
+    private int                 scanCount              = DEFAULT_SCAN_COUNT;
+
+    /**
+     * 创建一个槽位的键搬迁器。
+     *
+     * @param slotTable 槽位表
+     * @param keyTagPattern 键标记模式，必须与连接池使用的相同
+     */
+    public SlotMigrator(SlotTable slotTable, Pattern keyTagPattern){
+        AssertUtils.isTrue(slotTable != null, "'slotTable' must not be null");
+
+        this.slotTable = slotTable;
+        this.keyTagPattern = keyTagPattern;
+    }
+
+    /**
+     * 设置每批搬迁的键数量。
+     * <p>
+     * 默认值是 {@value #DEFAULT_BATCH_SIZE}个。
+     */
+    public void setBatchSize(int batchSize) {
+        AssertUtils.isTrue(batchSize > 0, "'batchSize' property must be greater than 0 : " + batchSize);
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 设置SCAN命令每次遍历的键数量。
+     * <p>
+     * 默认值是 {@value #DEFAULT_SCAN_COUNT}个。
+     */
+    public void setScanCount(int scanCount) {
+        AssertUtils.isTrue(scanCount > 0, "'scanCount' property must be greater than 0 : " + scanCount);
+
+        this.scanCount = scanCount;
+    }
+
+    /**
+     * 在后台线程中将槽位迁移到目标节点。
+     *
+     * @return 搬迁的键数量
+     * @see #migrate(int, String)
+     */
+    public Future<Integer> migrateInBackground(final int slot, final String targetShardName) {
+        FutureTask<Integer> task = new FutureTask<Integer>(new Callable<Integer>() {
+
+            @Override
+            public Integer call() {
+                return migrate(slot, targetShardName);
+            }
+        });
+        Thread thread = new Thread(task, "SlotMigrator-" + slot);
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * 将槽位迁移到目标节点，搬迁完所有的键后才返回。
+     *
+     * @param slot 槽位
+     * @param targetShardName 目标节点的名称
+     * @return 搬迁的键数量
+     * @throws redis.clients.jedis.exceptions.JedisException 当搬迁失败时(槽位保持迁移状态)
+     */
+    public int migrate(int slot, String targetShardName) {
+        slotTable.beginMigration(slot, targetShardName);
+        JedisShardInfo source = slotTable.getMigrationSource(slot);
+        if (source == null) { // 已经迁移完成
+            return 0;
+        }
+        JedisShardInfo target = slotTable.getShardInfo(slot);
+        logger.info("Start migrating slot {} from {} to {}", slot, source.getName(), target.getName());
+
+        long startTime = System.currentTimeMillis();
+        int movedKeyNum = 0;
+        Jedis sourceJedis = source.createResource();
+        Jedis targetJedis = target.createResource();
+        try {
+            ScanParams scanParams = new ScanParams().count(scanCount);
+            List<String> keys = new ArrayList<String>(batchSize);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> scanResult = sourceJedis.scan(cursor, scanParams);
+                for (String key : scanResult.getResult()) {
+                    if (SlotTable.getSlot(key, keyTagPattern) == slot) {
+                        keys.add(key);
+                        if (keys.size() == batchSize) {
+                            movedKeyNum += moveKeys(sourceJedis, targetJedis, keys);
+                            keys.clear();
+                        }
+                    }
+                }
+                cursor = scanResult.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+            if (!keys.isEmpty()) {
+                movedKeyNum += moveKeys(sourceJedis, targetJedis, keys);
+            }
+        } finally {
+            close(sourceJedis);
+            close(targetJedis);
+        }
+
+        slotTable.completeMigration(slot);
+        logger.info("Slot {} migrated from {} to {}, moved keys: {}, time: {}ms", slot, source.getName(),
+                    target.getName(), movedKeyNum, System.currentTimeMillis() - startTime);
+        return movedKeyNum;
+    }
+
+    /**
+     * 搬迁一批键：在源节点上以管道方式执行MIGRATE命令。
+     *
+     * @return 搬迁到目标节点的键数量
+     */
+    private static int moveKeys(Jedis source, Jedis target, List<String> keys) {
+        Client targetClient = target.getClient();
+        Pipeline sourcePipeline = source.pipelined();
+        List<Response<String>> migrates = new ArrayList<Response<String>>(keys.size());
+        for (String key : keys) {
+            migrates.add(sourcePipeline.migrate(targetClient.getHost(), targetClient.getPort(), key, MIGRATE_DB,
+                                                targetClient.getTimeout()));
+        }
+        sourcePipeline.sync();
+
+        int movedKeyNum = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            try {
+                if (MIGRATE_OK.equals(migrates.get(i).get())) { // 否则是"NOKEY"：键已经被删除、过期或按需搬走了
+                    movedKeyNum++;
+                }
+            } catch (JedisDataException e) {
+                if (!isBusyKeyError(e)) {
+                    throw e;
+                }
+                logger.warn("Key already exists on target shard, keep both copies: {}", keys.get(i));
+            }
+        }
+        return movedKeyNum;
+    }
+
+    /**
+     * 将一个键从源节点原子地搬到目标节点(MIGRATE命令，保留剩余过期时间)。
+     * <p>
+     * 目标节点上已经存在该键时以目标节点为准，源节点上的键保留，不会删除。
+     *
+     * @param source 源节点
+     * @param target 目标节点
+     * @param key 键
+     * @return 搬迁成功时，返回{@code true}；源节点上没有该键或目标节点上已经存在该键时，返回{@code false}
+     */
+    public static boolean moveKey(Jedis source, Jedis target, byte[] key) {
+        Client targetClient = target.getClient();
+        try {
+            return MIGRATE_OK.equals(source.migrate(SafeEncoder.encode(targetClient.getHost()),
+                                                    targetClient.getPort(), key, MIGRATE_DB,
+                                                    targetClient.getTimeout()));
+        } catch (JedisDataException e) {
+            if (!isBusyKeyError(e)) {
+                throw e;
+            }
+            logger.warn("Key already exists on target shard, keep both copies: {}", SafeEncoder.encode(key));
+            return false;
+        }
+    }
+
+    /**
+     * 将一个键从源节点复制到目标节点(保留剩余过期时间)，源节点上的键不会删除。
+     * <p>
+     * 目标节点上已经存在该键时以目标节点为准，不会覆盖。
+     *
+     * @param source 源节点
+     * @param target 目标节点
+     * @param key 键
+     * @return 复制成功时，返回{@code true}；源节点上没有该键或目标节点上已经存在该键时，返回{@code false}
+     */
+    public static boolean copyKey(Jedis source, Jedis target, String key) {
+        Pipeline sourcePipeline = source.pipelined();
+        Response<byte[]> dump = sourcePipeline.dump(key);
+        Response<Long> ttl = sourcePipeline.pttl(key);
+        sourcePipeline.sync();
+
+        byte[] serializedValue = dump.get();
+        long ttlMillis = ttl.get().longValue();
+        if (serializedValue == null || ttlMillis == -2L) { // 键已经被删除或已过期
+            return false;
+        }
+        int restoreTtl = (ttlMillis < 0L) ? 0 : (int) Math.min(Math.max(ttlMillis, 1L), Integer.MAX_VALUE);
+        try {
+            target.restore(key, restoreTtl, serializedValue);
+            return true;
+        } catch (JedisDataException e) {
+            if (!isBusyKeyError(e)) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 判断是否是"目标节点上已经存在该键"的RESTORE命令错误。
+     */
+    private static boolean isBusyKeyError(JedisDataException e) {
+        String message = e.getMessage();
+        return message != null && (message.startsWith(BUSY_KEY_ERROR) || message.contains(BUSY_KEY_LEGACY_ERROR));
+    }
+
+    private static void close(Jedis jedis) {
+        try {
+            jedis.close();
+        } catch (RuntimeException e) {
+            logger.warn("Close migration connection fail", e);
+        }
+    }
+
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import redis.client.util.AssertUtils;
+import redis.client.util.StringUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.JedisClusterCRC16;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * "槽位表"分片方式：键(键标记)按CRC16算法映射到固定的{@value #SLOT_COUNT}个槽位，再通过预先计算好的"槽位 -> 分片节点"数组({@code int[]})
+ * 查找分片节点，每个键的路由只需要一次数组访问。
+ * <p>
+ * 与一致性哈希环不同，单个槽位可以在线迁移到另一个分片节点，而不必整体迁移一个分片节点：
+ * <ol>
+ * <li>{@link #beginMigration(int, String)}：槽位立刻改由目标节点负责，之后所有命令都发送到目标节点；
+ * <li>{@link SlotMigrator}在后台以管道方式通过MIGRATE命令，将源节点上属于该槽位的键逐批搬到目标节点；
+ * 命令访问的键还没有搬迁时，先把该键按需搬到目标节点再执行命令，每个键在一次迁移中最多按需搬迁一次({@link #getSettledKeys(int)})；
+ * <li>{@link #completeMigration(int)}：搬迁完成，不再按需搬迁。
+ * </ol>
+ * 槽位分布可以通过{@link #getSlotRanges()}导出，下次启动时再通过{@link #SlotTable(List, String)}恢复。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>，路由时只读取数组；槽位分布很少变化，修改时复制整个数组(写时复制)。
+ *
+ * @author huagang.li 2015年2月27日 上午10:12:36
+ */
+public class SlotTable implements ShardRouter {
+
+    /** 槽位数量 (与Redis Cluster相同) */
+    public static final int                           SLOT_COUNT            = 16384;
+
+    /** 没有分片节点 */
+    private static final int                          NO_SHARD              = -1;
+
+    /** 槽位区间之间的分隔符 */
+    private static final String                       RANGE_SEPARATOR       = ",";
+
+    /** 槽位区间与分片节点名称之间的分隔符 */
+    private static final String                       RANGE_SHARD_SEPARATOR = ":";
+
+    /** 槽位区间起止槽位之间的分隔符 */
+    private static final String                       RANGE_BOUND_SEPARATOR = "-";
+
+    /** 分片节点列表 (槽位表中记录的是它们的下标) */
+    private final List<JedisShardInfo>                shards;
+
+    /** 分片节点名称 -> 下标 */
+    private final Map<String, Integer>                shardIndexes;
+
+    /** 槽位 -> 分片节点下标 */
+    private volatile int[]                            owners;
+
+    /** 槽位 -> 迁移的源节点下标 (没有迁移时为{@link #NO_SHARD}) */
+    private volatile int[]                            sources;
+
+    /** 正在迁移的槽位数量 */
+    private volatile int                              migratingSlotNum;
+
+    /** 槽位 -> 本次迁移中已经按需搬迁过(或已确认源节点上没有)的键 */
+    private final ConcurrentMap<Integer, Set<String>> settledKeys;
+
+    /**
+     * 创建一个槽位表，所有槽位按分片节点的顺序平均分成连续的区间。
+     *
+     * @param shards 分片节点列表(每个分片节点都必须有唯一的名称)
+     */
+    public SlotTable(List<JedisShardInfo> shards){
+        this(shards, null);
+    }
+
+    /**
+     * 创建一个槽位表，并按给定的槽位区间分配槽位。
+     * 
+     * <pre>
+     * {@code slotRanges}格式：
+     *     startSlot[-endSlot]:shardName[, ...]
+     * 
+     * 示例：
+     *     "0-5460:Shard-01, 5461-10922:Shard-02, 10923-16383:Shard-03"
+     * </pre>
+     * 
+     * 所有槽位都必须被分配，且只能被分配一次。
+     *
+     * @param shards 分片节点列表(每个分片节点都必须有唯一的名称)
+     * @param slotRanges 槽位区间，为空时平均分配
+     */
+    public SlotTable(List<JedisShardInfo> shards, String slotRanges){
+        AssertUtils.notEmpty(shards, "'shards' must not be null and empty");
+
+        this.shards = Collections.unmodifiableList(new ArrayList<JedisShardInfo>(shards));
+        this.shardIndexes = new HashMap<String, Integer>(shards.size() * 2);
+        for (int i = 0; i < shards.size(); i++) {
+            String name = shards.get(i).getName();
+            AssertUtils.notEmpty(name, "shard name must not be null and empty : " + shards.get(i));
+            AssertUtils.isTrue(shardIndexes.put(name, i) == null, "duplicate shard name : " + name);
+        }
+
+        int[] owners = new int[SLOT_COUNT];
+        if (StringUtils.isEmpty(slotRanges)) {
+            for (int slot = 0; slot < SLOT_COUNT; slot++) {
+                owners[slot] = (int) ((long) slot * shards.size() / SLOT_COUNT);
+            }
+        } else {
+            this.parseSlotRanges(slotRanges, owners);
+        }
+        int[] sources = new int[SLOT_COUNT];
+        Arrays.fill(sources, NO_SHARD);
+        this.owners = owners;
+        this.sources = sources;
+        this.settledKeys = new ConcurrentHashMap<Integer, Set<String>>();
+    }
+
+    private void parseSlotRanges(String slotRanges, int[] owners) {
+        Arrays.fill(owners, NO_SHARD);
+        for (String range : slotRanges.split(RANGE_SEPARATOR)) {
+            range = range.trim();
+            if (StringUtils.isEmpty(range)) {
+                continue;
+            }
+            String[] rangeFieldArray = range.split(RANGE_SHARD_SEPARATOR);
+            AssertUtils.isTrue(2 == rangeFieldArray.length,
+                               "'slotRanges' does not meet the 'startSlot[-endSlot]:shardName [, ...]' format : "
+                                       + range);
+            String[] boundArray = rangeFieldArray[0].trim().split(RANGE_BOUND_SEPARATOR);
+            AssertUtils.isTrue(1 <= boundArray.length && boundArray.length <= 2,
+                               "'slotRanges' does not meet the 'startSlot[-endSlot]:shardName [, ...]' format : "
+                                       + range);
+            int startSlot = Integer.parseInt(boundArray[0].trim());
+            int endSlot = (boundArray.length == 1) ? startSlot : Integer.parseInt(boundArray[1].trim());
+            AssertUtils.isTrue(0 <= startSlot && startSlot <= endSlot && endSlot < SLOT_COUNT,
+                               "illegal slot range : " + range);
+            int shardIndex = this.shardIndex(rangeFieldArray[1].trim());
+
+            for (int slot = startSlot; slot <= endSlot; slot++) {
+                AssertUtils.isTrue(owners[slot] == NO_SHARD, "slot " + slot + " is assigned more than once : " + range);
+                owners[slot] = shardIndex;
+            }
+        }
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            AssertUtils.isTrue(owners[slot] != NO_SHARD, "slot " + slot + " is not assigned : " + slotRanges);
+        }
+    }
+
+    private int shardIndex(String shardName) {
+        Integer index = shardIndexes.get(shardName);
+        AssertUtils.isTrue(index != null, "unknown shard name : " + shardName);
+        return index.intValue();
+    }
+
+    private static void checkSlot(int slot) {
+        AssertUtils.isTrue(0 <= slot && slot < SLOT_COUNT, "'slot' must be in [0, " + SLOT_COUNT + ") : " + slot);
+    }
+
+    // ---------------- 路由 ----------------
+    /**
+     * 返回键标记所在的槽位。
+     *
+     * @param keyTag 键标记的字节数组
+     */
+    public static int getSlot(byte[] keyTag) {
+        return JedisClusterCRC16.getCRC16(keyTag) & (SLOT_COUNT - 1);
+    }
+
+    /**
+     * 返回键所在的槽位。
+     *
+     * @param key 键
+     * @param keyTagPattern 键标记模式，为{@code null}时使用整个键
+     */
+    public static int getSlot(String key, Pattern keyTagPattern) {
+        String keyTag = key;
+        if (keyTagPattern != null) {
+            Matcher matcher = keyTagPattern.matcher(key);
+            if (matcher.find()) {
+                keyTag = matcher.group(1);
+            }
+        }
+        return getSlot(SafeEncoder.encode(keyTag));
+    }
+
+    /**
+     * 返回键标记所在的分片节点。
+     *
+     * @param keyTag 键标记的字节数组
+     */
+    @Override
+    public JedisShardInfo getShardInfo(byte[] keyTag) {
+        return shards.get(owners[getSlot(keyTag)]);
+    }
+
+    /**
+     * 返回负责该槽位的分片节点。(正在迁移时为目标节点)
+     */
+    public JedisShardInfo getShardInfo(int slot) {
+        checkSlot(slot);
+        return shards.get(owners[slot]);
+    }
+
+    /**
+     * 返回键标记所在槽位正在迁移的源节点。
+     *
+     * @param keyTag 键标记的字节数组
+     * @return 槽位没有在迁移时，返回{@code null}
+     */
+    public JedisShardInfo getMigrationSource(byte[] keyTag) {
+        if (migratingSlotNum == 0) {
+            return null;
+        }
+        int source = sources[getSlot(keyTag)];
+        return (source == NO_SHARD) ? null : shards.get(source);
+    }
+
+    /**
+     * 返回槽位正在迁移的源节点。
+     *
+     * @return 槽位没有在迁移时，返回{@code null}
+     */
+    public JedisShardInfo getMigrationSource(int slot) {
+        checkSlot(slot);
+        int source = sources[slot];
+        return (source == NO_SHARD) ? null : shards.get(source);
+    }
+
+    /**
+     * 返回是否有槽位正在迁移。
+     */
+    public boolean isMigrating() {
+        return migratingSlotNum > 0;
+    }
+
+    // ---------------- 迁移 ----------------
+    /**
+     * 开始将槽位迁移到目标节点，之后该槽位的所有命令都发送到目标节点。
+     * <p>
+     * 槽位已经在迁移到同一个目标节点时，什么也不做(用于继续一次中断的迁移)。
+     *
+     * @param slot 槽位
+     * @param targetShardName 目标节点的名称
+     * @throws IllegalArgumentException 当目标节点不存在、目标节点已经负责该槽位、或者槽位正在迁移到另一个节点时
+     */
+    public synchronized void beginMigration(int slot, String targetShardName) {
+        checkSlot(slot);
+        int target = this.shardIndex(targetShardName);
+        if (sources[slot] != NO_SHARD) {
+            AssertUtils.isTrue(owners[slot] == target, "slot " + slot + " is migrating to another shard : "
+                                                       + shards.get(owners[slot]).getName());
+            return;
+        }
+        AssertUtils.isTrue(owners[slot] != target, "slot " + slot + " is already served by shard : "
+                                                   + targetShardName);
+
+        int[] newSources = sources.clone();
+        newSources[slot] = owners[slot];
+        int[] newOwners = owners.clone();
+        newOwners[slot] = target;
+        settledKeys.put(Integer.valueOf(slot), Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+        // 先发布源节点，保证路由到目标节点的命令一定能看到源节点
+        sources = newSources;
+        migratingSlotNum++;
+        owners = newOwners;
+    }
+
+    /**
+     * 完成槽位的迁移，不再按需搬迁键。
+     *
+     * @param slot 槽位
+     */
+    public synchronized void completeMigration(int slot) {
+        checkSlot(slot);
+        if (sources[slot] == NO_SHARD) {
+            return;
+        }
+
+        int[] newSources = sources.clone();
+        newSources[slot] = NO_SHARD;
+        sources = newSources;
+        migratingSlotNum--;
+        settledKeys.remove(Integer.valueOf(slot));
+    }
+
+    /**
+     * 返回槽位本次迁移中已经按需搬迁过(或已确认源节点上没有)的键集合，这些键不需要再向源节点发送MIGRATE命令。
+     * <p>
+     * 迁移期间该槽位的命令都发送到目标节点，源节点上不会再写入这些键；集合在迁移完成时释放。
+     *
+     * @return 槽位没有在迁移时，返回{@code null}
+     */
+    Set<String> getSettledKeys(int slot) {
+        return settledKeys.get(Integer.valueOf(slot));
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回分片节点列表。
+     */
+    @Override
+    public List<JedisShardInfo> getShards() {
+        return shards;
+    }
+
+    /**
+     * 返回分片节点负责的槽位数量。
+     *
+     * @param shardName 分片节点的名称
+     */
+    public int getSlotNum(String shardName) {
+        int shardIndex = this.shardIndex(shardName);
+        int[] owners = this.owners;
+        int slotNum = 0;
+        for (int slot = 0; slot < SLOT_COUNT; slot++) {
+            if (owners[slot] == shardIndex) {
+                slotNum++;
+            }
+        }
+        return slotNum;
+    }
+
+    /**
+     * 返回当前的槽位区间，格式与{@link #SlotTable(List, String)}的{@code slotRanges}参数相同。(正在迁移的槽位属于目标节点)
+     */
+    public String getSlotRanges() {
+        int[] owners = this.owners;
+        StringBuilder slotRanges = new StringBuilder();
+        int startSlot = 0;
+        for (int slot = 1; slot <= SLOT_COUNT; slot++) {
+            if (slot == SLOT_COUNT || owners[slot] != owners[startSlot]) {
+                if (slotRanges.length() > 0) {
+                    slotRanges.append(RANGE_SEPARATOR).append(' ');
+                }
+                slotRanges.append(startSlot);
+                if (slot - 1 > startSlot) {
+                    slotRanges.append(RANGE_BOUND_SEPARATOR).append(slot - 1);
+                }
+                slotRanges.append(RANGE_SHARD_SEPARATOR).append(shards.get(owners[startSlot]).getName());
+                startSlot = slot;
+            }
+        }
+        return slotRanges.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "SlotTable [slotRanges=" + this.getSlotRanges() + ", migratingSlotNum=" + migratingSlotNum + "]";
+    }
+
+}
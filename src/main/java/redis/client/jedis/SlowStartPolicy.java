@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * 慢启动(Slow Start)策略：恢复正常的分片节点在{@code rampMillis}(默认60秒)内逐步接回它在哈希环上的键，而不是一次性全部接回。
+ * <p>
+ * 分片节点异常期间，它的键被路由到哈希环上的其它分片节点，数据也写在那里；恢复后它自己是空的(或者只有旧数据)，
+ * 如果立刻接回所有的键，会造成一次大量的缓存未命中，压力全部落到后端数据库上。
+ * <p>
+ * 慢启动期间，分片节点的有效权重(接回的键所占的比例)随时间从0线性增长到1：
+ * <ul>
+ * <li>键是否接回只取决于键标记的哈希值和有效权重，有效权重增长时原来接回的键仍然接回，所以每个键只会移动一次；
+ * <li>还没有接回的键仍然路由到"去掉所有慢启动中的分片节点"的哈希环上，也就是异常期间它所在的分片节点，可以继续读到数据。
+ * </ul>
+ * 开启{@link #setPrewarmConnections(boolean) 预热连接}时，新建的连接池对象会在收到请求之前先建立到慢启动中的分片节点的连接。
+ * <p>
+ * 接管了异常分片节点的{@link StandbyShardInfo 备用节点}不需要慢启动(原来的分片节点已不可用，没有可以继续读取的数据)。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年3月1日 下午2:12:40
+ */
+public class SlowStartPolicy {
+
+    private static final Logger                       logger              = LoggerFactory.getLogger(SlowStartPolicy.class);
+
+    /** 默认的慢启动时间(毫秒) */
+    public static final long                          DEFAULT_RAMP_MILLIS = 60000L;
+
+    private volatile boolean                          enabled;
+
+    private volatile long                             rampNanos           = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RAMP_MILLIS);
+
+    private volatile boolean                          prewarmConnections;
+
+    /** 慢启动中的分片节点 -> 开始时间 (按对象标识查找) */
+    private final ConcurrentMap<JedisShardInfo, Long> rampStartTimes      = new ConcurrentHashMap<JedisShardInfo, Long>(4);
+
+    /** 慢启动中的分片节点集合的版本号，每次变化都会加1 */
+    private final AtomicInteger                       version             = new AtomicInteger();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 设置是否启用慢启动。(默认关闭)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 设置慢启动时间(毫秒)，即恢复正常的分片节点的有效权重从0增长到1所需的时间。默认值是 {@value #DEFAULT_RAMP_MILLIS}毫秒。
+     */
+    public void setRampMillis(long rampMillis) {
+        AssertUtils.isTrue(rampMillis > 0, "'rampMillis' must be greater than 0 : " + rampMillis);
+        this.rampNanos = TimeUnit.MILLISECONDS.toNanos(rampMillis);
+    }
+
+    public boolean isPrewarmConnections() {
+        return prewarmConnections;
+    }
+
+    /**
+     * 设置是否在收到请求之前，先建立到慢启动中的分片节点的连接。(默认关闭)
+     */
+    public void setPrewarmConnections(boolean prewarmConnections) {
+        this.prewarmConnections = prewarmConnections;
+    }
+
+    /**
+     * 记录一个分片节点恢复正常，开始慢启动。(由"Redis服务器状态检测"定时任务调用)
+     *
+     * @param shard 恢复正常的分片节点
+     */
+    public void onShardRecovered(JedisShardInfo shard) {
+        this.onShardRecovered(shard, System.nanoTime());
+    }
+
+    void onShardRecovered(JedisShardInfo shard, long startTime) {
+        if (enabled) {
+            rampStartTimes.put(shard, startTime);
+            version.incrementAndGet();
+            logger.info("Recovered Redis server starts slow start: {}", shard);
+        }
+    }
+
+    /**
+     * 返回是否有分片节点在慢启动中。
+     */
+    public boolean isRamping() {
+        return !rampStartTimes.isEmpty();
+    }
+
+    /**
+     * 返回分片节点是否在慢启动中。
+     */
+    public boolean isRamping(JedisShardInfo shard) {
+        return !rampStartTimes.isEmpty() && this.getWeightRatio(shard) < 1.0D;
+    }
+
+    /**
+     * 返回分片节点的有效权重(0 ~ 1)，慢启动结束后为1。
+     */
+    public double getWeightRatio(JedisShardInfo shard) {
+        Long startTime = rampStartTimes.get(shard);
+        if (startTime == null) {
+            return 1.0D;
+        }
+        double ratio = (double) (System.nanoTime() - startTime.longValue()) / rampNanos;
+        if (ratio >= 1.0D || !enabled) {
+            if (rampStartTimes.remove(shard, startTime)) {
+                version.incrementAndGet();
+                logger.info("Recovered Redis server finishes slow start: {}", shard);
+            }
+            return 1.0D;
+        }
+        return Math.max(ratio, 0.0D);
+    }
+
+    /**
+     * 返回键是否已被慢启动中的分片节点接回。
+     *
+     * @param shard 键在哈希环上所在的分片节点
+     * @param keyTag 键标记
+     */
+    public boolean isAdmitted(JedisShardInfo shard, byte[] keyTag) {
+        double ratio = this.getWeightRatio(shard);
+        if (ratio >= 1.0D) {
+            return true;
+        }
+        // 取哈希值的低53位作为键的位置(0 ~ 1)，有效权重增长时原来接回的键仍然接回
+        long hash = RendezvousRouter.mix(Hashing.MURMUR_HASH.hash(keyTag));
+        return (hash & ((1L << 53) - 1)) * 0x1.0p-53 < ratio;
+    }
+
+    /**
+     * 返回慢启动中的分片节点集合。
+     */
+    public Set<JedisShardInfo> getRampingShards() {
+        return Collections.unmodifiableSet(rampStartTimes.keySet());
+    }
+
+    /**
+     * 返回慢启动中的分片节点集合的版本号，用于判断集合是否有变化。
+     */
+    public int getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("SlowStartPolicy [enabled=").append(enabled);
+        sb.append(", rampMillis=").append(TimeUnit.NANOSECONDS.toMillis(rampNanos));
+        sb.append(", prewarmConnections=").append(prewarmConnections).append(", weightRatios={");
+        boolean first = true;
+        for (Map.Entry<JedisShardInfo, Long> entry : rampStartTimes.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(entry.getKey()).append('=').append(this.getWeightRatio(entry.getKey()));
+        }
+        return sb.append("}]").toString();
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 接管了一个异常分片节点的备用节点。
+ * <p>
+ * 备用节点使用被接管分片节点的名称和权重，所以在一致性哈希环上的位置(以及在分片列表中的序号)与被接管的分片节点完全相同，
+ * 其它分片节点上的键不会移动；{@link ShardRouter 分片路由器}路由到被接管的分片节点时，也会转到接管它的备用节点。
+ * <p>
+ * 备用节点接管时没有被接管节点的数据，接管期间该分片节点上的键会读不到(缓存未命中)，需要重新加载。
+ *
+ * @author huagang.li 2015年3月1日 上午10:05:12
+ * @see JedisServerStateCheckTimerTask#setStandbyShards(java.util.List)
+ */
+public class StandbyShardInfo extends JedisShardInfo {
+
+    /** 被接管的初始分片节点 */
+    private final JedisShardInfo takenOverShard;
+
+    private StandbyShardInfo(JedisShardInfo standby, JedisShardInfo takenOverShard, String name){
+        super(standby.getHost(), standby.getPort(), standby.getTimeout(), name);
+        this.takenOverShard = takenOverShard;
+        this.setPassword(standby.getPassword());
+    }
+
+    private StandbyShardInfo(JedisShardInfo standby, JedisShardInfo takenOverShard, int weight){
+        super(standby.getHost(), standby.getPort(), standby.getTimeout(), weight);
+        this.takenOverShard = takenOverShard;
+        this.setPassword(standby.getPassword());
+    }
+
+    /**
+     * 创建一个接管分片节点的备用节点信息。
+     *
+     * @param standby 备用节点
+     * @param shard 被接管的分片节点(也可以是一个已经接管了分片节点的备用节点)
+     */
+    public static StandbyShardInfo takeOver(JedisShardInfo standby, JedisShardInfo shard) {
+        JedisShardInfo takenOverShard = getOriginalShard(shard);
+        if (takenOverShard.getName() != null) {
+            return new StandbyShardInfo(standby, takenOverShard, takenOverShard.getName());
+        }
+        return new StandbyShardInfo(standby, takenOverShard, takenOverShard.getWeight());
+    }
+
+    /**
+     * 返回被接管的初始分片节点。
+     */
+    public JedisShardInfo getTakenOverShard() {
+        return takenOverShard;
+    }
+
+    /**
+     * 返回分片节点在哈希环上的位置所属的初始分片节点。
+     *
+     * @return 是接管了分片节点的备用节点时，返回被接管的初始分片节点；否则返回它自己。
+     */
+    public static JedisShardInfo getOriginalShard(JedisShardInfo shard) {
+        return (shard instanceof StandbyShardInfo) ? ((StandbyShardInfo) shard).takenOverShard : shard;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " (standby of " + takenOverShard + ")";
+    }
+
+}
@@ -16,15 +16,35 @@
 
 package redis.client.jedis.spring;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.FactoryBean;
 
+import redis.client.jedis.BoundedLoadPolicy;
 import redis.client.jedis.CustomShardedJedisPool;
+import redis.client.jedis.DualRingPolicy;
+import redis.client.jedis.FlapDampeningPolicy;
+import redis.client.jedis.HedgePolicy;
+import redis.client.jedis.ReplicatedKeys;
+import redis.client.jedis.ShardCircuitBreakers;
+import redis.client.jedis.ShardConcurrencyLimiters;
+import redis.client.jedis.ShardReplicas;
+import redis.client.jedis.ShardReplicas.ReadMode;
+import redis.client.jedis.ShardRouter;
+import redis.client.jedis.ShardingStrategy;
+import redis.client.jedis.SlotTable;
+import redis.client.jedis.SlowStartPolicy;
+import redis.client.monitor.MetricsRegistry;
 import redis.client.util.AssertUtils;
 import redis.client.util.RedisConfigUtils;
+import redis.client.util.StringUtils;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
 
 /**
  * 基于Spring工厂Bean({@link FactoryBean})实现的自定义分片Jedis连接池({@link CustomShardedJedisPool})工厂。
@@ -34,7 +54,7 @@ import redis.clients.jedis.JedisPoolConfig;
  * <pre>
  * redis.server.list：Redis服务器列表信息，配置格式如下：
  *     redisServers："redisServer[, redisServer ...]"
- *     redisServer："host:port:name[:weight]"
+ *     redisServer："host:port:name[:weight][|replicaHost:replicaPort ...]"
  * redis.timeout.millis：链接套接字的连接超时时间和读取超时时间
  * redis.max.total.num：在给定的时间可以由连接池分配的对象的数量上限
  * redis.max.idle.num：连接池中空闲实例的数量上限
@@ -49,7 +69,11 @@ import redis.clients.jedis.JedisPoolConfig;
  * redis.test.on.return：是否在池对象返回时检测
  * redis.test.while.idle：是否当池对象空闲时检测
  * redis.server.state.check.time.between.runs.seconds："Redis服务器状态检测"定时任务的运行间隔时间
- * redis.server.state.check.ping.retry.times：PING命令的失败重试次数
+ * redis.server.state.check.ping.retry.times：PING命令的失败重试次数(分片节点和副本节点共用状态检测配置)
+ * redis.replica.read.mode：副本节点读命令的负载均衡方式（MASTER：只读分片节点；ROUND_ROBIN：轮询；LEAST_OUTSTANDING：在途读命令最少）
+ * redis.sharding.strategy：分片方式（KETAMA：一致性哈希环；SLOT_TABLE：槽位表，槽位可以在线迁移；JUMP_HASH：跳跃一致性哈希；RENDEZVOUS：带权重的最高随机权重哈希）
+ * redis.slot.ranges：槽位区间，格式为"startSlot[-endSlot]:shardName[, ...]"（只在SLOT_TABLE时有效，为空时平均分配）
+ * redis.standby.server.list：备用节点列表，格式为"host:port[, ...]"（异常分片节点的位置由备用节点接管，为空时摘除异常分片节点）
  * </pre>
  * 
  * 【配置示例】<br>
@@ -66,6 +90,10 @@ import redis.clients.jedis.JedisPoolConfig;
  * redis.num.tests.per.eviction.run=10
  * redis.min.evictable.idle.time.minutes=5
  * redis.max.evictable.idle.time.minutes=30
+ * redis.replica.read.mode=MASTER
+ * redis.sharding.strategy=KETAMA
+ * redis.slot.ranges=
+ * redis.standby.server.list=
  * # Internal default configurations (not to change)
  * redis.block.when.exhausted=false
  * redis.test.on.borrow=false
@@ -97,6 +125,83 @@ import redis.clients.jedis.JedisPoolConfig;
  *         &lt;property name="testWhileIdle" value="${redis.test.while.idle}" />
  *         &lt;property name="timeBetweenServerStateCheckRunsSeconds" value="${redis.server.state.check.time.between.runs.seconds}" />
  *         &lt;property name="pingRetryTimes" value="${redis.server.state.check.ping.retry.times}" />
+ *         &lt;!-- 可选：读命令在分片节点及其副本节点之间负载均衡(默认只读分片节点) --&gt;
+ *         &lt;property name="replicaReadMode" value="${redis.replica.read.mode}" />
+ *         &lt;!-- 可选：分片方式(默认按一致性哈希环路由) --&gt;
+ *         &lt;property name="shardingStrategy" value="${redis.sharding.strategy}" />
+ *         &lt;property name="slotRanges" value="${redis.slot.ranges}" />
+ *         &lt;!-- 可选：备用节点接管异常分片节点在哈希环上的位置(默认摘除异常分片节点) --&gt;
+ *         &lt;property name="standbyServers" value="${redis.standby.server.list}" />
+ *         &lt;!-- 可选：恢复正常的分片节点在一段时间内逐步接回它的键(默认关闭) --&gt;
+ *         &lt;property name="slowStartPolicy">
+ *             &lt;bean class="redis.client.jedis.SlowStartPolicy">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="rampMillis" value="60000" />
+ *                 &lt;property name="prewarmConnections" value="true" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：不稳定的分片节点不会在正常和异常之间反复切换(默认关闭) --&gt;
+ *         &lt;property name="flapDampeningPolicy">
+ *             &lt;bean class="redis.client.jedis.FlapDampeningPolicy">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="failureThreshold" value="2" />
+ *                 &lt;property name="recoveryThreshold" value="3" />
+ *                 &lt;property name="minHoldMillis" value="10000" />
+ *                 &lt;property name="halfLifeMillis" value="60000" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：分片节点列表变化后的宽限期内，新的分片节点上没有读到数据时回退读取原来的分片节点(默认关闭) --&gt;
+ *         &lt;property name="dualRingPolicy">
+ *             &lt;bean class="redis.client.jedis.DualRingPolicy">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="graceMillis" value="60000" />
+ *                 &lt;property name="backfill" value="true" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：将统计数据注册到JMX --&gt;
+ *         &lt;property name="metricsRegistries">
+ *             &lt;list>
+ *                 &lt;bean class="redis.client.monitor.JmxMetricsRegistry" />
+ *             &lt;/list>
+ *         &lt;/property>
+ *         &lt;!-- 可选：分片节点的熔断器配置 --&gt;
+ *         &lt;property name="circuitBreakers">
+ *             &lt;bean class="redis.client.jedis.ShardCircuitBreakers">
+ *                 &lt;property name="failureThreshold" value="5" />
+ *                 &lt;property name="openMillis" value="5000" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：分片节点的自适应并发限制(默认关闭) --&gt;
+ *         &lt;property name="concurrencyLimiters">
+ *             &lt;bean class="redis.client.jedis.ShardConcurrencyLimiters">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="maxLimit" value="100" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：向副本节点发送对冲读(默认关闭，需要在redis.server.list中配置副本节点) --&gt;
+ *         &lt;property name="hedgePolicy">
+ *             &lt;bean class="redis.client.jedis.HedgePolicy">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="percentile" value="95" />
+ *                 &lt;property name="budgetRatio" value="0.05" />
+ *                 &lt;property name="windowSeconds" value="30" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：有界负载，热点分片节点上的部分缓存键(GET/SETEX)溢出到其它分片节点(默认关闭) --&gt;
+ *         &lt;property name="boundedLoadPolicy">
+ *             &lt;bean class="redis.client.jedis.BoundedLoadPolicy">
+ *                 &lt;property name="enabled" value="true" />
+ *                 &lt;property name="loadFactor" value="1.25" />
+ *             &lt;/bean>
+ *         &lt;/property>
+ *         &lt;!-- 可选：热点键复制到多个分片节点，分散读流量(默认没有复制键) --&gt;
+ *         &lt;property name="replicatedKeys">
+ *             &lt;bean class="redis.client.jedis.ReplicatedKeys">
+ *                 &lt;property name="keys" value="config:global, trending:*" />
+ *                 &lt;property name="replicaNum" value="3" />
+ *                 &lt;property name="readMode" value="LEAST_OUTSTANDING" />
+ *             &lt;/bean>
+ *         &lt;/property>
  * {@literal
  * </bean>
  * }
@@ -107,7 +212,7 @@ import redis.clients.jedis.JedisPoolConfig;
 public class CustomShardedJedisPoolFactoryBean implements FactoryBean<CustomShardedJedisPool> {
 
     /** 对象池的配置信息 */
-    private final GenericObjectPoolConfig poolConfig = new JedisPoolConfig();
+    private final GenericObjectPoolConfig poolConfig        = new JedisPoolConfig();
 
     /** Redis集群节点列表信息 */
     private String                        redisServers;
@@ -121,14 +226,96 @@ public class CustomShardedJedisPoolFactoryBean implements FactoryBean<CustomShar
     /** Redis PING命令的失败重试次数 */
     private int                           pingRetryTimes;
 
+    /** 统计数据注册表列表 */
+    private List<MetricsRegistry>         metricsRegistries = Collections.emptyList();
+
+    /** 分片节点的熔断器 */
+    private ShardCircuitBreakers          circuitBreakers;
+
+    /** 分片节点的自适应并发限制器 */
+    private ShardConcurrencyLimiters      concurrencyLimiters;
+
+    /** 副本节点读命令的负载均衡方式 */
+    private ReadMode                      replicaReadMode   = ReadMode.MASTER;
+
+    /** 对冲读策略 */
+    private HedgePolicy                   hedgePolicy;
+
+    /** 有界负载策略 */
+    private BoundedLoadPolicy             boundedLoadPolicy;
+
+    /** 复制键 */
+    private ReplicatedKeys                replicatedKeys;
+
+    /** 分片方式 */
+    private ShardingStrategy              shardingStrategy  = ShardingStrategy.KETAMA;
+
+    /** 槽位区间 */
+    private String                        slotRanges;
+
+    /** 备用节点列表信息 */
+    private String                        standbyServers;
+
+    /** 慢启动策略 */
+    private SlowStartPolicy               slowStartPolicy;
+
+    /** 抖动抑制策略 */
+    private FlapDampeningPolicy           flapDampeningPolicy;
+
+    /** 双环回读策略 */
+    private DualRingPolicy                dualRingPolicy;
+
     @Override
     public CustomShardedJedisPool getObject() throws Exception {
-        CustomShardedJedisPool shardedJedisPool = new CustomShardedJedisPool(
-                                                                             poolConfig,
-                                                                             RedisConfigUtils.parseRedisServerList(redisServers,
-                                                                                                                   timeoutMillis),
+        List<JedisShardInfo> shards = RedisConfigUtils.parseRedisServerList(redisServers, timeoutMillis);
+        ShardRouter router;
+        if (shardingStrategy == ShardingStrategy.SLOT_TABLE) {
+            router = new SlotTable(shards, slotRanges);
+        } else {
+            router = shardingStrategy.createRouter(shards, Hashing.MURMUR_HASH);
+        }
+        CustomShardedJedisPool shardedJedisPool = new CustomShardedJedisPool(poolConfig, shards, Hashing.MURMUR_HASH,
+                                                                             null, router,
                                                                              timeBetweenServerStateCheckRunsMillis,
                                                                              pingRetryTimes);
+        for (MetricsRegistry metricsRegistry : metricsRegistries) {
+            shardedJedisPool.getMetrics().addRegistry(metricsRegistry);
+        }
+        if (circuitBreakers != null) {
+            shardedJedisPool.setCircuitBreakers(circuitBreakers);
+        }
+        if (concurrencyLimiters != null) {
+            shardedJedisPool.setConcurrencyLimiters(concurrencyLimiters);
+        }
+        Map<String, List<JedisShardInfo>> replicaShardMap = RedisConfigUtils.parseReplicaServerMap(redisServers,
+                                                                                                   timeoutMillis);
+        if (!replicaShardMap.isEmpty()) {
+            ShardReplicas replicas = new ShardReplicas(poolConfig, replicaShardMap,
+                                                       timeBetweenServerStateCheckRunsMillis, pingRetryTimes);
+            replicas.setReadMode(replicaReadMode);
+            shardedJedisPool.setReplicas(replicas);
+        }
+        if (hedgePolicy != null) {
+            shardedJedisPool.setHedgePolicy(hedgePolicy);
+        }
+        if (boundedLoadPolicy != null) {
+            shardedJedisPool.setBoundedLoadPolicy(boundedLoadPolicy);
+        }
+        if (replicatedKeys != null) {
+            shardedJedisPool.setReplicatedKeys(replicatedKeys);
+        }
+        if (slowStartPolicy != null) {
+            shardedJedisPool.setSlowStartPolicy(slowStartPolicy);
+        }
+        if (flapDampeningPolicy != null) {
+            shardedJedisPool.setFlapDampeningPolicy(flapDampeningPolicy);
+        }
+        if (dualRingPolicy != null) {
+            shardedJedisPool.setDualRingPolicy(dualRingPolicy);
+        }
+        if (StringUtils.isNotEmpty(standbyServers)) {
+            shardedJedisPool.setStandbyShards(RedisConfigUtils.parseStandbyServerList(standbyServers, timeoutMillis));
+        }
         return shardedJedisPool;
     }
 
@@ -149,11 +336,12 @@ public class CustomShardedJedisPoolFactoryBean implements FactoryBean<CustomShar
      * <pre>
      * Redis节点列表的配置格式：
      *     redisServers："redisServer[, redisServer ...]"
-     *     redisServer："host:port:name[:weight]"
+     *     redisServer："host:port:name[:weight][|replicaHost:replicaPort ...]"
      * 
      * 示例：
      *     "127.0.0.1:6379:Shard-01,127.0.0.1:6380:Shard-02,127.0.0.1:6381:Shard-03"
      *     "127.0.0.1:6379:Shard-01:1,127.0.0.1:6380:Shard-02:1,127.0.0.1:6381:Shard-03:1"
+     *     "127.0.0.1:6379:Shard-01|127.0.0.1:6479,127.0.0.1:6380:Shard-02|127.0.0.1:6480"
      * </pre>
      * 
      * @param redisServers Redis集群节点列表信息
@@ -378,4 +566,180 @@ public class CustomShardedJedisPoolFactoryBean implements FactoryBean<CustomShar
         this.pingRetryTimes = pingRetryTimes;
     }
 
+    /**
+     * 设置统计数据注册表列表，如{@link redis.client.monitor.JmxMetricsRegistry JmxMetricsRegistry}。
+     * <p>
+     * 默认不注册到任何注册表，但统计数据依然可以通过{@link CustomShardedJedisPool#getMetrics()}读取。
+     * 
+     * @param metricsRegistries 统计数据注册表列表
+     */
+    public final void setMetricsRegistries(List<MetricsRegistry> metricsRegistries) {
+        AssertUtils.isTrue(metricsRegistries != null, "'metricsRegistries' property must not be null");
+
+        this.metricsRegistries = metricsRegistries;
+    }
+
+    /**
+     * 设置分片节点的熔断器。
+     * <p>
+     * 默认使用{@link ShardCircuitBreakers}的默认配置。
+     * 
+     * @param circuitBreakers 分片节点的熔断器
+     */
+    public final void setCircuitBreakers(ShardCircuitBreakers circuitBreakers) {
+        AssertUtils.isTrue(circuitBreakers != null, "'circuitBreakers' property must not be null");
+
+        this.circuitBreakers = circuitBreakers;
+    }
+
+    /**
+     * 设置分片节点的自适应并发限制器。
+     * <p>
+     * 默认不限制，只受连接池的{@code maxTotalNum}限制。
+     * 
+     * @param concurrencyLimiters 分片节点的自适应并发限制器
+     */
+    public final void setConcurrencyLimiters(ShardConcurrencyLimiters concurrencyLimiters) {
+        AssertUtils.isTrue(concurrencyLimiters != null, "'concurrencyLimiters' property must not be null");
+
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    /**
+     * 设置副本节点读命令的负载均衡方式。
+     * <p>
+     * 默认只读分片节点({@link ReadMode#MASTER})；只有在{@link #setRedisServers(String)}中配置了副本节点的分片节点才会生效，写命令始终发送到分片节点。
+     *
+     * @param replicaReadMode 副本节点读命令的负载均衡方式
+     */
+    public final void setReplicaReadMode(ReadMode replicaReadMode) {
+        AssertUtils.isTrue(replicaReadMode != null, "'replicaReadMode' property must not be null");
+
+        this.replicaReadMode = replicaReadMode;
+    }
+
+    /**
+     * 设置对冲读策略。
+     * <p>
+     * 默认不对冲；只有在{@link #setRedisServers(String)}中配置了副本节点的分片节点才会对冲。
+     *
+     * @param hedgePolicy 对冲读策略
+     */
+    public final void setHedgePolicy(HedgePolicy hedgePolicy) {
+        AssertUtils.isTrue(hedgePolicy != null, "'hedgePolicy' property must not be null");
+
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * 设置有界负载策略。
+     * <p>
+     * 默认关闭；只对可以容忍短暂读到旧值的缓存命令(GET、SETEX)生效。
+     *
+     * @param boundedLoadPolicy 有界负载策略
+     */
+    public final void setBoundedLoadPolicy(BoundedLoadPolicy boundedLoadPolicy) {
+        AssertUtils.isTrue(boundedLoadPolicy != null, "'boundedLoadPolicy' property must not be null");
+
+        this.boundedLoadPolicy = boundedLoadPolicy;
+    }
+
+    /**
+     * 设置复制键。
+     * <p>
+     * 默认没有复制键；复制键的写命令在多个分片节点上并行执行，读命令分散到这些分片节点上。
+     *
+     * @param replicatedKeys 复制键
+     */
+    public final void setReplicatedKeys(ReplicatedKeys replicatedKeys) {
+        AssertUtils.isTrue(replicatedKeys != null, "'replicatedKeys' property must not be null");
+
+        this.replicatedKeys = replicatedKeys;
+    }
+
+    /**
+     * 设置分片方式。
+     * <p>
+     * 默认按一致性哈希环路由({@link ShardingStrategy#KETAMA})；按槽位表路由时，单个槽位可以通过{@link redis.client.jedis.SlotMigrator SlotMigrator}在线迁移到另一个分片节点。
+     * <font color="red">各分片方式的键分布不同，切换时相当于一次冷启动！</font>
+     *
+     * @param shardingStrategy 分片方式
+     * @see redis.client.jedis.ShardingReport ShardingReport
+     */
+    public final void setShardingStrategy(ShardingStrategy shardingStrategy) {
+        AssertUtils.isTrue(shardingStrategy != null, "'shardingStrategy' property must not be null");
+
+        this.shardingStrategy = shardingStrategy;
+    }
+
+    /**
+     * 设置槽位区间。(只在按槽位表({@link ShardingStrategy#SLOT_TABLE})路由时有效)
+     * <p>
+     * 默认所有槽位按分片节点的顺序平均分配；迁移过槽位后，应把{@link SlotTable#getSlotRanges()}的结果保存到这里，以便重启后保持相同的槽位分布。
+     *
+     * <pre>
+     * 示例：
+     *     "0-5460:Shard-01, 5461-10922:Shard-02, 10923-16383:Shard-03"
+     * </pre>
+     *
+     * @param slotRanges 槽位区间
+     */
+    public final void setSlotRanges(String slotRanges) {
+        this.slotRanges = slotRanges;
+    }
+
+    /**
+     * 设置备用节点列表。
+     * <p>
+     * 默认摘除异常的分片节点，它上面的键重新哈希到其它分片节点；配置了备用节点时，异常分片节点在哈希环上的位置由一个正常的备用节点接管，
+     * 其它分片节点不受影响。被接管的节点恢复正常后成为新的备用节点。(需要启用"Redis服务器状态检测")
+     *
+     * <pre>
+     * 示例：
+     *     "127.0.0.1:6390, 127.0.0.1:6391"
+     * </pre>
+     *
+     * @param standbyServers 备用节点列表信息，为空时不使用备用节点
+     * @see redis.client.jedis.StandbyShardInfo StandbyShardInfo
+     */
+    public final void setStandbyServers(String standbyServers) {
+        this.standbyServers = standbyServers;
+    }
+
+    /**
+     * 设置恢复正常的分片节点的慢启动策略。(默认关闭)
+     *
+     * @param slowStartPolicy 慢启动策略
+     * @see SlowStartPolicy
+     */
+    public final void setSlowStartPolicy(SlowStartPolicy slowStartPolicy) {
+        AssertUtils.isTrue(slowStartPolicy != null, "'slowStartPolicy' property must not be null");
+
+        this.slowStartPolicy = slowStartPolicy;
+    }
+
+    /**
+     * 设置分片节点的抖动抑制策略。(默认关闭)
+     *
+     * @param flapDampeningPolicy 抖动抑制策略
+     * @see FlapDampeningPolicy
+     */
+    public final void setFlapDampeningPolicy(FlapDampeningPolicy flapDampeningPolicy) {
+        AssertUtils.isTrue(flapDampeningPolicy != null, "'flapDampeningPolicy' property must not be null");
+
+        this.flapDampeningPolicy = flapDampeningPolicy;
+    }
+
+    /**
+     * 设置分片节点列表变化后的双环回读策略。(默认关闭)
+     *
+     * @param dualRingPolicy 双环回读策略
+     * @see DualRingPolicy
+     */
+    public final void setDualRingPolicy(DualRingPolicy dualRingPolicy) {
+        AssertUtils.isTrue(dualRingPolicy != null, "'dualRingPolicy' property must not be null");
+
+        this.dualRingPolicy = dualRingPolicy;
+    }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 一个大键：一次命令调用中值的字节数(或集合的元素个数)超过了阈值。
+ *
+ * @author huagang.li 2015年2月19日 上午10:12:36
+ */
+public final class BigKey {
+
+    private final RedisCommand command;
+    private final String       shard;
+    private final String       key;
+    /** 值的字节数或集合的元素个数 */
+    private final long         size;
+    /** 最近一次发现的时间 */
+    private final long         timestamp;
+
+    public BigKey(RedisCommand command, String shard, String key, long size, long timestamp){
+        this.command = command;
+        this.shard = shard;
+        this.key = key;
+        this.size = size;
+        this.timestamp = timestamp;
+    }
+
+    public RedisCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * 返回键所在的分片节点名称，未知时为{@code null}。
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return key + "@" + shard + " " + command + " " + size;
+    }
+
+}
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 客户端大键检测器：记录请求和回复中值的字节数(按字符数估算)、集合的元素个数，并保存最大的若干个大键。
+ * <p>
+ * 偶尔出现的超大值(如10MB的字符串)或超大集合(如百万成员的有序集合)会让单个分片节点阻塞数秒，
+ * 该检测器可以找出这些键，并按时间间隔限速输出警告日志；还可以配置写命令的最大字节数，在请求到达分片节点之前拒绝超大的写命令。
+ * <p>
+ * 未超过阈值的调用只做一次比较；超过阈值(很少见)时才会加锁更新大键表。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月19日 上午10:35:21
+ */
+public class BigKeyDetector implements BigKeyDetectorMBean {
+
+    private static final Logger             logger                          = LoggerFactory.getLogger(BigKeyDetector.class);
+
+    /** 默认的大值阈值(字节数) */
+    public static final long                DEFAULT_VALUE_BYTES_THRESHOLD   = 1024L * 1024L;
+
+    /** 默认的大集合阈值(元素个数) */
+    public static final long                DEFAULT_ELEMENT_COUNT_THRESHOLD = 10000L;
+
+    /** 默认保存的大键数量 */
+    public static final int                 DEFAULT_CAPACITY                = 20;
+
+    /** 默认的警告日志间隔(秒数) */
+    public static final int                 DEFAULT_WARN_INTERVAL_SECONDS   = 60;
+
+    /** 按大小递减排序 */
+    private static final Comparator<BigKey> SIZE_DESC                       = new SizeDescComparator();
+
+    private volatile boolean                enabled                         = true;
+
+    private volatile long                   valueBytesThreshold             = DEFAULT_VALUE_BYTES_THRESHOLD;
+
+    private volatile long                   elementCountThreshold           = DEFAULT_ELEMENT_COUNT_THRESHOLD;
+
+    /** 写命令的最大字节数，0表示不限制 */
+    private volatile long                   maxWriteBytes;
+
+    /** 值最大的键 */
+    private final Offenders                 bigValues;
+
+    /** 元素最多的集合键 */
+    private final Offenders                 bigCollections;
+
+    /** 被拒绝的写命令次数 */
+    private final AtomicLong                rejectedWrites                  = new AtomicLong();
+
+    private final long                      warnIntervalMillis;
+
+    /** 下一次允许输出警告日志的时间 */
+    private final AtomicLong                nextWarnTime                    = new AtomicLong();
+
+    /** 被限速而未输出的警告数量 */
+    private final AtomicLong                suppressedWarns                 = new AtomicLong();
+
+    public BigKeyDetector(){
+        this(DEFAULT_CAPACITY, DEFAULT_WARN_INTERVAL_SECONDS);
+    }
+
+    /**
+     * 创建大键检测器。
+     *
+     * @param capacity 保存的大键数量(大值和大集合各自保存这么多个)
+     * @param warnIntervalSeconds 警告日志的最小间隔(秒数)，0表示每次都输出
+     */
+    public BigKeyDetector(int capacity, int warnIntervalSeconds){
+        AssertUtils.isTrue(capacity > 0, "'capacity' must be greater than 0 : " + capacity);
+        AssertUtils.isTrue(warnIntervalSeconds >= 0, "'warnIntervalSeconds' must not be negative : "
+                                                     + warnIntervalSeconds);
+
+        this.bigValues = new Offenders(capacity);
+        this.bigCollections = new Offenders(capacity);
+        this.warnIntervalMillis = TimeUnit.SECONDS.toMillis(warnIntervalSeconds);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getValueBytesThreshold() {
+        return valueBytesThreshold;
+    }
+
+    /**
+     * 设置大值阈值，值的字节数达到该值的键被视为大键。
+     */
+    @Override
+    public void setValueBytesThreshold(long valueBytesThreshold) {
+        AssertUtils.isTrue(valueBytesThreshold > 0, "'valueBytesThreshold' must be greater than 0 : "
+                                                    + valueBytesThreshold);
+        this.valueBytesThreshold = valueBytesThreshold;
+    }
+
+    @Override
+    public long getElementCountThreshold() {
+        return elementCountThreshold;
+    }
+
+    /**
+     * 设置大集合阈值，元素个数达到该值的集合键被视为大键。
+     */
+    @Override
+    public void setElementCountThreshold(long elementCountThreshold) {
+        AssertUtils.isTrue(elementCountThreshold > 0, "'elementCountThreshold' must be greater than 0 : "
+                                                      + elementCountThreshold);
+        this.elementCountThreshold = elementCountThreshold;
+    }
+
+    @Override
+    public long getMaxWriteBytes() {
+        return maxWriteBytes;
+    }
+
+    /**
+     * 设置写命令的最大字节数，超过该值的写命令会被拒绝，不会发送到分片节点。(默认为0，表示不限制)
+     */
+    @Override
+    public void setMaxWriteBytes(long maxWriteBytes) {
+        AssertUtils.isTrue(maxWriteBytes >= 0, "'maxWriteBytes' must not be negative : " + maxWriteBytes);
+        this.maxWriteBytes = maxWriteBytes;
+    }
+
+    @Override
+    public long getRejectedWrites() {
+        return rejectedWrites.get();
+    }
+
+    // ---------------- 记录 ----------------
+    /**
+     * 检查写命令是否应该被拒绝。
+     *
+     * @param bytes 写入的字节数
+     * @return 写入的字节数超过{@link #setMaxWriteBytes(long)}时，返回{@code true}
+     */
+    public boolean isWriteRejected(long bytes) {
+        long max = maxWriteBytes;
+        if (max > 0L && bytes > max) {
+            rejectedWrites.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次命令调用中值的字节数。
+     *
+     * @param command 命令
+     * @param key 键
+     * @param shard 键所在的分片节点，未知时为{@code null}
+     * @param bytes 值的字节数，未知时为-1
+     */
+    public void recordValue(RedisCommand command, String key, JedisShardInfo shard, long bytes) {
+        if (enabled && bytes >= valueBytesThreshold) {
+            this.record(bigValues, command, key, shard, bytes, "bytes");
+        }
+    }
+
+    /**
+     * 记录一次命令调用中集合的元素个数。
+     *
+     * @param command 命令
+     * @param key 键
+     * @param shard 键所在的分片节点，未知时为{@code null}
+     * @param count 集合的元素个数(或回复的元素个数)，未知时为-1
+     */
+    public void recordElements(RedisCommand command, String key, JedisShardInfo shard, long count) {
+        if (enabled && count >= elementCountThreshold) {
+            this.record(bigCollections, command, key, shard, count, "elements");
+        }
+    }
+
+    /**
+     * 检查写命令是否应该被拒绝，拒绝时输出警告日志。
+     * <p>
+     * 警告日志与大键警告共用限速，每个间隔内最多输出一次，其余的只计数，在下一次输出时报告被抑制的数量。
+     *
+     * @param command 命令
+     * @param key 键
+     * @param bytes 写入的字节数
+     * @return 写入的字节数超过{@link #setMaxWriteBytes(long)}时，返回{@code true}
+     */
+    public boolean isWriteRejected(RedisCommand command, String key, long bytes) {
+        if (!this.isWriteRejected(bytes)) {
+            return false;
+        }
+        if (this.tryAcquireWarn(System.currentTimeMillis())) {
+            long suppressed = suppressedWarns.getAndSet(0L);
+            logger.warn("Reject too large write, command: {}, key: {}, bytes: {} ({} similar warnings suppressed)",
+                        command, key, bytes, suppressed);
+        } else {
+            suppressedWarns.incrementAndGet();
+        }
+        return true;
+    }
+
+    private void record(Offenders offenders, RedisCommand command, String key, JedisShardInfo shard, long size,
+                        String unit) {
+        if (key == null) {
+            return;
+        }
+        BigKey bigKey = new BigKey(command, (shard == null) ? null : RedisMetrics.shardName(shard), key, size,
+                                   System.currentTimeMillis());
+        offenders.offer(bigKey);
+
+        if (this.tryAcquireWarn(bigKey.getTimestamp())) {
+            long suppressed = suppressedWarns.getAndSet(0L);
+            logger.warn("Big key found: {} {} ({} similar warnings suppressed)", bigKey, unit, suppressed);
+        } else {
+            suppressedWarns.incrementAndGet();
+        }
+    }
+
+    /**
+     * 警告日志限速：每个间隔内最多输出一次。
+     */
+    private boolean tryAcquireWarn(long now) {
+        long next = nextWarnTime.get();
+        return now >= next && nextWarnTime.compareAndSet(next, now + warnIntervalMillis);
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回值最大的键(按字节数递减)。
+     */
+    public List<BigKey> getBigValueList() {
+        return bigValues.toList();
+    }
+
+    /**
+     * 返回元素最多的集合键(按元素个数递减)。
+     */
+    public List<BigKey> getBigCollectionList() {
+        return bigCollections.toList();
+    }
+
+    @Override
+    public String[] getBigValues() {
+        return toStrings(bigValues.toList());
+    }
+
+    @Override
+    public String[] getBigCollections() {
+        return toStrings(bigCollections.toList());
+    }
+
+    private static String[] toStrings(List<BigKey> bigKeys) {
+        String[] strings = new String[bigKeys.size()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = bigKeys.get(i).toString();
+        }
+        return strings;
+    }
+
+    @Override
+    public void reset() {
+        bigValues.clear();
+        bigCollections.clear();
+        rejectedWrites.set(0L);
+        suppressedWarns.set(0L);
+    }
+
+    /**
+     * 一个有界的大键表，只保存最大的若干个键(同一个键只保存一次)。
+     */
+    private static final class Offenders {
+
+        private final int          capacity;
+        private final List<BigKey> bigKeys;
+        /** 表满时的最小大小，小于该值的键不需要加锁 */
+        private volatile long      minSize;
+
+        Offenders(int capacity){
+            this.capacity = capacity;
+            this.bigKeys = new ArrayList<BigKey>(capacity);
+        }
+
+        void offer(BigKey bigKey) {
+            if (bigKey.getSize() < minSize) {
+                return;
+            }
+            synchronized (this) {
+                for (int i = 0; i < bigKeys.size(); i++) {
+                    BigKey old = bigKeys.get(i);
+                    if (old.getKey().equals(bigKey.getKey())) {
+                        if (bigKey.getSize() >= old.getSize()) {
+                            bigKeys.set(i, bigKey);
+                            this.updateMinSize();
+                        }
+                        return;
+                    }
+                }
+
+                if (bigKeys.size() < capacity) {
+                    bigKeys.add(bigKey);
+                } else {
+                    int minIndex = 0;
+                    for (int i = 1; i < bigKeys.size(); i++) {
+                        if (bigKeys.get(i).getSize() < bigKeys.get(minIndex).getSize()) {
+                            minIndex = i;
+                        }
+                    }
+                    if (bigKey.getSize() <= bigKeys.get(minIndex).getSize()) {
+                        return;
+                    }
+                    bigKeys.set(minIndex, bigKey);
+                }
+                this.updateMinSize();
+            }
+        }
+
+        private void updateMinSize() {
+            if (bigKeys.size() < capacity) {
+                minSize = 0L;
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            for (BigKey bigKey : bigKeys) {
+                min = Math.min(min, bigKey.getSize());
+            }
+            minSize = min;
+        }
+
+        synchronized List<BigKey> toList() {
+            List<BigKey> list = new ArrayList<BigKey>(bigKeys);
+            Collections.sort(list, SIZE_DESC);
+            return list;
+        }
+
+        synchronized void clear() {
+            bigKeys.clear();
+            minSize = 0L;
+        }
+    }
+
+    private static final class SizeDescComparator implements Comparator<BigKey> {
+
+        @Override
+        public int compare(BigKey k1, BigKey k2) {
+            return (k1.getSize() < k2.getSize()) ? 1 : ((k1.getSize() == k2.getSize()) ? 0 : -1);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * "大键检测器"的JMX管理接口。
+ *
+ * @author huagang.li 2015年2月19日 上午10:20:48
+ */
+public interface BigKeyDetectorMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getValueBytesThreshold();
+
+    void setValueBytesThreshold(long valueBytesThreshold);
+
+    long getElementCountThreshold();
+
+    void setElementCountThreshold(long elementCountThreshold);
+
+    long getMaxWriteBytes();
+
+    void setMaxWriteBytes(long maxWriteBytes);
+
+    /**
+     * 返回被拒绝的写命令次数。
+     */
+    long getRejectedWrites();
+
+    /**
+     * 返回值最大的键(按字节数递减)。
+     */
+    String[] getBigValues();
+
+    /**
+     * 返回元素最多的集合键(按元素个数递减)。
+     */
+    String[] getBigCollections();
+
+    void reset();
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次{@code RedisService}调用的分阶段耗时明细。
+ *
+ * @author huagang.li 2015年2月16日 上午10:18:40
+ * @see CallProfiler
+ */
+public final class CallProfile {
+
+    private final RedisCommand command;
+    private final String       shard;
+    private final boolean      failed;
+    /** 调用结束时的时间戳(毫秒) */
+    private final long         timestamp;
+    /** 各阶段耗时(纳秒)，下标为{@link Phase#ordinal()} */
+    private final long[]       phaseNanos;
+
+    public CallProfile(RedisCommand command, String shard, boolean failed, long timestamp, long[] phaseNanos){
+        this.command = command;
+        this.shard = shard;
+        this.failed = failed;
+        this.timestamp = timestamp;
+        this.phaseNanos = phaseNanos;
+    }
+
+    public RedisCommand getCommand() {
+        return command;
+    }
+
+    /**
+     * 返回命令所在的分片节点名称，未知时为{@code null}。
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * 返回指定阶段的耗时(纳秒)。
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * 返回总耗时(纳秒)。
+     */
+    public long getTotalNanos() {
+        long total = 0L;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(command).append('@').append(shard).append(failed ? " FAILED" : "").append(" total=")
+          .append(TimeUnit.NANOSECONDS.toMicros(getTotalNanos())).append("us");
+        for (Phase phase : Phase.values()) {
+            sb.append(", ").append(phase).append('=').append(TimeUnit.NANOSECONDS.toMicros(getPhaseNanos(phase)))
+              .append("us");
+        }
+        return sb.toString();
+    }
+
+}
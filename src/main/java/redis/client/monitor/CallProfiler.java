@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import redis.client.util.AssertUtils;
+import redis.client.util.LatencyHistogram;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 分阶段耗时剖析器(默认关闭)。
+ * <p>
+ * 开启后，对每次调用记录各阶段({@link Phase})的耗时，汇总到各阶段的延迟直方图中；
+ * 并按采样间隔将完整的调用明细({@link CallProfile})保存到一个有界的环形缓冲区中。<br>
+ * 用于区分"连接池耗尽"与"网络或服务器变慢"：前者表现为{@link Phase#POOL_WAIT}变长，后者表现为{@link Phase#EXECUTE}变长。
+ * <p>
+ * 关闭时，调用路径上只有一次volatile读取，没有其它开销。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月16日 上午10:32:55
+ */
+public class CallProfiler implements CallProfilerMBean {
+
+    /** 默认的环形缓冲区容量 */
+    public static final int                         DEFAULT_CAPACITY        = 256;
+
+    /** 默认的采样间隔(每N次调用采样一次) */
+    public static final int                         DEFAULT_SAMPLE_INTERVAL = 100;
+
+    private static final Phase[]                    PHASES                  = Phase.values();
+
+    private volatile boolean                        enabled;
+
+    private volatile int                            sampleInterval          = DEFAULT_SAMPLE_INTERVAL;
+
+    /** 各阶段的延迟直方图 */
+    private final LatencyHistogram[]                phases                  = new LatencyHistogram[PHASES.length];
+
+    /** 调用明细的环形缓冲区 */
+    private final AtomicReferenceArray<CallProfile> ring;
+
+    /** 已剖析的调用数量 */
+    private final AtomicLong                        sequence                = new AtomicLong();
+
+    /** 已采样的调用数量 */
+    private final AtomicLong                        sampled                 = new AtomicLong();
+
+    public CallProfiler(){
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * 创建分阶段耗时剖析器。
+     *
+     * @param capacity 环形缓冲区容量
+     */
+    public CallProfiler(int capacity){
+        AssertUtils.isTrue(capacity > 0, "'capacity' must be greater than 0 : " + capacity);
+
+        this.ring = new AtomicReferenceArray<CallProfile>(capacity);
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * 设置采样间隔，即每N次调用将一次完整的调用明细保存到环形缓冲区中。(1表示每次调用都采样)
+     */
+    @Override
+    public void setSampleInterval(int sampleInterval) {
+        AssertUtils.isTrue(sampleInterval > 0, "'sampleInterval' must be greater than 0 : " + sampleInterval);
+
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * 记录一次调用的各阶段时间戳({@link System#nanoTime()})。
+     *
+     * @param command 命令，未知时为{@code null}(不记录)
+     * @param shard 命令所在的分片节点，未知时为{@code null}
+     * @param failed 是否失败
+     * @param borrowStartTime 开始借用连接的时间
+     * @param borrowEndTime 借用到连接的时间
+     * @param routeEndTime 键路由完成的时间，未路由时为0
+     * @param commandEndTime 命令执行完成的时间
+     * @param releaseEndTime 归还连接完成的时间
+     */
+    public void record(RedisCommand command, JedisShardInfo shard, boolean failed, long borrowStartTime,
+                       long borrowEndTime, long routeEndTime, long commandEndTime, long releaseEndTime) {
+        if (command == null) {
+            return;
+        }
+        if (routeEndTime == 0L) {
+            routeEndTime = borrowEndTime;
+        }
+        long[] phaseNanos = new long[PHASES.length];
+        phaseNanos[Phase.POOL_WAIT.ordinal()] = borrowEndTime - borrowStartTime;
+        phaseNanos[Phase.ROUTE.ordinal()] = routeEndTime - borrowEndTime;
+        phaseNanos[Phase.EXECUTE.ordinal()] = commandEndTime - routeEndTime;
+        phaseNanos[Phase.RELEASE.ordinal()] = releaseEndTime - commandEndTime;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phases[i].record(phaseNanos[i]);
+        }
+
+        if (sequence.getAndIncrement() % sampleInterval == 0L) {
+            CallProfile profile = new CallProfile(command, (shard == null) ? null : RedisMetrics.shardName(shard),
+                                                  failed, System.currentTimeMillis(), phaseNanos);
+            ring.set((int) (sampled.getAndIncrement() % ring.length()), profile);
+        }
+    }
+
+    /**
+     * 返回指定阶段的延迟直方图快照。(单位为微秒)
+     */
+    public LatencyHistogram.Snapshot getPhaseSnapshot(Phase phase) {
+        return phases[phase.ordinal()].snapshot();
+    }
+
+    /**
+     * 返回最近采样的调用明细(从旧到新)。
+     */
+    public List<CallProfile> getProfiles() {
+        long end = sampled.get();
+        long start = Math.max(0L, end - ring.length());
+        List<CallProfile> profiles = new ArrayList<CallProfile>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            CallProfile profile = ring.get((int) (i % ring.length()));
+            if (profile != null) {
+                profiles.add(profile);
+            }
+        }
+        return profiles;
+    }
+
+    @Override
+    public String[] getPhaseSummaries() {
+        String[] summaries = new String[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) {
+            summaries[i] = PHASES[i] + ": " + phases[i].snapshot();
+        }
+        return summaries;
+    }
+
+    @Override
+    public String[] getRecentProfiles() {
+        List<CallProfile> profiles = getProfiles();
+        String[] result = new String[profiles.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = profiles.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram phase : phases) {
+            phase.reset();
+        }
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+        sequence.set(0L);
+        sampled.set(0L);
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * "分阶段耗时剖析器"的JMX管理接口。
+ *
+ * @author huagang.li 2015年2月16日 上午10:40:27
+ */
+public interface CallProfilerMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getSampleInterval();
+
+    void setSampleInterval(int sampleInterval);
+
+    /**
+     * 返回各阶段耗时分布的摘要。
+     */
+    String[] getPhaseSummaries();
+
+    /**
+     * 返回最近采样的调用明细(从旧到新)。
+     */
+    String[] getRecentProfiles();
+
+    void reset();
+
+}
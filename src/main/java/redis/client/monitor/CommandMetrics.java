@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.net.SocketTimeoutException;
+
+import redis.client.util.LatencyHistogram;
+import redis.client.util.StripedCounter;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * 一个命令(在一个分片节点上，或所有分片节点汇总)的统计数据：调用次数、失败次数、超时次数及延迟直方图。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 下午2:12:08
+ */
+public final class CommandMetrics implements CommandMetricsMBean {
+
+    private final RedisCommand     command;
+    /** 分片节点名称，{@code null}表示所有分片节点的汇总 */
+    private final String           shard;
+
+    private final StripedCounter   calls    = new StripedCounter();
+    private final StripedCounter   errors   = new StripedCounter();
+    private final StripedCounter   timeouts = new StripedCounter();
+    private final LatencyHistogram latency  = new LatencyHistogram();
+
+    CommandMetrics(RedisCommand command, String shard){
+        this.command = command;
+        this.shard = shard;
+    }
+
+    /**
+     * 记录一次命令调用。
+     *
+     * @param nanos 延迟(纳秒)
+     * @param failure 失败原因，成功时为{@code null}
+     */
+    void record(long nanos, Throwable failure) {
+        calls.increment();
+        latency.record(nanos);
+        if (failure != null) {
+            errors.increment();
+            if (isTimeout(failure)) {
+                timeouts.increment();
+            }
+        }
+    }
+
+    /**
+     * 是否为"读写超时"导致的失败。
+     */
+    public static boolean isTimeout(Throwable failure) {
+        return failure instanceof JedisConnectionException && failure.getCause() instanceof SocketTimeoutException;
+    }
+
+    public RedisCommand getRedisCommand() {
+        return command;
+    }
+
+    @Override
+    public String getCommand() {
+        return command.name();
+    }
+
+    @Override
+    public String getShard() {
+        return shard;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 返回延迟直方图的快照。
+     */
+    public LatencyHistogram.Snapshot getLatencySnapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public double getMeanLatency() {
+        return latency.snapshot().getMean();
+    }
+
+    @Override
+    public long get50thPercentileLatency() {
+        return latency.snapshot().getValueAtPercentile(50.0D);
+    }
+
+    @Override
+    public long get99thPercentileLatency() {
+        return latency.snapshot().getValueAtPercentile(99.0D);
+    }
+
+    @Override
+    public long get999thPercentileLatency() {
+        return latency.snapshot().getValueAtPercentile(99.9D);
+    }
+
+    @Override
+    public long getMaxLatency() {
+        return latency.snapshot().getMax();
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        timeouts.reset();
+        latency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandMetrics [command=" + command + ", shard=" + shard + ", calls=" + calls + ", errors=" + errors
+               + ", timeouts=" + timeouts + ", latency={" + latency.snapshot() + "}]";
+    }
+
+}
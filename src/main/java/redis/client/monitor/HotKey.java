@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 一个热点键：在最近一个统计窗口内，按采样估算的访问次数和访问速率。
+ *
+ * @author huagang.li 2015年2月18日 上午10:32:17
+ */
+public final class HotKey {
+
+    private final String shard;
+    private final String key;
+    /** 估算的访问次数 */
+    private final long   count;
+    /** 估算的访问速率(次/秒) */
+    private final long   rate;
+
+    public HotKey(String shard, String key, long count, long rate){
+        this.shard = shard;
+        this.key = key;
+        this.count = count;
+        this.rate = rate;
+    }
+
+    /**
+     * 返回键所在的分片节点名称，未知时为{@code null}。
+     */
+    public String getShard() {
+        return shard;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    @Override
+    public String toString() {
+        return key + "@" + shard + " " + rate + "/s";
+    }
+
+}
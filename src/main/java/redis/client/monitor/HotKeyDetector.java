@@ -0,0 +1,374 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.client.util.CountMinSketch;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * 客户端热点键检测器，不需要在Redis服务器上执行MONITOR命令。
+ * <p>
+ * 按采样间隔对调用的键进行采样，每个分片节点使用一个{@link CountMinSketch}估算键的访问次数，并维护一个Top-K候选表；
+ * 每个统计窗口结束时，计算各候选键的访问速率，速率超过阈值的键即为热点键，并通知所有的{@link HotKeyListener}。
+ * <p>
+ * 未被采样的调用只需要一次随机数生成；被采样的调用只做几次原子累加(不分配内存)，只有当键的估算值进入Top-K时才会加锁。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月18日 上午10:52:46
+ */
+public class HotKeyDetector implements HotKeyDetectorMBean {
+
+    private static final Logger                               logger                    = LoggerFactory.getLogger(HotKeyDetector.class);
+
+    /** 默认的采样间隔(每N次调用采样一次) */
+    public static final int                                   DEFAULT_SAMPLE_INTERVAL   = 16;
+
+    /** 默认的统计窗口(秒数) */
+    public static final int                                   DEFAULT_WINDOW_SECONDS    = 10;
+
+    /** 每个分片节点的默认Top-K候选数量 */
+    public static final int                                   DEFAULT_TOP_K             = 10;
+
+    /** 默认的热点键访问速率阈值(次/秒) */
+    public static final long                                  DEFAULT_HOT_KEY_THRESHOLD = 1000L;
+
+    /** Count-Min Sketch的行数和列数 */
+    private static final int                                  SKETCH_DEPTH              = 4;
+    private static final int                                  SKETCH_WIDTH              = 1024;
+
+    /** 按访问速率递减排序 */
+    private static final Comparator<HotKey>                   RATE_DESC                 = new RateDescComparator();
+
+    private volatile boolean                                  enabled                   = true;
+
+    private volatile int                                      sampleInterval            = DEFAULT_SAMPLE_INTERVAL;
+
+    private volatile long                                     hotKeyThreshold           = DEFAULT_HOT_KEY_THRESHOLD;
+
+    private final long                                        windowMillis;
+
+    private final int                                         topK;
+
+    /** 分片节点信息 -> 分片节点的热点键统计 */
+    private final ConcurrentMap<JedisShardInfo, ShardHotKeys> shards                    = new ConcurrentHashMap<JedisShardInfo, ShardHotKeys>();
+
+    /** 未知分片节点的热点键统计 */
+    private final ShardHotKeys                                unknownShard;
+
+    /** 当前统计窗口的开始时间 */
+    private final AtomicLong                                  windowStartTime;
+
+    /** 最近一个统计窗口内访问速率最高的键 (按速率递减) */
+    private volatile List<HotKey>                             topKeys                   = Collections.emptyList();
+
+    /** 最近一个统计窗口内的热点键 */
+    private volatile Map<String, HotKey>                      hotKeys                   = Collections.emptyMap();
+
+    private final List<HotKeyListener>                        listeners                 = new CopyOnWriteArrayList<HotKeyListener>();
+
+    public HotKeyDetector(){
+        this(DEFAULT_WINDOW_SECONDS, DEFAULT_TOP_K);
+    }
+
+    /**
+     * 创建热点键检测器。
+     *
+     * @param windowSeconds 统计窗口(秒数)
+     * @param topK 每个分片节点的Top-K候选数量
+     */
+    public HotKeyDetector(int windowSeconds, int topK){
+        AssertUtils.isTrue(windowSeconds > 0, "'windowSeconds' must be greater than 0 : " + windowSeconds);
+        AssertUtils.isTrue(topK > 0, "'topK' must be greater than 0 : " + topK);
+
+        this.windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        this.topK = topK;
+        this.unknownShard = new ShardHotKeys(null, topK);
+        this.windowStartTime = new AtomicLong(System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * 设置采样间隔，即平均每N次调用采样一次。(1表示每次调用都采样)
+     */
+    @Override
+    public void setSampleInterval(int sampleInterval) {
+        AssertUtils.isTrue(sampleInterval > 0, "'sampleInterval' must be greater than 0 : " + sampleInterval);
+
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public long getHotKeyThreshold() {
+        return hotKeyThreshold;
+    }
+
+    /**
+     * 设置热点键的访问速率阈值(次/秒)。
+     */
+    @Override
+    public void setHotKeyThreshold(long hotKeyThreshold) {
+        AssertUtils.isTrue(hotKeyThreshold > 0, "'hotKeyThreshold' must be greater than 0 : " + hotKeyThreshold);
+
+        this.hotKeyThreshold = hotKeyThreshold;
+    }
+
+    /**
+     * 添加热点键监听器。
+     */
+    public void addListener(HotKeyListener listener) {
+        AssertUtils.isTrue(listener != null, "'listener' must not be null");
+
+        listeners.add(listener);
+    }
+
+    public void removeListener(HotKeyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * 对一次调用的键进行采样。
+     *
+     * @param key 键
+     * @param shard 键所在的分片节点，未知时为{@code null}
+     */
+    public void sample(String key, JedisShardInfo shard) {
+        if (!enabled || key == null) {
+            return;
+        }
+        int interval = sampleInterval;
+        if (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0) {
+            return;
+        }
+
+        ShardHotKeys shardHotKeys = unknownShard;
+        if (shard != null) {
+            shardHotKeys = shards.get(shard);
+            if (shardHotKeys == null) {
+                ShardHotKeys newShardHotKeys = new ShardHotKeys(RedisMetrics.shardName(shard), topK);
+                shardHotKeys = shards.putIfAbsent(shard, newShardHotKeys);
+                if (shardHotKeys == null) {
+                    shardHotKeys = newShardHotKeys;
+                }
+            }
+        }
+        shardHotKeys.add(key);
+
+        this.rotateIfNecessary(System.currentTimeMillis());
+    }
+
+    /**
+     * 统计窗口结束时，由第一个发现的线程计算各候选键的访问速率，并开始一个新的统计窗口。
+     */
+    void rotateIfNecessary(long now) {
+        long start = windowStartTime.get();
+        if (now - start >= windowMillis && windowStartTime.compareAndSet(start, now)) {
+            long elapsed = Math.max(now - start, 1L);
+            long scale = sampleInterval;
+            long threshold = hotKeyThreshold;
+
+            List<HotKey> candidates = new ArrayList<HotKey>();
+            unknownShard.drainTo(candidates, scale, elapsed);
+            for (ShardHotKeys shardHotKeys : shards.values()) {
+                shardHotKeys.drainTo(candidates, scale, elapsed);
+            }
+            Collections.sort(candidates, RATE_DESC);
+
+            Map<String, HotKey> newHotKeys = new HashMap<String, HotKey>();
+            for (HotKey candidate : candidates) {
+                if (candidate.getRate() >= threshold) {
+                    newHotKeys.put(candidate.getKey(), candidate);
+                }
+            }
+            topKeys = Collections.unmodifiableList(candidates);
+            hotKeys = newHotKeys;
+
+            for (HotKey hotKey : newHotKeys.values()) {
+                for (HotKeyListener listener : listeners) {
+                    try {
+                        listener.onHotKey(hotKey);
+                    } catch (RuntimeException e) {
+                        logger.warn("Hot key listener fail: " + listener, e);
+                    }
+                }
+            }
+            if (!newHotKeys.isEmpty()) {
+                logger.warn("Hot keys detected: {}", newHotKeys.values());
+            }
+        }
+    }
+
+    /**
+     * 在最近一个统计窗口内，该键是否为热点键。
+     */
+    public boolean isHot(String key) {
+        return hotKeys.containsKey(key);
+    }
+
+    /**
+     * 返回最近一个统计窗口内的热点键。
+     */
+    public HotKey getHotKey(String key) {
+        return hotKeys.get(key);
+    }
+
+    /**
+     * 返回最近一个统计窗口内访问速率最高的键(按速率递减)。
+     */
+    public List<HotKey> getTopKeyList() {
+        return topKeys;
+    }
+
+    @Override
+    public String[] getTopKeys() {
+        List<HotKey> keys = topKeys;
+        String[] result = new String[keys.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keys.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        unknownShard.drainTo(new ArrayList<HotKey>(), 1L, 1L);
+        for (ShardHotKeys shardHotKeys : shards.values()) {
+            shardHotKeys.drainTo(new ArrayList<HotKey>(), 1L, 1L);
+        }
+        windowStartTime.set(System.currentTimeMillis());
+        topKeys = Collections.emptyList();
+        hotKeys = Collections.emptyMap();
+    }
+
+    /**
+     * 一个分片节点的热点键统计：Count-Min Sketch + Top-K候选表。
+     */
+    private static final class ShardHotKeys {
+
+        private final String         name;
+        private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        // Top-K候选表 @GuardedBy("this")
+        private final String[]       keys;
+        private final long[]         counts;
+        private int                  size;
+        /** 候选表已满时，表中的最小计数；键的估算值超过它时才需要加锁更新候选表 */
+        private volatile long        minCount;
+
+        ShardHotKeys(String name, int topK){
+            this.name = name;
+            this.keys = new String[topK];
+            this.counts = new long[topK];
+        }
+
+        void add(String key) {
+            long estimate = sketch.add(key.hashCode());
+            if (estimate > minCount) {
+                this.offer(key, estimate);
+            }
+        }
+
+        private synchronized void offer(String key, long estimate) {
+            int minIndex = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i].equals(key)) {
+                    counts[i] = Math.max(counts[i], estimate);
+                    this.updateMinCount();
+                    return;
+                }
+                if (counts[i] < counts[minIndex]) {
+                    minIndex = i;
+                }
+            }
+            if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = estimate;
+                size++;
+            } else if (estimate > counts[minIndex]) {
+                keys[minIndex] = key;
+                counts[minIndex] = estimate;
+            }
+            this.updateMinCount();
+        }
+
+        private void updateMinCount() {
+            if (size < keys.length) {
+                minCount = 0L;
+                return;
+            }
+            long min = Long.MAX_VALUE;
+            for (int i = 0; i < size; i++) {
+                min = Math.min(min, counts[i]);
+            }
+            minCount = min;
+        }
+
+        /**
+         * 取出候选表中的键及其访问速率，并清空统计数据。
+         */
+        synchronized void drainTo(List<HotKey> candidates, long scale, long elapsedMillis) {
+            for (int i = 0; i < size; i++) {
+                long count = counts[i] * scale;
+                candidates.add(new HotKey(name, keys[i], count, count * 1000L / elapsedMillis));
+                keys[i] = null;
+                counts[i] = 0L;
+            }
+            size = 0;
+            minCount = 0L;
+            sketch.reset();
+        }
+    }
+
+    private static final class RateDescComparator implements Comparator<HotKey> {
+
+        @Override
+        public int compare(HotKey k1, HotKey k2) {
+            return (k1.getRate() < k2.getRate()) ? 1 : ((k1.getRate() == k2.getRate()) ? 0 : -1);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * "热点键检测器"的JMX管理接口。
+ *
+ * @author huagang.li 2015年2月18日 上午10:40:05
+ */
+public interface HotKeyDetectorMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getSampleInterval();
+
+    void setSampleInterval(int sampleInterval);
+
+    long getHotKeyThreshold();
+
+    void setHotKeyThreshold(long hotKeyThreshold);
+
+    /**
+     * 返回最近一个统计窗口内访问速率最高的键(按速率递减)。
+     */
+    String[] getTopKeys();
+
+    void reset();
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 热点键监听器，用于对热点键进行特殊处理(如本地缓存、多副本等)。
+ * <p>
+ * 在每个统计窗口结束时，由触发窗口切换的业务线程同步调用，所以实现必须快速返回。
+ *
+ * @author huagang.li 2015年2月18日 上午10:36:40
+ * @see HotKeyDetector#addListener(HotKeyListener)
+ */
+public interface HotKeyListener {
+
+    /**
+     * 在最近一个统计窗口内，发现了访问速率超过阈值的热点键。
+     *
+     * @param hotKey 热点键
+     */
+    void onHotKey(HotKey hotKey);
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于JMX的统计数据注册表，将统计数据注册为标准MBean。
+ *
+ * <pre>
+ * MBean名称：
+ *     命令统计数据："{domain}:type=CommandMetrics,command=GET,shard=Shard-01" (汇总数据的shard为"all")
+ *     连接池统计数据："{domain}:type=PoolMetrics"
+ *     分阶段耗时剖析器："{domain}:type=CallProfiler"
+ *     热点键检测器："{domain}:type=HotKeyDetector"
+ *     大键检测器："{domain}:type=BigKeyDetector"
+ * </pre>
+ *
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 下午3:40:12
+ */
+public class JmxMetricsRegistry implements MetricsRegistry {
+
+    private static final Logger     logger         = LoggerFactory.getLogger(JmxMetricsRegistry.class);
+
+    /** 默认的MBean域名 */
+    public static final String      DEFAULT_DOMAIN = "redis.client";
+
+    /** 汇总数据的分片节点名称 */
+    private static final String     ALL_SHARDS     = "all";
+
+    private final MBeanServer       mBeanServer;
+
+    private final String            domain;
+
+    /** 已注册的MBean名称集合 */
+    private final Set<ObjectName>   objectNames    = Collections.newSetFromMap(new ConcurrentHashMap<ObjectName, Boolean>());
+
+    /**
+     * 使用平台MBean服务器和默认域名({@value #DEFAULT_DOMAIN})创建注册表。
+     */
+    public JmxMetricsRegistry(){
+        this(ManagementFactory.getPlatformMBeanServer(), DEFAULT_DOMAIN);
+    }
+
+    /**
+     * 创建注册表。(同一个JVM中有多个连接池时，应使用不同的域名)
+     *
+     * @param mBeanServer MBean服务器
+     * @param domain MBean域名
+     */
+    public JmxMetricsRegistry(MBeanServer mBeanServer, String domain){
+        if (mBeanServer == null) {
+            throw new IllegalArgumentException("'mBeanServer' must not be null");
+        }
+        if (domain == null || domain.isEmpty()) {
+            throw new IllegalArgumentException("'domain' must not be null and empty");
+        }
+        this.mBeanServer = mBeanServer;
+        this.domain = domain;
+    }
+
+    @Override
+    public void register(CommandMetrics metrics) {
+        String shard = (metrics.getShard() == null) ? ALL_SHARDS : metrics.getShard();
+        this.registerMBean(metrics, domain + ":type=CommandMetrics,command=" + metrics.getCommand() + ",shard="
+                                    + quoteIfNecessary(shard));
+    }
+
+    @Override
+    public void register(PoolMetrics metrics) {
+        this.registerMBean(metrics, domain + ":type=PoolMetrics");
+    }
+
+    @Override
+    public void register(CallProfiler profiler) {
+        this.registerMBean(profiler, domain + ":type=CallProfiler");
+    }
+
+    @Override
+    public void register(HotKeyDetector detector) {
+        this.registerMBean(detector, domain + ":type=HotKeyDetector");
+    }
+
+    @Override
+    public void register(BigKeyDetector detector) {
+        this.registerMBean(detector, domain + ":type=BigKeyDetector");
+    }
+
+    private void registerMBean(Object mBean, String name) {
+        try {
+            ObjectName objectName = new ObjectName(name);
+            mBeanServer.registerMBean(mBean, objectName);
+            objectNames.add(objectName);
+        } catch (JMException e) {
+            logger.warn("Failed to register MBean: " + name, e);
+        }
+    }
+
+    @Override
+    public void unregisterAll() {
+        for (ObjectName objectName : objectNames) {
+            try {
+                mBeanServer.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister MBean: " + objectName, e);
+            }
+            objectNames.remove(objectName);
+        }
+    }
+
+    /**
+     * 当值包含ObjectName的特殊字符时，对其进行转义。
+     */
+    private static String quoteIfNecessary(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '=' || c == ':' || c == '"' || c == '*' || c == '?' || c == '\n') {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 可插拔的"统计数据注册表"，用于将统计数据导出到外部的监控系统(如JMX、Metrics、Graphite等)。
+ * <p>
+ * 统计数据在第一次被使用时才会创建，每个统计数据只会注册一次；注册表只需要保存引用，在需要时读取即可，
+ * 不应该在这些回调中执行耗时的操作。
+ *
+ * @author huagang.li 2015年2月13日 下午2:40:06
+ * @see RedisMetrics#addRegistry(MetricsRegistry)
+ * @see JmxMetricsRegistry
+ */
+public interface MetricsRegistry {
+
+    /**
+     * 注册一个命令的统计数据。
+     *
+     * @param metrics 命令统计数据，{@link CommandMetrics#getShard()}为{@code null}时表示所有分片节点的汇总
+     */
+    void register(CommandMetrics metrics);
+
+    /**
+     * 注册连接池的统计数据。
+     *
+     * @param metrics 连接池统计数据
+     */
+    void register(PoolMetrics metrics);
+
+    /**
+     * 注册分阶段耗时剖析器。
+     *
+     * @param profiler 分阶段耗时剖析器
+     */
+    void register(CallProfiler profiler);
+
+    /**
+     * 注册热点键检测器。
+     *
+     * @param detector 热点键检测器
+     */
+    void register(HotKeyDetector detector);
+
+    /**
+     * 注册大键检测器。
+     *
+     * @param detector 大键检测器
+     */
+    void register(BigKeyDetector detector);
+
+    /**
+     * 注销所有统计数据。
+     */
+    void unregisterAll();
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 一次{@code RedisService}调用的耗时阶段。
+ *
+ * <pre>
+ * 借用连接 ─┬─ POOL_WAIT ─┬─ ROUTE ─┬─ EXECUTE ─┬─ RELEASE ─┐
+ *         getResource()  键路由完成  命令执行完成  归还连接完成
+ * </pre>
+ *
+ * @author huagang.li 2015年2月16日 上午10:05:12
+ */
+public enum Phase {
+
+    /** 从连接池借用连接的等待时间 (连接池耗尽时会明显变长) */
+    POOL_WAIT,
+    /** 键的编码及哈希路由 */
+    ROUTE,
+    /** 命令执行：写入套接字、服务器处理、网络传输及读取并解析请求回复 (Jedis未暴露其输入输出流，无法再细分) */
+    EXECUTE,
+    /** 将连接归还给连接池 */
+    RELEASE;
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import redis.client.util.LatencyHistogram;
+import redis.client.util.StripedCounter;
+
+/**
+ * 连接池的统计数据：借用次数、借用失败次数及借用等待时间的直方图。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 下午2:31:17
+ */
+public final class PoolMetrics implements PoolMetricsMBean {
+
+    private final StripedCounter   borrows        = new StripedCounter();
+    private final StripedCounter   borrowFailures = new StripedCounter();
+    private final LatencyHistogram borrowWait     = new LatencyHistogram();
+
+    PoolMetrics(){
+    }
+
+    /**
+     * 记录一次连接借用。
+     *
+     * @param waitNanos 等待时间(纳秒)
+     * @param success 是否借用成功
+     */
+    void record(long waitNanos, boolean success) {
+        borrows.increment();
+        borrowWait.record(waitNanos);
+        if (!success) {
+            borrowFailures.increment();
+        }
+    }
+
+    @Override
+    public long getBorrows() {
+        return borrows.sum();
+    }
+
+    @Override
+    public long getBorrowFailures() {
+        return borrowFailures.sum();
+    }
+
+    /**
+     * 返回借用等待时间直方图的快照。
+     */
+    public LatencyHistogram.Snapshot getBorrowWaitSnapshot() {
+        return borrowWait.snapshot();
+    }
+
+    @Override
+    public double getMeanBorrowWait() {
+        return borrowWait.snapshot().getMean();
+    }
+
+    @Override
+    public long get99thPercentileBorrowWait() {
+        return borrowWait.snapshot().getValueAtPercentile(99.0D);
+    }
+
+    @Override
+    public long getMaxBorrowWait() {
+        return borrowWait.snapshot().getMax();
+    }
+
+    @Override
+    public void reset() {
+        borrows.reset();
+        borrowFailures.reset();
+        borrowWait.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics [borrows=" + borrows + ", borrowFailures=" + borrowFailures + ", borrowWait={"
+               + borrowWait.snapshot() + "}]";
+    }
+
+}
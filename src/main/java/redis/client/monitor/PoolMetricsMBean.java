@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * "连接池统计数据"的JMX管理接口。(等待时间的单位均为微秒)
+ *
+ * @author huagang.li 2015年2月13日 下午2:28:50
+ */
+public interface PoolMetricsMBean {
+
+    long getBorrows();
+
+    long getBorrowFailures();
+
+    double getMeanBorrowWait();
+
+    long get99thPercentileBorrowWait();
+
+    long getMaxBorrowWait();
+
+    void reset();
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+/**
+ * 被监控的Redis命令，与{@code RedisService}的操作一一对应。
+ * <p>
+ * 流式检索、游标分页等由多个Redis命令组成的操作，单独作为一个"命令"统计，以免影响单个命令的延迟分布。
+ *
+ * @author huagang.li 2015年2月13日 下午2:05:31
+ */
+public enum RedisCommand {
+
+    // Key (键)
+    EXPIRE, TTL, DEL,
+    // String (字符串)
+    GET, SET, SETEX,
+    // List (列表)
+    LLEN, LPUSH, RPOP, LRANGE, LRANGE_STREAM, LTRIM,
+    // Sorted Set (有序集合)
+    ZADD, ZADD_AND_REM, ZRANGE, ZRANGE_STREAM, ZREVRANGE, ZRANGEBYSCORE, ZRANGEBYSCORE_STREAM, ZREVRANGEBYSCORE,
+    ZRANGEBYSCORE_PAGE, ZREVRANGEBYSCORE_PAGE, ZCARD, ZREMRANGEBYSCORE, ZREMRANGEBYRANK,
+    // Batch (批量操作，每个分片节点的一条管道)
+    BATCH,
+    // Server (服务器)
+    INFO;
+
+}
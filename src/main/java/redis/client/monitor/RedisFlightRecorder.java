@@ -0,0 +1,186 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.client.util.AssertUtils;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Java Flight Recorder(JFR)自定义事件的入口，发出以下事件：
+ *
+ * <pre>
+ * redis.client.Command    ：一次RedisService调用(命令、分片节点、键长度、值长度、耗时、是否失败)，耗时超过阈值时才发出
+ * redis.client.PoolBorrow ：一次连接借用(等待时间、是否成功)，等待时间超过阈值时才发出
+ * redis.client.ShardState ：分片节点被摘除或恢复
+ * </pre>
+ *
+ * 事件类(redis.client.monitor.jfr包)依赖jdk.jfr，只在用JDK 11+构建时(Maven profile {@code jfr}，自动激活)才会编译，运行时通过反射加载；
+ * 没有编译事件类、或者运行时不支持JFR(如JDK 1.7)时，所有方法都是空操作；
+ * 没有正在进行的JFR记录时，只需要比较一次阈值和读取一次volatile变量，不会创建事件对象。
+ * <p>
+ * 阈值可以通过系统属性{@value #COMMAND_THRESHOLD_PROPERTY}和{@value #POOL_WAIT_THRESHOLD_PROPERTY}(毫秒数)配置，
+ * 也可以在运行时调用setter方法修改；为0时记录所有调用(开销较大，只适合短时间的剖析)。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月17日 上午10:12:03
+ */
+public abstract class RedisFlightRecorder {
+
+    private static final Logger       logger                      = LoggerFactory.getLogger(RedisFlightRecorder.class);
+
+    /** 命令耗时阈值的系统属性(毫秒数) */
+    public static final String        COMMAND_THRESHOLD_PROPERTY   = "redis.client.jfr.command.threshold.millis";
+
+    /** 连接借用等待时间阈值的系统属性(毫秒数) */
+    public static final String        POOL_WAIT_THRESHOLD_PROPERTY = "redis.client.jfr.pool.wait.threshold.millis";
+
+    /** 默认的命令耗时阈值(毫秒数) */
+    public static final long          DEFAULT_COMMAND_THRESHOLD    = 10L;
+
+    /** 默认的连接借用等待时间阈值(毫秒数) */
+    public static final long          DEFAULT_POOL_WAIT_THRESHOLD  = 1L;
+
+    /** JFR事件类的实现 */
+    private static final String       JFR_EMITTER_CLASS            = "redis.client.monitor.jfr.JfrEventEmitter";
+
+    private static final EventEmitter EMITTER                      = loadEmitter();
+
+    private static volatile long      commandThresholdNanos        = thresholdNanos(COMMAND_THRESHOLD_PROPERTY,
+                                                                                    DEFAULT_COMMAND_THRESHOLD);
+
+    private static volatile long      poolWaitThresholdNanos       = thresholdNanos(POOL_WAIT_THRESHOLD_PROPERTY,
+                                                                                    DEFAULT_POOL_WAIT_THRESHOLD);
+
+    /**
+     * JFR事件发射器。
+     */
+    public interface EventEmitter {
+
+        /**
+         * 是否有正在进行的JFR记录。
+         */
+        boolean isRecording();
+
+        void command(RedisCommand command, String shard, int keyLength, int valueLength, long durationNanos,
+                     boolean failed);
+
+        void poolBorrow(long waitNanos, boolean success);
+
+        void shardState(String shard, boolean ejected);
+    }
+
+    private static EventEmitter loadEmitter() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (EventEmitter) Class.forName(JFR_EMITTER_CLASS).getDeclaredConstructor().newInstance();
+        } catch (Throwable t) { // ClassNotFoundException、LinkageError等，运行时不支持JFR
+            logger.info("Java Flight Recorder is not available, Redis JFR events are disabled: {}", t.toString());
+            return null;
+        }
+    }
+
+    private static long thresholdNanos(String property, long defaultMillis) {
+        long millis = defaultMillis;
+        String value = System.getProperty(property);
+        if (value != null) {
+            try {
+                millis = Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                logger.warn("Invalid system property '{}': {}", property, value);
+            }
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0L, millis));
+    }
+
+    /**
+     * 运行时是否支持JFR。
+     */
+    public static boolean isAvailable() {
+        return EMITTER != null;
+    }
+
+    /**
+     * 设置命令耗时阈值，只有耗时不小于该值的调用才会发出事件。
+     *
+     * @param thresholdMillis 命令耗时阈值(毫秒数)
+     */
+    public static void setCommandThresholdMillis(long thresholdMillis) {
+        AssertUtils.isTrue(thresholdMillis >= 0, "'thresholdMillis' must not be negative : " + thresholdMillis);
+
+        commandThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * 设置连接借用等待时间阈值，只有等待时间不小于该值的借用才会发出事件。
+     *
+     * @param thresholdMillis 连接借用等待时间阈值(毫秒数)
+     */
+    public static void setPoolWaitThresholdMillis(long thresholdMillis) {
+        AssertUtils.isTrue(thresholdMillis >= 0, "'thresholdMillis' must not be negative : " + thresholdMillis);
+
+        poolWaitThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * 发出"命令"事件。
+     *
+     * @param command 命令
+     * @param shard 命令所在的分片节点，未知时为{@code null}
+     * @param key 键
+     * @param valueLength 值的长度，未知时为-1
+     * @param durationNanos 耗时(纳秒)
+     * @param failed 是否失败
+     */
+    public static void command(RedisCommand command, JedisShardInfo shard, String key, int valueLength,
+                               long durationNanos, boolean failed) {
+        if (durationNanos >= commandThresholdNanos && EMITTER != null && EMITTER.isRecording()) {
+            EMITTER.command(command, (shard == null) ? null : RedisMetrics.shardName(shard),
+                            (key == null) ? -1 : key.length(), valueLength, durationNanos, failed);
+        }
+    }
+
+    /**
+     * 发出"连接借用"事件。
+     *
+     * @param waitNanos 等待时间(纳秒)
+     * @param success 是否借用成功
+     */
+    public static void poolBorrow(long waitNanos, boolean success) {
+        if ((waitNanos >= poolWaitThresholdNanos || !success) && EMITTER != null && EMITTER.isRecording()) {
+            EMITTER.poolBorrow(waitNanos, success);
+        }
+    }
+
+    /**
+     * 发出"分片节点状态变化"事件。
+     *
+     * @param shard 分片节点
+     * @param ejected 被摘除为{@code true}，恢复为{@code false}
+     */
+    public static void shardState(JedisShardInfo shard, boolean ejected) {
+        if (EMITTER != null && EMITTER.isRecording()) {
+            EMITTER.shardState(RedisMetrics.shardName(shard), ejected);
+        }
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Redis客户端的统计数据汇总：每个命令(所有分片节点汇总，及每个分片节点)的调用次数、失败次数、超时次数和延迟直方图，以及连接池的借用等待时间。
+ * <p>
+ * 记录一次命令调用只需要几次原子累加(无锁、不分配内存)，开销在几十纳秒以内；统计数据在第一次被使用时才会创建，并注册到所有的{@link MetricsRegistry}中。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 下午3:02:47
+ * @see JmxMetricsRegistry
+ */
+public class RedisMetrics {
+
+    private static final Logger                                  logger         = LoggerFactory.getLogger(RedisMetrics.class);
+
+    private static final RedisCommand[]                          COMMANDS       = RedisCommand.values();
+
+    /** 所有分片节点汇总的命令统计数据 */
+    private final AtomicReferenceArray<CommandMetrics>           totals         = new AtomicReferenceArray<CommandMetrics>(
+                                                                                                                             COMMANDS.length);
+
+    /** 分片节点信息 -> 分片节点的命令统计数据 (按对象标识查找，避免每次调用都生成节点名称) */
+    private final ConcurrentMap<JedisShardInfo, ShardMetrics>    shards         = new ConcurrentHashMap<JedisShardInfo, ShardMetrics>();
+
+    /** 分片节点名称 -> 分片节点的命令统计数据 (连接池重建后，同名节点共用统计数据) */
+    private final ConcurrentMap<String, ShardMetrics>            shardNames     = new ConcurrentHashMap<String, ShardMetrics>();
+
+    /** 连接池统计数据 */
+    private final PoolMetrics                                    pool           = new PoolMetrics();
+
+    /** 分阶段耗时剖析器 */
+    private final CallProfiler                                   profiler       = new CallProfiler();
+
+    /** 热点键检测器 */
+    private final HotKeyDetector                                 hotKeyDetector = new HotKeyDetector();
+
+    /** 大键检测器 */
+    private final BigKeyDetector                                 bigKeyDetector = new BigKeyDetector();
+
+    /** 统计数据注册表列表 */
+    private final List<MetricsRegistry>                          registries     = new CopyOnWriteArrayList<MetricsRegistry>();
+
+    /** 是否启用统计 */
+    private volatile boolean                                     enabled        = true;
+
+    /**
+     * 设置是否启用统计。(默认启用)
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 添加一个统计数据注册表，已创建的统计数据会立刻注册到该注册表中。
+     *
+     * @param registry 统计数据注册表
+     */
+    public synchronized void addRegistry(MetricsRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("'registry' must not be null");
+        }
+        registries.add(registry);
+
+        registry.register(pool);
+        registry.register(profiler);
+        registry.register(hotKeyDetector);
+        registry.register(bigKeyDetector);
+        for (CommandMetrics metrics : getAllCommandMetrics()) {
+            registry.register(metrics);
+        }
+    }
+
+    /**
+     * 注销并删除所有的统计数据注册表。
+     */
+    public synchronized void removeRegistries() {
+        for (MetricsRegistry registry : registries) {
+            registry.unregisterAll();
+        }
+        registries.clear();
+    }
+
+    /**
+     * 记录一次命令调用。
+     *
+     * @param command 命令
+     * @param shard 命令所在的分片节点，未知时为{@code null}(只统计到汇总数据中)
+     * @param startNanos 开始时间({@link System#nanoTime()})
+     * @param failure 失败原因，成功时为{@code null}
+     * @return 命令的耗时(纳秒)
+     */
+    public long record(RedisCommand command, JedisShardInfo shard, long startNanos, Throwable failure) {
+        long nanos = System.nanoTime() - startNanos;
+        if (enabled) {
+            commandMetrics(totals, command, null).record(nanos, failure);
+            if (shard != null) {
+                ShardMetrics shardMetrics = shards.get(shard);
+                if (shardMetrics == null) {
+                    shardMetrics = shardMetrics(shard);
+                }
+                commandMetrics(shardMetrics.commands, command, shardMetrics.name).record(nanos, failure);
+            }
+        }
+        return nanos;
+    }
+
+    /**
+     * 记录一次连接借用。
+     *
+     * @param waitNanos 等待时间(纳秒)
+     * @param success 是否借用成功
+     */
+    public void recordBorrow(long waitNanos, boolean success) {
+        if (enabled) {
+            pool.record(waitNanos, success);
+        }
+    }
+
+    private CommandMetrics commandMetrics(AtomicReferenceArray<CommandMetrics> commands, RedisCommand command,
+                                          String shardName) {
+        CommandMetrics metrics = commands.get(command.ordinal());
+        if (metrics == null) {
+            synchronized (this) {
+                metrics = commands.get(command.ordinal());
+                if (metrics == null) {
+                    metrics = new CommandMetrics(command, shardName);
+                    commands.set(command.ordinal(), metrics);
+                    for (MetricsRegistry registry : registries) {
+                        register(registry, metrics);
+                    }
+                }
+            }
+        }
+        return metrics;
+    }
+
+    private ShardMetrics shardMetrics(JedisShardInfo shard) {
+        String name = shardName(shard);
+        ShardMetrics shardMetrics = shardNames.get(name);
+        if (shardMetrics == null) {
+            ShardMetrics newShardMetrics = new ShardMetrics(name);
+            shardMetrics = shardNames.putIfAbsent(name, newShardMetrics);
+            if (shardMetrics == null) {
+                shardMetrics = newShardMetrics;
+            }
+        }
+        shards.putIfAbsent(shard, shardMetrics);
+        return shardMetrics;
+    }
+
+    /**
+     * 返回分片节点的名称，未配置名称时使用"host:port"。
+     */
+    public static String shardName(JedisShardInfo shard) {
+        String name = shard.getName();
+        return (name != null) ? name : shard.getHost() + ':' + shard.getPort();
+    }
+
+    private static void register(MetricsRegistry registry, CommandMetrics metrics) {
+        try {
+            registry.register(metrics);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to register metrics: " + metrics.getCommand() + "@" + metrics.getShard(), e);
+        }
+    }
+
+    // ---------------- 查询 ----------------
+    /**
+     * 返回命令在所有分片节点上的汇总统计数据。
+     *
+     * @return 该命令还没有被调用过时，返回{@code null}。
+     */
+    public CommandMetrics getCommandMetrics(RedisCommand command) {
+        return totals.get(command.ordinal());
+    }
+
+    /**
+     * 返回命令在指定分片节点上的统计数据。
+     *
+     * @return 该命令还没有在该节点上被调用过时，返回{@code null}。
+     */
+    public CommandMetrics getCommandMetrics(RedisCommand command, String shardName) {
+        ShardMetrics shardMetrics = shardNames.get(shardName);
+        return (shardMetrics == null) ? null : shardMetrics.commands.get(command.ordinal());
+    }
+
+    /**
+     * 返回所有已创建的命令统计数据(包括汇总数据和各分片节点的数据)。
+     */
+    public List<CommandMetrics> getAllCommandMetrics() {
+        List<CommandMetrics> all = new ArrayList<CommandMetrics>();
+        addAll(all, totals);
+        for (ShardMetrics shardMetrics : shardNames.values()) {
+            addAll(all, shardMetrics.commands);
+        }
+        return all;
+    }
+
+    private static void addAll(List<CommandMetrics> all, AtomicReferenceArray<CommandMetrics> commands) {
+        for (int i = 0; i < commands.length(); i++) {
+            CommandMetrics metrics = commands.get(i);
+            if (metrics != null) {
+                all.add(metrics);
+            }
+        }
+    }
+
+    /**
+     * 返回连接池的统计数据。
+     */
+    public PoolMetrics getPoolMetrics() {
+        return pool;
+    }
+
+    /**
+     * 返回分阶段耗时剖析器。(默认关闭)
+     */
+    public CallProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+     * 返回热点键检测器。
+     */
+    public HotKeyDetector getHotKeyDetector() {
+        return hotKeyDetector;
+    }
+
+    /**
+     * 返回大键检测器。
+     */
+    public BigKeyDetector getBigKeyDetector() {
+        return bigKeyDetector;
+    }
+
+    /**
+     * 一个分片节点的命令统计数据。
+     */
+    private static final class ShardMetrics {
+
+        private final String                               name;
+        private final AtomicReferenceArray<CommandMetrics> commands = new AtomicReferenceArray<CommandMetrics>(
+                                                                                                               COMMANDS.length);
+
+        ShardMetrics(String name){
+            this.name = name;
+        }
+    }
+
+}
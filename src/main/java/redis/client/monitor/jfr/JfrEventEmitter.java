@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor.jfr;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisFlightRecorder;
+
+/**
+ * 基于{@code jdk.jfr}的事件发射器。
+ * <p>
+ * 本包中的类依赖{@code jdk.jfr}，只能由{@link RedisFlightRecorder}在确认运行时支持JFR后，通过反射加载。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月17日 上午11:02:38
+ */
+public class JfrEventEmitter implements RedisFlightRecorder.EventEmitter {
+
+    /** 是否有正在进行的JFR记录 (由记录状态监听器维护) */
+    private volatile boolean recording;
+
+    public JfrEventEmitter(){
+        FlightRecorder.addListener(new FlightRecorderListener() {
+
+            @Override
+            public void recorderInitialized(FlightRecorder recorder) {
+                updateRecording(recorder);
+            }
+
+            @Override
+            public void recordingStateChanged(Recording changed) {
+                updateRecording(FlightRecorder.getFlightRecorder());
+            }
+        });
+    }
+
+    private void updateRecording(FlightRecorder recorder) {
+        boolean running = false;
+        for (Recording recording : recorder.getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        this.recording = running;
+    }
+
+    @Override
+    public boolean isRecording() {
+        return recording;
+    }
+
+    @Override
+    public void command(RedisCommand command, String shard, int keyLength, int valueLength, long durationNanos,
+                        boolean failed) {
+        RedisCommandEvent event = new RedisCommandEvent();
+        if (event.shouldCommit()) {
+            event.command = command.name();
+            event.shard = shard;
+            event.keyLength = keyLength;
+            event.valueLength = valueLength;
+            event.commandDuration = durationNanos;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void poolBorrow(long waitNanos, boolean success) {
+        RedisPoolBorrowEvent event = new RedisPoolBorrowEvent();
+        if (event.shouldCommit()) {
+            event.waitTime = waitNanos;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void shardState(String shard, boolean ejected) {
+        RedisShardStateEvent event = new RedisShardStateEvent();
+        if (event.shouldCommit()) {
+            event.shard = shard;
+            event.state = ejected ? "EJECTED" : "RESTORED";
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR事件："一次RedisService调用"。
+ *
+ * @author huagang.li 2015年2月17日 上午10:40:51
+ */
+@Name("redis.client.Command")
+@Label("Redis Command")
+@Category({ "Redis" })
+@Description("A RedisService call that took longer than the configured threshold")
+@StackTrace(true)
+class RedisCommandEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    String  command;
+
+    @Label("Shard")
+    String  shard;
+
+    @Label("Key Length")
+    int     keyLength;
+
+    @Label("Value Length")
+    @Description("-1 if unknown")
+    int     valueLength;
+
+    @Label("Command Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long    commandDuration;
+
+    @Label("Failed")
+    boolean failed;
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR事件："一次连接借用"。
+ *
+ * @author huagang.li 2015年2月17日 上午10:46:27
+ */
+@Name("redis.client.PoolBorrow")
+@Label("Redis Pool Borrow")
+@Category({ "Redis" })
+@Description("A connection borrow from the sharded Jedis pool that waited longer than the configured threshold or failed")
+@StackTrace(true)
+class RedisPoolBorrowEvent extends jdk.jfr.Event {
+
+    @Label("Wait Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long    waitTime;
+
+    @Label("Success")
+    boolean success;
+
+}
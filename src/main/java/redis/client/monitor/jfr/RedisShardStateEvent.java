@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR事件："分片节点被摘除或恢复"。
+ *
+ * @author huagang.li 2015年2月17日 上午10:50:12
+ */
+@Name("redis.client.ShardState")
+@Label("Redis Shard State")
+@Category({ "Redis" })
+@Description("A shard was ejected from or restored to the active shard list by the server state check")
+@StackTrace(false)
+class RedisShardStateEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    String shard;
+
+    @Label("State")
+    @Description("EJECTED or RESTORED")
+    String state;
+
+}
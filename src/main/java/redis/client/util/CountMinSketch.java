@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch，用固定大小的计数矩阵估算元素的出现次数(只会高估，不会低估)。
+ * <p>
+ * 矩阵有{@code depth}行、{@code width}列，每个元素在每一行中按不同的哈希函数映射到一个计数单元，估算值为各行计数的最小值。<br>
+ * 调用方直接传入元素的哈希值(如{@link String#hashCode()}，它会被缓存)，所以累加和估算都不分配内存、不加锁。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月18日 上午10:05:33
+ */
+public final class CountMinSketch {
+
+    private final int             depth;
+    /** 列数的掩码(列数为2的幂) */
+    private final int             mask;
+    /** 计数矩阵，按行存储 */
+    private final AtomicLongArray counts;
+
+    /**
+     * 创建一个Count-Min Sketch。
+     *
+     * @param depth 行数(哈希函数的数量)，越大误判的概率越低
+     * @param width 列数(会向上取整为2的幂)，越大估算的误差越小
+     */
+    public CountMinSketch(int depth, int width){
+        AssertUtils.isTrue(depth > 0 && depth <= 16, "'depth' must be between 1 and 16 : " + depth);
+        AssertUtils.isTrue(width > 0 && width <= (1 << 24), "'width' must be between 1 and 16777216 : " + width);
+
+        int size = Integer.highestOneBit(width);
+        if (size < width) {
+            size <<= 1;
+        }
+        this.depth = depth;
+        this.mask = size - 1;
+        this.counts = new AtomicLongArray(depth * size);
+    }
+
+    /**
+     * 将元素的出现次数加1，并返回累加后的估算值。
+     *
+     * @param hash 元素的哈希值
+     * @return 元素出现次数的估算值
+     */
+    public long add(int hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.incrementAndGet(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 返回元素出现次数的估算值。
+     *
+     * @param hash 元素的哈希值
+     */
+    public long estimate(int hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(index(row, hash)));
+        }
+        return estimate;
+    }
+
+    /**
+     * 清空所有计数。
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0L);
+        }
+    }
+
+    /**
+     * 每一行使用不同的种子，对哈希值重新混合(murmur3的finalizer)。
+     */
+    private int index(int row, int hash) {
+        int h = hash + row * 0x9E3779B9;
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        h *= 0xC2B2AE35;
+        h ^= (h >>> 16);
+        return row * (mask + 1) + (h & mask);
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图，采用与HdrHistogram类似的"对数-线性"分桶，以微秒为单位记录延迟。
+ * <p>
+ * 每个2的幂区间再线性地分为{@value #SUB_BUCKET_COUNT}个子桶，所以任何百分位数的相对误差都不超过 1/{@value #SUB_BUCKET_COUNT}；
+ * 可记录的最大延迟约为 19 小时，超出的值会记到最后一个桶中。<br>
+ * 记录一次延迟只需要几次位运算和一次原子累加，不分配内存，不加锁。
+ *
+ * <pre>
+ * 分桶规则(v为微秒数)：
+ *     v &lt; 16         : 桶号 = v
+ *     v &gt;= 16        : e = msb(v) - 4，桶号 = (e + 1) * 16 + ((v &gt;&gt;&gt; e) &amp; 15)
+ * </pre>
+ *
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 上午10:40:18
+ */
+public final class LatencyHistogram {
+
+    /** 子桶数量的位数 */
+    private static final int       SUB_BUCKET_BITS  = 4;
+    /** 每个2的幂区间的子桶数量 */
+    private static final int       SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** 可记录的最大延迟(微秒) */
+    private static final long      MAX_VALUE        = (1L << 36) - 1;
+    /** 桶数量 */
+    private static final int       BUCKET_COUNT     = bucketIndex(MAX_VALUE) + 1;
+
+    /** 各个桶的计数 */
+    private final AtomicLongArray  buckets          = new AtomicLongArray(BUCKET_COUNT);
+    /** 延迟总和(微秒) */
+    private final StripedCounter   totalMicros      = new StripedCounter();
+    /** 最大延迟(微秒) */
+    private final AtomicLong       maxMicros        = new AtomicLong();
+
+    /**
+     * 记录一次延迟。
+     *
+     * @param nanos 延迟(纳秒)
+     */
+    public void record(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * 记录一次延迟。
+     *
+     * @param micros 延迟(微秒)
+     */
+    public void recordMicros(long micros) {
+        long value = (micros < 0L) ? 0L : Math.min(micros, MAX_VALUE);
+        buckets.getAndIncrement(bucketIndex(value));
+        totalMicros.add(value);
+        long max = maxMicros.get();
+        while (value > max && !maxMicros.compareAndSet(max, value)) {
+            max = maxMicros.get();
+        }
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return ((exponent + 1) << SUB_BUCKET_BITS) + (int) ((value >>> exponent) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * 返回桶的上界(包括)。
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowerBound = (long) (SUB_BUCKET_COUNT + (index & (SUB_BUCKET_COUNT - 1))) << exponent;
+        return lowerBound + (1L << exponent) - 1;
+    }
+
+    /**
+     * 返回当前数据的快照。(并发记录时，快照中的各项数据之间可能存在微小的偏差)
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, totalMicros.sum(), maxMicros.get());
+    }
+
+    /**
+     * 清空所有数据。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0L);
+        }
+        totalMicros.reset();
+        maxMicros.set(0L);
+    }
+
+    /**
+     * 延迟直方图的快照。(单位均为微秒)
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long   count;
+        private final long   total;
+        private final long   max;
+
+        Snapshot(long[] counts, long count, long total, long max){
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * 返回记录的次数。
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 返回平均延迟。
+         */
+        public double getMean() {
+            return (count == 0L) ? 0.0D : (double) total / count;
+        }
+
+        /**
+         * 返回最大延迟。
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * 返回从较早的快照到当前快照之间记录的数据，用于在累计的直方图上计算最近一段时间的百分位数。
+         * <p>
+         * 最大延迟取差值中最高的非空桶的上界(不超过当前的最大延迟)；
+         * 期间直方图被{@link LatencyHistogram#reset() 清空}过时，返回当前快照本身。
+         *
+         * @param earlier 同一个直方图较早的快照
+         */
+        public Snapshot since(Snapshot earlier) {
+            if (earlier.total > total) {
+                return this;
+            }
+            long[] deltaCounts = new long[counts.length];
+            long deltaCount = 0L;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                long delta = counts[i] - earlier.counts[i];
+                if (delta < 0L) {
+                    return this;
+                }
+                if (delta > 0L) {
+                    highest = i;
+                }
+                deltaCounts[i] = delta;
+                deltaCount += delta;
+            }
+            long deltaMax = (highest < 0) ? 0L : Math.min(bucketUpperBound(highest), max);
+            return new Snapshot(deltaCounts, deltaCount, total - earlier.total, deltaMax);
+        }
+
+        /**
+         * 返回指定百分位的延迟(所在桶的上界，但不超过最大延迟)。
+         *
+         * @param percentile 百分位，如 99.9
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0L) {
+                return 0L;
+            }
+            double p = Math.max(0.0D, Math.min(percentile, 100.0D));
+            long rank = Math.max(1L, (long) Math.ceil(p / 100.0D * count));
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + getMean() + "us, p50=" + getValueAtPercentile(50.0D) + "us, p99="
+                   + getValueAtPercentile(99.0D) + "us, p999=" + getValueAtPercentile(99.9D) + "us, max=" + max + "us";
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import redis.clients.util.SafeEncoder;
+
+/**
+ * 数值工具类，直接在Redis协议的ASCII字节数组与基本类型数值之间进行转换，不创建中间的{@link String}对象。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月5日 上午10:21:36
+ */
+public abstract class NumberUtils {
+
+    /** Redis中正无穷大分数的表示 */
+    private static final byte[] POSITIVE_INFINITY = { 'i', 'n', 'f' };
+    /** Redis中负无穷大分数的表示 */
+    private static final byte[] NEGATIVE_INFINITY = { '-', 'i', 'n', 'f' };
+
+    /**
+     * 将ASCII十进制字节数组解析为{@code long}数值。
+     *
+     * <pre>
+     * NumberUtils.parseLong("123".getBytes())  = 123L
+     * NumberUtils.parseLong("-42".getBytes())  = -42L
+     * NumberUtils.parseLong("1.5".getBytes())  = NumberFormatException
+     * </pre>
+     *
+     * @param bytes ASCII十进制字节数组
+     * @return {@code long}数值
+     * @throws NumberFormatException 当字节数组不是一个合法的{@code long}数值时
+     */
+    public static long parseLong(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new NumberFormatException("empty bytes");
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if (bytes[0] == '-' || bytes[0] == '+') {
+            negative = bytes[0] == '-';
+            i++;
+            if (bytes.length == 1) {
+                throw new NumberFormatException(SafeEncoder.encode(bytes));
+            }
+        }
+        // 按负数累加，这样才能表示 Long.MIN_VALUE
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0L;
+        for (; i < bytes.length; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                throw new NumberFormatException(SafeEncoder.encode(bytes));
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException(SafeEncoder.encode(bytes));
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * 将Redis返回的分数字节数组解析为{@code double}数值。
+     * <p>
+     * 整数形式的分数(最常见的情况，如时间戳)直接解析；其它形式(如"1.5"、"1e+20")则退化为{@link Double#parseDouble(String)}。
+     *
+     * @param bytes 分数的字节数组
+     * @return {@code double}数值
+     * @throws NumberFormatException 当字节数组不是一个合法的数值时
+     */
+    public static double parseDouble(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            throw new NumberFormatException("empty bytes");
+        }
+
+        // 整数形式 (最多18位数字，以保证不溢出且精确)
+        int start = (bytes[0] == '-' || bytes[0] == '+') ? 1 : 0;
+        if (bytes.length > start && bytes.length - start <= 18 && isDigits(bytes, start)) {
+            return (double) parseLong(bytes);
+        }
+        if (equals(bytes, POSITIVE_INFINITY)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (equals(bytes, NEGATIVE_INFINITY)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return Double.parseDouble(SafeEncoder.encode(bytes));
+    }
+
+    private static boolean isDigits(byte[] bytes, int start) {
+        for (int i = start; i < bytes.length; i++) {
+            if (bytes[i] < '0' || bytes[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] bytes, byte[] expected) {
+        if (bytes.length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将{@code long}数值转换为ASCII十进制字节数组。
+     *
+     * <pre>
+     * NumberUtils.toByteArray(123L)  = "123".getBytes()
+     * NumberUtils.toByteArray(-42L)  = "-42".getBytes()
+     * </pre>
+     *
+     * @param value {@code long}数值
+     * @return ASCII十进制字节数组
+     */
+    public static byte[] toByteArray(long value) {
+        if (value == Long.MIN_VALUE) {
+            return SafeEncoder.encode(Long.toString(value));
+        }
+
+        boolean negative = value < 0;
+        long v = negative ? -value : value;
+        int length = negative ? 2 : 1;
+        for (long t = v / 10; t != 0; t /= 10) {
+            length++;
+        }
+
+        byte[] bytes = new byte[length];
+        int i = length;
+        do {
+            bytes[--i] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        if (negative) {
+            bytes[0] = '-';
+        }
+        return bytes;
+    }
+
+}
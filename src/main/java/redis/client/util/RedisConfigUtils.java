@@ -17,8 +17,13 @@
 package redis.client.util;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisShardInfo;
 
 /**
@@ -34,14 +39,22 @@ public abstract class RedisConfigUtils {
     /** 服务器信息中各属性的分隔符 */
     private static final String SERVER_INFO_FIELD_SETPARATOR = ":";
 
+    /** 主节点与副本节点之间的分隔符 */
+    private static final String REPLICA_SETPARATOR           = "|";
+
+    /** 副本节点名称的后缀 */
+    private static final String REPLICA_NAME_SUFFIX          = "/replica-";
+
     /**
      * 根据给定的{@code redisServers}来解析并返回{@link JedisShardInfo}节点信息列表。
      * 
      * <pre>
      * {@code redisServer}格式：
-     *     host:port:name[:weight]
+     *     host:port:name[:weight][|replicaHost:replicaPort ...]
      * </pre>
      * 
+     * 副本节点信息会被忽略，见{@link #parseReplicaServerMap(String, int)}。
+     * 
      * @param redisServers Redis集群分片节点配置信息
      * @param timeoutMillis 超时时间(ms)
      * @return
@@ -53,8 +66,8 @@ public abstract class RedisConfigUtils {
         List<JedisShardInfo> shards = new ArrayList<JedisShardInfo>(shardInfoArray.length);
         JedisShardInfo shard = null;
         for (String shardInfo : shardInfoArray) {
+            shardInfo = masterInfo(shardInfo.trim());
             if (StringUtils.isNotEmpty(shardInfo)) {
-                shardInfo = shardInfo.trim();
                 String[] shardFieldArray = shardInfo.split(SERVER_INFO_FIELD_SETPARATOR);
                 AssertUtils.isTrue(3 <= shardFieldArray.length && shardFieldArray.length <= 4,
                                    "'redisServers' param does not meet the 'host:port:name[:weight] [, ...]' format : "
@@ -82,4 +95,139 @@ public abstract class RedisConfigUtils {
         return shards;
     }
 
+    /**
+     * 根据给定的{@code redisServers}来解析并返回各分片节点的副本节点信息。
+     * 
+     * <pre>
+     * {@code redisServer}格式：
+     *     host:port:name[:weight][|replicaHost:replicaPort ...]
+     * 
+     * 示例：
+     *     "127.0.0.1:6379:Shard-01|127.0.0.1:6479, 127.0.0.1:6380:Shard-02|127.0.0.1:6480|127.0.0.1:6580"
+     * </pre>
+     * 
+     * 副本节点的名称为"分片节点名称/replica-序号"(序号从1开始)，如"Shard-01/replica-1"。
+     * 
+     * @param redisServers Redis集群分片节点配置信息
+     * @param timeoutMillis 超时时间(ms)
+     * @return 分片节点名称 -> 副本节点信息列表 (没有配置副本的分片节点不包含在内)
+     */
+    public static Map<String, List<JedisShardInfo>> parseReplicaServerMap(String redisServers, int timeoutMillis) {
+        AssertUtils.notEmpty(redisServers, "'redisServers' param must not be null and empty");
+
+        Map<String, List<JedisShardInfo>> replicaMap = new LinkedHashMap<String, List<JedisShardInfo>>();
+        for (String shardInfo : redisServers.split(SERVER_INFO_SETPARATOR)) {
+            shardInfo = shardInfo.trim();
+            int replicaIndex = shardInfo.indexOf(REPLICA_SETPARATOR);
+            if (replicaIndex < 0) {
+                continue;
+            }
+
+            String[] shardFieldArray = shardInfo.substring(0, replicaIndex).trim().split(SERVER_INFO_FIELD_SETPARATOR);
+            AssertUtils.isTrue(3 <= shardFieldArray.length && shardFieldArray.length <= 4,
+                               "'redisServers' param does not meet the 'host:port:name[:weight] [, ...]' format : "
+                                       + shardInfo);
+            String name = shardFieldArray[2];
+            AssertUtils.notEmpty(name, "'name' field must not be null and empty : " + shardInfo);
+
+            String[] replicaInfoArray = shardInfo.substring(replicaIndex + 1).split("\\" + REPLICA_SETPARATOR);
+            List<JedisShardInfo> replicas = new ArrayList<JedisShardInfo>(replicaInfoArray.length);
+            for (String replicaInfo : replicaInfoArray) {
+                replicaInfo = replicaInfo.trim();
+                String[] replicaFieldArray = replicaInfo.split(SERVER_INFO_FIELD_SETPARATOR);
+                AssertUtils.isTrue(2 == replicaFieldArray.length,
+                                   "replica does not meet the 'replicaHost:replicaPort' format : " + shardInfo);
+                String host = replicaFieldArray[0];
+                AssertUtils.notEmpty(host, "replica 'host' field must not be null and empty : " + shardInfo);
+                int port = Integer.parseInt(replicaFieldArray[1]);
+                replicas.add(new JedisShardInfo(host, port, timeoutMillis, name + REPLICA_NAME_SUFFIX
+                                                                           + (replicas.size() + 1)));
+            }
+            AssertUtils.isTrue(!replicaMap.containsKey(name), "duplicate shard name : " + name);
+            replicaMap.put(name, replicas);
+        }
+        return replicaMap;
+    }
+
+    /**
+     * 根据给定的{@code standbyServers}来解析并返回备用节点信息列表。
+     * 
+     * <pre>
+     * {@code standbyServer}格式：
+     *     host:port
+     * 
+     * 示例：
+     *     "127.0.0.1:6390, 127.0.0.1:6391"
+     * </pre>
+     * 
+     * 备用节点没有名称，接管分片节点时使用被接管分片节点的名称，见{@link redis.client.jedis.StandbyShardInfo StandbyShardInfo}。
+     * 
+     * @param standbyServers 备用节点配置信息
+     * @param timeoutMillis 超时时间(ms)
+     * @return 备用节点信息列表
+     */
+    public static List<JedisShardInfo> parseStandbyServerList(String standbyServers, int timeoutMillis) {
+        AssertUtils.notEmpty(standbyServers, "'standbyServers' param must not be null and empty");
+
+        List<JedisShardInfo> standbys = new ArrayList<JedisShardInfo>();
+        for (String standbyInfo : standbyServers.split(SERVER_INFO_SETPARATOR)) {
+            standbyInfo = standbyInfo.trim();
+            if (StringUtils.isNotEmpty(standbyInfo)) {
+                String[] standbyFieldArray = standbyInfo.split(SERVER_INFO_FIELD_SETPARATOR);
+                AssertUtils.isTrue(2 == standbyFieldArray.length,
+                                   "'standbyServers' param does not meet the 'host:port [, ...]' format : "
+                                           + standbyInfo);
+                String host = standbyFieldArray[0];
+                AssertUtils.notEmpty(host, "'host' field must not be null and empty : " + standbyInfo);
+                int port = Integer.parseInt(standbyFieldArray[1]);
+                standbys.add(new JedisShardInfo(host, port, timeoutMillis));
+            }
+        }
+        return standbys;
+    }
+
+    /**
+     * 根据给定的{@code clusterNodes}来解析并返回Redis Cluster的初始节点列表。
+     * 
+     * <pre>
+     * {@code clusterNode}格式：
+     *     host:port
+     * 
+     * 示例：
+     *     "127.0.0.1:7000, 127.0.0.1:7001, 127.0.0.1:7002"
+     * </pre>
+     * 
+     * 只需要配置部分节点，客户端会从其中一个可用节点发现集群的所有节点和槽位分布。
+     * 
+     * @param clusterNodes Redis Cluster节点配置信息
+     * @return 节点列表
+     */
+    public static Set<HostAndPort> parseClusterNodes(String clusterNodes) {
+        AssertUtils.notEmpty(clusterNodes, "'clusterNodes' param must not be null and empty");
+
+        Set<HostAndPort> nodes = new LinkedHashSet<HostAndPort>();
+        for (String nodeInfo : clusterNodes.split(SERVER_INFO_SETPARATOR)) {
+            nodeInfo = nodeInfo.trim();
+            if (StringUtils.isNotEmpty(nodeInfo)) {
+                String[] nodeFieldArray = nodeInfo.split(SERVER_INFO_FIELD_SETPARATOR);
+                AssertUtils.isTrue(2 == nodeFieldArray.length,
+                                   "'clusterNodes' param does not meet the 'host:port [, ...]' format : " + nodeInfo);
+                String host = nodeFieldArray[0];
+                AssertUtils.notEmpty(host, "'host' field must not be null and empty : " + nodeInfo);
+                int port = Integer.parseInt(nodeFieldArray[1]);
+                nodes.add(new HostAndPort(host, port));
+            }
+        }
+        AssertUtils.isTrue(!nodes.isEmpty(), "'clusterNodes' param must contain at least one node : " + clusterNodes);
+        return nodes;
+    }
+
+    /**
+     * 去掉分片节点配置中的副本节点信息。
+     */
+    private static String masterInfo(String shardInfo) {
+        int replicaIndex = shardInfo.indexOf(REPLICA_SETPARATOR);
+        return (replicaIndex < 0) ? shardInfo : shardInfo.substring(0, replicaIndex).trim();
+    }
+
 }
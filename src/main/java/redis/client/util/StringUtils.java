@@ -72,4 +72,46 @@ public abstract class StringUtils {
         return !isEmpty(cs);
     }
 
+    // Length (长度)
+    // -----------------------------------------------------------------------
+    /**
+     * Gets the number of bytes of a {@link CharSequence} encoded in UTF-8, without creating the byte array.
+     * <p>
+     * Null returns {@code 0}. An unpaired surrogate is counted as 3 bytes, so the result never underestimates
+     * {@code String.getBytes(UTF-8).length} (which replaces it with a 1 byte '?').
+     * 
+     * <pre>
+     * StringUtils.utf8Length(null)   = 0
+     * StringUtils.utf8Length("")     = 0
+     * StringUtils.utf8Length("bob")  = 3
+     * StringUtils.utf8Length("é")    = 2
+     * StringUtils.utf8Length("中文") = 6
+     * </pre>
+     * 
+     * @param cs the CharSequence to measure, may be null
+     * @return the number of UTF-8 bytes
+     */
+    public static long utf8Length(final CharSequence cs) {
+        if (cs == null) {
+            return 0L;
+        }
+        int length = cs.length();
+        long bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = cs.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(cs.charAt(i + 1))) {
+                bytes += 2; // 4 bytes for the surrogate pair
+                i++;
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 分段计数器，将计数分散到多个(按缓存行对齐的)单元中，降低多线程同时累加时的竞争。(JDK 1.7 没有{@code LongAdder})
+ * <p>
+ * 累加只需要一次原子操作；读取总数({@link #sum()})需要遍历所有单元，适合"写多读少"的统计场景。
+ * <p>
+ * <font color="red">#ThreadSafe# (线程安全)</font>
+ *
+ * @author huagang.li 2015年2月13日 上午10:12:25
+ */
+public final class StripedCounter {
+
+    /** 每个单元占用的long数量(64字节的缓存行)，避免伪共享 */
+    private static final int     PADDING = 8;
+
+    /** 计数单元数组 (第一个缓存行不使用，避免与数组头部共享缓存行) */
+    private final AtomicLongArray cells;
+
+    /** 单元数量的掩码 */
+    private final int            mask;
+
+    /**
+     * 创建一个分段计数器，单元数量为不小于CPU核数的2的幂。
+     */
+    public StripedCounter(){
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 创建一个分段计数器。
+     *
+     * @param stripes 单元数量(会向上取整为2的幂)
+     */
+    public StripedCounter(int stripes){
+        AssertUtils.isTrue(stripes > 0 && stripes <= (1 << 16), "'stripes' must be between 1 and 65536 : "
+                                                                + stripes);
+
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray((size + 1) * PADDING);
+    }
+
+    /**
+     * 计数加1。
+     */
+    public void increment() {
+        cells.getAndIncrement(index());
+    }
+
+    /**
+     * 计数加上{@code x}。
+     */
+    public void add(long x) {
+        cells.getAndAdd(index(), x);
+    }
+
+    /**
+     * 返回当前总数。(并发累加时，返回的不是一个原子快照)
+     */
+    public long sum() {
+        long sum = 0L;
+        for (int i = 1; i <= mask + 1; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * 重置为0。(并发累加时，可能会丢失部分计数)
+     */
+    public void reset() {
+        for (int i = 1; i <= mask + 1; i++) {
+            cells.set(i * PADDING, 0L);
+        }
+    }
+
+    /**
+     * 按当前线程选择计数单元。
+     */
+    private int index() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32));
+        h ^= (h >>> 16);
+        h *= 0x85EBCA6B;
+        h ^= (h >>> 13);
+        return ((h & mask) + 1) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+}
@@ -17,17 +17,21 @@
 package cache.service;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -209,6 +213,143 @@ public class RedisServiceTest {
         assertEquals(value, null);
     }
 
+    @Test(description = "验证 多元素写命令(LPUSH、ZADD)的自动分块")
+    public void chunkedWrite() {
+        String listKey = "chunk:list";
+        String zsetKey = "chunk:zset";
+
+        // 清空缓存数据
+        redisService.del(listKey);
+        redisService.del(zsetKey);
+
+        JedisServiceImpl jedisServiceImpl = (JedisServiceImpl) redisService;
+        jedisServiceImpl.setWriteChunkSize(3); // 小块，保证拆分为多个命令
+        jedisServiceImpl.setWriteChunkBytes(8);
+        try {
+            int size = 10;
+            String[] values = new String[size];
+            Map<String, Double> scoreMembers = new HashMap<String, Double>();
+            for (int i = 0; i < size; i++) {
+                values[i] = Integer.toString(i);
+                scoreMembers.put("m" + i, (double) i);
+            }
+
+            // 返回值及列表顺序与单个命令相同
+            assertEquals(redisService.lpush(listKey, values), size);
+            assertEquals(redisService.lrange(listKey, 0, -1).toString(), "[9, 8, 7, 6, 5, 4, 3, 2, 1, 0]");
+            assertEquals(redisService.lpush(listKey, "a", "b", "c", "d"), size + 4);
+
+            assertEquals(redisService.zadd(zsetKey, scoreMembers), size);
+            scoreMembers.put("m" + size, (double) size);
+            assertEquals(redisService.zadd(zsetKey, scoreMembers), 1);
+            assertEquals(redisService.zcard(zsetKey), size + 1);
+        } finally {
+            jedisServiceImpl.setWriteChunkSize(JedisServiceImpl.DEFAULT_WRITE_CHUNK_SIZE);
+            jedisServiceImpl.setWriteChunkBytes(JedisServiceImpl.DEFAULT_WRITE_CHUNK_BYTES);
+            redisService.del(listKey);
+            redisService.del(zsetKey);
+        }
+    }
+
+    @Test(description = "验证 List 和 Sorted Set 的流式范围检索")
+    public void streamRange() {
+        String listKey = "stream:list";
+        String zsetKey = "stream:zset";
+
+        // 清空缓存数据
+        redisService.del(listKey);
+        redisService.del(zsetKey);
+
+        JedisServiceImpl jedisServiceImpl = (JedisServiceImpl) redisService;
+        jedisServiceImpl.setStreamChunkSize(3); // 小块，保证跨越多个块
+        try {
+            int size = 10;
+            for (int i = 0; i < size; i++) {
+                redisService.lpush(listKey, Integer.toString(i));
+                redisService.zadd(zsetKey, i, Integer.toString(i));
+            }
+
+            // 读取全部元素
+            final List<String> elements = new ArrayList<String>(size);
+            ElementVisitor collector = new ElementVisitor() {
+
+                @Override
+                public boolean visit(String element) {
+                    elements.add(element);
+                    return true;
+                }
+            };
+            assertEquals(redisService.lrange(listKey, 0, -1, collector), size);
+            assertEquals(elements, redisService.lrange(listKey, 0, -1));
+            elements.clear();
+            assertEquals(redisService.zrange(zsetKey, -4, -1, collector), 4);
+            assertEquals(elements.toString(), "[6, 7, 8, 9]");
+            elements.clear();
+            assertEquals(redisService.zrangeByScore(zsetKey, 2, 8, collector), 7);
+            assertEquals(elements.toString(), "[2, 3, 4, 5, 6, 7, 8]");
+
+            // 提前终止
+            final int limit = 5;
+            ElementVisitor limiter = new ElementVisitor() {
+
+                private int visited = 0;
+
+                @Override
+                public boolean visit(String element) {
+                    return ++visited < limit;
+                }
+            };
+            assertEquals(redisService.lrange(listKey, 0, -1, limiter), limit);
+
+            // key 不存在
+            assertEquals(redisService.lrange("non_exists_key", 0, -1, collector), 0);
+        } finally {
+            jedisServiceImpl.setStreamChunkSize(JedisServiceImpl.DEFAULT_STREAM_CHUNK_SIZE);
+            redisService.del(listKey);
+            redisService.del(zsetKey);
+        }
+    }
+
+    @Test(description = "验证 有序集合(Sorted Set) 的游标分页")
+    public void scorePage() {
+        String key = "page:zset";
+
+        // 清空缓存数据
+        redisService.del(key);
+        try {
+            // 分数有重复，验证同分成员不会重复或遗漏
+            for (int i = 0; i < 10; i++) {
+                redisService.zadd(key, i / 3, "m" + i);
+            }
+
+            List<String> members = new ArrayList<String>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                ScorePage page = redisService.zrevrangeByScorePage(key, Double.POSITIVE_INFINITY,
+                                                                   Double.NEGATIVE_INFINITY, 2, cursor);
+                members.addAll(page.getMembers());
+                cursor = page.getCursor();
+                pages++;
+            } while (cursor != null);
+            assertEquals(pages, 5);
+            assertEquals(members, new ArrayList<String>(redisService.zrevrangeByScore(key, Double.POSITIVE_INFINITY,
+                                                                                      Double.NEGATIVE_INFINITY)));
+
+            // 两页之间插入新成员，已返回过的成员不会重复出现
+            ScorePage first = redisService.zrangeByScorePage(key, 0, 2, 4, null);
+            assertEquals(first.getMembers().toString(), "[m0, m1, m2, m3]");
+            redisService.zadd(key, 0, "m00");
+            ScorePage second = redisService.zrangeByScorePage(key, 0, 2, 4, first.getCursor());
+            assertEquals(second.getMembers().toString(), "[m4, m5, m6, m7]");
+            ScorePage third = redisService.zrangeByScorePage(key, 0, 2, 4, second.getCursor());
+            assertEquals(third.getMembers().toString(), "[m8]");
+            assertFalse(third.hasMore());
+        } finally {
+            redisService.del(key);
+        }
+    }
+
     @Test(description = "验证 有序集合(Sorted Set) 的 ZADD、ZRANGEBYSCORE、ZREVRANGEBYSCORE、ZREMRANGEBYSCORE、ZCARD 命令", dependsOnMethods = "zadd")
     public void sortedSet() {
         String zsetKey = "zset";
@@ -275,6 +416,36 @@ public class RedisServiceTest {
         redisService.zrevrangeByScore(zsetKey, Double.MIN_VALUE, Double.MAX_VALUE);
     }
 
+    @Test(description = "验证 有序集合(Sorted Set) 的数值(long)成员接口")
+    public void sortedSetAsLong() {
+        String zsetKey = "zset:long";
+
+        // 清空缓存数据
+        redisService.del(zsetKey);
+
+        assertEquals(redisService.zadd(zsetKey, 3.0, 1003L), 1);
+        assertEquals(redisService.zadd(zsetKey, 1.0, 1001L), 1);
+        assertEquals(redisService.zadd(zsetKey, 2.0, 1002L), 1);
+        assertEquals(redisService.zadd(zsetKey, 2.0, 1002L), 0); // 重复元素
+
+        assertEquals(Arrays.toString(redisService.zrangeAsLong(zsetKey, 0, -1)), "[1001, 1002, 1003]");
+        assertEquals(Arrays.toString(redisService.zrevrangeAsLong(zsetKey, 0, 1)), "[1003, 1002]");
+        assertEquals(Arrays.toString(redisService.zrangeByScoreAsLong(zsetKey, 2.0, 3.0, 0, 10)), "[1002, 1003]");
+        assertEquals(Arrays.toString(redisService.zrevrangeByScoreAsLong(zsetKey, 3.0, 1.0, 1, 2)), "[1002, 1001]");
+
+        LongScoredMembers scoredMembers = redisService.zrevrangeWithScoresAsLong(zsetKey, 0, -1);
+        assertEquals(scoredMembers.size(), 3);
+        assertEquals(scoredMembers.getMember(0), 1003L);
+        assertEquals(scoredMembers.getScore(0), 3.0);
+        assertEquals(Arrays.toString(redisService.zrangeWithScoresAsLong(zsetKey, 0, 0).getMembers()), "[1001]");
+
+        // 成员不是long类型时，返回空数组
+        redisService.zadd(zsetKey, 4.0, "not-a-long");
+        assertEquals(redisService.zrangeAsLong(zsetKey, 0, -1).length, 0);
+
+        redisService.del(zsetKey);
+    }
+
     @Test(description = "验证'EXPIRE'命令结合'zadd'的效果")
     public void zsetExpire() {
         String key = "zsetExpire";
@@ -414,6 +585,55 @@ public class RedisServiceTest {
         assertEquals(elements.toArray(new String[1])[0], "200");
     }
 
+    @Test(description = "验证'批量操作(RedisBatch)按分片节点并行执行管道'的功能")
+    public void batch() throws Exception {
+        String stringKey = "batch:str";
+        String listKey = "batch:list";
+        String zsetKey = "batch:zset";
+
+        // 清空缓存数据
+        RedisBatch batch = redisService.batch();
+        batch.del(stringKey);
+        batch.del(listKey);
+        batch.del(zsetKey);
+        batch.execute();
+
+        batch = redisService.batch();
+        Future<String> setRet = batch.set(stringKey, "bar");
+        Future<String> getRet = batch.get(stringKey);
+        Future<Integer> lpushRet = batch.lpush(listKey, "foo", "bar");
+        Future<List<String>> lrangeRet = batch.lrange(listKey, 0, -1);
+        Future<Integer> zaddRet = batch.zadd(zsetKey, 1.0, "1");
+        batch.zadd(zsetKey, 2.0, "2");
+        Future<Set<String>> zrevrangeRet = batch.zrevrange(zsetKey, 0, -1);
+        Future<Integer> zcardRet = batch.zcard(zsetKey);
+        Future<String> setexRet = batch.setex("batch:invalid", 0, "0"); // seconds参数不合法，不会发送命令
+        assertEquals(batch.size(), 9);
+        assertFalse(getRet.isDone());
+        batch.execute();
+
+        assertTrue(getRet.isDone());
+        assertEquals(setRet.get(), RET_OK);
+        assertEquals(getRet.get(), "bar");
+        assertEquals(lpushRet.get().intValue(), 2);
+        assertEquals(lrangeRet.get().toString(), "[bar, foo]");
+        assertEquals(zaddRet.get().intValue(), 1);
+        assertEquals(zrevrangeRet.get().toString(), "[2, 1]");
+        assertEquals(zcardRet.get().intValue(), 2);
+        assertEquals(setexRet.get(), null);
+
+        redisService.del(stringKey);
+        redisService.del(listKey);
+        redisService.del(zsetKey);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void batchExecuteTwice() {
+        RedisBatch batch = redisService.batch();
+        batch.execute();
+        batch.execute();
+    }
+
     private static final Logger   logger          = LoggerFactory.getLogger(RedisServiceTest.class);
 
     /** 异步任务执行器 */
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link ScoreCursor}.
+ * 
+ * @author huagang.li 2015年2月11日 上午11:20:36
+ */
+public class ScoreCursorTest {
+
+    @Test(dataProvider = "token")
+    public void token(double score, String member, int tieCount) {
+        String token = new ScoreCursor(score, member, tieCount).toToken();
+        assertTrue(token.matches("[0-9a-z.]+"), token);
+
+        ScoreCursor cursor = ScoreCursor.parse(token);
+        assertEquals(Double.doubleToLongBits(cursor.getScore()), Double.doubleToLongBits(score));
+        assertEquals(cursor.getMember(), member);
+        assertEquals(cursor.getTieCount(), tieCount);
+    }
+
+    @DataProvider(name = "token")
+    protected static final Object[][] tokenTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { 0.0D, "1", 0 },//
+                { 1423456789000D, "feed:1000", 1 },// 时间戳
+                { -1.5D, "a.b.c", 100 },// 成员包含分隔符
+                { 0.1D, "", 0 },//
+                { Double.POSITIVE_INFINITY, "中文", 3 },//
+                { Double.NEGATIVE_INFINITY, "😀", 0 },//
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseExp", expectedExceptions = IllegalArgumentException.class)
+    public void parseExp(String token) {
+        ScoreCursor.parse(token);
+    }
+
+    @DataProvider(name = "parseExp")
+    protected static final Object[][] parseExpTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { null },//
+                { "" },//
+                { "abc" },//
+                { ".0.31" },//
+                { "0..31" },//
+                { "0.0.3" },// 成员的十六进制位数为奇数
+                { "0.0.zz" },//
+                { "10000000000000000.0.31" },// 分数超过64位
+        };
+        return testData;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import redis.client.monitor.RedisMetrics;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+import cache.service.RedisBatch;
+
+/**
+ * Tests for {@link ClusterRedisBatch}.
+ * <p>
+ * 集群节点不可达，不需要Redis服务器，所有命令都返回默认值。
+ * 
+ * @author huagang.li 2015年2月26日 下午5:02:41
+ */
+public class ClusterRedisBatchTest {
+
+    private JedisSlotBasedConnectionHandler connectionHandler;
+
+    private RedisMetrics                    metrics;
+
+    private ExecutorService                 executorService;
+
+    @BeforeClass
+    public void init() {
+        GenericObjectPoolConfig poolConfig = new GenericObjectPoolConfig();
+        poolConfig.setMaxWaitMillis(100L);
+        connectionHandler = new JedisSlotBasedConnectionHandler(Collections.singleton(new HostAndPort("127.0.0.1", 1)),
+                                                                poolConfig);
+        metrics = new RedisMetrics();
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterClass
+    public void destroy() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        RedisBatch batch = new ClusterRedisBatch(connectionHandler, 2, metrics, executorService, false);
+        Future<String> get = batch.get("user:1000:name");
+        Future<Long> ttl = batch.ttl("user:1000:name");
+        assertEquals(batch.size(), 2);
+        assertFalse(get.isDone());
+
+        batch.execute();
+        assertTrue(get.isDone());
+        assertNull(get.get());
+        assertEquals(ttl.get().longValue(), -2L);
+    }
+
+    @Test
+    public void unreachableNode() throws Exception {
+        RedisBatch batch = new ClusterRedisBatch(connectionHandler, 2, metrics, executorService, true);
+        Future<String> get = batch.get("user:1000:name");
+        Future<Integer> del = batch.del("user:1000:name");
+        Future<List<String>> lrange = batch.lrange("user:1000:feed", 0, 19);
+
+        // 连接失败的命令重试后仍然失败，返回默认值
+        batch.execute();
+        assertNull(get.get());
+        assertEquals(del.get().intValue(), 0);
+        assertTrue(lrange.get().isEmpty());
+    }
+
+    @Test
+    public void idempotent() {
+        PipelinedRedisBatch batch = new ClusterRedisBatch(connectionHandler, 2, metrics, executorService, false);
+        // 读命令和幂等的写命令可以在连接失败后重试
+        assertTrue(((PipelinedRedisBatch.BatchCommand<?>) batch.get("user:1000:name")).isIdempotent());
+        assertTrue(((PipelinedRedisBatch.BatchCommand<?>) batch.set("user:1000:name", "Tom")).isIdempotent());
+        assertTrue(((PipelinedRedisBatch.BatchCommand<?>) batch.zadd("user:1000:fans", 1.0D, "1001")).isIdempotent());
+        // 重复执行会重复插入或者多删除元素的写命令不能重试
+        assertFalse(((PipelinedRedisBatch.BatchCommand<?>) batch.lpush("user:1000:feed", "1")).isIdempotent());
+        assertFalse(((PipelinedRedisBatch.BatchCommand<?>) batch.rpop("user:1000:feed")).isIdempotent());
+        assertFalse(((PipelinedRedisBatch.BatchCommand<?>) batch.ltrim("user:1000:feed", 0, 9)).isIdempotent());
+    }
+
+    @Test
+    public void rejectWrite() throws Exception {
+        RedisMetrics rejectMetrics = new RedisMetrics();
+        rejectMetrics.getBigKeyDetector().setMaxWriteBytes(4L);
+        RedisBatch batch = new ClusterRedisBatch(connectionHandler, 2, rejectMetrics, executorService, true);
+        // 写入的字节数超过最大值的写命令不会排队
+        Future<String> set = batch.set("user:1000:name", "Jerry");
+        Future<Integer> lpush = batch.lpush("user:1000:feed", "1001", "1002");
+        assertEquals(batch.size(), 0);
+        assertEquals(rejectMetrics.getBigKeyDetector().getRejectedWrites(), 2L);
+
+        batch.execute();
+        assertNull(set.get());
+        assertEquals(lpush.get().intValue(), 0);
+    }
+
+    @Test
+    public void writeChunk() throws Exception {
+        PipelinedRedisBatch batch = new PipelinedRedisBatch(metrics.getBigKeyDetector(), 2, 1024, true) {
+
+            @Override
+            void executePipelined() {
+            }
+        };
+        // 超大的多元素写命令拆分为多块 (每块最多2个元素)
+        Future<Integer> lpush = batch.lpush("user:1000:feed", "1001", "1002", "1003");
+        Map<String, Double> scoreMembers = new HashMap<String, Double>();
+        scoreMembers.put("1001", 1.0D);
+        scoreMembers.put("1002", 2.0D);
+        scoreMembers.put("1003", 3.0D);
+        scoreMembers.put("1004", 4.0D);
+        scoreMembers.put("1005", 5.0D);
+        Future<Integer> zadd = batch.zadd("user:1000:fans", scoreMembers);
+        assertEquals(batch.size(), 5);
+
+        batch.execute();
+        assertTrue(lpush.isDone());
+        assertEquals(lpush.get().intValue(), 0);
+        assertEquals(zadd.get().intValue(), 0);
+    }
+
+    @Test(expectedExceptions = { IllegalStateException.class })
+    public void executeTwice() {
+        RedisBatch batch = new ClusterRedisBatch(connectionHandler, 2, metrics, executorService, false);
+        batch.execute();
+        batch.execute();
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void emptyKey() {
+        new ClusterRedisBatch(connectionHandler, 2, metrics, executorService, false).del("");
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cache.service.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import cache.service.RedisInterceptor;
+import cache.service.RedisInvocation;
+import cache.service.RedisService;
+
+/**
+ * Tests for {@link InterceptingRedisService}.
+ * <p>
+ * 目标服务处于关闭状态，不需要Redis服务器，所有命令都返回默认值。
+ * 
+ * @author huagang.li 2015年2月20日 上午11:02:40
+ */
+public class InterceptingRedisServiceTest {
+
+    private JedisServiceImpl target;
+
+    private List<String>     trace;
+
+    @BeforeMethod
+    public void init() {
+        target = new JedisServiceImpl();
+        target.setEnabled(false);
+        trace = new ArrayList<String>();
+    }
+
+    @Test
+    public void noInterceptor() {
+        assertSame(InterceptingRedisService.wrap(target, null), target);
+        assertSame(InterceptingRedisService.wrap(target, Collections.<RedisInterceptor> emptyList()), target);
+    }
+
+    @Test
+    public void chain() {
+        RedisService redisService = InterceptingRedisService.wrap(target,
+                                                                  Arrays.asList(new TraceInterceptor("first"),
+                                                                                new TraceInterceptor("second")));
+
+        assertNull(redisService.get("key"));
+        assertEquals(redisService.zrangeByScore("zset", 1.0, 2.0, 0, 10).size(), 0);
+        assertEquals(trace, Arrays.asList("first:get:key", "second:get:key", "first:zrangeByScore:zset",
+                                          "second:zrangeByScore:zset"));
+
+        // 不是命令的方法不经过拦截器链
+        redisService.setEnabled(false);
+        assertFalse(redisService.getEnabled());
+        assertEquals(trace.size(), 4);
+    }
+
+    @Test
+    public void rewriteAndShortCircuit() {
+        RedisInterceptor prefix = new RedisInterceptor() {
+
+            @Override
+            public Object intercept(RedisInvocation invocation) {
+                invocation.setKey("app1:" + invocation.getKey());
+                return invocation.proceed();
+            }
+        };
+        RedisInterceptor cache = new RedisInterceptor() {
+
+            @Override
+            public Object intercept(RedisInvocation invocation) {
+                if ("get".equals(invocation.getCommand())) {
+                    return "cached:" + invocation.getKey(); // 不执行命令
+                }
+                return invocation.proceed();
+            }
+        };
+        RedisService redisService = InterceptingRedisService.wrap(target, Arrays.asList(prefix, cache));
+
+        assertEquals(redisService.get("key"), "cached:app1:key");
+        assertEquals(redisService.ttl("key"), -2L);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void nullForPrimitive() {
+        RedisInterceptor broken = new RedisInterceptor() {
+
+            @Override
+            public Object intercept(RedisInvocation invocation) {
+                return null;
+            }
+        };
+        InterceptingRedisService.wrap(target, Arrays.asList(broken)).zcard("zset");
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class, expectedExceptionsMessageRegExp = "del")
+    public void exception() {
+        RedisInterceptor fault = new RedisInterceptor() {
+
+            @Override
+            public Object intercept(RedisInvocation invocation) {
+                throw new UnsupportedOperationException(invocation.getCommand());
+            }
+        };
+        InterceptingRedisService.wrap(target, Arrays.asList(fault)).del("key");
+    }
+
+    private class TraceInterceptor implements RedisInterceptor {
+
+        private final String name;
+
+        TraceInterceptor(String name){
+            this.name = name;
+        }
+
+        @Override
+        public Object intercept(RedisInvocation invocation) {
+            trace.add(name + ":" + invocation.getCommand() + ":" + invocation.getKey());
+            return invocation.proceed();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package cache.service.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import cache.service.RedisBatch;
+
+/**
+ * Tests for {@link SequentialRedisBatch}.
+ * <p>
+ * 目标服务处于关闭状态，不需要Redis服务器，所有命令都返回默认值。
+ * 
+ * @author huagang.li 2015年2月26日 上午11:20:05
+ */
+public class SequentialRedisBatchTest {
+
+    private JedisServiceImpl target;
+
+    @BeforeMethod
+    public void init() {
+        target = new JedisServiceImpl();
+        target.setEnabled(false);
+    }
+
+    @Test
+    public void execute() throws Exception {
+        RedisBatch batch = new SequentialRedisBatch(target);
+        Future<String> get = batch.get("user:1000:name");
+        Future<Long> ttl = batch.ttl("user:1000:name");
+        Future<Set<String>> zrange = batch.zrevrange("user:1000:feed", 0, 19);
+        assertEquals(batch.size(), 3);
+        assertFalse(get.isDone());
+
+        batch.execute();
+        assertTrue(get.isDone());
+        assertNull(get.get());
+        assertEquals(ttl.get().longValue(), -2L);
+        assertTrue(zrange.get().isEmpty());
+    }
+
+    @Test(expectedExceptions = { IllegalStateException.class })
+    public void executeTwice() {
+        RedisBatch batch = new SequentialRedisBatch(target);
+        batch.execute();
+        batch.execute();
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void emptyKey() {
+        new SequentialRedisBatch(target).del("");
+    }
+
+}
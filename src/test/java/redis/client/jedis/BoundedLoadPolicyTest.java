@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.monitor.RedisCommand;
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link BoundedLoadPolicy}.
+ * 
+ * @author huagang.li 2015年2月28日 上午11:20:36
+ */
+public class BoundedLoadPolicyTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private BoundedLoadPolicy    policy;
+
+    private List<JedisShardInfo> shards;
+
+    @BeforeMethod
+    public void init() {
+        policy = new BoundedLoadPolicy();
+        policy.setEnabled(true);
+        policy.setWindowMillis(60000L); // 只在测试中手动结束窗口
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void spillableCommands() {
+        assertTrue(BoundedLoadPolicy.isSpillable(RedisCommand.GET));
+        assertTrue(BoundedLoadPolicy.isSpillable(RedisCommand.SETEX));
+        assertFalse(BoundedLoadPolicy.isSpillable(RedisCommand.SET));
+        assertFalse(BoundedLoadPolicy.isSpillable(RedisCommand.ZADD));
+    }
+
+    @Test
+    public void noSpillWhenBalanced() {
+        this.window(100, 100, 100);
+        for (JedisShardInfo shard : shards) {
+            assertFalse(policy.isSpilling(shard));
+        }
+    }
+
+    @Test
+    public void hotShardSpills() {
+        this.window(200, 100, 100);
+        // 平均负载 66.7，上限 83.3，需要溢出 1 - 83.3/100 = 1/6，向上取整为 3/16
+        assertEquals(policy.getSpillRatio(shards.get(0)), 3.0 / BoundedLoadPolicy.SPILL_LEVELS);
+        assertFalse(policy.isSpilling(shards.get(1)));
+
+        int spilledNum = 0;
+        for (int i = 0; i < 16000; i++) {
+            if (policy.shouldSpill(shards.get(0), SafeEncoder.encode("key:" + i))) {
+                spilledNum++;
+            }
+            assertFalse(policy.shouldSpill(shards.get(1), SafeEncoder.encode("key:" + i)));
+        }
+        assertEquals(spilledNum, 3000, 300);
+    }
+
+    @Test
+    public void minRequests() {
+        policy.setMinRequests(1000L);
+        this.window(200, 100, 100);
+        assertFalse(policy.isSpilling(shards.get(0)));
+    }
+
+    @Test
+    public void stableSpillDecisions() {
+        this.window(200, 100, 100);
+        boolean[] spilled = new boolean[1000];
+        for (int i = 0; i < spilled.length; i++) {
+            spilled[i] = policy.shouldSpill(shards.get(0), SafeEncoder.encode("key:" + i));
+        }
+
+        // 负载更高时，原来溢出的键仍然溢出
+        this.window(600, 100, 100);
+        assertTrue(policy.getSpillRatio(shards.get(0)) > 3.0 / BoundedLoadPolicy.SPILL_LEVELS);
+        for (int i = 0; i < spilled.length; i++) {
+            if (spilled[i]) {
+                assertTrue(policy.shouldSpill(shards.get(0), SafeEncoder.encode("key:" + i)));
+            }
+        }
+    }
+
+    @Test
+    public void decayOneLevelPerWindow() {
+        this.window(200, 100, 100);
+        int level = (int) (policy.getSpillRatio(shards.get(0)) * BoundedLoadPolicy.SPILL_LEVELS);
+        for (int i = 1; i <= level; i++) {
+            this.window(100, 100, 100);
+            assertEquals(policy.getSpillRatio(shards.get(0)), (double) (level - i) / BoundedLoadPolicy.SPILL_LEVELS);
+        }
+        assertFalse(policy.isSpilling(shards.get(0)));
+    }
+
+    @Test
+    public void spillShard() {
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        assertNull(jedis.getSpillShard("foo")); // 没有设置有界负载策略
+        jedis.setBoundedLoadPolicy(policy);
+
+        // 找到一个在Shard-01上、需要溢出的键
+        this.window(200, 100, 100);
+        String key = null;
+        for (int i = 0; key == null; i++) {
+            String candidate = "key:" + i;
+            if (jedis.locateShardInfo(candidate) == shards.get(0)
+                && policy.shouldSpill(shards.get(0), SafeEncoder.encode(candidate))) {
+                key = candidate;
+            }
+        }
+        Jedis spillShard = jedis.getSpillShard(key);
+        assertNotNull(spillShard);
+        assertTrue(spillShard.getClient().getPort() != 6379);
+        assertTrue(jedis.getLastShardInfo() != shards.get(0));
+        assertEquals(policy.getSpilledCount(), 1L);
+
+        // 不需要溢出的键
+        for (int i = 0;; i++) {
+            String candidate = "key:" + i;
+            if (jedis.locateShardInfo(candidate) != shards.get(0)) {
+                assertNull(jedis.getSpillShard(candidate));
+                break;
+            }
+        }
+    }
+
+    /**
+     * 模拟一个统计窗口内各分片节点的请求数，并结束窗口。
+     */
+    private void window(int... requests) {
+        for (int i = 0; i < requests.length; i++) {
+            for (int j = 0; j < requests[i]; j++) {
+                policy.onRequest(shards.get(i));
+            }
+        }
+        policy.updateSpillLevels();
+    }
+
+}
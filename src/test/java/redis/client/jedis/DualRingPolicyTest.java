@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * Tests for {@link DualRingPolicy}.
+ * 
+ * @author huagang.li 2015年3月1日 下午6:02:47
+ */
+public class DualRingPolicyTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private static final long    GRACE_MILLIS  = TimeUnit.HOURS.toMillis(1L);
+
+    private static final int     KEY_NUM       = 10000;
+
+    private DualRingPolicy       policy;
+
+    private List<JedisShardInfo> shards;
+
+    @BeforeMethod
+    public void init() {
+        policy = new DualRingPolicy();
+        policy.setEnabled(true);
+        policy.setGraceMillis(GRACE_MILLIS);
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void disabled() {
+        policy.setEnabled(false);
+        policy.onTopologyChanged(shards);
+        assertFalse(policy.isInGracePeriod());
+        assertTrue(policy.getPreviousShards().isEmpty());
+    }
+
+    @Test
+    public void gracePeriod() {
+        long changeTime = System.nanoTime();
+        policy.onTopologyChanged(shards, changeTime);
+        int version = policy.getVersion();
+        assertTrue(policy.isInGracePeriod(changeTime));
+        assertEquals(policy.getPreviousShards(), shards);
+
+        // 宽限期已过，不再保留原来的分片节点列表
+        assertFalse(policy.isInGracePeriod(changeTime + TimeUnit.MILLISECONDS.toNanos(GRACE_MILLIS)));
+        assertFalse(policy.isInGracePeriod());
+        assertTrue(policy.getPreviousShards().isEmpty());
+
+        policy.onTopologyChanged(shards, changeTime);
+        assertTrue(policy.getVersion() > version);
+    }
+
+    @Test
+    public void previousOwnerAfterShardAdded() {
+        // 分片节点恢复后，移回它的键在原来的分片节点上回读
+        JedisShardInfo recoveredShard = shards.get(1);
+        List<JedisShardInfo> previousShards = new ArrayList<JedisShardInfo>(shards);
+        previousShards.remove(recoveredShard);
+        CustomShardedJedis previousJedis = new CustomShardedJedis(previousShards, Hashing.MURMUR_HASH, null);
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        jedis.setDualRingPolicy(policy);
+        policy.onTopologyChanged(previousShards);
+
+        int movedNum = 0;
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            Jedis previousOwner = jedis.getPreviousOwnerShard(key);
+            if (jedis.locateShardInfo(key) == recoveredShard) {
+                movedNum++;
+                assertNotNull(previousOwner);
+                assertSame(previousOwner, jedis.getActiveShard(previousJedis.locateShardInfo(key)));
+            } else { // 其它分片节点上的键没有移动
+                assertNull(previousOwner);
+            }
+        }
+        assertTrue(movedNum > 0);
+    }
+
+    @Test
+    public void previousOwnerAfterShardRemoved() {
+        // 分片节点被摘除后，原来的分片节点已不可用，不再回读
+        JedisShardInfo brokenShard = shards.get(1);
+        List<JedisShardInfo> activeShards = new ArrayList<JedisShardInfo>(shards);
+        activeShards.remove(brokenShard);
+        CustomShardedJedis jedis = new CustomShardedJedis(activeShards, Hashing.MURMUR_HASH, null);
+        jedis.setDualRingPolicy(policy);
+        policy.onTopologyChanged(shards);
+
+        for (int i = 0; i < KEY_NUM; i++) {
+            assertNull(jedis.getPreviousOwnerShard("key:" + i));
+        }
+    }
+
+    @Test
+    public void noPreviousOwnerWithoutPolicy() {
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        assertNull(jedis.getPreviousOwnerShard("key:0"));
+        assertNull(CustomShardedJedis.getPreviousOwnerShard(jedis, "key:0"));
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link FlapDampeningPolicy}.
+ * 
+ * @author huagang.li 2015年3月1日 下午4:45:31
+ */
+public class FlapDampeningPolicyTest {
+
+    private static final long   HOLD_NANOS      = TimeUnit.SECONDS.toNanos(10L);
+
+    private static final long   HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(60L);
+
+    private FlapDampeningPolicy policy;
+
+    private JedisShardInfo      shard;
+
+    @BeforeMethod
+    public void init() {
+        policy = new FlapDampeningPolicy();
+        policy.setEnabled(true);
+        policy.setFailureThreshold(2);
+        policy.setRecoveryThreshold(3);
+        policy.setMinHoldMillis(TimeUnit.NANOSECONDS.toMillis(HOLD_NANOS));
+        policy.setHalfLifeMillis(TimeUnit.NANOSECONDS.toMillis(HALF_LIFE_NANOS));
+
+        shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+    }
+
+    @Test
+    public void shouldEject() {
+        long now = 0L;
+        assertFalse(policy.shouldEject(shard, false, now++));
+        assertFalse(policy.shouldEject(shard, true, now++)); // 检测成功，重新计数
+        assertFalse(policy.shouldEject(shard, false, now++));
+        assertTrue(policy.shouldEject(shard, false, now++));
+        assertFalse(policy.isSuppressed(shard));
+    }
+
+    @Test
+    public void shouldRestore() {
+        long ejectTime = 0L;
+        this.eject(ejectTime);
+
+        // 连续检测成功的次数不够
+        assertFalse(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+        assertFalse(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+        assertFalse(policy.shouldRestore(shard, false, ejectTime + HOLD_NANOS)); // 检测失败，重新计数
+        assertFalse(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+        assertFalse(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+        assertTrue(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+    }
+
+    @Test
+    public void minHold() {
+        long ejectTime = 0L;
+        this.eject(ejectTime);
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS - 1L));
+        }
+        assertTrue(policy.shouldRestore(shard, true, ejectTime + HOLD_NANOS));
+    }
+
+    @Test
+    public void suppress() {
+        // 两次抖动后没有被抑制，第三次抖动后惩罚值约为2685，超过了抑制阈值2000
+        long now = 0L;
+        for (int i = 0; i < 2; i++) {
+            this.eject(now);
+            now += HOLD_NANOS;
+            assertFalse(policy.isSuppressed(shard));
+            this.restore(now);
+            now++;
+        }
+        long ejectTime = now;
+        this.eject(ejectTime);
+        assertTrue(policy.isSuppressed(shard));
+
+        // 惩罚值衰减到复用阈值750以下(约1.84个半衰期)才能恢复
+        for (int i = 0; i < 3; i++) {
+            assertFalse(policy.shouldRestore(shard, true, ejectTime + HALF_LIFE_NANOS));
+        }
+        assertTrue(policy.shouldRestore(shard, true, ejectTime + 2 * HALF_LIFE_NANOS));
+        assertFalse(policy.isSuppressed(shard));
+    }
+
+    @Test
+    public void maxSuppress() {
+        policy.setMaxSuppressMillis(TimeUnit.NANOSECONDS.toMillis(2 * HALF_LIFE_NANOS));
+        // 惩罚值上限是 750 * 2^2 = 3000，最长抑制时间不超过两个半衰期
+        long now = 0L;
+        for (int i = 0; i < 20; i++) {
+            this.eject(now);
+            policy.shouldRestore(shard, true, now);
+            now++;
+        }
+        assertTrue(policy.isSuppressed(shard));
+        for (int i = 0; i < 3; i++) {
+            policy.shouldRestore(shard, true, now);
+        }
+        assertTrue(policy.shouldRestore(shard, true, now + 2 * HALF_LIFE_NANOS + HOLD_NANOS));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        assertFalse(new FlapDampeningPolicy().isEnabled());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void setFailureThreshold() {
+        policy.setFailureThreshold(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void setHalfLifeMillis() {
+        policy.setHalfLifeMillis(0L);
+    }
+
+    private void eject(long now) {
+        policy.shouldEject(shard, false, now);
+        assertTrue(policy.shouldEject(shard, false, now));
+    }
+
+    private void restore(long now) {
+        policy.shouldRestore(shard, true, now);
+        policy.shouldRestore(shard, true, now);
+        assertTrue(policy.shouldRestore(shard, true, now));
+    }
+
+}
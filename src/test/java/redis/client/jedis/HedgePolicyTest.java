@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.monitor.RedisCommand;
+import redis.client.monitor.RedisMetrics;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link HedgePolicy}.
+ * 
+ * @author huagang.li 2015年2月23日 下午2:10:08
+ */
+public class HedgePolicyTest {
+
+    private HedgePolicy    hedgePolicy;
+
+    private RedisMetrics   metrics;
+
+    private JedisShardInfo shard;
+
+    @BeforeMethod
+    public void init() {
+        hedgePolicy = new HedgePolicy();
+        hedgePolicy.setEnabled(true);
+        metrics = new RedisMetrics();
+        shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+    }
+
+    @Test
+    public void noHedgeWithoutEnoughSamples() {
+        hedgePolicy.setMinSamples(10);
+        this.recordLatency(RedisCommand.GET, 9, 2L);
+        assertEquals(hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard), HedgePolicy.NO_HEDGE);
+    }
+
+    @Test
+    public void delayFromPercentile() {
+        hedgePolicy.setMinSamples(10);
+        this.recordLatency(RedisCommand.GET, 100, 2L);
+
+        long delayNanos = hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard);
+        assertTrue(delayNanos >= TimeUnit.MILLISECONDS.toNanos(2L), "delay: " + delayNanos);
+        assertTrue(delayNanos < TimeUnit.MILLISECONDS.toNanos(100L), "delay: " + delayNanos);
+        // 其它命令没有统计数据
+        assertEquals(hedgePolicy.getDelayNanos(metrics, RedisCommand.LRANGE, shard), HedgePolicy.NO_HEDGE);
+    }
+
+    @Test
+    public void minDelay() {
+        hedgePolicy.setMinSamples(10);
+        hedgePolicy.setMinDelayMillis(500L);
+        this.recordLatency(RedisCommand.ZRANGE, 100, 0L);
+
+        assertEquals(hedgePolicy.getDelayNanos(metrics, RedisCommand.ZRANGE, shard),
+                     TimeUnit.MILLISECONDS.toNanos(500L));
+    }
+
+    @Test
+    public void hedgeable() {
+        assertTrue(HedgePolicy.isHedgeable(RedisCommand.ZRANGE));
+        assertTrue(HedgePolicy.isHedgeable(RedisCommand.ZRANGEBYSCORE_PAGE));
+        // 流式检索的访问者不能被两个节点的读取同时调用
+        assertFalse(HedgePolicy.isHedgeable(RedisCommand.LRANGE_STREAM));
+        assertFalse(HedgePolicy.isHedgeable(RedisCommand.ZRANGE_STREAM));
+        assertFalse(HedgePolicy.isHedgeable(RedisCommand.ZRANGEBYSCORE_STREAM));
+    }
+
+    @Test
+    public void delayFollowsRecentWindow() {
+        hedgePolicy.setMinSamples(10);
+        hedgePolicy.setWindowSeconds(10L);
+        long windowNanos = TimeUnit.SECONDS.toNanos(10L);
+        long slowNanos = TimeUnit.MILLISECONDS.toNanos(50L);
+        long now = System.nanoTime();
+        this.recordLatency(RedisCommand.GET, 100, 50L);
+        assertTrue(hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard, now) >= slowNanos);
+
+        // 第一个窗口结束，分片节点变快了
+        now += windowNanos;
+        assertTrue(hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard, now) >= slowNanos);
+        this.recordLatency(RedisCommand.GET, 100, 1L);
+
+        // 第二个窗口结束后，不再统计第一个窗口的慢命令
+        now += windowNanos;
+        long delayNanos = hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard, now);
+        assertTrue(delayNanos < TimeUnit.MILLISECONDS.toNanos(5L), "delay: " + delayNanos);
+
+        // 最近的窗口没有足够的采样数时不对冲
+        now += 2 * windowNanos;
+        assertEquals(hedgePolicy.getDelayNanos(metrics, RedisCommand.GET, shard, now), HedgePolicy.NO_HEDGE);
+    }
+
+    @Test
+    public void budget() {
+        hedgePolicy.setBudgetRatio(0.1D);
+        // 初始的突发预算
+        int burst = 0;
+        while (hedgePolicy.tryHedge()) {
+            burst++;
+        }
+        assertEquals(burst, 10);
+        assertFalse(hedgePolicy.tryHedge());
+
+        // 每10个读命令积累1个对冲请求的预算
+        for (int i = 0; i < 9; i++) {
+            hedgePolicy.onRead();
+        }
+        assertFalse(hedgePolicy.tryHedge());
+        hedgePolicy.onRead();
+        assertTrue(hedgePolicy.tryHedge());
+        assertFalse(hedgePolicy.tryHedge());
+
+        assertEquals(hedgePolicy.getHedgedCount(), 11L);
+        assertEquals(hedgePolicy.getThrottledCount(), 4L);
+    }
+
+    private void recordLatency(RedisCommand command, int times, long latencyMillis) {
+        for (int i = 0; i < times; i++) {
+            long startTime = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+            metrics.record(command, shard, startTime, null);
+        }
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.jedis.ReplicatedKeys.ReadMode;
+import redis.client.monitor.RedisCommand;
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+
+/**
+ * Tests for {@link ReplicatedKeys}.
+ * 
+ * @author huagang.li 2015年2月28日 下午2:10:45
+ */
+public class ReplicatedKeysTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03, 127.0.0.1:6382:Shard-04";
+
+    private ReplicatedKeys       replicatedKeys;
+
+    private List<JedisShardInfo> shards;
+
+    @BeforeMethod
+    public void init() {
+        replicatedKeys = new ReplicatedKeys();
+        replicatedKeys.setKeys("config:global, trending:*");
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void keyPatterns() {
+        assertTrue(replicatedKeys.isEnabled());
+        assertTrue(replicatedKeys.isReplicated("config:global"));
+        assertTrue(replicatedKeys.isReplicated("trending:"));
+        assertTrue(replicatedKeys.isReplicated("trending:2015"));
+        assertFalse(replicatedKeys.isReplicated("config:global:1"));
+        assertFalse(replicatedKeys.isReplicated("config"));
+        assertFalse(replicatedKeys.isReplicated("user:1"));
+
+        ReplicatedKeys none = new ReplicatedKeys();
+        assertFalse(none.isEnabled());
+        assertFalse(none.isReplicated("config:global"));
+        none.setKeys(" ");
+        assertFalse(none.isEnabled());
+    }
+
+    @Test
+    public void writeCommands() {
+        assertTrue(ReplicatedKeys.isWrite(RedisCommand.SET));
+        assertTrue(ReplicatedKeys.isWrite(RedisCommand.DEL));
+        assertTrue(ReplicatedKeys.isWrite(RedisCommand.ZADD_AND_REM));
+        assertFalse(ReplicatedKeys.isWrite(RedisCommand.GET));
+        assertFalse(ReplicatedKeys.isWrite(RedisCommand.ZRANGE));
+        assertFalse(ReplicatedKeys.isWrite(RedisCommand.TTL));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidReplicaNum() {
+        replicatedKeys.setReplicaNum(1);
+    }
+
+    @Test
+    public void locateReplicaShardInfos() {
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        for (int i = 0; i < 1000; i++) {
+            String key = "trending:" + i;
+            List<JedisShardInfo> replicaShards = jedis.locateReplicaShardInfos(key, 3);
+            assertEquals(replicaShards.size(), 3);
+            assertSame(replicaShards.get(0), jedis.locateShardInfo(key));
+            Map<JedisShardInfo, Boolean> distinctShards = new IdentityHashMap<JedisShardInfo, Boolean>();
+            for (JedisShardInfo shard : replicaShards) {
+                distinctShards.put(shard, Boolean.TRUE);
+            }
+            assertEquals(distinctShards.size(), 3);
+            // 同一个键的副本分片节点总是相同的
+            assertEquals(jedis.locateReplicaShardInfos(key, 3), replicaShards);
+        }
+        // 副本数量不超过分片节点数量
+        assertEquals(jedis.locateReplicaShardInfos("trending:1", 10).size(), shards.size());
+    }
+
+    @Test
+    public void randomRead() {
+        List<JedisShardInfo> replicaShards = shards.subList(0, 3);
+        Map<JedisShardInfo, Integer> counts = this.countReads(replicaShards, 30000);
+        for (JedisShardInfo shard : replicaShards) {
+            assertEquals(counts.get(shard).intValue(), 10000, 1000);
+        }
+        assertEquals(replicatedKeys.getReplicaReadCount(), 30000 - counts.get(replicaShards.get(0)).intValue());
+    }
+
+    @Test
+    public void leastOutstandingRead() {
+        replicatedKeys.setReadMode(ReadMode.LEAST_OUTSTANDING);
+        List<JedisShardInfo> replicaShards = shards.subList(0, 3);
+        // 第一个副本分片节点很慢，在途的读命令数很多
+        for (int i = 0; i < 10; i++) {
+            replicatedKeys.onReadStart(replicaShards.get(0));
+        }
+        Map<JedisShardInfo, Integer> counts = this.countReads(replicaShards, 30000);
+        // 只有两次随机选择都选中它时才会选择它，但两次选择不会相同
+        assertEquals(counts.get(replicaShards.get(0)).intValue(), 0);
+        assertEquals(counts.get(replicaShards.get(1)).intValue(), 15000, 1000);
+
+        for (int i = 0; i < 10; i++) {
+            replicatedKeys.onReadEnd(replicaShards.get(0));
+        }
+        counts = this.countReads(replicaShards, 30000);
+        assertEquals(counts.get(replicaShards.get(0)).intValue(), 10000, 1000);
+    }
+
+    private Map<JedisShardInfo, Integer> countReads(List<JedisShardInfo> replicaShards, int readNum) {
+        Map<JedisShardInfo, Integer> counts = new IdentityHashMap<JedisShardInfo, Integer>();
+        for (JedisShardInfo shard : replicaShards) {
+            counts.put(shard, 0);
+        }
+        for (int i = 0; i < readNum; i++) {
+            JedisShardInfo shard = replicatedKeys.chooseReadShard(replicaShards);
+            counts.put(shard, counts.get(shard) + 1);
+        }
+        return counts;
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.ShardedJedis;
+import redis.clients.util.Hashing;
+
+/**
+ * Tests for {@link RingResharder}.
+ * 
+ * @author huagang.li 2015年3月2日 上午11:05:27
+ */
+public class RingResharderTest {
+
+    private static final String  OLD_REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                     + "127.0.0.1:6381:Shard-03";
+
+    private static final String  NEW_REDIS_SERVERS = OLD_REDIS_SERVERS + ", 127.0.0.1:6382:Shard-04";
+
+    private static final int     KEY_NUM           = 10000;
+
+    private List<JedisShardInfo> oldShards;
+
+    private List<JedisShardInfo> newShards;
+
+    @BeforeMethod
+    public void init() {
+        oldShards = RedisConfigUtils.parseRedisServerList(OLD_REDIS_SERVERS, 100);
+        newShards = RedisConfigUtils.parseRedisServerList(NEW_REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void movedKeys() {
+        RingResharder resharder = new RingResharder(oldShards, newShards, Hashing.MURMUR_HASH, null);
+        int movedNum = 0;
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            if (resharder.isMoved(key)) {
+                movedNum++;
+                // 添加分片节点时，只有移到新分片节点上的键
+                assertEquals(resharder.getNewOwner(key).getName(), "Shard-04");
+            } else {
+                assertEquals(resharder.getNewOwner(key).getName(), resharder.getOldOwner(key).getName());
+            }
+        }
+        assertEquals(movedNum, KEY_NUM / 4, KEY_NUM / 20);
+        assertEquals(resharder.estimateMovedRatio(KEY_NUM), 0.25D, 0.05D);
+    }
+
+    @Test
+    public void noMovedKeys() {
+        RingResharder resharder = new RingResharder(oldShards, oldShards, Hashing.MURMUR_HASH, null);
+        assertEquals(resharder.estimateMovedRatio(KEY_NUM), 0.0D);
+    }
+
+    @Test
+    public void cursors() {
+        RingResharder resharder = new RingResharder(oldShards, newShards, Hashing.MURMUR_HASH, null);
+        assertTrue(resharder.getCursors().isEmpty());
+
+        Map<String, String> cursors = new LinkedHashMap<String, String>();
+        cursors.put("127.0.0.1:6379", null);
+        cursors.put("127.0.0.1:6380", "1024");
+        cursors.put("127.0.0.1:6381", "0");
+        resharder.setCursors(cursors);
+        assertEquals(resharder.getCursors(), cursors);
+    }
+
+    @Test
+    public void switchShards() throws Exception {
+        CustomShardedJedisFactory factory = new CustomShardedJedisFactory(oldShards, Hashing.MURMUR_HASH, null, 0, 1);
+        DualRingPolicy dualRingPolicy = new DualRingPolicy();
+        dualRingPolicy.setEnabled(true);
+        factory.setDualRingPolicy(dualRingPolicy);
+
+        PooledObject<ShardedJedis> oldObject = factory.makeObject();
+        assertTrue(factory.isCurrent(oldObject.getObject()));
+
+        factory.switchShards(newShards);
+        assertFalse(factory.isCurrent(oldObject.getObject()));
+        assertFalse(factory.validateObject(oldObject));
+        assertEquals(dualRingPolicy.getPreviousShards(), oldShards);
+
+        CustomShardedJedis newJedis = (CustomShardedJedis) factory.makeObject().getObject();
+        assertTrue(factory.isCurrent(newJedis));
+        RingResharder resharder = new RingResharder(oldShards, newShards, Hashing.MURMUR_HASH, null);
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            JedisShardInfo shardInfo = newJedis.locateShardInfo(key);
+            assertEquals(shardInfo.getName(), resharder.getNewOwner(key).getName());
+            if (!resharder.isMoved(key)) { // 没有变化的分片节点沿用原来的对象
+                assertSame(shardInfo, CustomShardedJedis.locateShardInfo(oldObject.getObject(), key));
+            }
+        }
+    }
+
+    @Test
+    public void markDirty() {
+        CustomShardedJedisPool pool = new CustomShardedJedisPool(new GenericObjectPoolConfig(), oldShards, 0, 1);
+        RingResharder resharder = new RingResharder(oldShards, newShards, Hashing.MURMUR_HASH, null);
+        try {
+            // 只记录需要移动的键，同一个键只记录一次(不会连接Redis服务器)
+            int movedKeyNum = 0;
+            for (int i = 0; i < 100; i++) {
+                String key = "key:" + i;
+                resharder.markDirty(key);
+                resharder.markDirty(key);
+                if (resharder.isMoved(key)) {
+                    movedKeyNum++;
+                }
+            }
+            assertEquals(resharder.getDirtyKeyNum(), movedKeyNum);
+
+            pool.setResharder(resharder);
+            assertSame(pool.getResharder(), resharder);
+            resharder.abort(pool);
+            assertNull(pool.getResharder());
+            assertEquals(resharder.getDirtyKeyNum(), 0);
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void switchShardsWithRouter() {
+        ShardRouter router = ShardingStrategy.JUMP_HASH.createRouter(oldShards, Hashing.MURMUR_HASH);
+        CustomShardedJedisFactory factory = new CustomShardedJedisFactory(oldShards, Hashing.MURMUR_HASH, null,
+                                                                          router, 0, 1);
+        factory.switchShards(newShards);
+    }
+
+}
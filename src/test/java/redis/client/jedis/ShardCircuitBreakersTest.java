@@ -0,0 +1,183 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.jedis.ShardCircuitBreakers.Breaker;
+import redis.client.jedis.ShardCircuitBreakers.State;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.util.Hashing;
+
+/**
+ * Tests for {@link ShardCircuitBreakers}.
+ * 
+ * @author huagang.li 2015年2月21日 上午11:30:24
+ */
+public class ShardCircuitBreakersTest {
+
+    private static final JedisConnectionException CONNECTION_FAILURE = new JedisConnectionException("refused");
+
+    private static final JedisConnectionException TIMEOUT            = new JedisConnectionException(
+                                                                                                    new SocketTimeoutException());
+
+    private ShardCircuitBreakers                  circuitBreakers;
+
+    private JedisShardInfo                        shard;
+
+    @BeforeMethod
+    public void init() {
+        circuitBreakers = new ShardCircuitBreakers();
+        circuitBreakers.setFailureThreshold(3);
+        circuitBreakers.setMinimumCalls(10);
+        circuitBreakers.setHalfOpenProbes(2);
+        shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+    }
+
+    @Test
+    public void consecutiveFailures() {
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        circuitBreakers.onComplete(shard, null); // 成功后重新计数
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        circuitBreakers.onComplete(shard, new JedisDataException("WRONGTYPE")); // 数据异常不算失败
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        assertEquals(circuitBreakers.getState(shard), State.CLOSED);
+        circuitBreakers.acquire(shard);
+
+        circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        assertEquals(circuitBreakers.getState(shard), State.OPEN);
+        assertEquals(circuitBreakers.getStates().get("Shard-01"), State.OPEN);
+    }
+
+    @Test(expectedExceptions = CircuitBreakerOpenException.class)
+    public void fastFailure() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        }
+        circuitBreakers.acquire(shard);
+    }
+
+    @Test
+    public void timeoutRate() {
+        circuitBreakers.setFailureThreshold(100);
+        for (int i = 0; i < 5; i++) {
+            circuitBreakers.onComplete(shard, null);
+            circuitBreakers.onComplete(shard, TIMEOUT);
+        }
+        assertEquals(circuitBreakers.getState(shard), State.OPEN);
+    }
+
+    @Test
+    public void halfOpen() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        }
+        Breaker breaker = circuitBreakers.getBreaker(shard);
+        long now = System.currentTimeMillis();
+        assertFalse(breaker.allowRequest(now));
+
+        // 熔断时间过后，只放行2个探测命令
+        now += ShardCircuitBreakers.DEFAULT_OPEN_MILLIS;
+        assertTrue(breaker.allowRequest(now));
+        assertTrue(breaker.allowRequest(now));
+        assertFalse(breaker.allowRequest(now));
+        assertEquals(breaker.getState(), State.HALF_OPEN);
+
+        // 探测失败，重新打开
+        breaker.onFailure(false, now);
+        assertEquals(breaker.getState(), State.OPEN);
+        assertFalse(breaker.allowRequest(now + 1L));
+
+        // 探测全部成功，关闭
+        now += ShardCircuitBreakers.DEFAULT_OPEN_MILLIS;
+        assertTrue(breaker.allowRequest(now));
+        breaker.onSuccess(now);
+        assertTrue(breaker.allowRequest(now));
+        assertEquals(breaker.getState(), State.HALF_OPEN);
+        breaker.onSuccess(now);
+        assertEquals(breaker.getState(), State.CLOSED);
+        assertTrue(breaker.allowRequest(now));
+    }
+
+    @Test
+    public void probePerBorrow() throws InterruptedException {
+        circuitBreakers.setOpenMillis(200L);
+        for (int i = 0; i < 3; i++) {
+            circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        }
+        TimeUnit.MILLISECONDS.sleep(250L);
+
+        // 一次借用多次路由到半开的节点，只占用一个探测许可
+        CustomShardedJedis jedis = this.borrow();
+        for (int i = 0; i < 3; i++) {
+            jedis.getShard("user:" + i);
+        }
+        CustomShardedJedis otherJedis = this.borrow();
+        otherJedis.getShard("user:0");
+        assertEquals(circuitBreakers.getState(shard), State.HALF_OPEN);
+        try {
+            this.borrow().getShard("user:0"); // 2个探测许可都已被占用
+            fail("Expected CircuitBreakerOpenException");
+        } catch (CircuitBreakerOpenException e) {
+            // expected
+        }
+
+        // 没有记录结果的探测许可在归还连接时归还
+        otherJedis.releaseProbes();
+        otherJedis = this.borrow();
+        otherJedis.getShard("user:0");
+
+        // 每次借用记录一次成功，探测全部成功后关闭
+        CustomShardedJedis.onComplete(jedis, circuitBreakers, shard, null);
+        jedis.releaseProbes();
+        assertEquals(circuitBreakers.getState(shard), State.HALF_OPEN);
+        CustomShardedJedis.onComplete(otherJedis, circuitBreakers, shard, null);
+        otherJedis.releaseProbes();
+        assertEquals(circuitBreakers.getState(shard), State.CLOSED);
+    }
+
+    private CustomShardedJedis borrow() {
+        CustomShardedJedis jedis = new CustomShardedJedis(Collections.singletonList(shard), Hashing.MURMUR_HASH, null);
+        jedis.setCircuitBreakers(circuitBreakers);
+        return jedis;
+    }
+
+    @Test
+    public void disabled() {
+        for (int i = 0; i < 3; i++) {
+            circuitBreakers.onComplete(shard, CONNECTION_FAILURE);
+        }
+        circuitBreakers.setEnabled(false);
+        circuitBreakers.acquire(shard);
+        assertEquals(circuitBreakers.getState(shard), State.CLOSED);
+    }
+
+}
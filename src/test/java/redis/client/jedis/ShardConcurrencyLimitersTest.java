@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.jedis.ShardConcurrencyLimiters.Limiter;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link ShardConcurrencyLimiters}.
+ * 
+ * @author huagang.li 2015年2月22日 上午11:40:16
+ */
+public class ShardConcurrencyLimitersTest {
+
+    private static final long        WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(ShardConcurrencyLimiters.DEFAULT_WINDOW_MILLIS);
+
+    private ShardConcurrencyLimiters limiters;
+
+    private JedisShardInfo           shard;
+
+    private long                     now;
+
+    @BeforeMethod
+    public void init() {
+        limiters = new ShardConcurrencyLimiters();
+        limiters.setEnabled(true);
+        limiters.setInitialLimit(10);
+        shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        now = System.nanoTime();
+    }
+
+    @Test
+    public void disabled() {
+        limiters.setEnabled(false);
+        assertNull(limiters.getLimiter(shard));
+    }
+
+    @Test
+    public void shed() {
+        Limiter limiter = limiters.getLimiter(shard);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+        }
+        assertEquals(limiter.getInFlight(), 10);
+        try {
+            limiter.acquire();
+            throw new AssertionError("Should be shed");
+        } catch (ConcurrencyLimitExceededException e) {
+            assertEquals(limiter.getInFlight(), 10);
+        }
+
+        limiter.release(1000L, false);
+        limiter.acquire();
+        assertEquals(limiters.getLimits().get("Shard-01").intValue(), 10);
+    }
+
+    @Test
+    public void adapt() {
+        Limiter limiter = limiters.getLimiter(shard);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(); // 保持满负载
+        }
+
+        // 延迟稳定，上限增长
+        for (int i = 0; i < 5; i++) {
+            this.window(limiter, 1000000L);
+        }
+        int grownLimit = limiter.getLimit();
+        assertTrue(grownLimit > 10, "limit: " + grownLimit);
+
+        // 排队导致延迟上升，上限收缩
+        for (int i = 0; i < 5; i++) {
+            this.window(limiter, 5000000L);
+        }
+        int shrunkLimit = limiter.getLimit();
+        assertTrue(shrunkLimit < grownLimit, "limit: " + shrunkLimit);
+
+        // 出现超时，上限直接收缩
+        now += WINDOW_NANOS;
+        limiter.sample(0L, true, now);
+        assertTrue(limiter.getLimit() < shrunkLimit, "limit after drop: " + limiter.getLimit());
+    }
+
+    /**
+     * 记录一个窗口的采样。
+     */
+    private void window(Limiter limiter, long rttNanos) {
+        now += WINDOW_NANOS;
+        for (int i = 0; i < 20; i++) {
+            limiter.sample(rttNanos, false, now);
+        }
+    }
+
+}
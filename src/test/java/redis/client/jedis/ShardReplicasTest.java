@@ -0,0 +1,117 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.jedis.ShardReplicas.ReadMode;
+import redis.client.jedis.ShardReplicas.Replica;
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link ShardReplicas}.
+ * 
+ * @author huagang.li 2015年2月24日 上午10:32:51
+ */
+public class ShardReplicasTest {
+
+    private static final String REDIS_SERVERS = "127.0.0.1:6379:Shard-01|127.0.0.1:6479|127.0.0.1:6579,"
+                                                + "127.0.0.1:6380:Shard-02";
+
+    private ShardReplicas       replicas;
+
+    private JedisShardInfo      shard1;
+
+    private JedisShardInfo      shard2;
+
+    @BeforeMethod
+    public void init() {
+        replicas = new ShardReplicas(new JedisPoolConfig(), RedisConfigUtils.parseReplicaServerMap(REDIS_SERVERS, 100));
+        List<JedisShardInfo> shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+        shard1 = shards.get(0);
+        shard2 = shards.get(1);
+    }
+
+    @AfterMethod
+    public void destroy() {
+        replicas.close();
+    }
+
+    @Test
+    public void replicas() {
+        assertFalse(replicas.isEmpty());
+        assertEquals(replicas.getReplicas(shard1).toString(),
+                     "[Shard-01/replica-1@127.0.0.1:6479, Shard-01/replica-2@127.0.0.1:6579]");
+        assertEquals(replicas.getReplica(shard1).getShardInfo().getName(), "Shard-01/replica-1");
+        assertTrue(replicas.getReplicas(shard2).isEmpty());
+        assertNull(replicas.getReplica(shard2));
+        assertTrue(new ShardReplicas().isEmpty());
+    }
+
+    @Test
+    public void masterOnly() {
+        assertEquals(replicas.getReadMode(), ReadMode.MASTER);
+        assertNull(replicas.acquireReadNode(shard1));
+    }
+
+    @Test
+    public void roundRobin() {
+        replicas.setReadMode(ReadMode.ROUND_ROBIN);
+        assertNull(replicas.acquireReadNode(shard2)); // 没有副本节点
+
+        StringBuilder nodes = new StringBuilder();
+        for (int i = 0; i < 6; i++) {
+            Replica node = replicas.acquireReadNode(shard1);
+            nodes.append(node).append(' ');
+            node.release();
+        }
+        assertEquals(nodes.toString().trim(), "Shard-01 Shard-01/replica-1@127.0.0.1:6479 "
+                                              + "Shard-01/replica-2@127.0.0.1:6579 Shard-01 "
+                                              + "Shard-01/replica-1@127.0.0.1:6479 Shard-01/replica-2@127.0.0.1:6579");
+    }
+
+    @Test
+    public void leastOutstanding() {
+        replicas.setReadMode(ReadMode.LEAST_OUTSTANDING);
+
+        Replica first = replicas.acquireReadNode(shard1);
+        Replica second = replicas.acquireReadNode(shard1);
+        Replica third = replicas.acquireReadNode(shard1);
+        // 3个节点各有1个在途读命令
+        assertEquals(first.getOutstanding() + second.getOutstanding() + third.getOutstanding(), 3);
+        assertTrue(first != second && second != third && first != third);
+
+        // 释放一个节点后，它的在途读命令最少
+        second.release();
+        Replica next = replicas.acquireReadNode(shard1);
+        assertSame(next, second);
+        assertTrue(first.isMaster() || second.isMaster() || third.isMaster());
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link JumpHashRouter}, {@link RendezvousRouter} and {@link ShardingReport}.
+ * 
+ * @author huagang.li 2015年2月27日 下午5:36:20
+ */
+public class ShardRouterTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private static final int     KEY_NUM       = 30000;
+
+    private List<JedisShardInfo> shards;
+
+    @BeforeMethod
+    public void init() {
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void jumpConsistentHash() {
+        int movedNum = 0;
+        for (long key = 0; key < KEY_NUM; key++) {
+            long hash = RendezvousRouter.mix(key);
+            int bucket = JumpHashRouter.jumpConsistentHash(hash, 9);
+            assertTrue(bucket >= 0 && bucket < 9);
+            int newBucket = JumpHashRouter.jumpConsistentHash(hash, 10);
+            if (newBucket != bucket) {
+                assertEquals(newBucket, 9); // 只会移动到新增的桶
+                movedNum++;
+            }
+        }
+        assertEquals((double) movedNum / KEY_NUM, 0.1, 0.01);
+        assertEquals(JumpHashRouter.jumpConsistentHash(12345L, 1), 0);
+    }
+
+    @Test
+    public void jumpHashBalance() {
+        long[] keyCounts = countKeys(new JumpHashRouter(shards, Hashing.MURMUR_HASH), shards);
+        for (long keyCount : keyCounts) {
+            assertEquals(keyCount, KEY_NUM / 3, KEY_NUM / 3 * 0.05);
+        }
+    }
+
+    @Test
+    public void rendezvousBalance() {
+        long[] keyCounts = countKeys(new RendezvousRouter(shards, Hashing.MURMUR_HASH), shards);
+        for (long keyCount : keyCounts) {
+            assertEquals(keyCount, KEY_NUM / 3, KEY_NUM / 3 * 0.05);
+        }
+    }
+
+    @Test
+    public void weightedRouters() {
+        // 配置文件还不支持权重，这里直接创建带权重的分片节点(没有名称时以"host:port"标识)
+        List<JedisShardInfo> weightedShards = Arrays.asList(new JedisShardInfo("127.0.0.1", 6379, 100, 2),
+                                                            new JedisShardInfo("127.0.0.1", 6380, 100, 1));
+        for (ShardRouter router : Arrays.asList(new JumpHashRouter(weightedShards, Hashing.MURMUR_HASH),
+                                                new RendezvousRouter(weightedShards, Hashing.MURMUR_HASH))) {
+            long[] keyCounts = countKeys(router, weightedShards);
+            assertEquals((double) keyCounts[0] / KEY_NUM, 2.0 / 3, 0.02, router.toString());
+        }
+    }
+
+    @Test
+    public void rendezvousRemoveMiddleShard() {
+        // 删除任意一个分片节点，都只会迁移属于它的键
+        RendezvousRouter router = new RendezvousRouter(shards, Hashing.MURMUR_HASH);
+        List<JedisShardInfo> remainingShards = new ArrayList<JedisShardInfo>(shards);
+        JedisShardInfo removedShard = remainingShards.remove(1);
+        RendezvousRouter smaller = new RendezvousRouter(remainingShards, Hashing.MURMUR_HASH);
+        for (int i = 0; i < KEY_NUM; i++) {
+            byte[] key = SafeEncoder.encode("key:" + i);
+            JedisShardInfo shardInfo = router.getShardInfo(key);
+            if (shardInfo != removedShard) {
+                assertSame(smaller.getShardInfo(key), shardInfo);
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rendezvousDuplicateShard() {
+        new RendezvousRouter(Arrays.asList(shards.get(0), shards.get(0)), Hashing.MURMUR_HASH);
+    }
+
+    @Test
+    public void routeToInactiveShard() {
+        JumpHashRouter router = new JumpHashRouter(shards, Hashing.MURMUR_HASH);
+        JedisShardInfo inactiveShard = router.getShardInfo(SafeEncoder.encode("foo"));
+        List<JedisShardInfo> activeShards = new ArrayList<JedisShardInfo>(shards);
+        activeShards.remove(inactiveShard);
+
+        CustomShardedJedis jedis = new CustomShardedJedis(activeShards, Hashing.MURMUR_HASH, null, router);
+        assertNotSame(jedis.getShardInfo("foo"), inactiveShard);
+        assertTrue(activeShards.contains(jedis.getShardInfo("foo")));
+    }
+
+    @Test
+    public void shardingReport() {
+        ShardingReport report = ShardingReport.run(shards, KEY_NUM);
+        assertEquals(report.getResults().size(), ShardingStrategy.values().length);
+        for (ShardingReport.Result result : report.getResults()) {
+            long keyNum = 0L;
+            for (long keyCount : result.getKeyCounts()) {
+                keyNum += keyCount;
+            }
+            assertEquals(keyNum, KEY_NUM);
+            assertTrue(result.getMaxLoadRatio() >= 1.0);
+            assertTrue(result.getNanosPerLookup() > 0.0);
+        }
+        // 在列表末尾增加一个分片节点，理想情况下迁移1/3的键
+        assertEquals(report.getResult(ShardingStrategy.JUMP_HASH).getMovedRatio(), 1.0 / 3, 0.02);
+        assertEquals(report.getResult(ShardingStrategy.RENDEZVOUS).getMovedRatio(), 1.0 / 3, 0.02);
+        assertEquals(report.getResult(ShardingStrategy.JUMP_HASH).getMaxLoadRatio(), 1.0, 0.05);
+    }
+
+    private static long[] countKeys(ShardRouter router, List<JedisShardInfo> shards) {
+        long[] keyCounts = new long[shards.size()];
+        for (int i = 0; i < KEY_NUM; i++) {
+            keyCounts[shards.indexOf(router.getShardInfo(SafeEncoder.encode("key:" + i)))]++;
+        }
+        return keyCounts;
+    }
+
+}
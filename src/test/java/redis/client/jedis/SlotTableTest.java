@@ -0,0 +1,163 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+import redis.clients.util.Sharded;
+
+/**
+ * Tests for {@link SlotTable}.
+ * 
+ * @author huagang.li 2015年2月27日 下午4:20:12
+ */
+public class SlotTableTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private List<JedisShardInfo> shards;
+
+    private SlotTable            slotTable;
+
+    @BeforeMethod
+    public void init() {
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+        slotTable = new SlotTable(shards);
+    }
+
+    @Test
+    public void evenSlotRanges() {
+        assertEquals(slotTable.getSlotRanges(), "0-5461:Shard-01, 5462-10922:Shard-02, 10923-16383:Shard-03");
+        assertEquals(slotTable.getSlotNum("Shard-01") + slotTable.getSlotNum("Shard-02")
+                     + slotTable.getSlotNum("Shard-03"), SlotTable.SLOT_COUNT);
+        assertFalse(slotTable.isMigrating());
+    }
+
+    @Test
+    public void parseSlotRanges() {
+        String slotRanges = "0-99:Shard-02, 100:Shard-03, 101-16383:Shard-01";
+        SlotTable table = new SlotTable(shards, slotRanges);
+        assertEquals(table.getSlotRanges(), slotRanges);
+        assertSame(table.getShardInfo(100), shards.get(2));
+        assertEquals(table.getSlotNum("Shard-02"), 100);
+    }
+
+    @Test(dataProvider = "parseSlotRangesExp", expectedExceptions = { IllegalArgumentException.class })
+    public void parseSlotRangesExp(String slotRanges) {
+        new SlotTable(shards, slotRanges);
+    }
+
+    @DataProvider(name = "parseSlotRangesExp")
+    protected static final Object[][] parseSlotRangesExpTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { "0-16383" },// 不满足"startSlot[-endSlot]:shardName"格式
+                { "0-16383:Shard-04" },// 未知的分片节点
+                { "0-10000:Shard-01" },// 部分槽位没有分配
+                { "0-10000:Shard-01, 10000-16383:Shard-02" },// 槽位被重复分配
+                { "0-16384:Shard-01" },// 槽位超出范围
+        };
+        return testData;
+    }
+
+    @Test
+    public void getSlot() {
+        // 与Redis Cluster的"CLUSTER KEYSLOT"命令结果相同
+        assertEquals(SlotTable.getSlot(SafeEncoder.encode("foo")), 12182);
+        assertEquals(SlotTable.getSlot("user:{1000}:name", Sharded.DEFAULT_KEY_TAG_PATTERN),
+                     SlotTable.getSlot(SafeEncoder.encode("1000")));
+        assertEquals(SlotTable.getSlot("user:1000:name", null),
+                     SlotTable.getSlot(SafeEncoder.encode("user:1000:name")));
+    }
+
+    @Test
+    public void migration() {
+        int slot = SlotTable.getSlot(SafeEncoder.encode("foo"));
+        assertSame(slotTable.getShardInfo(slot), shards.get(2));
+
+        assertNull(slotTable.getSettledKeys(slot));
+        slotTable.beginMigration(slot, "Shard-01");
+        assertTrue(slotTable.isMigrating());
+        assertTrue(slotTable.getSettledKeys(slot).isEmpty());
+        assertSame(slotTable.getShardInfo(SafeEncoder.encode("foo")), shards.get(0));
+        assertSame(slotTable.getMigrationSource(SafeEncoder.encode("foo")), shards.get(2));
+        assertNull(slotTable.getMigrationSource(SafeEncoder.encode("bar")));
+        slotTable.beginMigration(slot, "Shard-01"); // 继续迁移
+
+        slotTable.completeMigration(slot);
+        assertFalse(slotTable.isMigrating());
+        assertNull(slotTable.getMigrationSource(slot));
+        assertSame(slotTable.getShardInfo(slot), shards.get(0));
+        assertEquals(slotTable.getSlotNum("Shard-03"), 5461 - 1);
+        assertNull(slotTable.getSettledKeys(slot)); // 迁移完成后释放
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void migrateToOwner() {
+        slotTable.beginMigration(0, "Shard-01");
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void migrateToAnotherShard() {
+        slotTable.beginMigration(0, "Shard-02");
+        slotTable.beginMigration(0, "Shard-03");
+    }
+
+    @Test
+    public void route() {
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null, slotTable);
+        assertSame(jedis.getShardInfo("foo"), shards.get(2));
+        assertNull(jedis.getMigrationSourceShard("foo"));
+
+        slotTable.beginMigration(SlotTable.getSlot(SafeEncoder.encode("foo")), "Shard-02");
+        assertSame(jedis.getShardInfo("foo"), shards.get(1));
+        Jedis source = jedis.getMigrationSourceShard("foo");
+        assertEquals(source.getClient().getPort(), 6381);
+
+        // 本次迁移中已经搬迁过的键，不再向源节点发送MIGRATE命令 (源节点不可达)
+        slotTable.getSettledKeys(SlotTable.getSlot(SafeEncoder.encode("foo"))).add("foo");
+        assertEquals(jedis.getShard("foo").getClient().getPort(), 6380);
+    }
+
+    @Test
+    public void routeToInactiveShard() {
+        // Shard-03不可用时，属于它的槽位按哈希环路由到其它正常的分片节点
+        List<JedisShardInfo> activeShards = Arrays.asList(shards.get(0), shards.get(1));
+        CustomShardedJedis jedis = new CustomShardedJedis(activeShards, Hashing.MURMUR_HASH, null, slotTable);
+        assertTrue(activeShards.contains(jedis.getShardInfo("foo")));
+        assertSame(jedis.getShardInfo("bar"), shards.get(0)); // 属于Shard-01的槽位(5061)不受影响
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link SlowStartPolicy}.
+ * 
+ * @author huagang.li 2015年3月1日 下午2:40:05
+ */
+public class SlowStartPolicyTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private static final long    RAMP_MILLIS   = TimeUnit.HOURS.toMillis(1L);
+
+    private static final int     KEY_NUM       = 10000;
+
+    private SlowStartPolicy      policy;
+
+    private List<JedisShardInfo> shards;
+
+    @BeforeMethod
+    public void init() {
+        policy = new SlowStartPolicy();
+        policy.setEnabled(true);
+        policy.setRampMillis(RAMP_MILLIS);
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+    }
+
+    @Test
+    public void disabled() {
+        policy.setEnabled(false);
+        policy.onShardRecovered(shards.get(0));
+        assertFalse(policy.isRamping());
+        assertEquals(policy.getWeightRatio(shards.get(0)), 1.0D);
+    }
+
+    @Test
+    public void weightRatioRamps() {
+        this.recovered(shards.get(0), 0.5D);
+        assertTrue(policy.isRamping(shards.get(0)));
+        assertFalse(policy.isRamping(shards.get(1)));
+        assertEquals(policy.getWeightRatio(shards.get(0)), 0.5D, 0.01D);
+        assertEquals(policy.getWeightRatio(shards.get(1)), 1.0D);
+
+        int admittedNum = 0;
+        for (int i = 0; i < KEY_NUM; i++) {
+            if (policy.isAdmitted(shards.get(0), SafeEncoder.encode("key:" + i))) {
+                admittedNum++;
+            }
+        }
+        assertEquals(admittedNum, KEY_NUM / 2, KEY_NUM / 20);
+    }
+
+    @Test
+    public void admittedKeysStayAdmitted() {
+        this.recovered(shards.get(0), 0.3D);
+        List<byte[]> admittedKeys = new ArrayList<byte[]>();
+        for (int i = 0; i < KEY_NUM; i++) {
+            byte[] keyTag = SafeEncoder.encode("key:" + i);
+            if (policy.isAdmitted(shards.get(0), keyTag)) {
+                admittedKeys.add(keyTag);
+            }
+        }
+
+        this.recovered(shards.get(0), 0.6D);
+        for (byte[] keyTag : admittedKeys) {
+            assertTrue(policy.isAdmitted(shards.get(0), keyTag));
+        }
+    }
+
+    @Test
+    public void rampFinishes() {
+        this.recovered(shards.get(0), 0.5D);
+        int version = policy.getVersion();
+
+        this.recovered(shards.get(0), 1.5D);
+        assertEquals(policy.getWeightRatio(shards.get(0)), 1.0D);
+        assertFalse(policy.isRamping());
+        assertTrue(policy.getVersion() > version);
+    }
+
+    @Test
+    public void routeDuringSlowStart() {
+        JedisShardInfo recoveredShard = shards.get(1);
+        List<JedisShardInfo> remainingShards = new ArrayList<JedisShardInfo>(shards);
+        remainingShards.remove(recoveredShard);
+        CustomShardedJedis brokenJedis = new CustomShardedJedis(remainingShards, Hashing.MURMUR_HASH, null);
+        CustomShardedJedis jedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        jedis.setSlowStartPolicy(policy);
+
+        // 刚恢复时，键仍然路由到异常期间所在的分片节点
+        this.recovered(recoveredShard, 0.0D);
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            assertSame(jedis.locateShardInfo(key), brokenJedis.locateShardInfo(key));
+        }
+
+        // 慢启动一半时，恢复的分片节点接回了一半的键，其它分片节点上的键不受影响
+        this.recovered(recoveredShard, 0.5D);
+        CustomShardedJedis recoveredJedis = new CustomShardedJedis(shards, Hashing.MURMUR_HASH, null);
+        int ringNum = 0;
+        int admittedNum = 0;
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            JedisShardInfo shardInfo = jedis.locateShardInfo(key);
+            if (recoveredJedis.locateShardInfo(key) == recoveredShard) {
+                ringNum++;
+                if (shardInfo == recoveredShard) {
+                    admittedNum++;
+                } else {
+                    assertSame(shardInfo, brokenJedis.locateShardInfo(key));
+                }
+            } else {
+                assertNotSame(shardInfo, recoveredShard);
+                assertSame(shardInfo, recoveredJedis.locateShardInfo(key));
+            }
+        }
+        assertEquals(admittedNum, ringNum / 2, ringNum / 10);
+
+        // 慢启动结束后，按完整的哈希环路由
+        this.recovered(recoveredShard, 1.0D);
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            assertSame(jedis.locateShardInfo(key), recoveredJedis.locateShardInfo(key));
+        }
+    }
+
+    /**
+     * 模拟分片节点在慢启动时间的{@code progress}倍之前恢复正常。
+     */
+    private void recovered(JedisShardInfo shard, double progress) {
+        long elapsed = (long) (TimeUnit.MILLISECONDS.toNanos(RAMP_MILLIS) * progress);
+        policy.onShardRecovered(shard, System.nanoTime() - elapsed);
+    }
+
+}
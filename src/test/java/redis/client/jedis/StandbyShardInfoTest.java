@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+
+package redis.client.jedis;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import redis.client.util.RedisConfigUtils;
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Hashing;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link StandbyShardInfo}.
+ * 
+ * @author huagang.li 2015年3月1日 上午10:48:20
+ */
+public class StandbyShardInfoTest {
+
+    private static final String  REDIS_SERVERS = "127.0.0.1:6379:Shard-01, 127.0.0.1:6380:Shard-02,"
+                                                 + "127.0.0.1:6381:Shard-03";
+
+    private static final int     KEY_NUM       = 10000;
+
+    private List<JedisShardInfo> shards;
+
+    private JedisShardInfo       standby;
+
+    @BeforeMethod
+    public void init() {
+        shards = RedisConfigUtils.parseRedisServerList(REDIS_SERVERS, 100);
+        standby = RedisConfigUtils.parseStandbyServerList("127.0.0.1:6390", 100).get(0);
+    }
+
+    @Test
+    public void takeOver() {
+        StandbyShardInfo takeover = StandbyShardInfo.takeOver(standby, shards.get(1));
+        assertEquals(takeover.getHost(), "127.0.0.1");
+        assertEquals(takeover.getPort(), 6390);
+        assertEquals(takeover.getName(), "Shard-02");
+        assertSame(takeover.getTakenOverShard(), shards.get(1));
+        assertSame(StandbyShardInfo.getOriginalShard(takeover), shards.get(1));
+        assertSame(StandbyShardInfo.getOriginalShard(shards.get(1)), shards.get(1));
+
+        // 接管了分片节点的备用节点再被接管时，仍然是初始的分片节点的位置
+        JedisShardInfo otherStandby = new JedisShardInfo("127.0.0.1", 6391, 100);
+        assertSame(StandbyShardInfo.takeOver(otherStandby, takeover).getTakenOverShard(), shards.get(1));
+    }
+
+    @Test
+    public void namedShardKeepsRingPosition() {
+        this.assertRingPosition(shards, 1);
+    }
+
+    @Test
+    public void unnamedShardKeepsRingPosition() {
+        List<JedisShardInfo> unnamedShards = new ArrayList<JedisShardInfo>();
+        for (JedisShardInfo shard : shards) {
+            unnamedShards.add(new JedisShardInfo(shard.getHost(), shard.getPort(), 100, 2));
+        }
+        this.assertRingPosition(unnamedShards, 0);
+    }
+
+    @Test
+    public void routerRoutesToStandby() {
+        ShardRouter router = ShardingStrategy.JUMP_HASH.createRouter(shards, Hashing.MURMUR_HASH);
+        List<JedisShardInfo> activeShards = new ArrayList<JedisShardInfo>(shards);
+        StandbyShardInfo takeover = StandbyShardInfo.takeOver(standby, shards.get(2));
+        activeShards.set(2, takeover);
+
+        CustomShardedJedis jedis = new CustomShardedJedis(activeShards, Hashing.MURMUR_HASH, null, router);
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            JedisShardInfo shardInfo = router.getShardInfo(SafeEncoder.encode(key));
+            assertSame(jedis.locateShardInfo(key), (shardInfo == shards.get(2)) ? takeover : shardInfo);
+        }
+    }
+
+    /**
+     * 用备用节点接管一个分片节点后，所有键的位置保持不变。
+     */
+    private void assertRingPosition(List<JedisShardInfo> originalShards, int takenOverIndex) {
+        List<JedisShardInfo> activeShards = new ArrayList<JedisShardInfo>(originalShards);
+        StandbyShardInfo takeover = StandbyShardInfo.takeOver(standby, originalShards.get(takenOverIndex));
+        activeShards.set(takenOverIndex, takeover);
+
+        CustomShardedJedis original = new CustomShardedJedis(originalShards, Hashing.MURMUR_HASH, null);
+        CustomShardedJedis takenOver = new CustomShardedJedis(activeShards, Hashing.MURMUR_HASH, null);
+        int movedNum = 0;
+        for (int i = 0; i < KEY_NUM; i++) {
+            String key = "key:" + i;
+            JedisShardInfo before = original.locateShardInfo(key);
+            JedisShardInfo after = takenOver.locateShardInfo(key);
+            if (before == originalShards.get(takenOverIndex)) {
+                assertSame(after, takeover);
+            } else if (before != after) {
+                movedNum++;
+            }
+        }
+        assertEquals(movedNum, 0);
+    }
+
+}
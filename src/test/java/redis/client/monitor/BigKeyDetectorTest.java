@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link BigKeyDetector}.
+ * 
+ * @author huagang.li 2015年2月19日 上午11:20:05
+ */
+public class BigKeyDetectorTest {
+
+    @Test
+    public void record() {
+        BigKeyDetector detector = new BigKeyDetector(2, 0);
+        detector.setValueBytesThreshold(1000L);
+        detector.setElementCountThreshold(100L);
+
+        JedisShardInfo shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        detector.recordValue(RedisCommand.GET, "small", shard, 999L);
+        detector.recordValue(RedisCommand.SET, "big:1", shard, 1000L);
+        detector.recordValue(RedisCommand.GET, "big:2", null, 5000L);
+        detector.recordValue(RedisCommand.GET, "big:3", shard, 3000L);
+        detector.recordValue(RedisCommand.SET, "big:2", shard, 2000L); // 同一个键只保存一次(最大值)
+        detector.recordValue(RedisCommand.GET, "unknown", shard, -1L);
+
+        List<BigKey> bigValues = detector.getBigValueList();
+        assertEquals(bigValues.size(), 2);
+        assertEquals(bigValues.get(0).getKey(), "big:2");
+        assertEquals(bigValues.get(0).getSize(), 5000L);
+        assertNull(bigValues.get(0).getShard());
+        assertEquals(bigValues.get(1).getKey(), "big:3");
+        assertEquals(bigValues.get(1).getShard(), "Shard-01");
+        assertEquals(detector.getBigValues()[1], "big:3@Shard-01 GET 3000");
+
+        detector.recordElements(RedisCommand.ZCARD, "zset", shard, 1000000L);
+        detector.recordElements(RedisCommand.LRANGE, "list", shard, 99L);
+        assertEquals(detector.getBigCollections().length, 1);
+        assertEquals(detector.getBigCollectionList().get(0).getCommand(), RedisCommand.ZCARD);
+
+        detector.reset();
+        assertEquals(detector.getBigValues().length, 0);
+        assertEquals(detector.getBigCollections().length, 0);
+    }
+
+    @Test
+    public void rejectWrite() {
+        BigKeyDetector detector = new BigKeyDetector();
+        assertFalse(detector.isWriteRejected(Long.MAX_VALUE)); // 默认不限制
+
+        detector.setMaxWriteBytes(1024L);
+        assertFalse(detector.isWriteRejected(1024L));
+        assertTrue(detector.isWriteRejected(1025L));
+        assertEquals(detector.getRejectedWrites(), 1L);
+
+        // 拒绝时输出(限速的)警告日志
+        assertFalse(detector.isWriteRejected(RedisCommand.SET, "small", 1024L));
+        assertTrue(detector.isWriteRejected(RedisCommand.SET, "big", 1025L));
+        assertTrue(detector.isWriteRejected(RedisCommand.LPUSH, "big", 2048L));
+        assertEquals(detector.getRejectedWrites(), 3L);
+    }
+
+    @Test
+    public void disabled() {
+        BigKeyDetector detector = new BigKeyDetector();
+        detector.setEnabled(false);
+        detector.recordValue(RedisCommand.GET, "big", null, Long.MAX_VALUE);
+        assertEquals(detector.getBigValues().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void illegalThreshold() {
+        new BigKeyDetector().setValueBytesThreshold(0L);
+    }
+
+}
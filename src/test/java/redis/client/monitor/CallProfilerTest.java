@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link CallProfiler}.
+ * 
+ * @author huagang.li 2015年2月16日 上午11:20:15
+ */
+public class CallProfilerTest {
+
+    private static final long MICROS = TimeUnit.MICROSECONDS.toNanos(1L);
+
+    @Test
+    public void record() {
+        CallProfiler profiler = new CallProfiler(4);
+        assertFalse(profiler.isEnabled());
+        profiler.setSampleInterval(2);
+
+        JedisShardInfo shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        for (int i = 0; i < 10; i++) {
+            // POOL_WAIT=100us, ROUTE=2us, EXECUTE=(300+i)us, RELEASE=5us
+            long borrowStartTime = 1000000L;
+            long borrowEndTime = borrowStartTime + 100 * MICROS;
+            long routeEndTime = borrowEndTime + 2 * MICROS;
+            long commandEndTime = routeEndTime + (300 + i) * MICROS;
+            profiler.record(RedisCommand.GET, shard, false, borrowStartTime, borrowEndTime, routeEndTime,
+                            commandEndTime, commandEndTime + 5 * MICROS);
+        }
+        // 未知的命令不记录
+        profiler.record(null, shard, false, 0L, 1L, 2L, 3L, 4L);
+
+        assertEquals(profiler.getPhaseSnapshot(Phase.POOL_WAIT).getCount(), 10L);
+        assertEquals(profiler.getPhaseSnapshot(Phase.POOL_WAIT).getMax(), 100L);
+        assertEquals(profiler.getPhaseSnapshot(Phase.ROUTE).getMax(), 2L);
+        assertEquals(profiler.getPhaseSnapshot(Phase.EXECUTE).getMax(), 309L);
+        assertEquals(profiler.getPhaseSnapshot(Phase.RELEASE).getMax(), 5L);
+
+        // 每2次采样一次，共5次，环形缓冲区只保留最近的4次
+        List<CallProfile> profiles = profiler.getProfiles();
+        assertEquals(profiles.size(), 4);
+        CallProfile last = profiles.get(3);
+        assertEquals(last.getCommand(), RedisCommand.GET);
+        assertEquals(last.getShard(), "Shard-01");
+        assertEquals(last.getPhaseNanos(Phase.EXECUTE), 308 * MICROS);
+        assertEquals(last.getTotalNanos(), 415 * MICROS);
+        assertTrue(profiler.getRecentProfiles()[3].startsWith("GET@Shard-01 total=415us"));
+
+        profiler.reset();
+        assertEquals(profiler.getProfiles().size(), 0);
+        assertEquals(profiler.getPhaseSnapshot(Phase.EXECUTE).getCount(), 0L);
+    }
+
+    @Test
+    public void routeNotHappened() {
+        CallProfiler profiler = new CallProfiler();
+        profiler.setSampleInterval(1);
+        profiler.record(RedisCommand.BATCH, null, true, 0L, 10 * MICROS, 0L, 30 * MICROS, 31 * MICROS);
+
+        CallProfile profile = profiler.getProfiles().get(0);
+        assertEquals(profile.getPhaseNanos(Phase.ROUTE), 0L);
+        assertEquals(profile.getPhaseNanos(Phase.EXECUTE), 20 * MICROS);
+        assertTrue(profile.isFailed());
+    }
+
+}
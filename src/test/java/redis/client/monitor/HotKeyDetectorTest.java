@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link HotKeyDetector}.
+ * 
+ * @author huagang.li 2015年2月18日 下午2:10:48
+ */
+public class HotKeyDetectorTest {
+
+    @Test
+    public void detect() {
+        HotKeyDetector detector = new HotKeyDetector(1, 3);
+        detector.setSampleInterval(1);
+        detector.setHotKeyThreshold(500L);
+        final List<HotKey> notified = new ArrayList<HotKey>();
+        detector.addListener(new HotKeyListener() {
+
+            @Override
+            public void onHotKey(HotKey hotKey) {
+                notified.add(hotKey);
+            }
+        });
+
+        JedisShardInfo shard1 = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        JedisShardInfo shard2 = new JedisShardInfo("127.0.0.1", 6380, "Shard-02");
+        for (int i = 0; i < 2000; i++) {
+            detector.sample("hot", shard1);
+            detector.sample("warm", shard2);
+            if (i % 4 == 0) {
+                detector.sample("warm", shard2);
+            }
+            detector.sample("cold:" + i, shard2); // 长尾键
+        }
+        assertFalse(detector.isHot("hot")); // 统计窗口还未结束
+
+        detector.rotateIfNecessary(System.currentTimeMillis() + 1000L);
+
+        assertTrue(detector.isHot("hot"));
+        assertTrue(detector.isHot("warm"));
+        assertFalse(detector.isHot("cold:1"));
+        assertEquals(detector.getHotKey("hot").getShard(), "Shard-01");
+        assertEquals(detector.getTopKeyList().get(0).getKey(), "warm");
+        assertTrue(detector.getHotKey("warm").getCount() >= 2500L);
+        assertEquals(notified.size(), 2);
+        assertTrue(detector.getTopKeys()[0].startsWith("warm@Shard-02"));
+
+        detector.reset();
+        assertFalse(detector.isHot("hot"));
+        assertEquals(detector.getTopKeys().length, 0);
+    }
+
+    @Test
+    public void disabled() {
+        HotKeyDetector detector = new HotKeyDetector(1, 3);
+        detector.setSampleInterval(1);
+        detector.setHotKeyThreshold(1L);
+        detector.setEnabled(false);
+        for (int i = 0; i < 100; i++) {
+            detector.sample("hot", null);
+        }
+        detector.rotateIfNecessary(System.currentTimeMillis() + 1000L);
+        assertFalse(detector.isHot("hot"));
+    }
+
+}
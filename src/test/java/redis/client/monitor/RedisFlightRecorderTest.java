@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+
+/**
+ * Tests for {@link RedisFlightRecorder}.
+ * 
+ * @author huagang.li 2015年2月17日 上午11:40:36
+ */
+public class RedisFlightRecorderTest {
+
+    @Test
+    public void events() throws Exception {
+        if (!RedisFlightRecorder.isAvailable()) {
+            throw new SkipException("Java Flight Recorder is not available");
+        }
+
+        JedisShardInfo shard = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        // 没有正在进行的记录时，不会发出事件
+        RedisFlightRecorder.command(RedisCommand.GET, shard, "key", 5, 100000000L, false);
+
+        File file = File.createTempFile("redis-jfr", ".jfr");
+        Recording recording = new Recording();
+        try {
+            recording.enable("redis.client.Command");
+            recording.enable("redis.client.PoolBorrow");
+            recording.enable("redis.client.ShardState");
+            recording.start();
+
+            RedisFlightRecorder.setCommandThresholdMillis(10L);
+            RedisFlightRecorder.command(RedisCommand.GET, shard, "fast", 5, 1000L, false); // 低于阈值
+            RedisFlightRecorder.command(RedisCommand.SET, shard, "slow", 7, 20000000L, true);
+            RedisFlightRecorder.poolBorrow(1000L, false); // 借用失败总是记录
+            RedisFlightRecorder.shardState(shard, true);
+
+            recording.stop();
+            recording.dump(file.toPath());
+        } finally {
+            RedisFlightRecorder.setCommandThresholdMillis(RedisFlightRecorder.DEFAULT_COMMAND_THRESHOLD);
+            recording.close();
+        }
+
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().startsWith("redis.client.")) {
+                events.add(event);
+            }
+        }
+        file.delete();
+
+        assertEquals(events.size(), 3, events.toString());
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals("redis.client.Command")) {
+                assertEquals(event.getString("command"), "SET");
+                assertEquals(event.getString("shard"), "Shard-01");
+                assertEquals(event.getInt("keyLength"), 4);
+                assertEquals(event.getInt("valueLength"), 7);
+                assertEquals(event.getLong("commandDuration"), 20000000L);
+                assertTrue(event.getBoolean("failed"));
+            } else if (name.equals("redis.client.PoolBorrow")) {
+                assertEquals(event.getBoolean("success"), false);
+            } else {
+                assertEquals(event.getString("state"), "EJECTED");
+            }
+        }
+    }
+
+}
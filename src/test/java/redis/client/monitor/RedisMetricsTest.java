@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.monitor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.net.SocketTimeoutException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+import redis.clients.jedis.JedisShardInfo;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+/**
+ * Tests for {@link RedisMetrics}.
+ * 
+ * @author huagang.li 2015年2月13日 下午5:32:06
+ */
+public class RedisMetricsTest {
+
+    @Test
+    public void record() {
+        RedisMetrics metrics = new RedisMetrics();
+        JedisShardInfo shard1 = new JedisShardInfo("127.0.0.1", 6379, "Shard-01");
+        JedisShardInfo shard2 = new JedisShardInfo("127.0.0.1", 6380);
+
+        long startTime = System.nanoTime();
+        metrics.record(RedisCommand.GET, shard1, startTime, null);
+        metrics.record(RedisCommand.GET, shard2, startTime, new JedisConnectionException("refused"));
+        metrics.record(RedisCommand.GET, shard2, startTime,
+                       new JedisConnectionException(new SocketTimeoutException("Read timed out")));
+        metrics.record(RedisCommand.GET, null, startTime, null); // 未知的分片节点
+
+        CommandMetrics total = metrics.getCommandMetrics(RedisCommand.GET);
+        assertEquals(total.getCalls(), 4L);
+        assertEquals(total.getErrors(), 2L);
+        assertEquals(total.getTimeouts(), 1L);
+        assertEquals(metrics.getCommandMetrics(RedisCommand.GET, "Shard-01").getCalls(), 1L);
+        CommandMetrics shard2Metrics = metrics.getCommandMetrics(RedisCommand.GET, "127.0.0.1:6380");
+        assertEquals(shard2Metrics.getCalls(), 2L);
+        assertEquals(shard2Metrics.getTimeouts(), 1L);
+        assertNull(metrics.getCommandMetrics(RedisCommand.SET));
+
+        // 同名的分片节点(如连接池重建后)共用统计数据
+        metrics.record(RedisCommand.GET, new JedisShardInfo("127.0.0.1", 6379, "Shard-01"), startTime, null);
+        assertEquals(metrics.getCommandMetrics(RedisCommand.GET, "Shard-01").getCalls(), 2L);
+        assertEquals(metrics.getAllCommandMetrics().size(), 3);
+
+        metrics.recordBorrow(1000L, true);
+        metrics.recordBorrow(2000L, false);
+        assertEquals(metrics.getPoolMetrics().getBorrows(), 2L);
+        assertEquals(metrics.getPoolMetrics().getBorrowFailures(), 1L);
+
+        // 关闭统计
+        metrics.setEnabled(false);
+        metrics.record(RedisCommand.GET, shard1, startTime, null);
+        assertEquals(total.getCalls(), 5L);
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        RedisMetrics metrics = new RedisMetrics();
+        JedisShardInfo shard = new JedisShardInfo("127.0.0.1", 6379);
+        metrics.record(RedisCommand.GET, shard, System.nanoTime(), null);
+
+        metrics.addRegistry(new JmxMetricsRegistry(mBeanServer, "redis.client.test"));
+        // 注册表添加之后创建的统计数据
+        metrics.record(RedisCommand.SET, shard, System.nanoTime(), null);
+        try {
+            ObjectName get = new ObjectName("redis.client.test:type=CommandMetrics,command=GET,shard=all");
+            assertEquals(mBeanServer.getAttribute(get, "Calls"), 1L);
+            ObjectName set = new ObjectName("redis.client.test:type=CommandMetrics,command=SET,shard="
+                                            + ObjectName.quote("127.0.0.1:6379"));
+            assertEquals(mBeanServer.getAttribute(set, "Calls"), 1L);
+            assertTrue(mBeanServer.isRegistered(new ObjectName("redis.client.test:type=PoolMetrics")));
+        } finally {
+            metrics.removeRegistries();
+        }
+        assertEquals(mBeanServer.queryNames(new ObjectName("redis.client.test:*"), null).size(), 0);
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link CountMinSketch}.
+ * 
+ * @author huagang.li 2015年2月18日 下午2:02:31
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void estimate() {
+        CountMinSketch sketch = new CountMinSketch(4, 1000);
+        for (int i = 0; i < 500; i++) {
+            sketch.add("hot".hashCode());
+        }
+        for (int i = 0; i < 10000; i++) {
+            sketch.add(("key:" + i).hashCode());
+        }
+
+        // 只会高估，不会低估
+        long hot = sketch.estimate("hot".hashCode());
+        assertTrue(hot >= 500L && hot < 600L, Long.toString(hot));
+        assertTrue(sketch.estimate("key:1".hashCode()) >= 1L);
+        assertEquals(sketch.add("hot".hashCode()), hot + 1);
+
+        sketch.reset();
+        assertEquals(sketch.estimate("hot".hashCode()), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void illegalDepth() {
+        new CountMinSketch(0, 1024);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ * 
+ * @author huagang.li 2015年2月13日 下午5:10:22
+ */
+public class LatencyHistogramTest {
+
+    @Test(dataProvider = "bucket")
+    public void bucket(long value) {
+        int index = LatencyHistogram.bucketIndex(value);
+        // 值落在桶的范围内，且相对误差不超过 1/16
+        long upperBound = LatencyHistogram.bucketUpperBound(index);
+        assertTrue(value <= upperBound, value + " > " + upperBound);
+        assertTrue(upperBound - value <= value / 16, value + " -> " + upperBound);
+        if (index > 0) {
+            assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @DataProvider(name = "bucket")
+    protected static final Object[][] bucketTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { 0L },//
+                { 1L },//
+                { 15L },//
+                { 16L },//
+                { 17L },//
+                { 31L },//
+                { 32L },//
+                { 1000L },// 1ms
+                { 123456L },//
+                { (1L << 36) - 1 },// 最大值
+        };
+        return testData;
+    }
+
+    @Test
+    public void snapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.getCount(), 1000L);
+        assertEquals(snapshot.getMax(), 1000L);
+        assertEquals(snapshot.getMean(), 500.5D, 0.001D);
+        assertWithin(snapshot.getValueAtPercentile(50.0D), 500L);
+        assertWithin(snapshot.getValueAtPercentile(99.0D), 990L);
+        assertEquals(snapshot.getValueAtPercentile(100.0D), 1000L);
+
+        // 超出范围的值
+        histogram.recordMicros(-1L);
+        histogram.recordMicros(Long.MAX_VALUE);
+        assertEquals(histogram.snapshot().getCount(), 1002L);
+
+        histogram.reset();
+        snapshot = histogram.snapshot();
+        assertEquals(snapshot.getCount(), 0L);
+        assertEquals(snapshot.getValueAtPercentile(99.0D), 0L);
+    }
+
+    @Test
+    public void since() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.recordMicros(10000L);
+        }
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 100; i++) {
+            histogram.recordMicros(100L);
+        }
+
+        // 只包含较早的快照之后记录的数据
+        LatencyHistogram.Snapshot recent = histogram.snapshot().since(earlier);
+        assertEquals(recent.getCount(), 100L);
+        assertEquals(recent.getMean(), 100.0D, 0.001D);
+        assertWithin(recent.getMax(), 100L);
+        assertWithin(recent.getValueAtPercentile(99.0D), 100L);
+
+        // 期间被清空过时，返回当前快照
+        histogram.reset();
+        histogram.recordMicros(200L);
+        LatencyHistogram.Snapshot current = histogram.snapshot();
+        assertEquals(current.since(earlier).getCount(), 1L);
+        assertEquals(current.since(earlier).getMax(), 200L);
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16, actual + " != " + expected);
+    }
+
+}
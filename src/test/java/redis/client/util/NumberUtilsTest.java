@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link NumberUtils}.
+ * 
+ * @author huagang.li 2015年2月5日 上午10:58:12
+ */
+public class NumberUtilsTest {
+
+    @Test(dataProvider = "parseLong")
+    public void parseLong(String str, long expected) {
+        assertEquals(NumberUtils.parseLong(SafeEncoder.encode(str)), expected);
+    }
+
+    @DataProvider(name = "parseLong")
+    protected static final Object[][] parseLongTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { "0", 0L },//
+                { "123", 123L },//
+                { "-42", -42L },//
+                { "+7", 7L },//
+                { "1423456789000", 1423456789000L },// 时间戳
+                { Long.toString(Long.MAX_VALUE), Long.MAX_VALUE },//
+                { Long.toString(Long.MIN_VALUE), Long.MIN_VALUE },//
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseLongExp", expectedExceptions = NumberFormatException.class)
+    public void parseLongExp(String str) {
+        NumberUtils.parseLong(str == null ? null : SafeEncoder.encode(str));
+    }
+
+    @DataProvider(name = "parseLongExp")
+    protected static final Object[][] parseLongExpTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { null },//
+                { "" },//
+                { "-" },//
+                { "1.5" },//
+                { "abc" },//
+                { "9223372036854775808" },// Long.MAX_VALUE + 1
+                { "-9223372036854775809" },// Long.MIN_VALUE - 1
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseDouble")
+    public void parseDouble(String str, double expected) {
+        assertEquals(NumberUtils.parseDouble(SafeEncoder.encode(str)), expected);
+    }
+
+    @DataProvider(name = "parseDouble")
+    protected static final Object[][] parseDoubleTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { "3", 3.0 },//
+                { "-3", -3.0 },//
+                { "2.01", 2.01 },//
+                { "1e+20", 1e20 },//
+                { "inf", Double.POSITIVE_INFINITY },//
+                { "-inf", Double.NEGATIVE_INFINITY },//
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "toByteArray")
+    public void toByteArray(long value) {
+        assertEquals(SafeEncoder.encode(NumberUtils.toByteArray(value)), Long.toString(value));
+    }
+
+    @DataProvider(name = "toByteArray")
+    protected static final Object[][] toByteArrayTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { 0L },//
+                { 9L },//
+                { 10L },//
+                { -1L },//
+                { -10L },//
+                { 1423456789000L },//
+                { Long.MAX_VALUE },//
+                { Long.MIN_VALUE },//
+        };
+        return testData;
+    }
+
+}
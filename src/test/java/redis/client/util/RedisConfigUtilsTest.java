@@ -18,9 +18,14 @@ package redis.client.util;
 
 import static org.testng.Assert.assertEquals;
 
+import java.util.List;
+import java.util.Map;
+
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import redis.clients.jedis.JedisShardInfo;
+
 /**
  * Tests for {@link RedisConfigUtils}.
  * <p>
@@ -51,6 +56,114 @@ public class RedisConfigUtilsTest {
                 // 定义节点权重
                 { "192.168.6.189:6379:Shard-01:1, 192.168.6.189:6380:Shard-02:1, 192.168.6.189:6381:Shard-03:1", 100,
                         "[192.168.6.189:6379*1, 192.168.6.189:6380*1, 192.168.6.189:6381*1]" },// 节点配置信息之间包含若干个空格
+                // 定义副本节点
+                { "192.168.6.189:6379:Shard-01|192.168.6.190:6379, 192.168.6.189:6380:Shard-02:1 | 192.168.6.190:6380",
+                        100, "[192.168.6.189:6379*1, 192.168.6.189:6380*1]" },// 副本节点信息被忽略
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseReplicaServerMap")
+    public void parseReplicaServerMap(String redisServers, String replicaInfoStr) {
+        Map<String, List<JedisShardInfo>> replicaMap = RedisConfigUtils.parseReplicaServerMap(redisServers, 100);
+        StringBuilder replicaInfo = new StringBuilder();
+        for (Map.Entry<String, List<JedisShardInfo>> entry : replicaMap.entrySet()) {
+            for (JedisShardInfo replica : entry.getValue()) {
+                replicaInfo.append(entry.getKey()).append('=').append(replica.getName()).append('@').append(replica)
+                           .append(' ');
+            }
+        }
+        assertEquals(replicaInfo.toString().trim(), replicaInfoStr);
+    }
+
+    @DataProvider(name = "parseReplicaServerMap")
+    protected static final Object[][] parseReplicaServerMapTestData() {
+        Object[][] testData = new Object[][] {//
+                // 未定义副本节点
+                { "192.168.6.189:6379:Shard-01, 192.168.6.189:6380:Shard-02", "" },
+                // 部分分片节点定义了副本节点
+                {
+                        "192.168.6.189:6379:Shard-01|192.168.6.190:6379|192.168.6.191:6379, 192.168.6.189:6380:Shard-02, 192.168.6.189:6381:Shard-03:1 | 192.168.6.190:6381",
+                        "Shard-01=Shard-01/replica-1@192.168.6.190:6379*1 Shard-01=Shard-01/replica-2@192.168.6.191:6379*1 Shard-03=Shard-03/replica-1@192.168.6.190:6381*1" },
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseReplicaServerMapExp", expectedExceptions = { IllegalArgumentException.class })
+    public void parseReplicaServerMapExp(String redisServers) {
+        RedisConfigUtils.parseReplicaServerMap(redisServers, 100);
+    }
+
+    @DataProvider(name = "parseReplicaServerMapExp")
+    protected static final Object[][] parseReplicaServerMapExpTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { "192.168.6.189:6379:Shard-01|192.168.6.190" },// 不满足"replicaHost:replicaPort"格式
+                { "192.168.6.189:6379:Shard-01|:6379" },// replica host is empty
+                { "192.168.6.189:6379|192.168.6.190:6379" },// 不满足"host:port:name[:weight]"格式
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseClusterNodes")
+    public void parseClusterNodes(String clusterNodes, String nodeInfoStr) {
+        assertEquals(RedisConfigUtils.parseClusterNodes(clusterNodes).toString(), nodeInfoStr);
+    }
+
+    @DataProvider(name = "parseClusterNodes")
+    protected static final Object[][] parseClusterNodesTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { "192.168.6.189:7000, 192.168.6.189:7001,192.168.6.189:7002", "[192.168.6.189:7000, 192.168.6.189:7001, 192.168.6.189:7002]" },
+                { " 192.168.6.189:7000,  , 192.168.6.189:7000, ", "[192.168.6.189:7000]" },// 包含无用逗号和重复节点
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseClusterNodesExp", expectedExceptions = { IllegalArgumentException.class })
+    public void parseClusterNodesExp(String clusterNodes) {
+        RedisConfigUtils.parseClusterNodes(clusterNodes);
+    }
+
+    @DataProvider(name = "parseClusterNodesExp")
+    protected static final Object[][] parseClusterNodesExpTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { null },//
+                { " , " },// 没有任何节点
+                { "192.168.6.189:7000:Shard-01" },// 不满足"host:port"格式
+                { ":7000" },// host is empty
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseStandbyServerList")
+    public void parseStandbyServerList(String standbyServers, String standbyInfoStr) {
+        assertEquals(RedisConfigUtils.parseStandbyServerList(standbyServers, 100).toString(), standbyInfoStr);
+    }
+
+    @DataProvider(name = "parseStandbyServerList")
+    protected static final Object[][] parseStandbyServerListTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { "192.168.6.189:6390, 192.168.6.189:6391", "[192.168.6.189:6390*1, 192.168.6.189:6391*1]" },
+                { " 192.168.6.189:6390,  , ", "[192.168.6.189:6390*1]" },// 包含无用逗号
+        };
+        return testData;
+    }
+
+    @Test(dataProvider = "parseStandbyServerListExp", expectedExceptions = { IllegalArgumentException.class })
+    public void parseStandbyServerListExp(String standbyServers) {
+        RedisConfigUtils.parseStandbyServerList(standbyServers, 100);
+    }
+
+    @DataProvider(name = "parseStandbyServerListExp")
+    protected static final Object[][] parseStandbyServerListExpTestData() {
+        Object[][] testData = new Object[][] {//
+                //
+                { null },//
+                { "192.168.6.189:6390:Standby-01" },// 不满足"host:port"格式
+                { ":6390" },// host is empty
         };
         return testData;
     }
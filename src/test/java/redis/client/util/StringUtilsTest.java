@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package redis.client.util;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Tests for {@link StringUtils}.
+ * 
+ * @author huagang.li 2015年3月2日 下午3:12:08
+ */
+public class StringUtilsTest {
+
+    @Test(dataProvider = "utf8Length")
+    public void utf8Length(String str) {
+        long expected = (str == null) ? 0L : SafeEncoder.encode(str).length;
+        assertEquals(StringUtils.utf8Length(str), expected);
+    }
+
+    @DataProvider(name = "utf8Length")
+    protected static final Object[][] utf8LengthTestData() {
+        Object[][] testData = new Object[][] {//
+                                              //
+                { null },//
+                { "" },//
+                { "bob" },//
+                { "café" },// 2字节字符
+                { "中文缓存" },// 中文，3字节字符
+                { "emoji:😀" },// 代理对，4字节字符
+        };
+        return testData;
+    }
+
+}
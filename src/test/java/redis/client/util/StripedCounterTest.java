@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package redis.client.util;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link StripedCounter}.
+ * 
+ * @author huagang.li 2015年2月13日 下午5:18:40
+ */
+public class StripedCounterTest {
+
+    @Test
+    public void concurrentIncrement() throws InterruptedException {
+        final StripedCounter counter = new StripedCounter(3);
+        final int threadNum = 8;
+        final int times = 10000;
+        final CountDownLatch done = new CountDownLatch(threadNum);
+        for (int i = 0; i < threadNum; i++) {
+            new Thread() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < times; j++) {
+                        counter.increment();
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+        assertEquals(counter.sum(), (long) threadNum * times);
+
+        counter.add(-5L);
+        assertEquals(counter.sum(), (long) threadNum * times - 5L);
+
+        counter.reset();
+        assertEquals(counter.sum(), 0L);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void illegalStripes() {
+        new StripedCounter(0);
+    }
+
+}